@@ -0,0 +1,42 @@
+package com.example.addressbook.benchmarks;
+
+import org.openjdk.jmh.Main;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so that runs can be compared over time.
+ * Any JMH command line option may be given; when no result file is given the results go to
+ * {@code target/jmh-results.json}. For example, {@code -p size=1000 SearchBenchmark} runs only the search benchmarks
+ * over a thousand contacts.
+ */
+public final class BenchmarkRunner {
+    /**
+     * The default result file, relative to the working directory.
+     */
+    public static final String DEFAULT_RESULT_FILE = "target/jmh-results.json";
+
+    private BenchmarkRunner() {
+    }
+
+    /**
+     * Runs the benchmarks.
+     * @param args The JMH command line options.
+     * @throws Exception If the benchmarks cannot be run.
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if (!options.contains("-rff")) {
+            Path resultFile = Path.of(DEFAULT_RESULT_FILE);
+            if (resultFile.getParent() != null) {
+                Files.createDirectories(resultFile.getParent());
+            }
+            options.addAll(0, List.of("-rf", "json", "-rff", resultFile.toString()));
+        }
+        Main.main(options.toArray(new String[0]));
+    }
+}
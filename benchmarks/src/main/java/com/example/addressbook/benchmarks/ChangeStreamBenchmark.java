@@ -0,0 +1,108 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.PackedContactDAO;
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactChange;
+import com.example.addressbook.model.ContactChangeStream;
+import com.example.addressbook.model.IContactChangeListener;
+import com.example.addressbook.model.IContactDAO;
+import com.example.addressbook.model.ObservableContactDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures what publishing the changes costs the writing thread: the packed DAO written to directly,
+ * and through the observable DAO with a subscriber counting the changes on the delivery thread.
+ * The number of batches lost to a full buffer is printed at the end of each trial.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx2g"})
+public class ChangeStreamBenchmark {
+    /**
+     * The number of contacts written by one batch.
+     */
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"direct", "observable"})
+    public String dao;
+
+    private IContactDAO contactDAO;
+    private ContactChangeStream changes;
+    private final AtomicLong delivered = new AtomicLong();
+    private List<Contact> contacts;
+    private final Random random = new Random(ContactData.SEED);
+
+    /**
+     * Fills the DAO and subscribes the counting listener.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        PackedContactDAO packedContactDAO = new PackedContactDAO();
+        if (dao.equals("observable")) {
+            changes = new ContactChangeStream();
+            changes.subscribe(new IContactChangeListener() {
+                @Override
+                public void onContactsChanged(List<ContactChange> batch) {
+                    delivered.addAndGet(batch.size());
+                }
+
+                @Override
+                public void onChangesLost() {
+                }
+            });
+            contactDAO = new ObservableContactDAO(packedContactDAO, changes);
+        } else {
+            contactDAO = packedContactDAO;
+        }
+        contacts = ContactData.generate(10_000);
+        contactDAO.addContacts(contacts);
+    }
+
+    /**
+     * Stops the delivery thread and reports how many batches were lost.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (changes != null) {
+            System.out.printf("%nDelivered %d changes, lost %d batches%n", delivered.get(), changes.getLostBatchCount());
+            changes.close();
+        }
+    }
+
+    @Benchmark
+    public void updateContact() {
+        Contact contact = contacts.get(random.nextInt(contacts.size()));
+        contact.setPhone(String.format("04%08d", random.nextInt(100_000_000)));
+        contactDAO.updateContact(contact);
+    }
+
+    /**
+     * Adds a batch of contacts and deletes it again so that the size of the DAO stays constant.
+     */
+    @Benchmark
+    public void addAndDeleteBatch() {
+        List<Contact> batch = ContactData.generate(BATCH_SIZE, random.nextLong());
+        contactDAO.addContacts(batch);
+        contactDAO.deleteContacts(batch);
+    }
+}
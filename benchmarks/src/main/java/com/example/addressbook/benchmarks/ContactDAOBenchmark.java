@@ -0,0 +1,158 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.IContactDAO;
+import com.example.addressbook.model.MockContactDAO;
+import com.example.addressbook.model.SqliteConnection;
+import com.example.addressbook.model.SqliteContactDAO;
+import com.example.addressbook.model.SqliteSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CRUD operations of the in-memory and SQLite DAOs.
+ * The SQLite database lives in a fresh temporary directory per trial, with the default settings.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx2g"})
+public class ContactDAOBenchmark {
+    /**
+     * The number of contacts added by one batch insert.
+     */
+    private static final int BATCH_SIZE = 1_000;
+
+    @Param({"mock", "sqlite"})
+    public String dao;
+
+    @Param({"10000"})
+    public int size;
+
+    private Path directory;
+    private Connection connection;
+    private IContactDAO contactDAO;
+    private List<Contact> contacts;
+    private final Random random = new Random(ContactData.SEED);
+
+    /**
+     * Creates the DAO and fills it with the generated contacts.
+     * @throws IOException If the temporary directory cannot be created.
+     * @throws SQLException If the database cannot be opened.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        if (dao.equals("sqlite")) {
+            directory = Files.createTempDirectory("address-book-benchmark");
+            connection = SqliteConnection.open("jdbc:sqlite:" + directory.resolve("contacts.db"), new SqliteSettings());
+            contactDAO = new SqliteContactDAO(connection);
+        } else {
+            contactDAO = new MockContactDAO();
+        }
+        contacts = ContactData.generate(size);
+        contactDAO.addContacts(contacts);
+    }
+
+    /**
+     * Closes the database and deletes its directory.
+     * @throws IOException If the directory cannot be deleted.
+     * @throws SQLException If the database cannot be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        if (contactDAO instanceof SqliteContactDAO sqliteContactDAO) {
+            sqliteContactDAO.close();
+            connection.close();
+        }
+        if (directory != null) {
+            TempFiles.deleteRecursively(directory);
+        }
+    }
+
+    /**
+     * Picks a random contact that was added during setup.
+     * @return The contact.
+     */
+    private Contact randomContact() {
+        return contacts.get(random.nextInt(contacts.size()));
+    }
+
+    @Benchmark
+    public Contact getContact() {
+        return contactDAO.getContact(randomContact().getId());
+    }
+
+    @Benchmark
+    public void updateContact() {
+        Contact contact = randomContact();
+        contact.setPhone(String.format("04%08d", random.nextInt(100_000_000)));
+        contactDAO.updateContact(contact);
+    }
+
+    /**
+     * Adds a contact and deletes it again so that the size of the table stays constant.
+     */
+    @Benchmark
+    public void addAndDeleteContact() {
+        Contact contact = new Contact("Bench", "Mark", "bench@example.com", "0400000000");
+        contactDAO.addContact(contact);
+        contactDAO.deleteContact(contact);
+    }
+
+    /**
+     * Adds a batch of contacts and deletes it again so that the size of the table stays constant.
+     * @param blackhole Consumes the assigned ids.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void addAndDeleteBatch(Blackhole blackhole) {
+        List<Contact> batch = ContactData.generate(BATCH_SIZE, random.nextLong());
+        contactDAO.addContacts(batch);
+        contactDAO.deleteContacts(batch);
+        blackhole.consume(batch.get(0).getId());
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public List<Contact> getAllContacts() {
+        return contactDAO.getAllContacts();
+    }
+
+    /**
+     * Streams every contact without collecting them into a list.
+     * @param blackhole Consumes the contacts.
+     */
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void forEachContact(Blackhole blackhole) {
+        contactDAO.forEachContact(blackhole::consume);
+    }
+
+    @Benchmark
+    public List<Contact> searchContacts() {
+        return contactDAO.searchContacts("rays");
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates reproducible synthetic contacts for the benchmarks.
+ * The same seed always yields the same contacts, so runs can be compared with each other.
+ */
+public final class ContactData {
+    /**
+     * The seed used by every benchmark.
+     */
+    public static final long SEED = 42L;
+
+    private static final String[] FIRST_NAMES = {
+            "John", "Jane", "Jay", "Alice", "Shane", "Olivia", "Liam", "Noah", "Emma", "Ava",
+            "Mia", "Lucas", "Jack", "Chloe", "Grace", "Oscar", "Ruby", "Henry", "Zoe", "Leo"
+    };
+    private static final String[] LAST_NAMES = {
+            "Doe", "Smith", "Graystone", "Nguyen", "Williams", "Brown", "Wilson", "Taylor", "Johnson", "White",
+            "Martin", "Anderson", "Thompson", "Walker", "Harris", "Lee", "Ryan", "Robinson", "Kelly", "King"
+    };
+    private static final String[] DOMAINS = {"example.com", "gmail.com", "outlook.com", "uni.edu.au"};
+
+    private ContactData() {
+    }
+
+    /**
+     * Generates contacts with the default seed.
+     * @param count The number of contacts to generate.
+     * @return The generated contacts.
+     */
+    public static List<Contact> generate(int count) {
+        return generate(count, SEED);
+    }
+
+    /**
+     * Generates contacts. Names repeat and emails are unique per contact; phone numbers are drawn
+     * at random, so they may repeat.
+     * @param count The number of contacts to generate.
+     * @param seed The seed of the random generator.
+     * @return The generated contacts.
+     */
+    public static List<Contact> generate(int count, long seed) {
+        Random random = new Random(seed);
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String firstName = FIRST_NAMES[random.nextInt(FIRST_NAMES.length)];
+            String lastName = LAST_NAMES[random.nextInt(LAST_NAMES.length)];
+            String email = (firstName + "." + lastName + i).toLowerCase() + "@" + DOMAINS[random.nextInt(DOMAINS.length)];
+            String phone = String.format("04%08d", random.nextInt(100_000_000));
+            contacts.add(new Contact(firstName, lastName, email, phone));
+        }
+        return contacts;
+    }
+}
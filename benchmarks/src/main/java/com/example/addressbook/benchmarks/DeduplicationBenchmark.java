@@ -0,0 +1,58 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactDeduplicator;
+import com.example.addressbook.model.DuplicateCluster;
+import com.example.addressbook.model.MockContactDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures finding the duplicates of a whole address book in which one contact in a hundred
+ * was imported a second time, with its email in upper case and a letter of its first name dropped.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class DeduplicationBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private ContactDeduplicator deduplicator;
+
+    @Setup
+    public void setUp() {
+        List<Contact> contacts = ContactData.generate(size);
+        List<Contact> duplicates = new ArrayList<>();
+        for (int i = 0; i < contacts.size(); i += 100) {
+            Contact contact = contacts.get(i);
+            duplicates.add(new Contact(contact.getFirstName().substring(1), contact.getLastName(),
+                    contact.getEmail().toUpperCase(), ""));
+        }
+        MockContactDAO contactDAO = new MockContactDAO();
+        contactDAO.addContacts(contacts);
+        contactDAO.addContacts(duplicates);
+        deduplicator = new ContactDeduplicator(contactDAO);
+    }
+
+    @Benchmark
+    public List<DuplicateCluster> findDuplicates() {
+        return deduplicator.findDuplicates();
+    }
+}
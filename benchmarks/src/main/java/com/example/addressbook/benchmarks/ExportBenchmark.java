@@ -0,0 +1,85 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.ContactExporter;
+import com.example.addressbook.model.ExportProgress;
+import com.example.addressbook.model.SqliteConnection;
+import com.example.addressbook.model.SqliteContactDAO;
+import com.example.addressbook.model.SqliteSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a full export of a SQLite address book, streamed from the database cursor to a file.
+ * The heap is kept small so that an export buffering the whole book would fail rather than only be slow.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms64m", "-Xmx64m"})
+public class ExportBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"csv", "vcf", "jsonl", "csv.gz"})
+    public String extension;
+
+    private Path directory;
+    private Connection connection;
+    private SqliteContactDAO contactDAO;
+    private ExportProgress lastProgress;
+
+    /**
+     * Fills a database in batches, so that the generated contacts never all sit in the small heap.
+     * @throws IOException If the temporary directory cannot be created.
+     * @throws SQLException If the database cannot be opened.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("address-book-export-benchmark");
+        connection = SqliteConnection.open("jdbc:sqlite:" + directory.resolve("contacts.db"), new SqliteSettings());
+        contactDAO = new SqliteContactDAO(connection);
+        int batchSize = 50_000;
+        for (int added = 0; added < size; added += batchSize) {
+            contactDAO.addContacts(ContactData.generate(Math.min(batchSize, size - added), ContactData.SEED + added));
+        }
+    }
+
+    /**
+     * Reports the last export, closes the database and deletes the directory.
+     * @throws IOException If the directory cannot be deleted.
+     * @throws SQLException If the database cannot be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        System.out.println("Last export: " + lastProgress);
+        contactDAO.close();
+        connection.close();
+        TempFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public ExportProgress exportAll() throws IOException {
+        lastProgress = new ContactExporter(contactDAO).exportAll(directory.resolve("contacts." + extension), null);
+        return lastProgress;
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactImporter;
+import com.example.addressbook.model.ImportProgress;
+import com.example.addressbook.model.SqliteConnection;
+import com.example.addressbook.model.SqliteContactDAO;
+import com.example.addressbook.model.SqliteSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a bulk import of a generated CSV file into an empty SQLite database.
+ * The file is written once per trial; every invocation imports it into a fresh database.
+ * The rate of the last import is printed, as the rows per second reported by the importer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class ImportBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private Path file;
+    private Connection connection;
+    private SqliteContactDAO contactDAO;
+    private ImportProgress lastProgress;
+
+    /**
+     * Writes the CSV file to import.
+     * @throws IOException If the file cannot be written.
+     */
+    @Setup(Level.Trial)
+    public void writeFile() throws IOException {
+        directory = Files.createTempDirectory("address-book-import-benchmark");
+        file = directory.resolve("contacts.csv");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            writer.write("First Name,Last Name,Email,Phone\n");
+            for (Contact contact : ContactData.generate(size)) {
+                writer.write(contact.getFirstName() + "," + contact.getLastName() + ","
+                        + contact.getEmail() + "," + contact.getPhone() + "\n");
+            }
+        }
+    }
+
+    /**
+     * Opens an empty database for the next import.
+     * @throws IOException If the previous database cannot be deleted.
+     * @throws SQLException If the database cannot be opened.
+     */
+    @Setup(Level.Invocation)
+    public void openDatabase() throws IOException, SQLException {
+        Files.deleteIfExists(directory.resolve("contacts.db"));
+        connection = SqliteConnection.open("jdbc:sqlite:" + directory.resolve("contacts.db"), new SqliteSettings());
+        contactDAO = new SqliteContactDAO(connection);
+    }
+
+    /**
+     * Closes the database of the last import.
+     * @throws SQLException If the database cannot be closed.
+     */
+    @TearDown(Level.Invocation)
+    public void closeDatabase() throws SQLException {
+        contactDAO.close();
+        connection.close();
+    }
+
+    /**
+     * Reports the last import and deletes the directory.
+     * @throws IOException If the directory cannot be deleted.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        System.out.println("Last import: " + lastProgress);
+        TempFiles.deleteRecursively(directory);
+    }
+
+    @Benchmark
+    public ImportProgress importCsv() throws IOException {
+        lastProgress = new ContactImporter(contactDAO).importFile(file, null);
+        return lastProgress;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.PackedContactDAO;
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.IContactDAO;
+import com.example.addressbook.model.MockContactDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the object-per-contact mock DAO with the packed DAO: the heap retained by a full address book,
+ * printed at the start and end of each trial, and the time of a search, a lookup by id and a full scan.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PackedStoreBenchmark {
+    @Param({"100000", "1000000"})
+    public int size;
+
+    @Param({"mock", "packed"})
+    public String store;
+
+    private IContactDAO contactDAO;
+    private long baselineHeap;
+    private final Random random = new Random(ContactData.SEED);
+
+    /**
+     * Fills the DAO and reports the heap it retains once the generated contacts are unreachable.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        baselineHeap = usedHeap();
+        contactDAO = store.equals("mock") ? new MockContactDAO() : new PackedContactDAO();
+        contactDAO.addContacts(ContactData.generate(size));
+        reportHeap("after loading");
+    }
+
+    /**
+     * Reports the heap again, which also holds the search keys the mock contacts cached while searched.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        reportHeap("after searching");
+    }
+
+    @Benchmark
+    public List<Contact> search() {
+        return contactDAO.searchContacts("rays");
+    }
+
+    @Benchmark
+    public List<Contact> phoneSearch() {
+        return contactDAO.searchContacts("0412 3");
+    }
+
+    @Benchmark
+    public Contact getContact() {
+        return contactDAO.getContact(random.nextInt(size));
+    }
+
+    @Benchmark
+    public void forEachContact(Blackhole blackhole) {
+        contactDAO.forEachContact(blackhole::consume);
+    }
+
+    /**
+     * Prints the heap retained by the DAO.
+     * @param moment When the heap is measured.
+     */
+    private void reportHeap(String moment) {
+        long retained = usedHeap() - baselineHeap;
+        System.out.printf("%n%s heap %s: %.1f MB, %d bytes per contact%n",
+                store, moment, retained / 1e6, retained / size);
+    }
+
+    /**
+     * Measures the used heap after a few full collections.
+     * @return The used heap in bytes.
+     */
+    private static long usedHeap() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactManager;
+import com.example.addressbook.model.MockContactDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the typo-tolerant searches on misspelled names: the Soundex hash index and the BK-tree,
+ * with the exact substring scan as a baseline, plus the cost of keeping the phonetic index up to date on a write.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class PhoneticSearchBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"Jon Smyth", "Olivya", "Grastone"})
+    public String query;
+
+    private ContactManager contactManager;
+    private List<Contact> contacts;
+    private final Random random = new Random(ContactData.SEED);
+
+    /**
+     * Fills the manager and builds the phonetic and fuzzy indexes, and the in-memory scan for large sizes,
+     * so that their construction is not measured.
+     */
+    @Setup
+    public void setUp() {
+        contacts = ContactData.generate(size);
+        MockContactDAO contactDAO = new MockContactDAO();
+        contactDAO.addContacts(contacts);
+        contactManager = new ContactManager(contactDAO);
+        contactManager.searchContactsPhonetic("");
+        contactManager.searchContactsFuzzy("");
+        contactManager.searchContacts("");
+    }
+
+    @Benchmark
+    public List<Contact> phoneticSearch() {
+        return contactManager.searchContactsPhonetic(query);
+    }
+
+    @Benchmark
+    public List<Contact> fuzzySearch() {
+        return contactManager.searchContactsFuzzy(query);
+    }
+
+    @Benchmark
+    public List<Contact> exactScanSearch() {
+        return contactManager.searchContacts(query);
+    }
+
+    /**
+     * Renames a random contact back and forth, re-indexing it in every loaded index.
+     */
+    @Benchmark
+    public void updateContact() {
+        Contact contact = contacts.get(random.nextInt(contacts.size()));
+        contact.setLastName(contact.getLastName().equals("Smyth") ? "Smith" : "Smyth");
+        contactManager.updateContact(contact);
+    }
+}
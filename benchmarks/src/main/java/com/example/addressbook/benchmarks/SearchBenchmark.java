@@ -0,0 +1,114 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactManager;
+import com.example.addressbook.model.ContactSearchSession;
+import com.example.addressbook.model.MockContactDAO;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the latency of a single search, and of the sequence of searches triggered
+ * while a query is typed one keystroke at a time, over the in-memory DAO.
+ * The linear scan, the parallel in-memory scan, the trigram index and the prefix engine are measured side by side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class SearchBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    public int size;
+
+    @Param({"john", "rays", "gmail", "0412", "zzz"})
+    public String query;
+
+    private ContactManager scanManager;
+    private ContactManager indexedManager;
+    private ContactManager parallelManager;
+    /**
+     * The search box after each keystroke of a user typing the query.
+     */
+    private String[] typedQueries;
+
+    /**
+     * Fills one manager that scans every contact through the DAO, one that always uses the parallel scan
+     * and one that keeps the search indexes, and builds the in-memory structures so that their construction is not measured.
+     */
+    @Setup
+    public void setUp() {
+        List<Contact> contacts = ContactData.generate(size);
+        MockContactDAO contactDAO = new MockContactDAO();
+        contactDAO.addContacts(contacts);
+        scanManager = new ContactManager(contactDAO);
+        indexedManager = new ContactManager(contactDAO, true);
+        indexedManager.searchContacts("");
+        indexedManager.searchContactsByPrefix("", 1);
+        parallelManager = new ContactManager(contactDAO);
+        parallelManager.setParallelSearchThreshold(0);
+        parallelManager.searchContacts("");
+        typedQueries = new String[query.length()];
+        for (int i = 0; i < typedQueries.length; i++) {
+            typedQueries[i] = query.substring(0, i + 1);
+        }
+    }
+
+    @Benchmark
+    public List<Contact> scanSearch() {
+        return scanManager.searchContacts(query);
+    }
+
+    @Benchmark
+    public List<Contact> parallelScanSearch() {
+        return parallelManager.searchContacts(query);
+    }
+
+    @Benchmark
+    public List<Contact> indexedSearch() {
+        return indexedManager.searchContacts(query);
+    }
+
+    @Benchmark
+    public List<Contact> prefixSearch() {
+        return indexedManager.searchContactsByPrefix(query, 100);
+    }
+
+    /**
+     * Runs the search of every keystroke of the query through a fresh session, the way the list view
+     * is re-synced on each keystroke.
+     * @param blackhole Consumes the intermediate results.
+     */
+    @Benchmark
+    public void typingSession(Blackhole blackhole) {
+        ContactSearchSession session = indexedManager.newSearchSession();
+        for (String typed : typedQueries) {
+            blackhole.consume(session.search(typed));
+        }
+    }
+
+    /**
+     * Runs the search of every keystroke of the query as independent scans, as the list view did before search sessions.
+     * @param blackhole Consumes the intermediate results.
+     */
+    @Benchmark
+    public void typingScan(Blackhole blackhole) {
+        for (String typed : typedQueries) {
+            blackhole.consume(scanManager.searchContacts(typed));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactManager;
+import com.example.addressbook.model.SqliteConnection;
+import com.example.addressbook.model.SqliteContactDAO;
+import com.example.addressbook.model.SqliteSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long the trigram index takes to become searchable at launch: built from every contact of the
+ * database, or loaded from the file saved by the previous run with the edits made since replayed from the change log.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx4g"})
+public class SearchIndexStartupBenchmark {
+    /**
+     * The number of contacts edited since the index was saved.
+     */
+    private static final int CHANGES = 1_000;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private Path file;
+    private Connection connection;
+    private SqliteContactDAO contactDAO;
+    private List<Contact> contacts;
+    private final Random random = new Random(ContactData.SEED);
+
+    /**
+     * Fills the database and saves its index.
+     * @throws IOException If the index cannot be saved.
+     * @throws SQLException If the database cannot be opened.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("address-book-benchmark");
+        file = directory.resolve("contacts.index");
+        connection = SqliteConnection.open("jdbc:sqlite:" + directory.resolve("contacts.db"), new SqliteSettings());
+        contactDAO = new SqliteContactDAO(connection);
+        contacts = ContactData.generate(size);
+        contactDAO.addContacts(contacts);
+        ContactManager contactManager = new ContactManager(contactDAO, true);
+        contactManager.loadSearchIndex(file, contactDAO);
+        contactManager.saveSearchIndex(file, contactDAO);
+    }
+
+    /**
+     * Closes the database and deletes its directory.
+     * @throws IOException If the directory cannot be deleted.
+     * @throws SQLException If the database cannot be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        contactDAO.close();
+        connection.close();
+        TempFiles.deleteRecursively(directory);
+    }
+
+    /**
+     * Edits a batch of random contacts, which the warm start has to replay.
+     */
+    @Setup(Level.Invocation)
+    public void editContacts() {
+        List<Contact> batch = new ArrayList<>(CHANGES);
+        for (int i = 0; i < CHANGES; i++) {
+            Contact contact = contacts.get(random.nextInt(contacts.size()));
+            contact.setPhone(String.format("04%08d", random.nextInt(100_000_000)));
+            batch.add(contact);
+        }
+        contactDAO.updateContacts(batch);
+    }
+
+    @Benchmark
+    public List<Contact> buildIndex() {
+        ContactManager contactManager = new ContactManager(contactDAO, true);
+        return contactManager.searchContacts("rays");
+    }
+
+    @Benchmark
+    public List<Contact> loadIndex() {
+        ContactManager contactManager = new ContactManager(contactDAO, true);
+        contactManager.loadSearchIndex(file, contactDAO);
+        return contactManager.searchContacts("rays");
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.addressbook.benchmarks;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactManager;
+import com.example.addressbook.model.ContactSnapshot;
+import com.example.addressbook.model.SqliteConnection;
+import com.example.addressbook.model.SqliteContactDAO;
+import com.example.addressbook.model.SqliteSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what the address book does at launch, with and without a snapshot: showing the first page and
+ * answering the first search, either from a freshly opened snapshot or from the database with the in-memory
+ * search index built on first use. Also measures bringing the snapshot up to date after a batch of edits,
+ * incrementally and by rewriting it from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SnapshotBenchmark {
+    /**
+     * The number of contacts edited between two refreshes.
+     */
+    private static final int CHANGES = 1_000;
+
+    /**
+     * The number of contacts on the first page.
+     */
+    private static final int PAGE_SIZE = 50;
+
+    @Param({"100000", "1000000"})
+    public int size;
+
+    private Path directory;
+    private Path file;
+    private Connection connection;
+    private SqliteContactDAO contactDAO;
+    private List<Contact> contacts;
+    private final Random random = new Random(ContactData.SEED);
+
+    /**
+     * Fills the database and writes its snapshot.
+     * @throws IOException If the snapshot cannot be written.
+     * @throws SQLException If the database cannot be opened.
+     */
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, SQLException {
+        directory = Files.createTempDirectory("address-book-benchmark");
+        file = directory.resolve(ContactSnapshot.DEFAULT_FILE);
+        connection = SqliteConnection.open("jdbc:sqlite:" + directory.resolve("contacts.db"), new SqliteSettings());
+        contactDAO = new SqliteContactDAO(connection);
+        contacts = ContactData.generate(size);
+        contactDAO.addContacts(contacts);
+        ContactSnapshot.refresh(file, contactDAO);
+    }
+
+    /**
+     * Closes the database and deletes its directory.
+     * @throws IOException If the directory cannot be deleted.
+     * @throws SQLException If the database cannot be closed.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException, SQLException {
+        contactDAO.close();
+        connection.close();
+        TempFiles.deleteRecursively(directory);
+    }
+
+    /**
+     * Edits a batch of random contacts, so the next refresh has changes to write.
+     */
+    @Setup(Level.Invocation)
+    public void editContacts() {
+        List<Contact> batch = new ArrayList<>(CHANGES);
+        for (int i = 0; i < CHANGES; i++) {
+            Contact contact = contacts.get(random.nextInt(contacts.size()));
+            contact.setPhone(String.format("04%08d", random.nextInt(100_000_000)));
+            batch.add(contact);
+        }
+        contactDAO.updateContacts(batch);
+    }
+
+    @Benchmark
+    public void startFromSnapshot(Blackhole blackhole) throws IOException {
+        ContactSnapshot snapshot = ContactSnapshot.open(file);
+        blackhole.consume(snapshot.getContacts(null, PAGE_SIZE));
+        blackhole.consume(snapshot.searchContacts("rays"));
+    }
+
+    @Benchmark
+    public void startFromDatabase(Blackhole blackhole) {
+        ContactManager contactManager = new ContactManager(contactDAO, true);
+        blackhole.consume(contactDAO.getContacts(null, PAGE_SIZE));
+        blackhole.consume(contactManager.searchContacts("rays"));
+    }
+
+    @Benchmark
+    public ContactSnapshot refreshIncrementally() throws IOException {
+        return ContactSnapshot.refresh(file, contactDAO);
+    }
+
+    @Benchmark
+    public ContactSnapshot rebuild() throws IOException {
+        Files.delete(file);
+        return ContactSnapshot.refresh(file, contactDAO);
+    }
+}
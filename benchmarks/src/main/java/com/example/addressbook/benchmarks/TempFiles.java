@@ -0,0 +1,28 @@
+package com.example.addressbook.benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Cleans up the temporary directories the benchmarks keep their databases and files in.
+ */
+public final class TempFiles {
+    private TempFiles() {
+    }
+
+    /**
+     * Deletes a directory and everything in it, deepest files first.
+     * @param directory The directory to delete.
+     * @throws IOException If a file cannot be deleted.
+     */
+    public static void deleteRecursively(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path path : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.addressbook.controller;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactManager;
+import com.example.addressbook.model.ContactSearchSession;
+import javafx.application.Platform;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs the searches typed into the search box off the JavaFX application thread.
+ * A search starts only once typing has paused for the debounce delay, and every keystroke supersedes
+ * the searches before it: a superseded search that has not started yet is cancelled, and the results
+ * of one that was already running are dropped. Only the results of the latest query are handed back,
+ * on the application thread.
+ * All searches run one after the other on a single background thread, so they can share a search session.
+ */
+public class AsyncContactSearch implements AutoCloseable {
+    /**
+     * The default time typing must pause before a search starts, in milliseconds.
+     */
+    public static final long DEFAULT_DEBOUNCE_MILLIS = 150;
+
+    private final ContactSearchSession searchSession;
+    private final Consumer<List<Contact>> onResults;
+    private final Executor resultExecutor;
+    private final long debounceMillis;
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "contact-search");
+        thread.setDaemon(true);
+        return thread;
+    });
+    /**
+     * Incremented by every request, so a search can tell whether a newer one has been requested since.
+     */
+    private final AtomicLong generation = new AtomicLong();
+    private final SearchLatencyStats latencyStats = new SearchLatencyStats();
+    private ScheduledFuture<?> pendingSearch = null;
+
+    /**
+     * Constructs an asynchronous search with the default debounce delay that hands its results to the application thread.
+     * @param contactManager The manager to search.
+     * @param onResults Called on the application thread with the results of the latest query.
+     */
+    public AsyncContactSearch(ContactManager contactManager, Consumer<List<Contact>> onResults) {
+        this(contactManager, onResults, Platform::runLater, DEFAULT_DEBOUNCE_MILLIS);
+    }
+
+    /**
+     * Constructs an asynchronous search.
+     * @param contactManager The manager to search.
+     * @param onResults Called through the result executor with the results of the latest query.
+     * @param resultExecutor Runs the result callbacks, normally on the application thread.
+     * @param debounceMillis The time typing must pause before a search starts, in milliseconds.
+     */
+    public AsyncContactSearch(ContactManager contactManager, Consumer<List<Contact>> onResults,
+                              Executor resultExecutor, long debounceMillis) {
+        this.searchSession = contactManager.newSearchSession();
+        this.onResults = onResults;
+        this.resultExecutor = resultExecutor;
+        this.debounceMillis = debounceMillis;
+    }
+
+    /**
+     * Requests a search after the debounce delay, superseding any earlier request.
+     * Must be called from a single thread, normally the application thread.
+     * @param query The search query string.
+     */
+    public void search(String query) {
+        schedule(query, debounceMillis);
+    }
+
+    /**
+     * Requests a search right away, superseding any earlier request. Used after the contacts changed.
+     * @param query The search query string.
+     */
+    public void searchNow(String query) {
+        schedule(query, 0);
+    }
+
+    /**
+     * Supersedes every earlier request without starting a new search, so no more results are handed back.
+     */
+    public void cancel() {
+        generation.incrementAndGet();
+        if (pendingSearch != null) {
+            pendingSearch.cancel(false);
+            pendingSearch = null;
+        }
+    }
+
+    /**
+     * Retrieves the latency of the searches whose results were handed back.
+     * @return The latency stats.
+     */
+    public SearchLatencyStats getLatencyStats() {
+        return latencyStats;
+    }
+
+    /**
+     * Cancels any pending search and stops the background thread.
+     */
+    @Override
+    public void close() {
+        cancel();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Supersedes every earlier request and schedules a search of the query.
+     * @param query The search query string.
+     * @param delayMillis The time to wait before the search starts, in milliseconds.
+     */
+    private void schedule(String query, long delayMillis) {
+        long requestedAt = System.nanoTime();
+        cancel();
+        long request = generation.get();
+        pendingSearch = executor.schedule(() -> run(query, request, requestedAt), delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs a search on the background thread and hands its results back unless it was superseded.
+     * @param query The search query string.
+     * @param request The generation of the request that scheduled this search.
+     * @param requestedAt When the search was requested, from {@link System#nanoTime()}.
+     */
+    private void run(String query, long request, long requestedAt) {
+        if (generation.get() != request) return;
+        long startedAt = System.nanoTime();
+        List<Contact> results;
+        try {
+            results = searchSession.search(query);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return;
+        }
+        long searchNanos = System.nanoTime() - startedAt;
+        if (generation.get() != request) return;
+        resultExecutor.execute(() -> {
+            // A newer request may have been made while these results were waiting for the application thread
+            if (generation.get() != request) return;
+            onResults.accept(results);
+            latencyStats.record(searchNanos, System.nanoTime() - requestedAt);
+        });
+    }
+}
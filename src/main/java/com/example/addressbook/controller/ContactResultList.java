@@ -0,0 +1,204 @@
+package com.example.addressbook.controller;
+
+import com.example.addressbook.model.Contact;
+import javafx.collections.ObservableListBase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An observable list of search results that is updated by diffing rather than by clearing and re-adding.
+ * Contacts are matched by id: the smallest set of removals and insertions turning the old results into the new ones
+ * is computed with Myers' algorithm, and a matched contact is replaced only if it is a different object or its full name,
+ * which is what the cells display, has changed. All the edits of an update are fired as a single change,
+ * so the list view keeps its selection and only re-renders the cells that actually changed.
+ */
+public class ContactResultList extends ObservableListBase<Contact> {
+    /**
+     * Beyond this many removals and insertions the differing middle of the lists is replaced as a whole,
+     * since the diff itself would then cost more than re-rendering.
+     */
+    public static final int MAX_DIFF_EDITS = 1_000;
+
+    private static final byte MATCH = 0;
+    private static final byte REMOVE = 1;
+    private static final byte INSERT = 2;
+
+    private List<Contact> contacts = new ArrayList<>();
+    /**
+     * The full name of each contact when it was last shown, to tell whether a contact edited in place must be re-rendered.
+     */
+    private List<String> shownNames = new ArrayList<>();
+
+    /**
+     * Retrieves the contact at the given position.
+     * @param index The position of the contact.
+     * @return The contact.
+     */
+    @Override
+    public Contact get(int index) {
+        return contacts.get(index);
+    }
+
+    /**
+     * Retrieves the number of contacts.
+     * @return The number of contacts.
+     */
+    @Override
+    public int size() {
+        return contacts.size();
+    }
+
+    /**
+     * Replaces the contents of the list with the given contacts, notifying listeners of the differences only.
+     * @param newContacts The new contents of the list.
+     */
+    public void update(List<Contact> newContacts) {
+        List<Contact> oldContacts = contacts;
+        List<String> oldNames = shownNames;
+        contacts = new ArrayList<>(newContacts);
+        shownNames = new ArrayList<>(newContacts.size());
+        for (Contact contact : newContacts) {
+            shownNames.add(contact.getFullName());
+        }
+        int oldSize = oldContacts.size();
+        int newSize = contacts.size();
+        // Trim the common prefix and suffix, which covers most edits and keystrokes without running the diff
+        int start = 0;
+        while (start < oldSize && start < newSize && sameId(oldContacts.get(start), contacts.get(start))) {
+            start++;
+        }
+        int oldEnd = oldSize;
+        int newEnd = newSize;
+        while (oldEnd > start && newEnd > start && sameId(oldContacts.get(oldEnd - 1), contacts.get(newEnd - 1))) {
+            oldEnd--;
+            newEnd--;
+        }
+        byte[] script = diff(oldContacts, start, oldEnd, start, newEnd);
+        beginChange();
+        for (int i = 0; i < start; i++) {
+            replaceIfChanged(i, oldContacts.get(i), oldNames.get(i));
+        }
+        int position = start;
+        if (script == null) {
+            if (oldEnd > start) nextRemove(start, new ArrayList<>(oldContacts.subList(start, oldEnd)));
+            if (newEnd > start) nextAdd(start, newEnd);
+            position = newEnd;
+        } else {
+            int oldIndex = start;
+            for (byte operation : script) {
+                if (operation == MATCH) {
+                    replaceIfChanged(position, oldContacts.get(oldIndex), oldNames.get(oldIndex));
+                    oldIndex++;
+                    position++;
+                } else if (operation == REMOVE) {
+                    nextRemove(position, oldContacts.get(oldIndex));
+                    oldIndex++;
+                } else {
+                    nextAdd(position, position + 1);
+                    position++;
+                }
+            }
+        }
+        for (int i = oldEnd; i < oldSize; i++, position++) {
+            replaceIfChanged(position, oldContacts.get(i), oldNames.get(i));
+        }
+        endChange();
+    }
+
+    /**
+     * Checks whether two contacts have the same id.
+     * @param first The first contact.
+     * @param second The second contact.
+     * @return True if the contacts have the same id.
+     */
+    private static boolean sameId(Contact first, Contact second) {
+        return first.getId() == second.getId();
+    }
+
+    /**
+     * Reports a matched contact as replaced if it must be re-rendered.
+     * @param position The position of the contact in the new contents.
+     * @param oldContact The contact previously at that position, with the same id.
+     * @param oldName The full name that was shown for the previous contact.
+     */
+    private void replaceIfChanged(int position, Contact oldContact, String oldName) {
+        if (oldContact != contacts.get(position) || !String.valueOf(oldName).equals(String.valueOf(shownNames.get(position)))) {
+            nextSet(position, oldContact);
+        }
+    }
+
+    /**
+     * Computes the shortest edit script from a range of the old contacts to a range of the new contents
+     * with Myers' algorithm, matching contacts by id.
+     * @param oldContacts The previous contents of the list.
+     * @param oldStart The start of the range of old contacts, inclusive.
+     * @param oldEnd The end of the range of old contacts, exclusive.
+     * @param newStart The start of the range of new contacts, inclusive.
+     * @param newEnd The end of the range of new contacts, exclusive.
+     * @return The operations to apply in order, or null if more than {@link #MAX_DIFF_EDITS} removals and insertions are needed.
+     */
+    private byte[] diff(List<Contact> oldContacts, int oldStart, int oldEnd, int newStart, int newEnd) {
+        int n = oldEnd - oldStart;
+        int m = newEnd - newStart;
+        int maxEdits = Math.min(n + m, MAX_DIFF_EDITS);
+        int offset = maxEdits + 1;
+        // furthest[k + offset] is the furthest old index reached on diagonal k = x - y
+        int[] furthest = new int[2 * maxEdits + 3];
+        List<int[]> trace = new ArrayList<>();
+        int edits = -1;
+        search:
+        for (int d = 0; d <= maxEdits; d++) {
+            trace.add(Arrays.copyOfRange(furthest, offset - d - 1, offset + d + 2));
+            for (int k = -d; k <= d; k += 2) {
+                int x;
+                if (k == -d || (k != d && furthest[offset + k - 1] < furthest[offset + k + 1])) {
+                    x = furthest[offset + k + 1];
+                } else {
+                    x = furthest[offset + k - 1] + 1;
+                }
+                int y = x - k;
+                while (x < n && y < m && sameId(oldContacts.get(oldStart + x), contacts.get(newStart + y))) {
+                    x++;
+                    y++;
+                }
+                furthest[offset + k] = x;
+                if (x >= n && y >= m) {
+                    edits = d;
+                    break search;
+                }
+            }
+        }
+        if (edits < 0) return null;
+        // Walk back from the end through the saved frontiers, collecting operations in reverse
+        byte[] script = new byte[n + m - (n + m - edits) / 2];
+        int index = script.length;
+        int x = n;
+        int y = m;
+        for (int d = edits; d >= 0; d--) {
+            int[] previous = trace.get(d);
+            // previous[j] holds furthest[offset + j - d - 1]
+            int k = x - y;
+            int previousK;
+            if (k == -d || (k != d && previous[k - 1 + d + 1] < previous[k + 1 + d + 1])) {
+                previousK = k + 1;
+            } else {
+                previousK = k - 1;
+            }
+            int previousX = d == 0 ? 0 : previous[previousK + d + 1];
+            int previousY = previousX - previousK;
+            while (x > previousX && y > previousY) {
+                script[--index] = MATCH;
+                x--;
+                y--;
+            }
+            if (d > 0) {
+                script[--index] = x == previousX ? INSERT : REMOVE;
+                x = previousX;
+                y = previousY;
+            }
+        }
+        return script;
+    }
+}
@@ -1,15 +1,35 @@
 package com.example.addressbook.controller;
 
+import com.example.addressbook.model.CachingContactDAO;
 import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactChange;
+import com.example.addressbook.model.ContactChangeStream;
+import com.example.addressbook.model.ContactExporter;
+import com.example.addressbook.model.ContactImporter;
 import com.example.addressbook.model.ContactManager;
+import com.example.addressbook.model.ContactSnapshot;
+import com.example.addressbook.model.ExportProgress;
+import com.example.addressbook.model.ExternalChangeWatcher;
+import com.example.addressbook.model.IContactChangeListener;
+import com.example.addressbook.model.ImportProgress;
+import com.example.addressbook.model.ObservableContactDAO;
+import com.example.addressbook.model.SnapshotContactDAO;
+import com.example.addressbook.model.SqliteConnection;
+import com.example.addressbook.model.SqliteConnectionPool;
 import com.example.addressbook.model.SqliteContactDAO;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
+import javafx.scene.control.Label;
 import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
 import javafx.scene.control.TextField;
 import javafx.scene.input.MouseEvent;
 import javafx.scene.layout.VBox;
+import javafx.stage.FileChooser;
+import javafx.stage.WindowEvent;
 
+import java.io.File;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
@@ -18,7 +38,18 @@ import java.util.List;
 public class MainController {
     @FXML
     private ListView<Contact> contactsListView;
+    private SqliteContactDAO database;
+    private SnapshotContactDAO contactDAO;
+    private final ContactChangeStream contactChanges = new ContactChangeStream();
+    private ExternalChangeWatcher externalChanges;
     private ContactManager contactManager;
+    private AsyncContactSearch contactSearch;
+    private PagedContactList allContacts;
+    private final ContactResultList searchResults = new ContactResultList();
+    /**
+     * A contact just added, to select once the list shows it.
+     */
+    private Contact pendingSelection;
     @FXML
     private TextField firstNameTextField;
     @FXML
@@ -31,12 +62,26 @@ public class MainController {
     private VBox contactContainer;
     @FXML
     private TextField searchTextField;
+    @FXML
+    private Label statusLabel;
 
     /**
      * Constructor for the MainController class. Initializes the contact manager.
+     * Contacts are read from the memory-mapped snapshot of the database while it is current, so the list shows
+     * without loading anything, while the trigram index saved by the last run is loaded on a background thread.
+     * Searches made before it is loaded wait for it on the search thread, not on the application thread.
+     * Every write is published to the change stream, which updates the list view.
      */
     public MainController() {
-        contactManager = new ContactManager(new SqliteContactDAO());
+        database = new SqliteContactDAO();
+        contactDAO = new SnapshotContactDAO(new CachingContactDAO(new ObservableContactDAO(database, contactChanges)),
+                database, Path.of(ContactSnapshot.DEFAULT_FILE));
+        contactManager = new ContactManager(contactDAO, true);
+        contactSearch = new AsyncContactSearch(contactManager, this::showSearchResults);
+        Thread thread = new Thread(() -> contactManager.loadSearchIndex(Path.of(ContactManager.DEFAULT_SEARCH_INDEX_FILE), database),
+                "contact-index");
+        thread.setDaemon(true);
+        thread.start();
     }
 
     /**
@@ -91,19 +136,71 @@ public class MainController {
 
     /**
      * Synchronizes the contacts list view with the contacts in the database.
+     * Searches run in the background and show their results when they complete.
      */
     private void syncContacts() {
-        contactsListView.getItems().clear();
-        // --- New code to search for contacts ---
         String query = searchTextField.getText();
-        List<Contact> contacts = contactManager.searchContacts(query);
-        // --- End of new code ---
-        boolean hasContact = !contacts.isEmpty();
-        if (hasContact) {
-            contactsListView.getItems().addAll(contacts);
+        if (query == null || query.isEmpty()) {
+            // Without a query the list pages through every contact instead of loading them all
+            contactSearch.cancel();
+            allContacts.refresh();
+            contactsListView.setItems(allContacts);
+            // Show / hide based on whether there are contacts
+            contactContainer.setVisible(!allContacts.isEmpty());
+        } else {
+            contactSearch.searchNow(query);
+        }
+    }
+
+    /**
+     * Shows the changes made to the contacts, on the application thread: the search is run again if there is a query,
+     * otherwise only the part of the list from the first changed position is reloaded. The selected contact, or the
+     * contact just added, is selected again afterwards.
+     * @param changes The changes, or null if some were lost and the whole list must be reloaded.
+     */
+    private void showChanges(List<ContactChange> changes) {
+        String query = searchTextField.getText();
+        if (query != null && !query.isEmpty()) {
+            contactSearch.searchNow(query);
+            return;
+        }
+        Contact selected = contactsListView.getSelectionModel().getSelectedItem();
+        if (changes == null) {
+            allContacts.refresh();
+        } else {
+            allContacts.applyChanges(changes);
+            if (pendingSelection != null && changes.stream().anyMatch(change -> change.getId() == pendingSelection.getId())) {
+                selected = pendingSelection;
+                pendingSelection = null;
+            }
+        }
+        contactContainer.setVisible(!allContacts.isEmpty());
+        if (selected != null) contactsListView.getSelectionModel().select(selected);
+    }
+
+    /**
+     * Event handler for a change of the search query.
+     * Waits for typing to pause before searching, and goes back to the full list right away when the query is cleared.
+     * @param query The new search query.
+     */
+    private void onSearchChanged(String query) {
+        if (query == null || query.isEmpty()) {
+            syncContacts();
+        } else {
+            contactSearch.search(query);
         }
+    }
+
+    /**
+     * Shows the results of the latest search in the list view.
+     * Only the differences with the results already shown are applied, so the selection survives when the selected contact is still listed.
+     * @param contacts The contacts matching the latest query.
+     */
+    private void showSearchResults(List<Contact> contacts) {
+        searchResults.update(contacts);
+        contactsListView.setItems(searchResults);
         // Show / hide based on whether there are contacts
-        contactContainer.setVisible(hasContact);
+        contactContainer.setVisible(!contacts.isEmpty());
     }
 
     /**
@@ -112,6 +209,7 @@ public class MainController {
     @FXML
     public void initialize() {
         contactsListView.setCellFactory(this::renderCell);
+        allContacts = new PagedContactList(contactManager);
         syncContacts();
         // Select the first contact and display its information
         contactsListView.getSelectionModel().selectFirst();
@@ -119,7 +217,62 @@ public class MainController {
         if (firstContact != null) {
             selectContact(firstContact);
         }
-        searchTextField.textProperty().addListener((observable, oldValue, newValue) -> syncContacts());
+        searchTextField.textProperty().addListener((observable, oldValue, newValue) -> onSearchChanged(newValue));
+        contactChanges.subscribe(new IContactChangeListener() {
+            /**
+             * Hands a batch of changes to the application thread.
+             * @param changes The changes.
+             */
+            @Override
+            public void onContactsChanged(List<ContactChange> changes) {
+                Platform.runLater(() -> showChanges(changes));
+            }
+
+            /**
+             * Reloads the list on the application thread.
+             */
+            @Override
+            public void onChangesLost() {
+                Platform.runLater(() -> showChanges(null));
+            }
+        });
+        // Writes made by other instances or scripts are applied like the ones made here, and published to the stream
+        externalChanges = new ExternalChangeWatcher(database, Path.of(SqliteConnection.DEFAULT_FILE),
+                contactManager::applyExternalChanges);
+        if (!contactDAO.isSnapshotCurrent()) refreshSnapshot(false);
+        // The scene is only shown once initialization is over: stop the background threads when it closes,
+        // and leave a current snapshot and search index for the next launch
+        Platform.runLater(() -> contactsListView.getScene().getWindow().addEventHandler(WindowEvent.WINDOW_HIDDEN, event -> {
+            contactSearch.close();
+            externalChanges.close();
+            contactChanges.close();
+            refreshSnapshot(true);
+        }));
+    }
+
+    /**
+     * Brings the snapshot of the database up to date on a background thread, then compacts the change log of
+     * the database. Only the contacts changed since the last snapshot are read from the database.
+     * When the application exits, the trigram index is saved too, once the snapshot is current, and the database
+     * is closed last, which puts its journal mode back.
+     * @param exiting Whether the application exits, so the refresh must not be cut short.
+     */
+    private void refreshSnapshot(boolean exiting) {
+        Thread thread = new Thread(() -> {
+            try {
+                if (!contactDAO.isSnapshotCurrent()) contactDAO.refreshSnapshot();
+                if (exiting) contactManager.saveSearchIndex(Path.of(ContactManager.DEFAULT_SEARCH_INDEX_FILE), database);
+                database.compactChangeLog();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            if (exiting) {
+                database.close();
+                SqliteConnectionPool.closeInstance();
+            }
+        }, "contact-snapshot");
+        thread.setDaemon(!exiting);
+        thread.start();
     }
 
     /**
@@ -136,7 +289,6 @@ public class MainController {
             selectedContact.setEmail(emailTextField.getText());
             selectedContact.setPhone(phoneTextField.getText());
             contactManager.updateContact(selectedContact);
-            syncContacts();
         }
     }
 
@@ -150,7 +302,6 @@ public class MainController {
         Contact selectedContact = contactsListView.getSelectionModel().getSelectedItem();
         if (selectedContact != null) {
             contactManager.deleteContact(selectedContact);
-            syncContacts();
         }
     }
 
@@ -168,13 +319,72 @@ public class MainController {
         Contact newContact = new Contact(DEFAULT_FIRST_NAME, DEFAULT_LAST_NAME, DEFAULT_EMAIL, DEFAULT_PHONE);
         // Add the new contact to the database
         contactManager.addContact(newContact);
-        syncContacts();
-        // Select the new contact in the list view
+        // Show the new contact, select it in the list view once the list shows it
         // and focus the first name text field
+        pendingSelection = newContact;
         selectContact(newContact);
         firstNameTextField.requestFocus();
     }
 
+    /**
+     * Event handler for the import button.
+     * Imports the contacts of a CSV or vCard file on a background thread, showing its progress below the list.
+     */
+    @FXML
+    private void onImport() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Import Contacts");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("Contacts", "*.csv", "*.vcf", "*.vcard"),
+                new FileChooser.ExtensionFilter("All Files", "*.*"));
+        File file = fileChooser.showOpenDialog(contactsListView.getScene().getWindow());
+        if (file == null) return;
+        statusLabel.setText("Importing " + file.getName() + "...");
+        Thread thread = new Thread(() -> {
+            try {
+                ImportProgress progress = new ContactImporter(contactManager).importFile(file.toPath(),
+                        update -> Platform.runLater(() -> statusLabel.setText(update.toString())));
+                Platform.runLater(() -> statusLabel.setText(progress.toString()));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> statusLabel.setText("Could not import " + file.getName()));
+            }
+        }, "contact-import");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Event handler for the export button.
+     * Exports the contacts matching the search query, or every contact without one, on a background thread.
+     * The contacts are streamed from the DAO rather than through the contact manager, so edits are not blocked meanwhile.
+     */
+    @FXML
+    private void onExport() {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle("Export Contacts");
+        fileChooser.getExtensionFilters().addAll(
+                new FileChooser.ExtensionFilter("CSV", "*.csv", "*.csv.gz"),
+                new FileChooser.ExtensionFilter("vCard", "*.vcf", "*.vcf.gz"),
+                new FileChooser.ExtensionFilter("JSON Lines", "*.jsonl", "*.jsonl.gz"));
+        File file = fileChooser.showSaveDialog(contactsListView.getScene().getWindow());
+        if (file == null) return;
+        String query = searchTextField.getText();
+        statusLabel.setText("Exporting to " + file.getName() + "...");
+        Thread thread = new Thread(() -> {
+            try {
+                ExportProgress progress = new ContactExporter(contactDAO).exportSearch(query, file.toPath(),
+                        update -> Platform.runLater(() -> statusLabel.setText(update.toString())));
+                Platform.runLater(() -> statusLabel.setText(progress.toString()));
+            } catch (Exception e) {
+                e.printStackTrace();
+                Platform.runLater(() -> statusLabel.setText("Could not export " + file.getName()));
+            }
+        }, "contact-export");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
     /**
      * Event handler for the cancel button.
      * Cancels the edit operation and refreshes the text fields with the selected contact's information.
@@ -0,0 +1,202 @@
+package com.example.addressbook.controller;
+
+import com.example.addressbook.model.Contact;
+import com.example.addressbook.model.ContactChange;
+import com.example.addressbook.model.ContactKey;
+import com.example.addressbook.model.ContactManager;
+import javafx.collections.ObservableListBase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An observable list of all contacts, sorted by last name, first name and id, that loads pages
+ * from the contact manager only when the list view asks for their items.
+ * Only a handful of pages are kept in memory, so the heap stays flat however many contacts exist.
+ * Pages are fetched with keyset pagination: the key of the last contact of each page loaded so far
+ * is remembered for the next page, and a page whose starting key is unknown, as when the scroll bar is dragged
+ * far ahead, looks up the key of the contact just before it by its position, without reading the pages in between.
+ */
+public class PagedContactList extends ObservableListBase<Contact> {
+    /**
+     * The default number of contacts per page.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 200;
+    private static final int MAX_CACHED_PAGES = 8;
+
+    private final ContactManager contactManager;
+    private final int pageSize;
+    private int size;
+    /**
+     * The key to page after to load each page, by page number, for the pages following a loaded one.
+     * Page 0 starts after null.
+     */
+    private final Map<Integer, ContactKey> pageStartKeys = new HashMap<>();
+    private final LinkedHashMap<Integer, List<Contact>> cachedPages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Contact>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * Constructs a paged list over the contacts of the given manager with the default page size.
+     * @param contactManager The manager to load pages from.
+     */
+    public PagedContactList(ContactManager contactManager) {
+        this(contactManager, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Constructs a paged list over the contacts of the given manager.
+     * @param contactManager The manager to load pages from.
+     * @param pageSize The number of contacts per page.
+     */
+    public PagedContactList(ContactManager contactManager, int pageSize) {
+        this.contactManager = contactManager;
+        this.pageSize = pageSize;
+        this.size = contactManager.getContactCount();
+    }
+
+    /**
+     * Retrieves the contact at the given position, loading its page if needed.
+     * @param index The position of the contact.
+     * @return The contact, or null if the contacts changed since the list was last refreshed.
+     */
+    @Override
+    public Contact get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        List<Contact> page = loadPage(index / pageSize);
+        int offset = index % pageSize;
+        return offset < page.size() ? page.get(offset) : null;
+    }
+
+    /**
+     * Retrieves the number of contacts.
+     * @return The number of contacts when the list was last refreshed.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Locates a contact by asking the manager for its position instead of scanning every page.
+     * @param object The contact to locate.
+     * @return The position of the contact, or -1 if it is not in the list.
+     */
+    @Override
+    public int indexOf(Object object) {
+        if (!(object instanceof Contact contact)) return -1;
+        int index = contactManager.getContactPosition(contact);
+        if (index >= size) return -1;
+        Contact found = get(index);
+        return found != null && found.getId() == contact.getId() ? index : -1;
+    }
+
+    /**
+     * Checks whether a contact is in the list.
+     * @param object The contact to look for.
+     * @return True if the contact is in the list.
+     */
+    @Override
+    public boolean contains(Object object) {
+        return indexOf(object) >= 0;
+    }
+
+    /**
+     * Drops every loaded page and re-counts the contacts, notifying listeners that the whole list changed.
+     * Called after contacts were added, updated or deleted.
+     */
+    public void refresh() {
+        int oldSize = size;
+        cachedPages.clear();
+        pageStartKeys.clear();
+        size = contactManager.getContactCount();
+        beginChange();
+        // The removed items were never loaded, so listeners only get placeholders of the right count
+        nextRemove(0, Collections.<Contact>nCopies(oldSize, null));
+        nextAdd(0, size);
+        endChange();
+    }
+
+    /**
+     * Applies a batch of changes that were written to the contacts: only the pages from the first position
+     * a changed contact left or entered are dropped, and listeners are told that the items from that position on changed.
+     * A contact whose previous state is unknown, as for the changes made by other processes, is looked up in the loaded
+     * pages; batches larger than a page, or with such a contact that is not loaded, fall back to {@link #refresh()}.
+     * @param changes The changes.
+     */
+    public void applyChanges(List<ContactChange> changes) {
+        if (changes.size() > pageSize) {
+            refresh();
+            return;
+        }
+        // No contact sorting before the smallest changed key moved, so the lists only differ from its position on
+        int first = Integer.MAX_VALUE;
+        for (ContactChange change : changes) {
+            Contact before = change.isBeforeUnknown() ? findLoaded(change.getId()) : change.getBefore();
+            if (before == null && change.getType() != ContactChange.Type.ADDED) {
+                refresh();
+                return;
+            }
+            for (Contact state : new Contact[] {before, change.getAfter()}) {
+                if (state != null) first = Math.min(first, contactManager.getContactPosition(state));
+            }
+        }
+        int oldSize = size;
+        size = contactManager.getContactCount();
+        first = Math.min(first, Math.min(oldSize, size));
+        int firstPage = first / pageSize;
+        cachedPages.keySet().removeIf(pageNumber -> pageNumber >= firstPage);
+        pageStartKeys.keySet().removeIf(pageNumber -> pageNumber > firstPage);
+        beginChange();
+        nextRemove(first, Collections.<Contact>nCopies(oldSize - first, null));
+        nextAdd(first, size);
+        endChange();
+    }
+
+    /**
+     * Finds a contact in the loaded pages.
+     * @param id The id of the contact.
+     * @return The contact as it was loaded, or null if it is not on a loaded page.
+     */
+    private Contact findLoaded(int id) {
+        for (List<Contact> page : cachedPages.values()) {
+            for (Contact contact : page) {
+                if (contact.getId() == id) return contact;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves a page from the cache or loads it, after the key remembered for it or, if there is none,
+     * after the key of the contact at the position just before it.
+     * @param pageNumber The page to load.
+     * @return The contacts of the page.
+     */
+    private List<Contact> loadPage(int pageNumber) {
+        List<Contact> page = cachedPages.get(pageNumber);
+        if (page != null) return page;
+        ContactKey after = null;
+        if (pageNumber > 0) {
+            after = pageStartKeys.get(pageNumber);
+            if (after == null) after = contactManager.getContactKeyAt(pageNumber * pageSize - 1);
+        }
+        if (pageNumber > 0 && after == null) {
+            // Contacts were deleted since the last refresh and the page no longer exists
+            page = Collections.emptyList();
+        } else {
+            page = contactManager.getContactsPage(after, pageSize);
+            if (page.size() == pageSize) pageStartKeys.put(pageNumber + 1, ContactKey.of(page.get(page.size() - 1)));
+        }
+        cachedPages.put(pageNumber, page);
+        return page;
+    }
+}
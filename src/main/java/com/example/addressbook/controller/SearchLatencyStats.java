@@ -0,0 +1,110 @@
+package com.example.addressbook.controller;
+
+import java.util.Arrays;
+
+/**
+ * Records how long searches take, from the keystroke that triggered them until their results are shown.
+ * Each sample keeps both the total and the part of it spent searching; the rest is waiting for typing to pause
+ * and for the UI thread to pick up the results.
+ * Percentiles are computed over the most recent samples only, so the figures follow the current size of the address book.
+ */
+public class SearchLatencyStats {
+    /**
+     * The default number of recent samples that percentiles are computed over.
+     */
+    public static final int DEFAULT_WINDOW = 1024;
+
+    private final long[] totalNanos;
+    private final long[] searchNanos;
+    private long count = 0;
+    private long maxTotalNanos = 0;
+
+    /**
+     * Constructs latency stats over the default number of recent samples.
+     */
+    public SearchLatencyStats() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Constructs latency stats over the given number of recent samples.
+     * @param window The number of recent samples that percentiles are computed over.
+     */
+    public SearchLatencyStats(int window) {
+        totalNanos = new long[window];
+        searchNanos = new long[window];
+    }
+
+    /**
+     * Records the latency of a search whose results were shown.
+     * @param searchNanos The time spent searching, in nanoseconds.
+     * @param totalNanos The time from the keystroke until the results were shown, in nanoseconds.
+     */
+    public synchronized void record(long searchNanos, long totalNanos) {
+        int slot = (int) (count % this.totalNanos.length);
+        this.searchNanos[slot] = searchNanos;
+        this.totalNanos[slot] = totalNanos;
+        maxTotalNanos = Math.max(maxTotalNanos, totalNanos);
+        count++;
+    }
+
+    /**
+     * Retrieves the number of searches recorded so far.
+     * @return The number of searches.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves a percentile of the keystroke-to-render latency over the recent samples.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The latency in milliseconds, or 0 if nothing was recorded.
+     */
+    public synchronized double getTotalPercentile(double percentile) {
+        return percentileOf(totalNanos, percentile);
+    }
+
+    /**
+     * Retrieves a percentile of the time spent searching over the recent samples.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The search time in milliseconds, or 0 if nothing was recorded.
+     */
+    public synchronized double getSearchPercentile(double percentile) {
+        return percentileOf(searchNanos, percentile);
+    }
+
+    /**
+     * Retrieves the worst keystroke-to-render latency since the stats were created.
+     * @return The latency in milliseconds.
+     */
+    public synchronized double getMaxTotal() {
+        return maxTotalNanos / 1e6;
+    }
+
+    /**
+     * Computes a percentile of the recorded samples with the nearest-rank method.
+     * @param samples The samples to compute the percentile of.
+     * @param percentile The percentile, between 0 and 100.
+     * @return The percentile in milliseconds, or 0 if nothing was recorded.
+     */
+    private double percentileOf(long[] samples, double percentile) {
+        int size = (int) Math.min(count, samples.length);
+        if (size == 0) return 0;
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * size);
+        return sorted[Math.max(0, Math.min(size, rank) - 1)] / 1e6;
+    }
+
+    /**
+     * Summarises the stats in one line.
+     * @return The number of searches and the median, 95th percentile and worst latencies.
+     */
+    @Override
+    public synchronized String toString() {
+        return String.format("%d searches, keystroke to render p50 %.1f ms, p95 %.1f ms, max %.1f ms (search p50 %.1f ms, p95 %.1f ms)",
+                count, getTotalPercentile(50), getTotalPercentile(95), getMaxTotal(),
+                getSearchPercentile(50), getSearchPercentile(95));
+    }
+}
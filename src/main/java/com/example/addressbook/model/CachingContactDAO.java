@@ -0,0 +1,380 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A read-through cache in front of another contact data access object (DAO).
+ * Single contacts are kept in a least recently used map and the result of {@link #getAllContacts()}
+ * is kept as a snapshot that is patched on every write, so repeated reads do not go back to the database.
+ * Both are bounded by a maximum number of contacts; books larger than the bound are not snapshotted.
+ */
+public class CachingContactDAO implements IContactDAO {
+    /**
+     * The default maximum number of contacts kept in memory.
+     */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    private final IContactDAO contactDAO;
+    private final int maxSize;
+    private final LinkedHashMap<Integer, Contact> contactsById;
+    /**
+     * All contacts in the order the wrapped DAO returns them, or null if not loaded.
+     */
+    private LinkedHashMap<Integer, Contact> snapshot = null;
+    /**
+     * The number of contacts in the snapshot, or -1 if it is not loaded, readable without the lock of this cache.
+     */
+    private volatile int snapshotSize = -1;
+    private long hitCount = 0;
+    private long missCount = 0;
+
+    /**
+     * Constructs a cache in front of the given DAO holding at most {@link #DEFAULT_MAX_SIZE} contacts.
+     * @param contactDAO The DAO to cache.
+     */
+    public CachingContactDAO(IContactDAO contactDAO) {
+        this(contactDAO, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructs a cache in front of the given DAO.
+     * @param contactDAO The DAO to cache.
+     * @param maxSize The maximum number of contacts kept in memory.
+     */
+    public CachingContactDAO(IContactDAO contactDAO, int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("maxSize must be positive");
+        }
+        this.contactDAO = contactDAO;
+        this.maxSize = maxSize;
+        this.contactsById = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Contact> eldest) {
+                return size() > CachingContactDAO.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Adds a contact through the wrapped DAO and, if it was written, to the cache.
+     * @param contact The contact to add.
+     */
+    @Override
+    public synchronized void addContact(Contact contact) {
+        cacheAdded(IContactDAO.addWritten(List.of(contact), added -> contactDAO.addContact(contact)));
+    }
+
+    /**
+     * Updates a contact through the wrapped DAO and in the cache.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void updateContact(Contact contact) {
+        tryUpdateContacts(List.of(contact));
+    }
+
+    /**
+     * Deletes a contact through the wrapped DAO and from the cache.
+     * @param contact The contact to delete.
+     */
+    @Override
+    public void deleteContact(Contact contact) {
+        tryDeleteContacts(List.of(contact));
+    }
+
+    /**
+     * Adds several contacts through the wrapped DAO and the ones written to the cache.
+     * @param contacts The contacts to add.
+     */
+    @Override
+    public synchronized void addContacts(Collection<Contact> contacts) {
+        cacheAdded(IContactDAO.addWritten(contacts, contactDAO::addContacts));
+    }
+
+    /**
+     * Puts contacts the wrapped DAO has written in the cache.
+     * @param contacts The contacts written.
+     */
+    private void cacheAdded(List<Contact> contacts) {
+        for (Contact contact : contacts) {
+            contactsById.put(contact.getId(), contact);
+            if (snapshot != null) snapshot.put(contact.getId(), contact);
+        }
+        if (snapshot != null && snapshot.size() > maxSize) snapshot = null;
+        updateSnapshotSize();
+    }
+
+    /**
+     * Updates several contacts through the wrapped DAO and in the cache.
+     * @param contacts The contacts to update.
+     */
+    @Override
+    public void updateContacts(Collection<Contact> contacts) {
+        tryUpdateContacts(contacts);
+    }
+
+    /**
+     * Updates several contacts through the wrapped DAO and, if the write was committed, in the cache.
+     * The cache may hold the very objects the caller edited, so after a failed write the contacts are
+     * dropped from it, along with the snapshot, to be read again from the wrapped DAO.
+     * @param contacts The contacts to update.
+     * @return Whether the contacts were written.
+     */
+    @Override
+    public synchronized boolean tryUpdateContacts(Collection<Contact> contacts) {
+        if (!contactDAO.tryUpdateContacts(contacts)) {
+            for (Contact contact : contacts) {
+                contactsById.remove(contact.getId());
+            }
+            snapshot = null;
+            updateSnapshotSize();
+            return false;
+        }
+        for (Contact contact : contacts) {
+            contactsById.put(contact.getId(), contact);
+            if (snapshot != null && snapshot.containsKey(contact.getId())) {
+                snapshot.put(contact.getId(), contact);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Deletes several contacts through the wrapped DAO and from the cache.
+     * @param contacts The contacts to delete.
+     */
+    @Override
+    public void deleteContacts(Collection<Contact> contacts) {
+        tryDeleteContacts(contacts);
+    }
+
+    /**
+     * Deletes several contacts through the wrapped DAO and, if the write was committed, from the cache.
+     * @param contacts The contacts to delete.
+     * @return Whether the contacts were deleted.
+     */
+    @Override
+    public synchronized boolean tryDeleteContacts(Collection<Contact> contacts) {
+        if (!contactDAO.tryDeleteContacts(contacts)) return false;
+        for (Contact contact : contacts) {
+            contactsById.remove(contact.getId());
+            if (snapshot != null) snapshot.remove(contact.getId());
+        }
+        updateSnapshotSize();
+        return true;
+    }
+
+    /**
+     * Retrieves a contact from the cache, loading it from the wrapped DAO on a miss.
+     * @param id The id of the contact to retrieve.
+     * @return The contact with the given id, or null if not found.
+     */
+    @Override
+    public synchronized Contact getContact(int id) {
+        Contact contact = contactsById.get(id);
+        if (contact == null && snapshot != null) {
+            contact = snapshot.get(id);
+        }
+        if (contact != null) {
+            hitCount++;
+            return contact;
+        }
+        missCount++;
+        contact = contactDAO.getContact(id);
+        if (contact != null) {
+            contactsById.put(id, contact);
+        }
+        return contact;
+    }
+
+    /**
+     * Retrieves all contacts from the snapshot, loading it from the wrapped DAO on a miss.
+     * @return A list of all contacts.
+     */
+    @Override
+    public synchronized List<Contact> getAllContacts() {
+        if (snapshot != null) {
+            hitCount++;
+            return new ArrayList<>(snapshot.values());
+        }
+        missCount++;
+        List<Contact> contacts = contactDAO.getAllContacts();
+        if (contacts.size() <= maxSize) {
+            snapshot = new LinkedHashMap<>();
+            for (Contact contact : contacts) {
+                snapshot.put(contact.getId(), contact);
+            }
+            updateSnapshotSize();
+        }
+        return contacts;
+    }
+
+    /**
+     * Passes every contact to the given action, from the snapshot if it is loaded,
+     * otherwise streamed from the wrapped DAO without being cached.
+     * The action runs outside the lock of this cache.
+     * @param action The action to run for each contact.
+     */
+    @Override
+    public void forEachContact(Consumer<? super Contact> action) {
+        List<Contact> contacts;
+        synchronized (this) {
+            if (snapshot == null) {
+                missCount++;
+                contacts = null;
+            } else {
+                hitCount++;
+                contacts = new ArrayList<>(snapshot.values());
+            }
+        }
+        if (contacts == null) {
+            contactDAO.forEachContact(action);
+        } else {
+            contacts.forEach(action);
+        }
+    }
+
+    /**
+     * Searches the snapshot if it is loaded, otherwise lets the wrapped DAO search.
+     * @param query The search query string.
+     * @return A list of contacts matching the search query.
+     */
+    @Override
+    public synchronized List<Contact> searchContacts(String query) {
+        if (snapshot == null) {
+            missCount++;
+            return contactDAO.searchContacts(query);
+        }
+        hitCount++;
+        ContactQuery contactQuery = ContactQuery.of(query);
+        List<Contact> contacts = new ArrayList<>();
+        for (Contact contact : snapshot.values()) {
+            if (contactQuery.matches(contact)) contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    /**
+     * Retrieves one page of sorted contacts from the wrapped DAO, which can seek to the key.
+     * Nothing is cached, so the lock of this cache is not taken.
+     * @param after The key of the last contact of the previous page, or null for the first page.
+     * @param limit The maximum number of contacts to return.
+     * @return The contacts sorting after the key, at most {@code limit} of them.
+     */
+    @Override
+    public List<Contact> getContacts(ContactKey after, int limit) {
+        return contactDAO.getContacts(after, limit);
+    }
+
+    /**
+     * Retrieves the key of the contact at a position of the sorted list from the wrapped DAO,
+     * without taking the lock of this cache.
+     * @param position The position, from 0.
+     * @return The key of the contact at the position, or null if there are not that many contacts.
+     */
+    @Override
+    public ContactKey getContactKeyAt(int position) {
+        return contactDAO.getContactKeyAt(position);
+    }
+
+    /**
+     * Retrieves the number of contacts from the snapshot if it is loaded, otherwise from the wrapped DAO.
+     * The lock of this cache is not taken, so paging does not wait for the reads and writes of this cache.
+     * @return The number of contacts.
+     */
+    @Override
+    public int getContactCount() {
+        int size = snapshotSize;
+        return size >= 0 ? size : contactDAO.getContactCount();
+    }
+
+    /**
+     * Retrieves the number of contacts sorting before the given key from the wrapped DAO.
+     * @param key The key to count up to.
+     * @return The number of contacts sorting before the key.
+     */
+    @Override
+    public int countContactsBefore(ContactKey key) {
+        return contactDAO.countContactsBefore(key);
+    }
+
+    /**
+     * Patches the cache with changes written to the database without going through it, filling in the previous
+     * state of the contacts it holds, then passes the changes on to the wrapped DAO. While the snapshot is loaded it
+     * holds every contact, so a contact missing from it was added. Changed contacts are dropped from the cache of
+     * single contacts rather than replaced, since the states of the changes are shared with their listeners.
+     * @param changes The changes, in the order they were made.
+     * @return The changes with the previous states known so far filled in.
+     */
+    @Override
+    public synchronized List<ContactChange> applyExternalChanges(List<ContactChange> changes) {
+        List<ContactChange> resolved = new ArrayList<>(changes.size());
+        for (ContactChange change : changes) {
+            int id = change.getId();
+            if (change.isBeforeUnknown()) {
+                Contact stored = contactsById.get(id);
+                if (stored == null && snapshot != null) stored = snapshot.get(id);
+                if (stored != null || snapshot != null) change = change.withBefore(stored);
+                if (change == null) continue;
+            }
+            contactsById.remove(id);
+            if (snapshot != null) {
+                if (change.getAfter() == null) {
+                    snapshot.remove(id);
+                } else {
+                    snapshot.put(id, ContactChange.copy(change.getAfter()));
+                }
+            }
+            resolved.add(change);
+        }
+        if (snapshot != null && snapshot.size() > maxSize) snapshot = null;
+        updateSnapshotSize();
+        return contactDAO.applyExternalChanges(resolved);
+    }
+
+    /**
+     * Drops every cached contact, so the next reads go to the wrapped DAO.
+     * Needed when the database is changed without going through this cache.
+     */
+    public synchronized void invalidate() {
+        contactsById.clear();
+        snapshot = null;
+        updateSnapshotSize();
+    }
+
+    /**
+     * Publishes the size of the snapshot after it changed. Called with the lock of this cache held.
+     */
+    private void updateSnapshotSize() {
+        snapshotSize = snapshot != null ? snapshot.size() : -1;
+    }
+
+    /**
+     * Retrieves the number of reads answered from the cache.
+     * @return The hit count.
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * Retrieves the number of reads that had to go to the wrapped DAO.
+     * @return The miss count.
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Retrieves the number of contacts currently held by the single contact cache.
+     * @return The number of cached contacts.
+     */
+    public synchronized int size() {
+        return contactsById.size();
+    }
+}
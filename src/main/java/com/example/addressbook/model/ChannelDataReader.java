@@ -0,0 +1,112 @@
+package com.example.addressbook.model;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * Reads big-endian primitives and arrays, as written by a {@link java.io.DataOutputStream}, from a channel
+ * through a direct buffer that is refilled whenever it runs low. Arrays are copied out of the buffer in bulk,
+ * so long runs of ints are read without a call per value. Instances are not thread-safe.
+ */
+class ChannelDataReader implements AutoCloseable {
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer;
+
+    /**
+     * Constructs a reader over a channel.
+     * @param channel The channel to read from, closed with the reader.
+     * @param bufferSize The size of the buffer in bytes, at least 8.
+     */
+    ChannelDataReader(ReadableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        buffer.flip();
+    }
+
+    /**
+     * Reads an int.
+     * @return The int.
+     * @throws IOException If the channel cannot be read or ends first.
+     */
+    int readInt() throws IOException {
+        require(Integer.BYTES);
+        return buffer.getInt();
+    }
+
+    /**
+     * Reads a long.
+     * @return The long.
+     * @throws IOException If the channel cannot be read or ends first.
+     */
+    long readLong() throws IOException {
+        require(Long.BYTES);
+        return buffer.getLong();
+    }
+
+    /**
+     * Fills an array with bytes.
+     * @param bytes The array to fill.
+     * @throws IOException If the channel cannot be read or ends first.
+     */
+    void readBytes(byte[] bytes) throws IOException {
+        for (int offset = 0; offset < bytes.length; ) {
+            require(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.get(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Fills an array with ints.
+     * @param ints The array to fill.
+     * @throws IOException If the channel cannot be read or ends first.
+     */
+    void readInts(int[] ints) throws IOException {
+        for (int offset = 0; offset < ints.length; ) {
+            require(Integer.BYTES);
+            int length = Math.min(buffer.remaining() / Integer.BYTES, ints.length - offset);
+            buffer.asIntBuffer().get(ints, offset, length);
+            buffer.position(buffer.position() + length * Integer.BYTES);
+            offset += length;
+        }
+    }
+
+    /**
+     * Checks whether every byte of the channel has been read.
+     * @return True if the channel has no bytes left.
+     * @throws IOException If the channel cannot be read.
+     */
+    boolean isAtEnd() throws IOException {
+        if (buffer.hasRemaining()) return false;
+        buffer.clear();
+        int read = channel.read(buffer);
+        buffer.flip();
+        return read < 0;
+    }
+
+    /**
+     * Refills the buffer until it holds at least the given number of bytes.
+     * @param bytes The number of bytes needed.
+     * @throws IOException If the channel cannot be read or ends first.
+     */
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) throw new EOFException();
+        }
+        buffer.flip();
+    }
+
+    /**
+     * Closes the channel.
+     * @throws IOException If the channel cannot be closed.
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
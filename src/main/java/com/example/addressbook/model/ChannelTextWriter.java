@@ -0,0 +1,89 @@
+package com.example.addressbook.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encodes text as UTF-8 into a direct buffer that is written to a channel whenever it fills up,
+ * so text of any length is written with a constant amount of memory and few system calls.
+ * Instances are not thread-safe.
+ */
+class ChannelTextWriter implements AutoCloseable {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private long bytesWritten = 0;
+
+    /**
+     * Constructs a writer over a channel.
+     * @param channel The channel to write to, closed with the writer.
+     * @param bufferSize The size of the buffer in bytes.
+     */
+    ChannelTextWriter(WritableByteChannel channel, int bufferSize) {
+        this.channel = channel;
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * Encodes text into the buffer, writing the buffer out each time it fills up.
+     * @param text The text to write, which must not end in the middle of a surrogate pair.
+     * @throws IOException If the channel cannot be written.
+     */
+    void write(CharSequence text) throws IOException {
+        CharBuffer chars = CharBuffer.wrap(text);
+        while (true) {
+            CoderResult result = encoder.encode(chars, buffer, false);
+            if (result.isOverflow()) {
+                drain();
+            } else if (result.isUnderflow()) {
+                return;
+            } else {
+                result.throwException();
+            }
+        }
+    }
+
+    /**
+     * Retrieves the number of bytes encoded so far.
+     * @return The number of bytes written, including the ones still in the buffer.
+     */
+    long getBytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    /**
+     * Writes out the buffer and closes the channel.
+     * @throws IOException If the channel cannot be written or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            encoder.encode(CharBuffer.allocate(0), buffer, true);
+            encoder.flush(buffer);
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /**
+     * Writes the content of the buffer to the channel and empties it.
+     * @throws IOException If the channel cannot be written.
+     */
+    private void drain() throws IOException {
+        buffer.flip();
+        bytesWritten += buffer.remaining();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
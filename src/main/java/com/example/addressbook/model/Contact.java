@@ -9,6 +9,9 @@ public class Contact {
     private String lastName;
     private String email;
     private String phone;
+    // Normalized keys the contact is searched by, built on first use and cleared by the setters
+    private String searchKey;
+    private String phoneKey;
 
     /**
      * Constructs a contact with the specified details.
@@ -59,6 +62,7 @@ public class Contact {
      */
     public void setFirstName(String firstName) {
         this.firstName = firstName;
+        searchKey = null;
     }
 
     /**
@@ -77,6 +81,7 @@ public class Contact {
      */
     public void setLastName(String lastName) {
         this.lastName = lastName;
+        searchKey = null;
     }
 
     /**
@@ -95,6 +100,7 @@ public class Contact {
      */
     public void setEmail(String email) {
         this.email = email;
+        searchKey = null;
     }
 
     /**
@@ -113,6 +119,8 @@ public class Contact {
      */
     public void setPhone(String phone) {
         this.phone = phone;
+        searchKey = null;
+        phoneKey = null;
     }
 
     /**
@@ -123,4 +131,34 @@ public class Contact {
     public String getFullName() {
         return firstName + " " + lastName;
     }
-}
\ No newline at end of file
+
+    /**
+     * Retrieves the lowercased, accent-folded full name, email and phone the contact is searched by.
+     * The key is built on first use and kept until a field changes.
+     *
+     * @return the search key
+     */
+    String getSearchKey() {
+        String key = searchKey;
+        if (key == null) {
+            key = SearchKeys.fold(getFullName() + " " + email + " " + phone);
+            searchKey = key;
+        }
+        return key;
+    }
+
+    /**
+     * Retrieves the digits of the phone number, with the international prefix of the default
+     * country replaced by the national one. The key is built on first use and kept until the phone changes.
+     *
+     * @return the phone digits
+     */
+    String getPhoneKey() {
+        String key = phoneKey;
+        if (key == null) {
+            key = SearchKeys.phoneDigits(phone);
+            phoneKey = key;
+        }
+        return key;
+    }
+}
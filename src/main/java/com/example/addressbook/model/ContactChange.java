@@ -0,0 +1,138 @@
+package com.example.addressbook.model;
+
+/**
+ * A change made to one contact: its id, and its state before and after the change.
+ * The states are copies taken when the change was made, so they are not affected by later edits of the contact.
+ */
+public final class ContactChange {
+    /**
+     * The kinds of change.
+     */
+    public enum Type {
+        ADDED,
+        UPDATED,
+        DELETED
+    }
+
+    private final Type type;
+    private final int id;
+    private final Contact before;
+    private final Contact after;
+
+    /**
+     * Constructs a change.
+     * @param type The kind of change.
+     * @param id The id of the contact.
+     * @param before The state of the contact before the change, or null if it did not exist or is unknown.
+     * @param after The state of the contact after the change, or null if it was deleted.
+     */
+    private ContactChange(Type type, int id, Contact before, Contact after) {
+        this.type = type;
+        this.id = id;
+        this.before = before;
+        this.after = after;
+    }
+
+    /**
+     * Creates the change of a contact that was added.
+     * @param contact The added contact, which is copied.
+     * @return The change.
+     */
+    public static ContactChange added(Contact contact) {
+        return new ContactChange(Type.ADDED, contact.getId(), null, copy(contact));
+    }
+
+    /**
+     * Creates the change of a contact that was updated.
+     * @param before The stored state of the contact before the update, or null if unknown. It is copied.
+     * @param after The contact after the update, which is copied.
+     * @return The change.
+     */
+    public static ContactChange updated(Contact before, Contact after) {
+        return new ContactChange(Type.UPDATED, after.getId(), copy(before), copy(after));
+    }
+
+    /**
+     * Creates the change of a contact that was deleted.
+     * @param id The id of the deleted contact.
+     * @param before The stored state of the contact before it was deleted, or null if unknown. It is copied.
+     * @return The change.
+     */
+    public static ContactChange deleted(int id, Contact before) {
+        return new ContactChange(Type.DELETED, id, copy(before), null);
+    }
+
+    /**
+     * Fills in the previous state of a change read back from the change log of the database, where only the state
+     * after it is known, from a holder of the contacts that had not seen it yet.
+     * @param stored The state the holder had for the contact, or null if it did not have the contact.
+     * @return The change as the holder sees it: an update becomes an addition if the holder did not have the contact,
+     * and a deletion of a contact it did not have is null, as there is nothing to change.
+     */
+    ContactChange withBefore(Contact stored) {
+        if (after == null) return stored == null ? null : deleted(id, stored);
+        return stored == null ? added(after) : updated(stored, after);
+    }
+
+    /**
+     * Checks whether the state of the contact before the change is missing, which is the case for changes made by
+     * another process until the DAOs holding the contacts in memory fill it in.
+     * @return True if the contact was updated or deleted and its previous state is unknown.
+     */
+    public boolean isBeforeUnknown() {
+        return before == null && type != Type.ADDED;
+    }
+
+    /**
+     * Copies a contact, id included.
+     * @param contact The contact to copy, or null.
+     * @return The copy, or null.
+     */
+    static Contact copy(Contact contact) {
+        if (contact == null) return null;
+        Contact copy = new Contact(contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhone());
+        copy.setId(contact.getId());
+        return copy;
+    }
+
+    /**
+     * Retrieves the kind of change.
+     * @return The kind of change.
+     */
+    public Type getType() {
+        return type;
+    }
+
+    /**
+     * Retrieves the id of the changed contact.
+     * @return The id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Retrieves the state of the contact before the change.
+     * @return The state before the change, or null if the contact was added or its previous state is unknown.
+     */
+    public Contact getBefore() {
+        return before;
+    }
+
+    /**
+     * Retrieves the state of the contact after the change.
+     * @return The state after the change, or null if the contact was deleted.
+     */
+    public Contact getAfter() {
+        return after;
+    }
+
+    /**
+     * Describes the change for logging.
+     * @return The kind of change and the id of the contact.
+     */
+    @Override
+    public String toString() {
+        return type + " " + id;
+    }
+}
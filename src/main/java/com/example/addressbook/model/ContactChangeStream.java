@@ -0,0 +1,168 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Delivers batches of contact changes to subscribers on a background thread, so the thread that made the
+ * changes never waits for them. Published batches are queued in a bounded ring buffer; the delivery thread
+ * drains every batch queued so far and hands them to each subscriber as a single list, so a burst of writes
+ * reaches the subscribers as one update. When the buffer is full the queued batches are discarded and the
+ * subscribers are told to reload instead, which keeps both the memory and the publishing time bounded.
+ */
+public class ContactChangeStream implements AutoCloseable {
+    /**
+     * The default number of batches the buffer holds.
+     */
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private final List<IContactChangeListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<ContactChange>[] ring;
+    /**
+     * The position of the oldest queued batch in the ring.
+     */
+    private int head = 0;
+    private int queued = 0;
+    /**
+     * Whether batches were discarded since the last delivery.
+     */
+    private boolean lost = false;
+    private long lostBatches = 0;
+    private boolean delivering = false;
+    private boolean closed = false;
+
+    /**
+     * Constructs a stream with a buffer of {@link #DEFAULT_CAPACITY} batches and starts its delivery thread.
+     */
+    public ContactChangeStream() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Constructs a stream and starts its delivery thread.
+     * @param capacity The number of batches the buffer holds.
+     */
+    @SuppressWarnings("unchecked")
+    public ContactChangeStream(int capacity) {
+        ring = (List<ContactChange>[]) new List<?>[capacity];
+        Thread thread = new Thread(this::deliver, "contact-changes");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Subscribes a listener to the batches published from now on.
+     * @param listener The listener.
+     */
+    public void subscribe(IContactChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * Unsubscribes a listener.
+     * @param listener The listener.
+     */
+    public void unsubscribe(IContactChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Queues a batch of changes for delivery without waiting for the subscribers. If the buffer is full,
+     * every queued batch is discarded along with this one and the subscribers are told to reload.
+     * @param changes The changes, in the order they were made. The list must not be modified afterwards.
+     * @return True if the batch was queued, false if it was discarded or the stream is closed.
+     */
+    public synchronized boolean publish(List<ContactChange> changes) {
+        if (closed || changes.isEmpty()) return false;
+        if (queued == ring.length) {
+            for (int i = 0; i < queued; i++) {
+                ring[(head + i) % ring.length] = null;
+            }
+            lostBatches += queued + 1;
+            queued = 0;
+            lost = true;
+            notifyAll();
+            return false;
+        }
+        ring[(head + queued) % ring.length] = changes;
+        queued++;
+        notifyAll();
+        return true;
+    }
+
+    /**
+     * Retrieves the number of batches discarded because the buffer was full.
+     * @return The number of discarded batches.
+     */
+    public synchronized long getLostBatchCount() {
+        return lostBatches;
+    }
+
+    /**
+     * Waits until every batch published so far has been handed to the subscribers.
+     * @param timeout The longest time to wait.
+     * @param unit The unit of the timeout.
+     * @return True if everything was delivered, false if the time ran out first.
+     * @throws InterruptedException If the thread is interrupted while waiting.
+     */
+    public synchronized boolean awaitDelivery(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (queued > 0 || lost || delivering) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return false;
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return true;
+    }
+
+    /**
+     * Stops the delivery thread once the batches already queued have been delivered. Later batches are ignored.
+     */
+    @Override
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    /**
+     * Runs on the delivery thread: waits for batches and hands everything queued to each subscriber.
+     */
+    private void deliver() {
+        while (true) {
+            List<ContactChange> changes = new ArrayList<>();
+            boolean reload;
+            synchronized (this) {
+                delivering = false;
+                notifyAll();
+                while (queued == 0 && !lost && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                if (queued == 0 && !lost) return;
+                reload = lost;
+                lost = false;
+                for (; queued > 0; queued--) {
+                    changes.addAll(ring[head]);
+                    ring[head] = null;
+                    head = (head + 1) % ring.length;
+                }
+                delivering = true;
+            }
+            List<ContactChange> batch = Collections.unmodifiableList(changes);
+            for (IContactChangeListener listener : listeners) {
+                try {
+                    if (reload) listener.onChangesLost();
+                    if (!batch.isEmpty()) listener.onContactsChanged(batch);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,385 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+/**
+ * Finds groups of contacts that are likely the same person, without comparing every contact with every other.
+ * Each contact gets blocking keys: its folded email, the digits of its phone, the Soundex codes of its name,
+ * and the bands of a MinHash signature over the trigrams of its name tokens, so names sharing most trigrams
+ * share a band with high probability. Only contacts sharing a key are compared.
+ * Keys are hashed to 64 bits with the position of the contact in the low bits, so grouping them is a
+ * parallel sort of a long array. Contacts are keyed and pairs are scored on all cores.
+ * Blocks larger than the maximum block size, such as a very common name, say little about identity and are skipped.
+ */
+public class ContactDeduplicator {
+    /**
+     * The default lowest similarity for two contacts to be put in the same cluster.
+     */
+    public static final double DEFAULT_THRESHOLD = 0.8;
+    /**
+     * The default largest number of contacts sharing a key for the key to be used.
+     */
+    public static final int DEFAULT_MAX_BLOCK_SIZE = 100;
+
+    private static final int HASH_COUNT = 16;
+    private static final int BAND_COUNT = 4;
+    private static final int ROWS_PER_BAND = HASH_COUNT / BAND_COUNT;
+    /**
+     * Email, phone, Soundex codes of the name, then one key per band.
+     */
+    private static final int KEYS_PER_CONTACT = 3 + BAND_COUNT;
+    private static final int INDEX_BITS = 24;
+    private static final long INDEX_MASK = (1L << INDEX_BITS) - 1;
+    private static final long NO_KEY = Long.MAX_VALUE;
+    private static final int MIN_PHONE_DIGITS = 6;
+    private static final int[] SEEDS = new int[HASH_COUNT];
+
+    static {
+        for (int i = 0; i < HASH_COUNT; i++) {
+            SEEDS[i] = mix(0x9E3779B9 * (i + 1));
+        }
+    }
+
+    private final IContactDAO contactDAO;
+    private double threshold = DEFAULT_THRESHOLD;
+    private int maxBlockSize = DEFAULT_MAX_BLOCK_SIZE;
+
+    /**
+     * Constructs a deduplicator over the contacts of a DAO.
+     * @param contactDAO The contact data access object.
+     */
+    public ContactDeduplicator(IContactDAO contactDAO) {
+        this.contactDAO = contactDAO;
+    }
+
+    /**
+     * Sets the lowest similarity for two contacts to be put in the same cluster.
+     * Contacts sharing an email or a phone number score from 0.6 to 1 depending on how alike their names are;
+     * other contacts score at most 0.9 on their names alone, and at most 0.5 if their emails or phone numbers differ.
+     * @param threshold The threshold, between 0 and 1.
+     */
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Sets the largest number of contacts sharing a key for the key to be used.
+     * @param maxBlockSize The maximum block size, at least 2.
+     */
+    public void setMaxBlockSize(int maxBlockSize) {
+        this.maxBlockSize = maxBlockSize;
+    }
+
+    /**
+     * Finds the clusters of likely duplicates among all the contacts of the DAO.
+     * @return The clusters, most similar first.
+     */
+    public List<DuplicateCluster> findDuplicates() {
+        return findDuplicates(contactDAO.getAllContacts());
+    }
+
+    /**
+     * Merges each cluster into its survivor in two batches: the survivors, with their blank fields filled
+     * from their duplicates, are updated, then the duplicates are deleted.
+     * Contacts also held by the indexes of a {@link ContactManager} should be merged with
+     * {@link ContactManager#mergeDuplicates(Collection)} instead.
+     * @param clusters The clusters to merge.
+     */
+    public void merge(Collection<DuplicateCluster> clusters) {
+        merge(clusters, contactDAO::updateContacts, contactDAO::deleteContacts);
+    }
+
+    /**
+     * Merges each cluster into its survivor in two batches, through the given writes:
+     * the survivors, with their blank fields filled from their duplicates, are updated, then the duplicates are deleted.
+     * @param clusters The clusters to merge.
+     * @param update Updates a batch of contacts.
+     * @param delete Deletes a batch of contacts.
+     */
+    static void merge(Collection<DuplicateCluster> clusters, Consumer<Collection<Contact>> update,
+                      Consumer<Collection<Contact>> delete) {
+        List<Contact> survivors = new ArrayList<>();
+        List<Contact> duplicates = new ArrayList<>();
+        for (DuplicateCluster cluster : clusters) {
+            cluster.fillSurvivor();
+            survivors.add(cluster.getSurvivor());
+            duplicates.addAll(cluster.getDuplicates());
+        }
+        update.accept(survivors);
+        delete.accept(duplicates);
+    }
+
+    /**
+     * Finds the clusters of likely duplicates among the given contacts.
+     * @param contacts The contacts to deduplicate.
+     * @return The clusters, most similar first.
+     */
+    List<DuplicateCluster> findDuplicates(List<Contact> contacts) {
+        int count = contacts.size();
+        if (count > INDEX_MASK + 1) {
+            throw new IllegalArgumentException("Too many contacts to deduplicate: " + count);
+        }
+        Contact[] array = contacts.toArray(new Contact[0]);
+        String[] emails = new String[count];
+        int[] signatures = new int[count * HASH_COUNT];
+        boolean[] named = new boolean[count];
+        long[] keys = new long[count * KEYS_PER_CONTACT];
+        IntStream.range(0, count).parallel().forEach(i -> {
+            Contact contact = array[i];
+            emails[i] = SearchKeys.fold(contact.getEmail()).trim();
+            named[i] = sign(contact, signatures, i * HASH_COUNT);
+            fillKeys(contact, i, emails[i], named[i], signatures, keys);
+        });
+        Arrays.parallelSort(keys);
+
+        // Blocks are runs of keys with the same hash, worth comparing if small enough
+        int[] blocks = new int[16];
+        int blockCount = 0;
+        int start = 0;
+        while (start < keys.length && keys[start] != NO_KEY) {
+            int end = start + 1;
+            while (end < keys.length && keys[end] != NO_KEY && (keys[end] & ~INDEX_MASK) == (keys[start] & ~INDEX_MASK)) {
+                end++;
+            }
+            if (end - start >= 2 && end - start <= maxBlockSize) {
+                if (blockCount + 2 > blocks.length) blocks = Arrays.copyOf(blocks, blocks.length * 2);
+                blocks[blockCount++] = start;
+                blocks[blockCount++] = end;
+            }
+            start = end;
+        }
+        int[] finalBlocks = blocks;
+        long[] edges = IntStream.range(0, blockCount / 2).parallel()
+                .mapToObj(block -> scoreBlock(keys, finalBlocks[2 * block], finalBlocks[2 * block + 1],
+                        array, emails, named, signatures))
+                .flatMapToLong(LongStream::of)
+                .toArray();
+        return cluster(array, edges);
+    }
+
+    /**
+     * Computes the MinHash signature of the name of a contact over the trigrams of its name tokens,
+     * each token padded with spaces so that its first and last letters count.
+     * @param contact The contact.
+     * @param signatures The signatures of all contacts.
+     * @param offset The position of the signature of this contact.
+     * @return True if the name has at least one trigram, false if the signature is meaningless.
+     */
+    private static boolean sign(Contact contact, int[] signatures, int offset) {
+        Arrays.fill(signatures, offset, offset + HASH_COUNT, Integer.MAX_VALUE);
+        String name = " " + SearchKeys.fold(contact.getFirstName()) + " " + SearchKeys.fold(contact.getLastName()) + " ";
+        boolean named = false;
+        for (int i = 0; i + 3 <= name.length(); i++) {
+            char middle = name.charAt(i + 1);
+            if (middle == ' ') continue;
+            int gram = (name.charAt(i) * 31 + middle) * 31 + name.charAt(i + 2);
+            named = true;
+            for (int h = 0; h < HASH_COUNT; h++) {
+                int value = mix(gram ^ SEEDS[h]);
+                if (value < signatures[offset + h]) signatures[offset + h] = value;
+            }
+        }
+        return named;
+    }
+
+    /**
+     * Writes the blocking keys of a contact, or {@link #NO_KEY} for the ones it lacks.
+     * @param contact The contact.
+     * @param index The position of the contact.
+     * @param email The folded email of the contact.
+     * @param named Whether the contact has a name signature.
+     * @param signatures The signatures of all contacts.
+     * @param keys The keys of all contacts.
+     */
+    private static void fillKeys(Contact contact, int index, String email, boolean named, int[] signatures, long[] keys) {
+        int offset = index * KEYS_PER_CONTACT;
+        Arrays.fill(keys, offset, offset + KEYS_PER_CONTACT, NO_KEY);
+        if (!email.isEmpty()) keys[offset] = key(hash(1, email), index);
+        String phone = contact.getPhoneKey();
+        if (phone.length() >= MIN_PHONE_DIGITS) keys[offset + 1] = key(hash(2, phone), index);
+        String firstCode = Soundex.encode(contact.getFirstName());
+        String lastCode = Soundex.encode(contact.getLastName());
+        if (firstCode != null && lastCode != null) keys[offset + 2] = key(hash(3, firstCode + lastCode), index);
+        if (!named) return;
+        for (int band = 0; band < BAND_COUNT; band++) {
+            long hash = 4 + band;
+            for (int row = 0; row < ROWS_PER_BAND; row++) {
+                hash = hash * 0x100000001B3L ^ signatures[index * HASH_COUNT + band * ROWS_PER_BAND + row];
+            }
+            keys[offset + 3 + band] = key(hash, index);
+        }
+    }
+
+    /**
+     * Scores every pair of contacts of a block and keeps those above the threshold.
+     * @param keys The sorted keys.
+     * @param start The position of the first key of the block.
+     * @param end The position after the last key of the block.
+     * @param contacts The contacts.
+     * @param emails The folded emails of the contacts.
+     * @param named Whether each contact has a name signature.
+     * @param signatures The name signatures of the contacts.
+     * @return The accepted pairs, as the positions of both contacts followed by the score scaled to 16 bits.
+     */
+    private long[] scoreBlock(long[] keys, int start, int end, Contact[] contacts, String[] emails,
+                              boolean[] named, int[] signatures) {
+        long[] edges = new long[0];
+        int edgeCount = 0;
+        for (int a = start; a < end; a++) {
+            for (int b = a + 1; b < end; b++) {
+                int first = (int) (keys[a] & INDEX_MASK);
+                int second = (int) (keys[b] & INDEX_MASK);
+                if (first == second) continue;
+                double score = score(contacts[first], contacts[second], emails[first], emails[second],
+                        named[first] && named[second], signatures, first, second);
+                if (score < threshold) continue;
+                if (edgeCount == edges.length) edges = Arrays.copyOf(edges, Math.max(4, edgeCount * 2));
+                edges[edgeCount++] = ((long) Math.min(first, second) << (64 - INDEX_BITS))
+                        | ((long) Math.max(first, second) << (64 - 2 * INDEX_BITS))
+                        | Math.round(score * 0xFFFF);
+            }
+        }
+        return Arrays.copyOf(edges, edgeCount);
+    }
+
+    /**
+     * Scores how likely two contacts are the same person.
+     * @param first The first contact.
+     * @param second The second contact.
+     * @param firstEmail The folded email of the first contact.
+     * @param secondEmail The folded email of the second contact.
+     * @param named Whether both contacts have a name signature.
+     * @param signatures The name signatures of the contacts.
+     * @param firstIndex The position of the first contact.
+     * @param secondIndex The position of the second contact.
+     * @return The similarity, between 0 and 1.
+     */
+    private static double score(Contact first, Contact second, String firstEmail, String secondEmail, boolean named,
+                                int[] signatures, int firstIndex, int secondIndex) {
+        double nameSimilarity = 0;
+        if (named) {
+            int equal = 0;
+            for (int h = 0; h < HASH_COUNT; h++) {
+                if (signatures[firstIndex * HASH_COUNT + h] == signatures[secondIndex * HASH_COUNT + h]) equal++;
+            }
+            nameSimilarity = (double) equal / HASH_COUNT;
+        }
+        String firstPhone = first.getPhoneKey();
+        String secondPhone = second.getPhoneKey();
+        boolean bothEmails = !firstEmail.isEmpty() && !secondEmail.isEmpty();
+        boolean bothPhones = firstPhone.length() >= MIN_PHONE_DIGITS && secondPhone.length() >= MIN_PHONE_DIGITS;
+        boolean sameEmail = bothEmails && firstEmail.equals(secondEmail);
+        boolean samePhone = bothPhones && firstPhone.equals(secondPhone);
+        if (sameEmail || samePhone) return 0.6 + 0.4 * nameSimilarity;
+        if (bothEmails || bothPhones) return 0.5 * nameSimilarity;
+        return 0.9 * nameSimilarity;
+    }
+
+    /**
+     * Joins the accepted pairs into clusters with a union-find.
+     * @param contacts The contacts.
+     * @param edges The accepted pairs.
+     * @return The clusters, most similar first, then by the id of their survivor.
+     */
+    private static List<DuplicateCluster> cluster(Contact[] contacts, long[] edges) {
+        int[] parents = new int[contacts.length];
+        float[] scores = new float[contacts.length];
+        for (int i = 0; i < parents.length; i++) {
+            parents[i] = i;
+            scores[i] = 1;
+        }
+        for (long edge : edges) {
+            int first = find(parents, (int) (edge >>> (64 - INDEX_BITS)));
+            int second = find(parents, (int) ((edge >>> (64 - 2 * INDEX_BITS)) & INDEX_MASK));
+            float score = (float) (edge & 0xFFFF) / 0xFFFF;
+            parents[second] = first;
+            scores[first] = Math.min(score, Math.min(scores[first], scores[second]));
+        }
+        List<List<Contact>> members = new ArrayList<>();
+        int[] clusterByRoot = new int[contacts.length];
+        Arrays.fill(clusterByRoot, -1);
+        for (long edge : edges) {
+            int root = find(parents, (int) (edge >>> (64 - INDEX_BITS)));
+            if (clusterByRoot[root] < 0) {
+                clusterByRoot[root] = members.size();
+                members.add(new ArrayList<>());
+            }
+        }
+        List<DuplicateCluster> clusters = new ArrayList<>();
+        if (members.isEmpty()) return clusters;
+        for (int i = 0; i < contacts.length; i++) {
+            int cluster = clusterByRoot[find(parents, i)];
+            if (cluster >= 0) members.get(cluster).add(contacts[i]);
+        }
+        for (int root = 0; root < contacts.length; root++) {
+            if (clusterByRoot[root] < 0) continue;
+            List<Contact> cluster = members.get(clusterByRoot[root]);
+            cluster.sort(Comparator.comparingInt(Contact::getId));
+            clusters.add(new DuplicateCluster(cluster, scores[root]));
+        }
+        clusters.sort(Comparator.comparingDouble(DuplicateCluster::getScore).reversed()
+                .thenComparingInt(cluster -> cluster.getSurvivor().getId()));
+        return clusters;
+    }
+
+    /**
+     * Finds the root of the set of a contact, halving the path on the way.
+     * @param parents The parent of each contact.
+     * @param index The position of the contact.
+     * @return The position of the root.
+     */
+    private static int find(int[] parents, int index) {
+        while (parents[index] != index) {
+            parents[index] = parents[parents[index]];
+            index = parents[index];
+        }
+        return index;
+    }
+
+    /**
+     * Combines the hash of a key with the position of its contact.
+     * @param hash The hash of the key.
+     * @param index The position of the contact.
+     * @return The key, sorting with the other contacts of the same hash.
+     */
+    private static long key(long hash, int index) {
+        long key = (hash & ~INDEX_MASK) | index;
+        // NO_KEY must stay reserved for the missing keys, which sort last
+        return key == NO_KEY ? key ^ (1L << INDEX_BITS) : key;
+    }
+
+    /**
+     * Hashes a key with 64-bit FNV-1a.
+     * @param type The kind of key, so equal strings of different kinds do not collide.
+     * @param text The key.
+     * @return The hash of the key.
+     */
+    private static long hash(int type, String text) {
+        long hash = 0xCBF29CE484222325L ^ type;
+        for (int i = 0; i < text.length(); i++) {
+            hash = (hash ^ text.charAt(i)) * 0x100000001B3L;
+        }
+        return hash ^ (hash >>> 29);
+    }
+
+    /**
+     * Scrambles the bits of an int, used as the hash functions of the MinHash signatures.
+     * @param value The value to scramble.
+     * @return The scrambled value.
+     */
+    private static int mix(int value) {
+        value ^= value >>> 16;
+        value *= 0x85EBCA6B;
+        value ^= value >>> 13;
+        value *= 0xC2B2AE35;
+        value ^= value >>> 16;
+        return value;
+    }
+}
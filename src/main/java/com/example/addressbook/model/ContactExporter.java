@@ -0,0 +1,339 @@
+package com.example.addressbook.model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.Consumer;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exports contacts to CSV, vCard 4.0 or JSON Lines, optionally gzipped.
+ * The whole address book is streamed from the cursor of the DAO and each contact is encoded straight into
+ * a fixed-size buffer flushed to the output channel, so memory use does not grow with the size of the book.
+ */
+public class ContactExporter {
+    /**
+     * The default size of the output buffer in bytes.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 256 * 1024;
+    /**
+     * The number of contacts written between two progress reports.
+     */
+    public static final int PROGRESS_INTERVAL = 10_000;
+
+    private static final String CSV_HEADER = "First Name,Last Name,Email,Phone\r\n";
+    /**
+     * The longest vCard line in characters before it is folded; the standard asks for 75 octets,
+     * which is the same for the ASCII text of most contacts.
+     */
+    private static final int VCARD_LINE_LENGTH = 75;
+
+    private final IContactDAO contactDAO;
+    private int bufferSize = DEFAULT_BUFFER_SIZE;
+
+    /**
+     * Constructs an exporter over the contacts of a DAO.
+     * @param contactDAO The contact data access object.
+     */
+    public ContactExporter(IContactDAO contactDAO) {
+        this.contactDAO = contactDAO;
+    }
+
+    /**
+     * Sets the size of the output buffer.
+     * @param bufferSize The buffer size in bytes.
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Exports every contact to a file, replacing it. The format is given by the extension of the file,
+     * which is gzipped if its name ends with ".gz".
+     * @param file The file to write.
+     * @param listener Receives the progress every {@link #PROGRESS_INTERVAL} contacts and at the end; may be null.
+     * @return The progress at the end of the export.
+     * @throws IOException If the file cannot be written or the contacts cannot be read; the file is deleted then.
+     */
+    public ExportProgress exportAll(Path file, Consumer<ExportProgress> listener) throws IOException {
+        return export(contactDAO::forEachContact, file, listener);
+    }
+
+    /**
+     * Exports every contact to a channel, which is closed at the end.
+     * @param channel The channel to write.
+     * @param format The format to write.
+     * @param gzip Whether to compress the output.
+     * @param listener Receives the progress every {@link #PROGRESS_INTERVAL} contacts and at the end; may be null.
+     * @return The progress at the end of the export.
+     * @throws IOException If the channel cannot be written or the contacts cannot be read.
+     */
+    public ExportProgress exportAll(WritableByteChannel channel, ExportFormat format, boolean gzip,
+                                    Consumer<ExportProgress> listener) throws IOException {
+        return export(contactDAO::forEachContact, channel, format, gzip, listener);
+    }
+
+    /**
+     * Exports the contacts matching a search query to a file, replacing it. The format is given by
+     * the extension of the file, which is gzipped if its name ends with ".gz".
+     * @param query The search query, or null / empty for every contact.
+     * @param file The file to write.
+     * @param listener Receives the progress every {@link #PROGRESS_INTERVAL} contacts and at the end; may be null.
+     * @return The progress at the end of the export.
+     * @throws IOException If the file cannot be written or the contacts cannot be read; the file is deleted then.
+     */
+    public ExportProgress exportSearch(String query, Path file, Consumer<ExportProgress> listener) throws IOException {
+        if (query == null || query.isEmpty()) return exportAll(file, listener);
+        return export(action -> contactDAO.searchContacts(query).forEach(action), file, listener);
+    }
+
+    /**
+     * Writes the contacts of a source to a file, replacing it. The file is deleted if the export fails,
+     * so a failed export never leaves a truncated file behind.
+     * @param source Passes each contact to export to the given action.
+     * @param file The file to write.
+     * @param listener Receives the progress; may be null.
+     * @return The progress at the end of the export.
+     * @throws IOException If the file cannot be written or the contacts cannot be read.
+     */
+    private ExportProgress export(Consumer<Consumer<Contact>> source, Path file, Consumer<ExportProgress> listener)
+            throws IOException {
+        FileChannel channel = open(file);
+        try {
+            return export(source, channel, ExportFormat.of(file), isGzip(file), listener);
+        } catch (IOException | RuntimeException e) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException deleteException) {
+                e.addSuppressed(deleteException);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the contacts of a source to a channel.
+     * @param source Passes each contact to export to the given action.
+     * @param channel The channel to write, closed at the end.
+     * @param format The format to write.
+     * @param gzip Whether to compress the output.
+     * @param listener Receives the progress; may be null.
+     * @return The progress at the end of the export.
+     * @throws IOException If the channel cannot be written or the contacts cannot be read.
+     */
+    private ExportProgress export(Consumer<Consumer<Contact>> source, WritableByteChannel channel, ExportFormat format,
+                                  boolean gzip, Consumer<ExportProgress> listener) throws IOException {
+        long startNanos = System.nanoTime();
+        ChannelTextWriter writer;
+        try {
+            WritableByteChannel target = gzip
+                    ? Channels.newChannel(new GZIPOutputStream(Channels.newOutputStream(channel), bufferSize))
+                    : channel;
+            writer = new ChannelTextWriter(target, bufferSize);
+        } catch (IOException | RuntimeException e) {
+            // No writer owns the channel yet to close it
+            try {
+                channel.close();
+            } catch (IOException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw e;
+        }
+        long[] count = {0};
+        try (writer) {
+            StringBuilder record = new StringBuilder(256);
+            if (format == ExportFormat.CSV) writer.write(CSV_HEADER);
+            source.accept(contact -> {
+                record.setLength(0);
+                switch (format) {
+                    case CSV -> appendCsv(record, contact);
+                    case VCARD -> appendVCard(record, contact);
+                    case JSONL -> appendJson(record, contact);
+                }
+                try {
+                    writer.write(record);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                if (++count[0] % PROGRESS_INTERVAL == 0 && listener != null) {
+                    listener.accept(new ExportProgress(count[0], writer.getBytesWritten(), System.nanoTime() - startNanos, false));
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (IllegalStateException e) {
+            throw new IOException("Could not read the contacts", e);
+        }
+        ExportProgress progress = new ExportProgress(count[0], writer.getBytesWritten(), System.nanoTime() - startNanos, true);
+        if (listener != null) listener.accept(progress);
+        return progress;
+    }
+
+    /**
+     * Opens a file for writing, replacing its content.
+     * @param file The file.
+     * @return The channel of the file.
+     * @throws IOException If the file cannot be opened.
+     */
+    private static FileChannel open(Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Checks whether a file should be gzipped.
+     * @param file The file.
+     * @return True if its name ends with ".gz".
+     */
+    private static boolean isGzip(Path file) {
+        return file.getFileName().toString().toLowerCase().endsWith(".gz");
+    }
+
+    /**
+     * Appends a contact as a CSV row. Fields holding a comma, a quote, a line break or surrounding spaces are quoted.
+     * @param record The text to append to.
+     * @param contact The contact.
+     */
+    private static void appendCsv(StringBuilder record, Contact contact) {
+        appendCsvField(record, contact.getFirstName()).append(',');
+        appendCsvField(record, contact.getLastName()).append(',');
+        appendCsvField(record, contact.getEmail()).append(',');
+        appendCsvField(record, contact.getPhone()).append("\r\n");
+    }
+
+    /**
+     * Appends a CSV field, quoting it if needed.
+     * @param record The text to append to.
+     * @param value The value of the field, may be null.
+     * @return The text, for chaining.
+     */
+    private static StringBuilder appendCsvField(StringBuilder record, String value) {
+        if (value == null || value.isEmpty()) return record;
+        boolean quote = value.charAt(0) == ' ' || value.charAt(value.length() - 1) == ' ';
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\r' || c == '\n';
+        }
+        if (!quote) return record.append(value);
+        record.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') record.append('"');
+            record.append(c);
+        }
+        return record.append('"');
+    }
+
+    /**
+     * Appends a contact as a vCard 4.0 card. The email and phone are omitted when empty.
+     * Values are escaped and lines folded in place, without intermediate strings.
+     * @param record The text to append to.
+     * @param contact The contact.
+     */
+    private static void appendVCard(StringBuilder record, Contact contact) {
+        record.append("BEGIN:VCARD\r\nVERSION:4.0\r\n");
+        int line = record.length();
+        appendVCardValue(record.append("FN:"), contact.getFirstName());
+        appendVCardValue(record.append(' '), contact.getLastName());
+        endVCardLine(record, line);
+        line = record.length();
+        appendVCardValue(record.append("N:"), contact.getLastName());
+        appendVCardValue(record.append(';'), contact.getFirstName());
+        endVCardLine(record.append(";;;"), line);
+        if (contact.getEmail() != null && !contact.getEmail().isEmpty()) {
+            line = record.length();
+            appendVCardValue(record.append("EMAIL:"), contact.getEmail());
+            endVCardLine(record, line);
+        }
+        if (contact.getPhone() != null && !contact.getPhone().isEmpty()) {
+            line = record.length();
+            appendVCardValue(record.append("TEL;VALUE=text:"), contact.getPhone());
+            endVCardLine(record, line);
+        }
+        record.append("END:VCARD\r\n");
+    }
+
+    /**
+     * Ends a vCard property, folding it into continuation lines starting with a space when it is too long.
+     * @param record The text holding the property.
+     * @param lineStart The position of the property in the text.
+     */
+    private static void endVCardLine(StringBuilder record, int lineStart) {
+        int limit = lineStart + VCARD_LINE_LENGTH;
+        while (record.length() > limit) {
+            int end = limit;
+            // Surrogate pairs stay on one line
+            if (Character.isHighSurrogate(record.charAt(end - 1))) end--;
+            record.insert(end, "\r\n ");
+            // The leading space of a continuation line counts towards its length
+            limit = end + 2 + VCARD_LINE_LENGTH;
+        }
+        record.append("\r\n");
+    }
+
+    /**
+     * Appends a vCard value, escaping its backslashes, commas, semicolons and line breaks.
+     * @param record The text to append to.
+     * @param value The value, may be null.
+     */
+    private static void appendVCardValue(StringBuilder record, String value) {
+        if (value == null) return;
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\\', ',', ';' -> record.append('\\').append(c);
+                case '\n' -> record.append("\\n");
+                case '\r' -> { }
+                default -> record.append(c);
+            }
+        }
+    }
+
+    /**
+     * Appends a contact as a JSON object on one line.
+     * @param record The text to append to.
+     * @param contact The contact.
+     */
+    private static void appendJson(StringBuilder record, Contact contact) {
+        record.append("{\"id\":").append(contact.getId());
+        appendJsonField(record, "firstName", contact.getFirstName());
+        appendJsonField(record, "lastName", contact.getLastName());
+        appendJsonField(record, "email", contact.getEmail());
+        appendJsonField(record, "phone", contact.getPhone());
+        record.append("}\n");
+    }
+
+    /**
+     * Appends a string member to a JSON object, escaping quotes, backslashes and control characters.
+     * @param record The text to append to.
+     * @param name The name of the member.
+     * @param value The value, written as an empty string when null.
+     */
+    private static void appendJsonField(StringBuilder record, String name, String value) {
+        record.append(",\"").append(name).append("\":\"");
+        if (value != null) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '"' -> record.append("\\\"");
+                    case '\\' -> record.append("\\\\");
+                    case '\n' -> record.append("\\n");
+                    case '\r' -> record.append("\\r");
+                    case '\t' -> record.append("\\t");
+                    default -> {
+                        if (c < 0x20) {
+                            record.append(String.format("\\u%04x", (int) c));
+                        } else {
+                            record.append(c);
+                        }
+                    }
+                }
+            }
+        }
+        record.append('"');
+    }
+}
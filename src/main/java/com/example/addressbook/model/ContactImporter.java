@@ -0,0 +1,409 @@
+package com.example.addressbook.model;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Bulk-imports contacts from CSV and vCard files through a pipeline of three stages:
+ * the calling thread parses the file in batches of records, worker threads validate and normalize the batches,
+ * and a writer thread adds the contacts in large batches, each of which a SQLite DAO writes in one transaction.
+ * The stages are joined by bounded queues, so a slow stage blocks the ones before it and memory stays bounded
+ * however large the file: at most a few batches of records are held at any time.
+ * Contacts may be written in a different order than in the file.
+ */
+public class ContactImporter {
+    /**
+     * The default number of records parsed and validated together.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 1_000;
+    /**
+     * The default number of contacts written in one transaction.
+     */
+    public static final int DEFAULT_WRITE_BATCH_SIZE = 50_000;
+    /**
+     * The default number of contacts written in one transaction through a contact manager. Edits made through the
+     * manager wait for the batch being written, so the batches are kept short enough not to stall the application.
+     */
+    public static final int DEFAULT_MANAGER_WRITE_BATCH_SIZE = 5_000;
+    /**
+     * The default number of batches each queue between two stages can hold.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 4;
+
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("[^@\\s]+@[^@\\s]+\\.[^@\\s]+");
+    private static final Pattern PHONE_PATTERN = Pattern.compile("[+]?[0-9 ()./-]*");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final int MIN_PHONE_DIGITS = 3;
+    private static final long POLL_MILLIS = 100;
+    /**
+     * Marks the end of the stream on the queues, compared by identity.
+     */
+    private static final List<?> END_OF_STREAM = new ArrayList<>();
+
+    private final Consumer<Collection<Contact>> writer;
+    private int batchSize = DEFAULT_BATCH_SIZE;
+    private int writeBatchSize = DEFAULT_WRITE_BATCH_SIZE;
+    private int queueCapacity = DEFAULT_QUEUE_CAPACITY;
+    private int workerCount = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Constructs an importer writing straight to a DAO.
+     * @param contactDAO The contact data access object.
+     */
+    public ContactImporter(IContactDAO contactDAO) {
+        this.writer = contactDAO::addContacts;
+    }
+
+    /**
+     * Constructs an importer writing through a contact manager, so its loaded indexes follow the import.
+     * Contacts are written in batches of {@link #DEFAULT_MANAGER_WRITE_BATCH_SIZE}.
+     * @param contactManager The contact manager.
+     */
+    public ContactImporter(ContactManager contactManager) {
+        this.writer = contactManager::addContacts;
+        this.writeBatchSize = DEFAULT_MANAGER_WRITE_BATCH_SIZE;
+    }
+
+    /**
+     * Sets the number of records parsed and validated together.
+     * @param batchSize The batch size, at least 1.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Sets the number of contacts written in one transaction.
+     * @param writeBatchSize The write batch size, at least 1.
+     */
+    public void setWriteBatchSize(int writeBatchSize) {
+        this.writeBatchSize = writeBatchSize;
+    }
+
+    /**
+     * Sets the number of batches each queue between two stages can hold.
+     * @param queueCapacity The queue capacity, at least 1.
+     */
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Sets the number of threads validating records.
+     * @param workerCount The number of workers, at least 1.
+     */
+    public void setWorkerCount(int workerCount) {
+        this.workerCount = workerCount;
+    }
+
+    /**
+     * Imports a UTF-8 file, in the format given by its extension.
+     * @param file The file to import.
+     * @param listener Receives the progress after every write, on the writer thread; may be null.
+     * @return The progress at the end of the import.
+     * @throws IOException If the file cannot be read.
+     */
+    public ImportProgress importFile(Path file, Consumer<ImportProgress> listener) throws IOException {
+        try (InputStream input = Files.newInputStream(file)) {
+            return importStream(input, Files.size(file), ImportFormat.of(file), listener);
+        }
+    }
+
+    /**
+     * Imports UTF-8 text from a stream, which is left open.
+     * @param input The stream to import.
+     * @param totalBytes The size of the stream, or -1 if unknown.
+     * @param format The format of the stream.
+     * @param listener Receives the progress after every write, on the writer thread; may be null.
+     * @return The progress at the end of the import.
+     * @throws IOException If the stream cannot be read.
+     */
+    public ImportProgress importStream(InputStream input, long totalBytes, ImportFormat format,
+                                       Consumer<ImportProgress> listener) throws IOException {
+        Pipeline pipeline = new Pipeline(new CountingInputStream(input), totalBytes, listener);
+        Reader reader = new InputStreamReader(pipeline.input, StandardCharsets.UTF_8);
+        IContactRecordReader records = format == ImportFormat.VCARD ? new VCardContactReader(reader) : new CsvContactReader(reader);
+        return pipeline.run(records);
+    }
+
+    /**
+     * Validates and normalizes a record: whitespace is trimmed and collapsed, the domain of the email is lowercased.
+     * A record is rejected if it has neither a name nor an email, if its email is not of the form "name@domain.tld",
+     * or if its phone has characters other than digits, spaces and the usual separators, or too few digits.
+     * @param record The first name, last name, email and phone of the record.
+     * @return The contact, or null if the record is rejected.
+     */
+    static Contact normalize(String[] record) {
+        String firstName = collapse(record[IContactRecordReader.FIRST_NAME]);
+        String lastName = collapse(record[IContactRecordReader.LAST_NAME]);
+        String email = record[IContactRecordReader.EMAIL].trim();
+        String phone = collapse(record[IContactRecordReader.PHONE]);
+        if (firstName.isEmpty() && lastName.isEmpty() && email.isEmpty()) return null;
+        if (!email.isEmpty()) {
+            if (!EMAIL_PATTERN.matcher(email).matches()) return null;
+            int at = email.indexOf('@');
+            email = email.substring(0, at + 1) + email.substring(at + 1).toLowerCase();
+        }
+        if (!phone.isEmpty()) {
+            if (!PHONE_PATTERN.matcher(phone).matches()) return null;
+            if (SearchKeys.phoneDigits(phone).length() < MIN_PHONE_DIGITS) return null;
+        }
+        return new Contact(firstName, lastName, email, phone);
+    }
+
+    /**
+     * Trims a field and replaces its runs of whitespace with single spaces.
+     * @param field The raw field.
+     * @return The collapsed field.
+     */
+    private static String collapse(String field) {
+        String trimmed = field.trim();
+        for (int i = 0; i < trimmed.length(); i++) {
+            char c = trimmed.charAt(i);
+            if ((c != ' ' && Character.isWhitespace(c)) || (c == ' ' && trimmed.charAt(i + 1) == ' ')) {
+                return WHITESPACE.matcher(trimmed).replaceAll(" ");
+            }
+        }
+        return trimmed;
+    }
+
+    /**
+     * The state of one import: its queues, counters and threads.
+     */
+    private final class Pipeline {
+        private final CountingInputStream input;
+        private final long totalBytes;
+        private final Consumer<ImportProgress> listener;
+        private final BlockingQueue<List<String[]>> records = new ArrayBlockingQueue<>(queueCapacity);
+        private final BlockingQueue<List<Contact>> contacts = new ArrayBlockingQueue<>(queueCapacity);
+        private final AtomicLong rowsRead = new AtomicLong();
+        private final AtomicLong rowsRejected = new AtomicLong();
+        private final AtomicLong contactsImported = new AtomicLong();
+        /**
+         * The first error of a worker or the writer, which stops the other stages.
+         */
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        private final long startNanos = System.nanoTime();
+
+        private Pipeline(CountingInputStream input, long totalBytes, Consumer<ImportProgress> listener) {
+            this.input = input;
+            this.totalBytes = totalBytes;
+            this.listener = listener;
+        }
+
+        /**
+         * Parses the records on the calling thread while the workers and the writer run, then waits for them.
+         * @param reader The records to import.
+         * @return The progress at the end of the import.
+         * @throws IOException If the records cannot be read.
+         */
+        @SuppressWarnings("unchecked")
+        private ImportProgress run(IContactRecordReader reader) throws IOException {
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < workerCount; i++) {
+                threads.add(start("contact-import-validate-" + i, this::validate));
+            }
+            Thread writerThread = start("contact-import-write", this::write);
+            threads.add(writerThread);
+            try {
+                List<String[]> batch = new ArrayList<>(batchSize);
+                String[] record;
+                while ((record = reader.next()) != null) {
+                    batch.add(record);
+                    rowsRead.incrementAndGet();
+                    if (batch.size() == batchSize) {
+                        put(records, batch);
+                        batch = new ArrayList<>(batchSize);
+                    }
+                }
+                if (!batch.isEmpty()) put(records, batch);
+                for (int i = 0; i < workerCount; i++) {
+                    put(records, (List<String[]>) END_OF_STREAM);
+                }
+                for (Thread thread : threads) {
+                    thread.join();
+                }
+            } catch (InterruptedException e) {
+                // Interrupted by the caller, rather than woken up by the failure of a stage
+                if (failure.get() == null) Thread.currentThread().interrupt();
+            } finally {
+                // Stops the stages still running after an error or an interruption
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+            }
+            Throwable error = failure.get();
+            if (error instanceof RuntimeException e) throw e;
+            if (error instanceof Error e) throw e;
+            return progress(!Thread.currentThread().isInterrupted());
+        }
+
+        /**
+         * Runs the validation stage until the end of the stream.
+         * @throws InterruptedException If the import is stopped.
+         */
+        @SuppressWarnings("unchecked")
+        private void validate() throws InterruptedException {
+            while (true) {
+                List<String[]> batch = take(records);
+                if (batch == END_OF_STREAM) {
+                    put(contacts, (List<Contact>) END_OF_STREAM);
+                    return;
+                }
+                List<Contact> valid = new ArrayList<>(batch.size());
+                for (String[] record : batch) {
+                    Contact contact = normalize(record);
+                    if (contact != null) valid.add(contact);
+                }
+                rowsRejected.addAndGet(batch.size() - valid.size());
+                put(contacts, valid);
+            }
+        }
+
+        /**
+         * Runs the writing stage until every worker reached the end of the stream.
+         * @throws InterruptedException If the import is stopped.
+         */
+        private void write() throws InterruptedException {
+            List<Contact> pending = new ArrayList<>();
+            int finishedWorkers = 0;
+            while (finishedWorkers < workerCount) {
+                List<Contact> batch = take(contacts);
+                if (batch == END_OF_STREAM) {
+                    finishedWorkers++;
+                    continue;
+                }
+                pending.addAll(batch);
+                if (pending.size() >= writeBatchSize) {
+                    flush(pending, false);
+                    pending = new ArrayList<>();
+                }
+            }
+            flush(pending, true);
+        }
+
+        /**
+         * Writes a batch of contacts and reports the progress. Only the contacts given an id by the write are counted.
+         * @param batch The contacts to write.
+         * @param last Whether this is the last batch of the import.
+         */
+        private void flush(List<Contact> batch, boolean last) {
+            if (!batch.isEmpty()) {
+                contactsImported.addAndGet(IContactDAO.addWritten(batch, writer).size());
+            }
+            if (listener != null) listener.accept(progress(last));
+        }
+
+        /**
+         * Starts a stage on a daemon thread, recording its error if it fails.
+         * @param name The name of the thread.
+         * @param stage The stage to run.
+         * @return The started thread.
+         */
+        private Thread start(String name, Stage stage) {
+            Thread thread = new Thread(() -> {
+                try {
+                    stage.run();
+                } catch (InterruptedException e) {
+                    // The import was stopped
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                }
+            }, name);
+            thread.setDaemon(true);
+            thread.start();
+            return thread;
+        }
+
+        /**
+         * Puts a batch on a queue, waiting while it is full unless another stage failed.
+         * @param queue The queue.
+         * @param batch The batch.
+         * @throws InterruptedException If the import is stopped or another stage failed.
+         */
+        private <T> void put(BlockingQueue<T> queue, T batch) throws InterruptedException {
+            while (!queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure.get() != null) throw new InterruptedException("Import failed");
+            }
+        }
+
+        /**
+         * Takes a batch from a queue, waiting while it is empty unless another stage failed.
+         * @param queue The queue.
+         * @return The batch.
+         * @throws InterruptedException If the import is stopped or another stage failed.
+         */
+        private <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            T batch;
+            while ((batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS)) == null) {
+                if (failure.get() != null) throw new InterruptedException("Import failed");
+            }
+            return batch;
+        }
+
+        /**
+         * Takes a snapshot of the counters.
+         * @param done Whether the import is over.
+         * @return The progress.
+         */
+        private ImportProgress progress(boolean done) {
+            return new ImportProgress(rowsRead.get(), contactsImported.get(), rowsRejected.get(), input.count,
+                    totalBytes, System.nanoTime() - startNanos, done);
+        }
+    }
+
+    /**
+     * A stage of the pipeline, run on its own thread.
+     */
+    private interface Stage {
+        void run() throws InterruptedException;
+    }
+
+    /**
+     * Counts the bytes read from a stream, for the progress.
+     */
+    private static final class CountingInputStream extends FilterInputStream {
+        private volatile long count = 0;
+
+        private CountingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) count += read;
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.addressbook.model;
+
+/**
+ * The position of a contact in the list of all contacts sorted by last name, first name and id.
+ * Used as the cursor of keyset pagination: a page starts right after the key of the previous page's last contact.
+ */
+public final class ContactKey implements Comparable<ContactKey> {
+    private final String lastName;
+    private final String firstName;
+    private final int id;
+
+    /**
+     * Constructs a key from the sort fields of a contact.
+     * @param lastName The last name of the contact.
+     * @param firstName The first name of the contact.
+     * @param id The id of the contact.
+     */
+    public ContactKey(String lastName, String firstName, int id) {
+        this.lastName = lastName == null ? "" : lastName;
+        this.firstName = firstName == null ? "" : firstName;
+        this.id = id;
+    }
+
+    /**
+     * Builds the key of a contact from its current fields.
+     * @param contact The contact to build the key for.
+     * @return The key of the contact.
+     */
+    public static ContactKey of(Contact contact) {
+        return new ContactKey(contact.getLastName(), contact.getFirstName(), contact.getId());
+    }
+
+    /**
+     * Retrieves the last name of the key.
+     * @return The last name.
+     */
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * Retrieves the first name of the key.
+     * @return The first name.
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    /**
+     * Retrieves the id of the key.
+     * @return The id.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Compares two keys by last name, then first name, then id.
+     * Names are compared by code point, which is the order of their UTF-8 bytes used by SQLite's binary collation.
+     * @param other The key to compare with.
+     * @return A negative, zero or positive number as this key sorts before, with or after the other key.
+     */
+    @Override
+    public int compareTo(ContactKey other) {
+        int result = compareCodePoints(lastName, other.lastName);
+        if (result != 0) return result;
+        result = compareCodePoints(firstName, other.firstName);
+        if (result != 0) return result;
+        return Integer.compare(id, other.id);
+    }
+
+    /**
+     * Compares two strings by code point. The UTF-16 order of {@link String#compareTo(String)} differs only where
+     * a surrogate, which is part of a code point above U+FFFF, meets a character from U+E000 to U+FFFF:
+     * the surrogates are moved above those characters before comparing.
+     * @param a The first string.
+     * @param b The second string.
+     * @return A negative, zero or positive number as the first string sorts before, with or after the second.
+     */
+    static int compareCodePoints(String a, String b) {
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char c1 = a.charAt(i);
+            char c2 = b.charAt(i);
+            if (c1 != c2) {
+                if (c1 >= Character.MIN_SURROGATE && c2 >= Character.MIN_SURROGATE) {
+                    return codePointOrder(c1) - codePointOrder(c2);
+                }
+                return c1 - c2;
+            }
+        }
+        return a.length() - b.length();
+    }
+
+    /**
+     * Maps a character from U+D800 on to its rank in code point order: surrogates after U+E000 to U+FFFF.
+     * @param c The character, at least U+D800.
+     * @return The rank of the character.
+     */
+    private static int codePointOrder(char c) {
+        return c >= 0xE000 ? c - 0x800 : c + 0x2000;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ContactKey && compareTo((ContactKey) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (lastName.hashCode() * 31 + firstName.hashCode()) * 31 + id;
+    }
+}
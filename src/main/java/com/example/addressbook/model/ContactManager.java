@@ -1,46 +1,469 @@
 package com.example.addressbook.model;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 
 /**
  * Manages contacts by interacting with a data access object (DAO).
+ * Searches may run on a background thread while the UI thread pages through the contacts and makes changes,
+ * so the three never wait for each other: the indexes are guarded by a lock of their own, held by searches and
+ * index builds; writes go to the DAO under a separate lock and only queue their changes for the indexes, which
+ * the next search applies; and reads that page through the contacts go straight to the DAO, which must be safe
+ * to use from several threads.
  */
 public class ContactManager {
+    /**
+     * The default file the trigram index is saved to by {@link #saveSearchIndex(Path, SqliteContactDAO)}.
+     */
+    public static final String DEFAULT_SEARCH_INDEX_FILE = "contacts.index";
+    /**
+     * The default number of contacts from which searches without the trigram index are answered
+     * by an in-memory scan split across threads.
+     */
+    public static final int DEFAULT_PARALLEL_SEARCH_THRESHOLD = 100_000;
+    /**
+     * The number of queued changes beyond which the indexes are dropped and rebuilt on their next use
+     * rather than patched, so a large import nobody searches during does not pile up in memory.
+     */
+    private static final int MAX_PENDING_CHANGES = 100_000;
+
     private IContactDAO contactDAO;
+    private ContactSearchIndex searchIndex;
+    private final PrefixSearchEngine prefixEngine = new PrefixSearchEngine();
+    private final FuzzySearchIndex fuzzyIndex = new FuzzySearchIndex();
+    private final PhoneticIndex phoneticIndex = new PhoneticIndex();
+    private final ContactScanner scanner = new ContactScanner(DEFAULT_PARALLEL_SEARCH_THRESHOLD);
+    private int parallelSearchThreshold = DEFAULT_PARALLEL_SEARCH_THRESHOLD;
+    /**
+     * The modification count when the number of contacts was last compared with the parallel search threshold.
+     */
+    private int thresholdCheckedAt = -1;
+    /**
+     * Guards the indexes and the fields about them.
+     */
+    private final ReentrantLock indexLock = new ReentrantLock();
+    /**
+     * Serializes the writes, so their changes are queued in the order the DAO received them.
+     */
+    private final ReentrantLock writeLock = new ReentrantLock();
+    /**
+     * The indexes that have been built and must be kept up to date on every change.
+     */
+    private final List<IContactIndex> loadedIndexes = new ArrayList<>();
+    /**
+     * The changes written to the DAO and not yet applied to the indexes, guarded by itself.
+     */
+    private final List<PendingChange> pendingChanges = new ArrayList<>();
+    /**
+     * Whether too many changes were queued and the indexes must be rebuilt, guarded by {@link #pendingChanges}.
+     */
+    private boolean indexesOutdated = false;
+    /**
+     * Incremented on every change made through this manager, so search sessions can tell
+     * whether their previous results are still valid.
+     */
+    private final AtomicInteger modificationCount = new AtomicInteger();
+    /**
+     * The change sequence of the database the trigram index was last brought up to date with,
+     * or -1 if it was not loaded by {@link #loadSearchIndex(Path, SqliteContactDAO)}.
+     */
+    private long searchIndexSequence = -1;
+
+    /**
+     * A change written to the DAO and waiting to be applied to the indexes.
+     */
+    private static final class PendingChange {
+        private final int id;
+        /**
+         * The contact after the change, or null if it was deleted.
+         */
+        private final Contact contact;
+
+        /**
+         * Constructs a pending change.
+         * @param id The id of the contact.
+         * @param contact The contact after the change, or null if it was deleted.
+         */
+        private PendingChange(int id, Contact contact) {
+            this.id = id;
+            this.contact = contact;
+        }
+    }
 
     /**
      * Constructs a ContactManager with the specified contact data access object.
      * @param contactDAO The contact data access object.
      */
     public ContactManager(IContactDAO contactDAO) {
+        this(contactDAO, false);
+    }
+
+    /**
+     * Constructs a ContactManager with the specified contact data access object,
+     * optionally keeping an in-memory trigram index to answer searches.
+     * The index is loaded from the DAO on the first search and kept up to date by
+     * the add, update and delete methods of this manager.
+     * @param contactDAO The contact data access object.
+     * @param useSearchIndex Whether searches should be answered by the in-memory index.
+     */
+    public ContactManager(IContactDAO contactDAO, boolean useSearchIndex) {
         this.contactDAO = contactDAO;
+        if (useSearchIndex) {
+            searchIndex = new ContactSearchIndex();
+        }
     }
 
     /**
      * Searches for contacts based on a query string.
+     * Without the trigram index, address books with at least as many contacts as the parallel search
+     * threshold are searched by an in-memory scan split across threads.
      * @param query The search query string.
      * @return A list of contacts matching the search query.
      */
     public List<Contact> searchContacts(String query) {
-        return contactDAO.getAllContacts()
-                .stream()
-                .filter(contact -> isContactMatched(contact, query))
-                .toList();
+        indexLock.lock();
+        try {
+            if (searchIndex != null) {
+                return load(searchIndex).search(query);
+            }
+            if (useScanner()) {
+                return load(scanner).search(query);
+            }
+        } finally {
+            indexLock.unlock();
+        }
+        return contactDAO.searchContacts(query);
+    }
+
+    /**
+     * Loads the trigram index from a file saved by {@link #saveSearchIndex(Path, SqliteContactDAO)} and replays
+     * the changes the database logged since the file was saved, so the index is searchable without reading
+     * and indexing every contact. A missing, unreadable or out-of-date file is replaced by a full build.
+     * Searches are answered by the trigram index from then on.
+     * @param file The file the index was saved to.
+     * @param database The database the contacts of this manager are stored in.
+     */
+    public void loadSearchIndex(Path file, SqliteContactDAO database) {
+        indexLock.lock();
+        try {
+            loadSearchIndexLocked(file, database);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Loads the trigram index, holding the index lock.
+     * @param file The file the index was saved to.
+     * @param database The database the contacts of this manager are stored in.
+     */
+    private void loadSearchIndexLocked(Path file, SqliteContactDAO database) {
+        applyPendingChanges();
+        if (searchIndex == null) {
+            searchIndex = new ContactSearchIndex();
+        }
+        loadedIndexes.remove(searchIndex);
+        searchIndexSequence = -1;
+        if (Files.exists(file)) {
+            try {
+                long checkpoint = searchIndex.load(file);
+                long sequence = replayChanges(database, checkpoint);
+                // A database behind the checkpoint was replaced since the index was saved
+                if (sequence >= checkpoint) searchIndexSequence = sequence;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (searchIndexSequence < 0) {
+            searchIndexSequence = database.getChangeSequence();
+            searchIndex.build(contactDAO.getAllContacts());
+        }
+        loadedIndexes.add(searchIndex);
+        modificationCount.incrementAndGet();
+    }
+
+    /**
+     * Saves the trigram index to a file, with the change sequence of the database as its checkpoint, so the next
+     * {@link #loadSearchIndex(Path, SqliteContactDAO)} only has to replay the changes made after it.
+     * If the index was loaded by {@link #loadSearchIndex(Path, SqliteContactDAO)}, the changes logged since are replayed
+     * first, which also picks up the writes that did not go through this manager; an index loaded by a search is assumed
+     * to have seen every write. Does nothing if the index has not been loaded.
+     * @param file The file to save the index to.
+     * @param database The database the contacts of this manager are stored in.
+     * @throws IOException If the file cannot be written or the changes cannot be read.
+     */
+    public void saveSearchIndex(Path file, SqliteContactDAO database) throws IOException {
+        indexLock.lock();
+        try {
+            applyPendingChanges();
+            if (searchIndex == null || !loadedIndexes.contains(searchIndex)) return;
+            if (searchIndexSequence < 0) {
+                searchIndexSequence = database.getChangeSequence();
+            } else {
+                long sequence = replayChanges(database, searchIndexSequence);
+                if (sequence < 0) throw new IOException("Could not read the changes of the contacts");
+                searchIndexSequence = sequence;
+            }
+            searchIndex.save(file, searchIndexSequence);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Applies the changes the database logged after a sequence to the trigram index, in a single batch.
+     * @param database The database to read the changes from.
+     * @param afterSequence The sequence the index is up to date with.
+     * @return The sequence the index is now up to date with, or -1 if the changes could not be read.
+     */
+    private long replayChanges(SqliteContactDAO database, long afterSequence) {
+        List<Contact> changed = new ArrayList<>();
+        IntList deleted = new IntList();
+        long sequence = database.forEachChange(afterSequence, changed::add, deleted::add);
+        if (sequence >= 0) searchIndex.apply(changed, deleted);
+        return sequence;
+    }
+
+    /**
+     * Sets the number of contacts from which searches without the trigram index are answered
+     * by an in-memory scan split across threads.
+     * @param threshold The number of contacts, {@link Integer#MAX_VALUE} to always search through the DAO.
+     */
+    public void setParallelSearchThreshold(int threshold) {
+        indexLock.lock();
+        try {
+            parallelSearchThreshold = threshold;
+            scanner.setParallelThreshold(threshold);
+            thresholdCheckedAt = -1;
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Checks whether searches should go through the in-memory scanner.
+     * Once loaded the scanner is kept; until then the contacts are counted again only after changes.
+     * Called with the index lock held.
+     * @return True if the scanner is loaded or the address book has grown past the threshold.
+     */
+    private boolean useScanner() {
+        if (loadedIndexes.contains(scanner)) return true;
+        int count = modificationCount.get();
+        if (thresholdCheckedAt == count) return false;
+        thresholdCheckedAt = count;
+        return contactDAO.getContactCount() >= parallelSearchThreshold;
+    }
+
+    /**
+     * Searches for contacts whose first name, last name, full name, email local-part or
+     * phone digits start with the query, in ranked order.
+     * @param query The prefix to search for.
+     * @return A list of contacts matching the prefix, best matches first.
+     */
+    public List<Contact> searchContactsByPrefix(String query) {
+        return searchContactsByPrefix(query, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Searches for at most {@code limit} contacts whose first name, last name, full name,
+     * email local-part or phone digits start with the query, in ranked order.
+     * @param query The prefix to search for.
+     * @param limit The maximum number of contacts to return.
+     * @return A list of contacts matching the prefix, best matches first.
+     */
+    public List<Contact> searchContactsByPrefix(String query, int limit) {
+        indexLock.lock();
+        try {
+            return load(prefixEngine).search(query, limit);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Searches for contacts whose first name, last name or email is within a few typos of every word of the query,
+     * so "Jon Smyth" finds "John Smith". Words of up to 2 characters must match exactly, words of up to 5
+     * characters may have one typo and longer words two.
+     * @param query The search query string.
+     * @return A list of matching contacts, closest matches first.
+     */
+    public List<Contact> searchContactsFuzzy(String query) {
+        return searchContactsFuzzy(query, -1);
+    }
+
+    /**
+     * Searches for contacts whose first name, last name or email is within the given edit distance of every word of the query.
+     * @param query The search query string.
+     * @param maxDistance The largest number of inserted, deleted or substituted characters tolerated per word,
+     *                    or a negative number to pick it from the length of each word.
+     * @return A list of matching contacts, closest matches first.
+     */
+    public List<Contact> searchContactsFuzzy(String query, int maxDistance) {
+        indexLock.lock();
+        try {
+            return load(fuzzyIndex).search(query, maxDistance);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Searches for contacts whose first or last name sounds like each word of the query, by Soundex code,
+     * so "Jon Smyth" finds "John Smith".
+     * @param query The search query string.
+     * @return A list of matching contacts ordered by id.
+     */
+    public List<Contact> searchContactsPhonetic(String query) {
+        indexLock.lock();
+        try {
+            return load(phoneticIndex).search(query);
+        } finally {
+            indexLock.unlock();
+        }
+    }
+
+    /**
+     * Creates a search session that narrows its previous results when a query extends the last one.
+     * @return A new search session over the contacts of this manager.
+     */
+    public ContactSearchSession newSearchSession() {
+        return new ContactSearchSession(this);
+    }
+
+    /**
+     * Retrieves the number of changes made through this manager.
+     * @return The modification count.
+     */
+    int getModificationCount() {
+        return modificationCount.get();
+    }
+
+    /**
+     * Fills an index from the DAO if it has not been loaded yet, then brings the loaded indexes up to date
+     * with the queued changes. Called with the index lock held.
+     * @param index The index to load.
+     * @return The loaded index.
+     */
+    private <T extends IContactIndex> T load(T index) {
+        applyPendingChanges();
+        if (!loadedIndexes.contains(index)) {
+            index.build(contactDAO.getAllContacts());
+            loadedIndexes.add(index);
+            // The changes queued while the contacts were read may or may not be in them: applying them again is harmless
+            applyPendingChanges();
+        }
+        return index;
+    }
+
+    /**
+     * Applies the queued changes to the loaded indexes, only the last change of each contact, the trigram index
+     * in a single batch. If too many changes were queued, the indexes are dropped instead, to be rebuilt on their
+     * next use. Called with the index lock held; waits for the write in progress, if any.
+     */
+    private void applyPendingChanges() {
+        // A write in progress may have published its changes already: wait for them to be queued
+        writeLock.lock();
+        writeLock.unlock();
+        Map<Integer, Contact> changes = new LinkedHashMap<>();
+        boolean outdated;
+        synchronized (pendingChanges) {
+            outdated = indexesOutdated;
+            indexesOutdated = false;
+            for (PendingChange change : pendingChanges) {
+                changes.put(change.id, change.contact);
+            }
+            pendingChanges.clear();
+        }
+        if (outdated) {
+            loadedIndexes.clear();
+            searchIndexSequence = -1;
+            return;
+        }
+        if (changes.isEmpty() || loadedIndexes.isEmpty()) return;
+        List<Contact> changed = new ArrayList<>();
+        IntList deleted = new IntList();
+        for (Map.Entry<Integer, Contact> change : changes.entrySet()) {
+            if (change.getValue() == null) {
+                deleted.add(change.getKey());
+            } else {
+                changed.add(change.getValue());
+            }
+        }
+        for (IContactIndex index : loadedIndexes) {
+            if (index == searchIndex) {
+                searchIndex.apply(changed, deleted);
+                continue;
+            }
+            for (int i = 0; i < deleted.size(); i++) {
+                index.remove(deleted.get(i));
+            }
+            for (Contact contact : changed) {
+                index.update(contact);
+            }
+        }
+    }
+
+    /**
+     * Queues changes written to the DAO for the indexes. Called with the write lock held, after the write.
+     * @param contacts The contacts added or updated, or deleted if {@code deleted} is true; for additions, only the ones written.
+     * @param deleted Whether the contacts were deleted.
+     */
+    private void queueChanges(Collection<Contact> contacts, boolean deleted) {
+        List<PendingChange> pending = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            pending.add(new PendingChange(contact.getId(), deleted ? null : contact));
+        }
+        queue(pending);
+    }
+
+    /**
+     * Queues updates written to the DAO for the indexes. The caller edited the contacts before the write, so if it
+     * failed the indexes are given the states the DAO still holds instead. Called with the write lock held, after the write.
+     * @param contacts The contacts updated.
+     * @param committed Whether the write was committed.
+     */
+    private void queueUpdates(Collection<Contact> contacts, boolean committed) {
+        if (committed) {
+            queueChanges(contacts, false);
+            return;
+        }
+        List<Integer> ids = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        Map<Integer, Contact> stored = contactDAO.getContactsById(ids);
+        List<PendingChange> pending = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            pending.add(new PendingChange(id, stored.get(id)));
+        }
+        queue(pending);
     }
 
     /**
-     * Checks if a contact matches a search query.
-     * @param contact The contact to check.
-     * @param query The search query.
-     * @return True if the contact matches the query, false otherwise.
+     * Queues changes for the indexes, or marks the indexes as outdated if too many are queued.
+     * Called with the write lock held, after the write.
+     * @param changes The changes.
      */
-    private boolean isContactMatched(Contact contact, String query) {
-        if (query == null || query.isEmpty()) return true;
-        query = query.toLowerCase();
-        String searchString = contact.getFullName()
-                + " " + contact.getEmail()
-                + " " + contact.getPhone();
-        return searchString.toLowerCase().contains(query);
+    private void queue(List<PendingChange> changes) {
+        synchronized (pendingChanges) {
+            if (!indexesOutdated) {
+                pendingChanges.addAll(changes);
+                if (pendingChanges.size() > MAX_PENDING_CHANGES) {
+                    pendingChanges.clear();
+                    indexesOutdated = true;
+                }
+            }
+        }
+        modificationCount.incrementAndGet();
     }
 
     /**
@@ -48,7 +471,12 @@ public class ContactManager {
      * @param contact The contact to add.
      */
     public void addContact(Contact contact) {
-        contactDAO.addContact(contact);
+        writeLock.lock();
+        try {
+            queueChanges(IContactDAO.addWritten(List.of(contact), added -> contactDAO.addContact(contact)), false);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -56,7 +484,12 @@ public class ContactManager {
      * @param contact The contact to delete.
      */
     public void deleteContact(Contact contact) {
-        contactDAO.deleteContact(contact);
+        writeLock.lock();
+        try {
+            if (contactDAO.tryDeleteContacts(List.of(contact))) queueChanges(List.of(contact), true);
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     /**
@@ -64,7 +497,132 @@ public class ContactManager {
      * @param contact The contact to update.
      */
     public void updateContact(Contact contact) {
-        contactDAO.updateContact(contact);
+        writeLock.lock();
+        try {
+            queueUpdates(List.of(contact), contactDAO.tryUpdateContacts(List.of(contact)));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds several new contacts in a single batch.
+     * @param contacts The contacts to add.
+     */
+    public void addContacts(Collection<Contact> contacts) {
+        writeLock.lock();
+        try {
+            queueChanges(IContactDAO.addWritten(contacts, contactDAO::addContacts), false);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Deletes several existing contacts in a single batch.
+     * @param contacts The contacts to delete.
+     */
+    public void deleteContacts(Collection<Contact> contacts) {
+        writeLock.lock();
+        try {
+            if (contactDAO.tryDeleteContacts(contacts)) queueChanges(contacts, true);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Updates several existing contacts in a single batch.
+     * @param contacts The contacts to update.
+     */
+    public void updateContacts(Collection<Contact> contacts) {
+        writeLock.lock();
+        try {
+            queueUpdates(contacts, contactDAO.tryUpdateContacts(contacts));
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies changes written to the database by another process, such as the ones found by an
+     * {@link ExternalChangeWatcher}: the DAO patches what it keeps in memory and the loaded indexes are brought up to date,
+     * the trigram index in a single batch.
+     * @param changes The changes read from the change log of the database.
+     * @return The changes with the previous states the DAO knew filled in.
+     */
+    public List<ContactChange> applyExternalChanges(List<ContactChange> changes) {
+        writeLock.lock();
+        try {
+            List<ContactChange> resolved = contactDAO.applyExternalChanges(changes);
+            List<PendingChange> pending = new ArrayList<>(resolved.size());
+            for (ContactChange change : resolved) {
+                // The indexes hand out the contacts they hold, which must not be the ones delivered to listeners
+                pending.add(new PendingChange(change.getId(), ContactChange.copy(change.getAfter())));
+            }
+            queue(pending);
+            return resolved;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Merges clusters of duplicates found by a {@link ContactDeduplicator} in two batches, keeping the indexes up to date:
+     * the survivors, with their blank fields filled from their duplicates, are updated, then the duplicates are deleted.
+     * @param clusters The clusters to merge.
+     */
+    public void mergeDuplicates(Collection<DuplicateCluster> clusters) {
+        writeLock.lock();
+        try {
+            ContactDeduplicator.merge(clusters, this::updateContacts, this::deleteContacts);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Retrieves one page of contacts sorted by last name, first name and id, from the DAO without waiting for searches or writes.
+     * @param after The key of the last contact of the previous page, or null for the first page.
+     * @param limit The maximum number of contacts to return.
+     * @return The contacts of the page.
+     */
+    public List<Contact> getContactsPage(ContactKey after, int limit) {
+        return contactDAO.getContacts(after, limit);
+    }
+
+    /**
+     * Retrieves the number of contacts.
+     * @return The number of contacts.
+     */
+    public int getContactCount() {
+        return contactDAO.getContactCount();
+    }
+
+    /**
+     * Retrieves the key of the contact at a position of the list of contacts sorted by last name, first name and id.
+     * @param position The position, from 0.
+     * @return The key of the contact at the position, or null if there are not that many contacts.
+     */
+    public ContactKey getContactKeyAt(int position) {
+        return contactDAO.getContactKeyAt(position);
+    }
+
+    /**
+     * Retrieves the position of a contact in the list of contacts sorted by last name, first name and id.
+     * @param contact The contact to locate.
+     * @return The number of contacts sorting before the contact.
+     */
+    public int getContactPosition(Contact contact) {
+        return contactDAO.countContactsBefore(ContactKey.of(contact));
+    }
+
+    /**
+     * Passes every contact to the given action without loading them all in memory.
+     * @param action The action to run for each contact.
+     */
+    public void forEachContact(Consumer<? super Contact> action) {
+        contactDAO.forEachContact(action);
     }
 
     /**
@@ -0,0 +1,72 @@
+package com.example.addressbook.model;
+
+/**
+ * A search query normalized once, to be matched against the cached search keys of many contacts.
+ * A contact matches if its search key contains the folded query or, for phone-like queries,
+ * if its phone digits contain the digits of the query.
+ */
+final class ContactQuery {
+    private final String text;
+    private final String digits;
+
+    private ContactQuery(String text, String digits) {
+        this.text = text;
+        this.digits = digits;
+    }
+
+    /**
+     * Normalizes a query.
+     * @param query The raw query, may be null.
+     * @return The normalized query.
+     */
+    static ContactQuery of(String query) {
+        if (query == null || query.isEmpty()) return new ContactQuery("", null);
+        String digits = SearchKeys.isPhoneLike(query) ? SearchKeys.phoneDigits(query) : null;
+        return new ContactQuery(SearchKeys.fold(query), digits);
+    }
+
+    /**
+     * Retrieves the lowercased, accent-folded query.
+     * @return The folded query, empty if the query matches every contact.
+     */
+    String getText() {
+        return text;
+    }
+
+    /**
+     * Retrieves the digits of a phone-like query.
+     * @return The normalized digits, or null if the query does not look like a phone number.
+     */
+    String getDigits() {
+        return digits;
+    }
+
+    /**
+     * Checks whether the query matches every contact.
+     * @return True if the query is empty.
+     */
+    boolean isEmpty() {
+        return text.isEmpty();
+    }
+
+    /**
+     * Checks whether a contact matches the query.
+     * @param contact The contact to check.
+     * @return True if the contact matches.
+     */
+    boolean matches(Contact contact) {
+        return matches(contact.getSearchKey(), contact.getPhoneKey());
+    }
+
+    /**
+     * Checks whether previously captured search keys match the query.
+     * @param searchKey The search key of a contact.
+     * @param phoneKey The phone digits of a contact.
+     * @return True if the keys match.
+     */
+    boolean matches(String searchKey, String phoneKey) {
+        return text.isEmpty()
+                || searchKey.contains(text)
+                || (digits != null && !digits.isEmpty() && phoneKey.contains(digits));
+    }
+}
@@ -0,0 +1,272 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Substring search by linear scan, for address books searched without the trigram index.
+ * The search keys and phone digits of all contacts are laid end to end in a single char arena, so matching
+ * a contact only compares chars and allocates nothing. Once there are at least as many contacts as the
+ * parallel threshold, the slots are split across the common fork-join pool; the partial results are
+ * concatenated in slot order, so the results come in the same order as a sequential scan.
+ * An updated contact keeps its slot and only its text moves to the end of the arena, which is compacted
+ * once most of it is dead. Writes must not run concurrently with searches.
+ */
+class ContactScanner implements IContactIndex {
+    /**
+     * Ranges of slots smaller than this are scanned by a single task.
+     */
+    private static final int MIN_SPLIT_SIZE = 8_192;
+
+    /**
+     * The scanned contacts by slot, in the order they were added. Slots of deleted contacts are set to null.
+     */
+    private Contact[] contacts = new Contact[16];
+    private int[] offsets = new int[16];
+    private int[] lengths = new int[16];
+    /**
+     * The length of the search key at the start of each slice; the phone digits make up the rest of it.
+     */
+    private int[] keyLengths = new int[16];
+    private int slotCount = 0;
+    private final Map<Integer, Integer> slotsById = new HashMap<>();
+
+    private char[] arena = new char[256];
+    private int arenaSize = 0;
+    private int deadChars = 0;
+    private int parallelThreshold;
+
+    /**
+     * Constructs an empty scanner.
+     * @param parallelThreshold The number of contacts from which searches are split across threads.
+     */
+    ContactScanner(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Sets the number of contacts from which searches are split across threads.
+     * @param parallelThreshold The threshold.
+     */
+    void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Replaces the content of the scanner with the given contacts.
+     * @param contacts The contacts to scan.
+     */
+    @Override
+    public void build(List<Contact> contacts) {
+        int capacity = Math.max(16, contacts.size());
+        this.contacts = new Contact[capacity];
+        offsets = new int[capacity];
+        lengths = new int[capacity];
+        keyLengths = new int[capacity];
+        slotCount = 0;
+        slotsById.clear();
+        arenaSize = 0;
+        deadChars = 0;
+        for (Contact contact : contacts) {
+            add(contact);
+        }
+    }
+
+    /**
+     * Adds a contact to the end of the scanner, or updates it if it is already there.
+     * @param contact The contact to add.
+     */
+    @Override
+    public void add(Contact contact) {
+        Integer slot = slotsById.get(contact.getId());
+        if (slot != null) {
+            deadChars += lengths[slot];
+        } else {
+            if (slotCount == contacts.length) {
+                contacts = Arrays.copyOf(contacts, slotCount * 2);
+                offsets = Arrays.copyOf(offsets, slotCount * 2);
+                lengths = Arrays.copyOf(lengths, slotCount * 2);
+                keyLengths = Arrays.copyOf(keyLengths, slotCount * 2);
+            }
+            slot = slotCount++;
+            slotsById.put(contact.getId(), slot);
+        }
+        contacts[slot] = contact;
+        offsets[slot] = arenaSize;
+        keyLengths[slot] = append(contact.getSearchKey());
+        lengths[slot] = keyLengths[slot] + append(contact.getPhoneKey());
+        compactIfNeeded();
+    }
+
+    /**
+     * Re-reads the search string of a contact whose fields may have changed, keeping its position.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void update(Contact contact) {
+        add(contact);
+    }
+
+    /**
+     * Removes a contact from the scanner.
+     * @param id The id of the contact to remove.
+     */
+    @Override
+    public void remove(int id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) return;
+        contacts[slot] = null;
+        deadChars += lengths[slot];
+        compactIfNeeded();
+    }
+
+    /**
+     * Finds the contacts matching the query, ignoring case and accents.
+     * Phone-like queries also match the phone digits of contacts.
+     * @param query The search query, or null / empty to match every contact.
+     * @return The matching contacts in the order they were added.
+     */
+    List<Contact> search(String query) {
+        ContactQuery contactQuery = ContactQuery.of(query);
+        char[] pattern = contactQuery.getText().toCharArray();
+        String digits = contactQuery.getDigits();
+        char[] digitPattern = digits == null || digits.isEmpty() ? null : digits.toCharArray();
+        if (slotsById.size() < parallelThreshold || slotCount <= MIN_SPLIT_SIZE) {
+            List<Contact> results = new ArrayList<>();
+            scan(0, slotCount, pattern, digitPattern, results);
+            return results;
+        }
+        return ForkJoinPool.commonPool().invoke(new ScanTask(0, slotCount, pattern, digitPattern));
+    }
+
+    /**
+     * Retrieves the number of contacts in the scanner.
+     * @return The number of contacts.
+     */
+    int size() {
+        return slotsById.size();
+    }
+
+    /**
+     * Scans a range of slots sequentially. The query is matched against the search keys and the digits
+     * against the phone digits only, as {@link ContactQuery#matches(String, String)} does.
+     * @param from The first slot to scan, inclusive.
+     * @param to The last slot to scan, exclusive.
+     * @param pattern The folded query.
+     * @param digitPattern The digits of a phone-like query, or null.
+     * @param results The list to add the matching contacts to, in slot order.
+     */
+    private void scan(int from, int to, char[] pattern, char[] digitPattern, List<Contact> results) {
+        for (int slot = from; slot < to; slot++) {
+            Contact contact = contacts[slot];
+            if (contact == null) continue;
+            int keyLength = keyLengths[slot];
+            if (contains(offsets[slot], keyLength, pattern) || (digitPattern != null
+                    && contains(offsets[slot] + keyLength, lengths[slot] - keyLength, digitPattern))) {
+                results.add(contact);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a slice of the arena contains the pattern.
+     * @param offset The start of the slice.
+     * @param length The length of the slice.
+     * @param pattern The chars to look for.
+     * @return True if the pattern occurs in the slice.
+     */
+    private boolean contains(int offset, int length, char[] pattern) {
+        if (pattern.length == 0) return true;
+        char first = pattern[0];
+        int last = offset + length - pattern.length;
+        for (int i = offset; i <= last; i++) {
+            if (arena[i] != first) continue;
+            int j = 1;
+            while (j < pattern.length && arena[i + j] == pattern[j]) j++;
+            if (j == pattern.length) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Copies a search string to the end of the arena.
+     * @param text The search string.
+     * @return The length of the search string.
+     */
+    private int append(String text) {
+        int length = text.length();
+        if (arenaSize + length > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + length));
+        }
+        text.getChars(0, length, arena, arenaSize);
+        arenaSize += length;
+        return length;
+    }
+
+    /**
+     * Drops the text of deleted and updated contacts and the slots of deleted contacts
+     * once they take up more than half of the arena.
+     */
+    private void compactIfNeeded() {
+        if (deadChars < 4096 || deadChars < arenaSize / 2) return;
+        char[] oldArena = arena;
+        arena = new char[Math.max(256, (arenaSize - deadChars) * 2)];
+        arenaSize = 0;
+        deadChars = 0;
+        int live = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            Contact contact = contacts[slot];
+            if (contact == null) continue;
+            int length = lengths[slot];
+            System.arraycopy(oldArena, offsets[slot], arena, arenaSize, length);
+            contacts[live] = contact;
+            offsets[live] = arenaSize;
+            lengths[live] = length;
+            keyLengths[live] = keyLengths[slot];
+            slotsById.put(contact.getId(), live);
+            arenaSize += length;
+            live++;
+        }
+        Arrays.fill(contacts, live, slotCount, null);
+        slotCount = live;
+    }
+
+    /**
+     * Scans a range of slots, splitting it in halves that are scanned in parallel while it is large.
+     */
+    private final class ScanTask extends RecursiveTask<List<Contact>> {
+        private static final long serialVersionUID = 1L;
+        private final int from;
+        private final int to;
+        private final char[] pattern;
+        private final char[] digitPattern;
+
+        private ScanTask(int from, int to, char[] pattern, char[] digitPattern) {
+            this.from = from;
+            this.to = to;
+            this.pattern = pattern;
+            this.digitPattern = digitPattern;
+        }
+
+        @Override
+        protected List<Contact> compute() {
+            if (to - from <= MIN_SPLIT_SIZE) {
+                List<Contact> results = new ArrayList<>();
+                scan(from, to, pattern, digitPattern, results);
+                return results;
+            }
+            int middle = (from + to) >>> 1;
+            ScanTask left = new ScanTask(from, middle, pattern, digitPattern);
+            left.fork();
+            List<Contact> right = new ScanTask(middle, to, pattern, digitPattern).compute();
+            List<Contact> results = left.join();
+            results.addAll(right);
+            return results;
+        }
+    }
+}
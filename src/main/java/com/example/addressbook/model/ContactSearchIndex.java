@@ -0,0 +1,358 @@
+package com.example.addressbook.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * In-memory inverted trigram index over the searchable text of contacts.
+ * Each trigram of a contact's search key and phone digits maps to a sorted posting list of
+ * contact ids, so a substring query only has to verify the contacts that contain its rarest trigram.
+ * Queries shorter than a trigram fall back to a scan over the captured keys.
+ * The index can be saved to a file and loaded back as is, so it does not have to be rebuilt on every launch.
+ */
+class ContactSearchIndex implements IContactIndex {
+    private static final int GRAM_LENGTH = 3;
+    private static final long FILE_MAGIC = 0x41424F4F4B494458L;
+    /**
+     * The version of the file format, to be increased whenever the format or the keys change.
+     */
+    private static final int FILE_VERSION = 1;
+    private static final int FILE_BUFFER_SIZE = 1 << 16;
+
+    /**
+     * The indexed contacts ordered by id, which matches the order the DAOs return them in.
+     */
+    private final TreeMap<Integer, Entry> entries = new TreeMap<>();
+    private final Map<Long, IntList> postings = new HashMap<>();
+
+    /**
+     * A contact together with the keys it was indexed under.
+     * The keys are kept because contacts may be mutated before the index is told about it.
+     */
+    private static final class Entry {
+        private final Contact contact;
+        private final String searchKey;
+        private final String phoneKey;
+
+        private Entry(Contact contact) {
+            this(contact, contact.getSearchKey(), contact.getPhoneKey());
+        }
+
+        private Entry(Contact contact, String searchKey, String phoneKey) {
+            this.contact = contact;
+            this.searchKey = searchKey;
+            this.phoneKey = phoneKey;
+        }
+    }
+
+    /**
+     * Replaces the content of the index with the given contacts.
+     * @param contacts The contacts to index.
+     */
+    @Override
+    public void build(List<Contact> contacts) {
+        entries.clear();
+        postings.clear();
+        for (Contact contact : contacts) {
+            add(contact);
+        }
+    }
+
+    /**
+     * Adds a contact to the index.
+     * @param contact The contact to add.
+     */
+    @Override
+    public void add(Contact contact) {
+        remove(contact.getId());
+        Entry entry = new Entry(contact);
+        entries.put(contact.getId(), entry);
+        addGrams(entry.searchKey, contact.getId());
+        addGrams(entry.phoneKey, contact.getId());
+    }
+
+    /**
+     * Re-indexes a contact whose fields may have changed.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void update(Contact contact) {
+        add(contact);
+    }
+
+    /**
+     * Removes a contact from the index.
+     * @param id The id of the contact to remove.
+     */
+    @Override
+    public void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) return;
+        removeGrams(entry.searchKey, id);
+        removeGrams(entry.phoneKey, id);
+    }
+
+    /**
+     * Applies a batch of changes, such as the ones replayed from the change log of the database.
+     * Each posting list is rewritten once for the whole batch instead of being shifted once per contact,
+     * which matters for the trigrams that most contacts share.
+     * @param changed The contacts added or updated, in any order.
+     * @param deleted The ids of the contacts deleted.
+     */
+    void apply(List<Contact> changed, IntList deleted) {
+        Map<Long, IntList> removals = new HashMap<>();
+        for (int i = 0; i < deleted.size(); i++) {
+            collectRemoval(deleted.get(i), removals);
+        }
+        for (Contact contact : changed) {
+            collectRemoval(contact.getId(), removals);
+        }
+        for (Map.Entry<Long, IntList> removal : removals.entrySet()) {
+            IntList ids = postings.get(removal.getKey());
+            ids.removeAll(removal.getValue());
+            if (ids.size() == 0) postings.remove(removal.getKey());
+        }
+        Map<Long, IntList> additions = new HashMap<>();
+        for (Contact contact : changed) {
+            Entry entry = new Entry(contact);
+            entries.put(contact.getId(), entry);
+            collectGrams(entry.searchKey, contact.getId(), additions);
+            collectGrams(entry.phoneKey, contact.getId(), additions);
+        }
+        for (Map.Entry<Long, IntList> addition : additions.entrySet()) {
+            postings.computeIfAbsent(addition.getKey(), gram -> new IntList()).addAll(addition.getValue());
+        }
+    }
+
+    /**
+     * Drops the entry of a contact and collects the trigrams its postings must be removed from.
+     * @param id The id of the contact.
+     * @param removals The ids to remove from the posting list of each trigram.
+     */
+    private void collectRemoval(int id, Map<Long, IntList> removals) {
+        Entry entry = entries.remove(id);
+        if (entry == null) return;
+        collectGrams(entry.searchKey, id, removals);
+        collectGrams(entry.phoneKey, id, removals);
+    }
+
+    /**
+     * Collects a contact under every trigram of a key.
+     * @param key The key to split into trigrams.
+     * @param id The id of the contact.
+     * @param grams The ids collected for each trigram.
+     */
+    private static void collectGrams(String key, int id, Map<Long, IntList> grams) {
+        for (int i = 0; i + GRAM_LENGTH <= key.length(); i++) {
+            grams.computeIfAbsent(gramAt(key, i), gram -> new IntList()).add(id);
+        }
+    }
+
+    /**
+     * Adds a contact to the posting list of every trigram of a key.
+     * @param key The key to split into trigrams.
+     * @param id The id of the contact.
+     */
+    private void addGrams(String key, int id) {
+        for (int i = 0; i + GRAM_LENGTH <= key.length(); i++) {
+            postings.computeIfAbsent(gramAt(key, i), gram -> new IntList()).add(id);
+        }
+    }
+
+    /**
+     * Removes a contact from the posting list of every trigram of a key.
+     * @param key The key to split into trigrams.
+     * @param id The id of the contact.
+     */
+    private void removeGrams(String key, int id) {
+        for (int i = 0; i + GRAM_LENGTH <= key.length(); i++) {
+            long gram = gramAt(key, i);
+            IntList ids = postings.get(gram);
+            if (ids != null && ids.remove(id) && ids.size() == 0) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /**
+     * Finds the contacts matching the query, ignoring case and accents.
+     * Phone-like queries also match the phone digits of contacts.
+     * @param query The search query, or null / empty to match every contact.
+     * @return The matching contacts ordered by id.
+     */
+    List<Contact> search(String query) {
+        ContactQuery contactQuery = ContactQuery.of(query);
+        List<Contact> results = new ArrayList<>();
+        String text = contactQuery.getText();
+        String digits = contactQuery.getDigits();
+        if (contactQuery.isEmpty() || text.length() < GRAM_LENGTH
+                || (digits != null && !digits.isEmpty() && digits.length() < GRAM_LENGTH)) {
+            for (Entry entry : entries.values()) {
+                if (contactQuery.matches(entry.searchKey, entry.phoneKey)) results.add(entry.contact);
+            }
+            return results;
+        }
+        // Only the rarest trigram's posting list needs to be walked, every candidate is verified anyway
+        IntList textCandidates = rarestPostings(text);
+        IntList digitCandidates = digits == null || digits.isEmpty() ? null : rarestPostings(digits);
+        int i = 0;
+        int j = 0;
+        int textCount = textCandidates == null ? 0 : textCandidates.size();
+        int digitCount = digitCandidates == null ? 0 : digitCandidates.size();
+        // Both lists are sorted, so merging them keeps the results ordered by id
+        while (i < textCount || j < digitCount) {
+            int id;
+            if (j == digitCount || (i < textCount && textCandidates.get(i) < digitCandidates.get(j))) {
+                id = textCandidates.get(i++);
+            } else if (i == textCount || digitCandidates.get(j) < textCandidates.get(i)) {
+                id = digitCandidates.get(j++);
+            } else {
+                id = textCandidates.get(i++);
+                j++;
+            }
+            Entry entry = entries.get(id);
+            if (contactQuery.matches(entry.searchKey, entry.phoneKey)) results.add(entry.contact);
+        }
+        return results;
+    }
+
+    /**
+     * Finds the shortest posting list among the trigrams of a normalized query.
+     * @param query The normalized query, at least a trigram long.
+     * @return The posting list, or null if some trigram of the query is not indexed at all.
+     */
+    private IntList rarestPostings(String query) {
+        IntList candidates = null;
+        for (int i = 0; i + GRAM_LENGTH <= query.length(); i++) {
+            IntList ids = postings.get(gramAt(query, i));
+            if (ids == null) return null;
+            if (candidates == null || ids.size() < candidates.size()) candidates = ids;
+        }
+        return candidates;
+    }
+
+    /**
+     * Writes the index to a file: the indexed contacts with their keys, then every posting list, so it can be
+     * loaded back without folding a key or splitting a trigram. The file is written next to the target and
+     * moved over it, so a reader never sees half of it.
+     * @param file The file to write.
+     * @param sequence The change sequence of the database the index is up to date with, kept as its checkpoint.
+     * @throws IOException If the file cannot be written.
+     */
+    void save(Path file, long sequence) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), FILE_BUFFER_SIZE))) {
+            output.writeLong(FILE_MAGIC);
+            output.writeInt(FILE_VERSION);
+            output.writeLong(sequence);
+            output.writeInt(entries.size());
+            for (Entry entry : entries.values()) {
+                Contact contact = entry.contact;
+                output.writeInt(contact.getId());
+                for (String text : new String[] {contact.getFirstName(), contact.getLastName(), contact.getEmail(),
+                        contact.getPhone(), entry.searchKey, entry.phoneKey}) {
+                    if (text == null) {
+                        output.writeInt(-1);
+                    } else {
+                        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                        output.writeInt(bytes.length);
+                        output.write(bytes);
+                    }
+                }
+            }
+            output.writeInt(postings.size());
+            for (Map.Entry<Long, IntList> posting : postings.entrySet()) {
+                IntList ids = posting.getValue();
+                output.writeLong(posting.getKey());
+                output.writeInt(ids.size());
+                for (int i = 0; i < ids.size(); i++) {
+                    output.writeInt(ids.get(i));
+                }
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Replaces the content of the index with the one saved in a file by {@link #save(Path, long)}.
+     * The index is left empty if the file cannot be read.
+     * @param file The file to read.
+     * @return The change sequence the saved index was up to date with.
+     * @throws IOException If the file cannot be read, was written by another version or is truncated.
+     */
+    long load(Path file) throws IOException {
+        entries.clear();
+        postings.clear();
+        try (ChannelDataReader input = new ChannelDataReader(FileChannel.open(file, StandardOpenOption.READ), FILE_BUFFER_SIZE)) {
+            if (input.readLong() != FILE_MAGIC || input.readInt() != FILE_VERSION) {
+                throw new IOException("Not a search index of this version: " + file);
+            }
+            long sequence = input.readLong();
+            long size = Files.size(file);
+            int count = input.readInt();
+            for (int i = 0; i < count; i++) {
+                int id = input.readInt();
+                String[] texts = new String[6];
+                for (int j = 0; j < texts.length; j++) {
+                    int length = input.readInt();
+                    if (length < -1 || length > size) throw new IOException("Corrupt search index: " + file);
+                    if (length >= 0) {
+                        byte[] bytes = new byte[length];
+                        input.readBytes(bytes);
+                        texts[j] = new String(bytes, StandardCharsets.UTF_8);
+                    }
+                }
+                Contact contact = new Contact(texts[0], texts[1], texts[2], texts[3]);
+                contact.setId(id);
+                entries.put(id, new Entry(contact, texts[4], texts[5]));
+            }
+            int gramCount = input.readInt();
+            for (int i = 0; i < gramCount; i++) {
+                long gram = input.readLong();
+                int length = input.readInt();
+                if (length < 0 || length > size) throw new IOException("Corrupt search index: " + file);
+                int[] ids = new int[length];
+                input.readInts(ids);
+                postings.put(gram, new IntList(ids));
+            }
+            if (!input.isAtEnd()) throw new IOException("Corrupt search index: " + file);
+            return sequence;
+        } catch (IOException e) {
+            entries.clear();
+            postings.clear();
+            throw e;
+        }
+    }
+
+    /**
+     * Retrieves the number of indexed contacts.
+     * @return The number of indexed contacts.
+     */
+    int size() {
+        return entries.size();
+    }
+
+    /**
+     * Packs the three characters starting at the given position into a single key.
+     * @param text The text to read from.
+     * @param start The position of the first character.
+     * @return The trigram key.
+     */
+    private static long gramAt(String text, int start) {
+        return ((long) text.charAt(start) << 32)
+                | ((long) text.charAt(start + 1) << 16)
+                | text.charAt(start + 2);
+    }
+}
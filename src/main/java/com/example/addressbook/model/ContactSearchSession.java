@@ -0,0 +1,75 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A stateful search over the contacts of a {@link ContactManager}, meant to follow a search box as the user types.
+ * When a query contains the previous one (for example "jo" then "joh"), every match of the new query
+ * is also a match of the previous one, so only the previous results are filtered instead of searching
+ * the whole address book again. Any other query, or a change made through the manager, falls back to a full search.
+ * A session is meant to be used by one thread at a time.
+ */
+public class ContactSearchSession {
+    private final ContactManager contactManager;
+    private ContactQuery lastQuery = null;
+    private List<Contact> lastResults = null;
+    private int lastModificationCount;
+
+    /**
+     * Constructs a search session over the contacts of the given manager.
+     * @param contactManager The manager to search.
+     */
+    ContactSearchSession(ContactManager contactManager) {
+        this.contactManager = contactManager;
+    }
+
+    /**
+     * Searches for contacts matching the query, with the same results as {@link ContactManager#searchContacts(String)}.
+     * @param query The search query string.
+     * @return A list of contacts matching the search query.
+     */
+    public List<Contact> search(String query) {
+        ContactQuery contactQuery = ContactQuery.of(query);
+        if (canRefine(contactQuery)) {
+            if (!contactQuery.getText().equals(lastQuery.getText()) || !Objects.equals(contactQuery.getDigits(), lastQuery.getDigits())) {
+                List<Contact> results = new ArrayList<>();
+                for (Contact contact : lastResults) {
+                    if (contactQuery.matches(contact)) results.add(contact);
+                }
+                lastResults = results;
+            }
+        } else {
+            // Read first, so a change made during the search makes its results stale
+            lastModificationCount = contactManager.getModificationCount();
+            lastResults = contactManager.searchContacts(query);
+        }
+        lastQuery = contactQuery;
+        return lastResults;
+    }
+
+    /**
+     * Forgets the previous results, so the next search runs against the whole address book.
+     * Needed when contacts change without going through the manager.
+     */
+    public void reset() {
+        lastQuery = null;
+        lastResults = null;
+    }
+
+    /**
+     * Checks whether the previous results can be narrowed to answer the query.
+     * That is the case when both the folded text and the phone digits of the query contain those of the
+     * previous query, since a contact matching the query then also matched the previous one.
+     * @param contactQuery The normalized query.
+     * @return True if the previous results are still valid and contain every match of the query.
+     */
+    private boolean canRefine(ContactQuery contactQuery) {
+        if (lastResults == null || lastModificationCount != contactManager.getModificationCount()) return false;
+        String lastDigits = lastQuery.getDigits();
+        String digits = contactQuery.getDigits();
+        return contactQuery.getText().contains(lastQuery.getText())
+                && (lastDigits == null || digits == null || digits.contains(lastDigits));
+    }
+}
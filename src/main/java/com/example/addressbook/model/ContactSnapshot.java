@@ -0,0 +1,534 @@
+package com.example.addressbook.model;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A read-only copy of the address book in a compact binary file, mapped into memory instead of read,
+ * so opening it costs the same for ten contacts or a million and its pages are only loaded when touched.
+ * The file holds the change sequence of the database it was taken at, and is brought up to date by
+ * {@link #refresh(Path, SqliteContactDAO)} from the change log of the database.
+ * <p>
+ * The file is big-endian and made of, in order:
+ * <ul>
+ *     <li>a header of {@value #HEADER_SIZE} bytes with the magic number, the version, the number of contacts,
+ *     the change sequence, the position of each following section and the length of the file;</li>
+ *     <li>the records of the contacts in id order: the first name, last name, email and phone in UTF-8,
+ *     each preceded by its length in bytes as a varint;</li>
+ *     <li>the search text of the contacts in the same order: the folded search key of each contact in UTF-8,
+ *     a zero byte, its phone digits and another zero byte, which is scanned by searches;</li>
+ *     <li>the ids of the contacts, ascending, one int each;</li>
+ *     <li>the offsets of the records and of the search texts in their sections, one int per contact plus the
+ *     end of the section, then the offsets of the phone digits in the search text section, one int per contact;</li>
+ *     <li>the name order: the index of each contact in the sort order of pages, by last name, first name and id,
+ *     with names compared by their UTF-8 bytes like the binary collation of SQLite.</li>
+ * </ul>
+ * Instances are immutable and can be read from any number of threads.
+ */
+public final class ContactSnapshot {
+    /**
+     * The name of the snapshot file of the default database, written next to it.
+     */
+    public static final String DEFAULT_FILE = "contacts.snapshot";
+
+    static final long MAGIC = 0x41424F4F4B534E50L;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 64;
+    // The positions of the fields of the header
+    static final int COUNT_FIELD = 12;
+    static final int SEQUENCE_FIELD = 16;
+    static final int SECTIONS_FIELD = 24;
+    static final int LENGTH_FIELD = 56;
+
+    /**
+     * The number of bytes of the search text copied out of the mapping at a time while scanning.
+     */
+    private static final int SCAN_CHUNK = 64 * 1024;
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final long changeSequence;
+    private final int recordsStart;
+    private final int searchStart;
+    private final int idsStart;
+    private final int recordOffsetsStart;
+    private final int searchOffsetsStart;
+    private final int digitOffsetsStart;
+    private final int nameOrderStart;
+
+    /**
+     * Constructs a snapshot over the content of a file.
+     * @param buffer The content of the file, starting with its header.
+     */
+    ContactSnapshot(ByteBuffer buffer) {
+        this.buffer = buffer;
+        count = buffer.getInt(COUNT_FIELD);
+        changeSequence = buffer.getLong(SEQUENCE_FIELD);
+        recordsStart = buffer.getInt(SECTIONS_FIELD);
+        searchStart = buffer.getInt(SECTIONS_FIELD + 4);
+        idsStart = buffer.getInt(SECTIONS_FIELD + 8);
+        recordOffsetsStart = buffer.getInt(SECTIONS_FIELD + 12);
+        searchOffsetsStart = buffer.getInt(SECTIONS_FIELD + 16);
+        digitOffsetsStart = buffer.getInt(SECTIONS_FIELD + 20);
+        nameOrderStart = buffer.getInt(SECTIONS_FIELD + 24);
+    }
+
+    /**
+     * Maps a snapshot file into memory.
+     * @param file The snapshot file.
+     * @return The snapshot.
+     * @throws IOException If the file cannot be read, or is not a complete snapshot of this version.
+     */
+    public static ContactSnapshot open(Path file) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE || size > Integer.MAX_VALUE) throw new IOException("Not a contact snapshot: " + file);
+            // The mapping stays valid once the channel is closed
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (buffer.getLong(0) != MAGIC || buffer.getInt(8) != VERSION) {
+            throw new IOException("Not a contact snapshot of version " + VERSION + ": " + file);
+        }
+        if (buffer.getLong(LENGTH_FIELD) != buffer.capacity()) throw new IOException("Truncated contact snapshot: " + file);
+        return new ContactSnapshot(buffer);
+    }
+
+    /**
+     * Brings the snapshot file of a database up to date and maps it. A current file is mapped as it is.
+     * A stale one is rewritten from the contacts changed since it was taken, which are the only rows read
+     * from the database, while the records of the other contacts are copied over from the old file.
+     * A missing or unreadable file, or one taken ahead of the database, is rebuilt from every contact.
+     * The new file is written next to the old one and moved over it once complete.
+     * @param file The snapshot file.
+     * @param contactDAO The DAO of the database.
+     * @return The up-to-date snapshot.
+     * @throws IOException If the snapshot cannot be written or the changes cannot be read.
+     */
+    public static ContactSnapshot refresh(Path file, SqliteContactDAO contactDAO) throws IOException {
+        ContactSnapshot previous = null;
+        if (Files.exists(file)) {
+            try {
+                previous = open(file);
+            } catch (IOException e) {
+                // Rebuilt from scratch below
+                e.printStackTrace();
+            }
+        }
+        if (previous != null) {
+            long sequence = contactDAO.getChangeSequence();
+            if (previous.changeSequence == sequence) return previous;
+            // A snapshot ahead of the database belongs to a database that was since replaced
+            if (previous.changeSequence > sequence) previous = null;
+        }
+        new ContactSnapshotWriter(previous).write(file, contactDAO);
+        return open(file);
+    }
+
+    /**
+     * Retrieves the sequence number of the last change of the database the snapshot includes.
+     * @return The change sequence.
+     */
+    public long getChangeSequence() {
+        return changeSequence;
+    }
+
+    /**
+     * Retrieves the number of contacts.
+     * @return The number of contacts.
+     */
+    public int getContactCount() {
+        return count;
+    }
+
+    /**
+     * Retrieves a contact by id.
+     * @param id The id of the contact.
+     * @return A new contact holding the stored fields, or null if not found.
+     */
+    public Contact getContact(int id) {
+        int index = indexOf(id);
+        return index < 0 ? null : readContact(index);
+    }
+
+    /**
+     * Retrieves all contacts in id order.
+     * @return A list of new contacts.
+     */
+    public List<Contact> getAllContacts() {
+        List<Contact> contacts = new ArrayList<>(count);
+        forEachContact(contacts::add);
+        return contacts;
+    }
+
+    /**
+     * Passes every contact to the given action in id order, building each one only when it is passed on.
+     * @param action The action to run for each contact.
+     */
+    public void forEachContact(Consumer<? super Contact> action) {
+        for (int index = 0; index < count; index++) {
+            action.accept(readContact(index));
+        }
+    }
+
+    /**
+     * Searches for contacts whose full name, email or phone contain the query, ignoring case and accents.
+     * Phone-like queries also match the phone digits of contacts. The search text section is scanned
+     * as bytes, a chunk at a time, and only the matching contacts are built.
+     * @param query The search query, or null / empty to match every contact.
+     * @return A list of new contacts matching the query, in id order.
+     */
+    public List<Contact> searchContacts(String query) {
+        ContactQuery contactQuery = ContactQuery.of(query);
+        if (contactQuery.isEmpty()) return getAllContacts();
+        IntList matches = scan(contactQuery.getText().getBytes(StandardCharsets.UTF_8), false);
+        String digits = contactQuery.getDigits();
+        IntList digitMatches = digits == null || digits.isEmpty() ? new IntList()
+                : scan(digits.getBytes(StandardCharsets.UTF_8), true);
+        // Both lists are in index order, so merging them keeps the id order
+        List<Contact> contacts = new ArrayList<>(matches.size() + digitMatches.size());
+        int i = 0;
+        int j = 0;
+        while (i < matches.size() || j < digitMatches.size()) {
+            int next;
+            if (j == digitMatches.size() || (i < matches.size() && matches.get(i) < digitMatches.get(j))) {
+                next = matches.get(i++);
+            } else if (i == matches.size() || digitMatches.get(j) < matches.get(i)) {
+                next = digitMatches.get(j++);
+            } else {
+                next = matches.get(i++);
+                j++;
+            }
+            contacts.add(readContact(next));
+        }
+        return contacts;
+    }
+
+    /**
+     * Retrieves one page of contacts sorted by last name, first name and id, seeking to the key by a binary
+     * search of the name order. Names are compared by their UTF-8 bytes, as by {@link SqliteContactDAO}.
+     * @param after The key of the last contact of the previous page, or null for the first page.
+     * @param limit The maximum number of contacts to return.
+     * @return The contacts sorting after the key, at most {@code limit} of them.
+     */
+    public List<Contact> getContacts(ContactKey after, int limit) {
+        int position = after == null ? 0 : positionAfter(after);
+        List<Contact> contacts = new ArrayList<>(Math.max(0, Math.min(limit, count - position)));
+        for (; position < count && contacts.size() < limit; position++) {
+            contacts.add(readContact(nameOrder(position)));
+        }
+        return contacts;
+    }
+
+    /**
+     * Retrieves the key of the contact at a position of the name order.
+     * @param position The position, from 0.
+     * @return The key of the contact at the position, or null if there are not that many contacts.
+     */
+    public ContactKey getContactKeyAt(int position) {
+        if (position < 0 || position >= count) return null;
+        return ContactKey.of(readContact(nameOrder(position)));
+    }
+
+    /**
+     * Retrieves the number of contacts sorting before the given key.
+     * @param key The key to count up to.
+     * @return The number of contacts sorting before the key.
+     */
+    public int countContactsBefore(ContactKey key) {
+        return position(key, false);
+    }
+
+    /**
+     * Finds the first position of the name order sorting after a key.
+     * @param key The key.
+     * @return The number of contacts sorting before or equal to the key.
+     */
+    private int positionAfter(ContactKey key) {
+        return position(key, true);
+    }
+
+    /**
+     * Finds the first position of the name order sorting after, or not before, a key.
+     * @param key The key.
+     * @param inclusive Whether a contact equal to the key is counted.
+     * @return The number of contacts sorting before the key, or before or equal to it.
+     */
+    private int position(ContactKey key, boolean inclusive) {
+        byte[] lastName = key.getLastName().getBytes(StandardCharsets.UTF_8);
+        byte[] firstName = key.getFirstName().getBytes(StandardCharsets.UTF_8);
+        int low = 0;
+        int high = count;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            int comparison = compareToKey(nameOrder(middle), lastName, firstName, key.getId());
+            if (comparison < 0 || (inclusive && comparison == 0)) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Finds the index of a contact by a binary search of the ids.
+     * @param id The id of the contact.
+     * @return The index of the contact, or -1 if not found.
+     */
+    int indexOf(int id) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int current = id(middle);
+            if (current < id) {
+                low = middle + 1;
+            } else if (current > id) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the id of the contact at an index.
+     * @param index The index of the contact.
+     * @return Its id.
+     */
+    int id(int index) {
+        return buffer.getInt(idsStart + 4 * index);
+    }
+
+    /**
+     * Retrieves the position of a record in the file.
+     * @param index The index of the contact, or the number of contacts for the end of the last record.
+     * @return The position of the record.
+     */
+    int recordStart(int index) {
+        return recordsStart + buffer.getInt(recordOffsetsStart + 4 * index);
+    }
+
+    /**
+     * Retrieves the position of the search text of a contact in the file.
+     * @param index The index of the contact, or the number of contacts for the end of the last search text.
+     * @return The position of the search text.
+     */
+    int searchTextStart(int index) {
+        return searchStart + buffer.getInt(searchOffsetsStart + 4 * index);
+    }
+
+    /**
+     * Retrieves the position of the phone digits of a contact in the file.
+     * @param index The index of the contact.
+     * @return The position of its phone digits, within its search text.
+     */
+    int digitsStart(int index) {
+        return searchStart + buffer.getInt(digitOffsetsStart + 4 * index);
+    }
+
+    /**
+     * Retrieves the index of the contact at a position of the name order.
+     * @param position The position.
+     * @return The index of the contact.
+     */
+    int nameOrder(int position) {
+        return buffer.getInt(nameOrderStart + 4 * position);
+    }
+
+    /**
+     * Retrieves the content of the file.
+     * @return The mapped buffer, to be read with absolute methods only.
+     */
+    ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Builds the contact at an index from its record.
+     * @param index The index of the contact.
+     * @return A new contact.
+     */
+    Contact readContact(int index) {
+        int position = recordStart(index);
+        String[] fields = new String[4];
+        for (int field = 0; field < fields.length; field++) {
+            int length = readVarint(position);
+            position += varintLength(length);
+            byte[] bytes = new byte[length];
+            buffer.get(position, bytes);
+            fields[field] = new String(bytes, StandardCharsets.UTF_8);
+            position += length;
+        }
+        Contact contact = new Contact(fields[0], fields[1], fields[2], fields[3]);
+        contact.setId(id(index));
+        return contact;
+    }
+
+    /**
+     * Compares the sort keys of two contacts, by last name, first name and id.
+     * @param index The index of the first contact.
+     * @param other The index of the second contact.
+     * @return A negative, zero or positive number as the first contact sorts before, with or after the second.
+     */
+    int compareContacts(int index, int other) {
+        int position = recordStart(index);
+        int otherPosition = recordStart(other);
+        int firstNameLength = readVarint(position);
+        int otherFirstNameLength = readVarint(otherPosition);
+        int firstName = position + varintLength(firstNameLength);
+        int otherFirstName = otherPosition + varintLength(otherFirstNameLength);
+        int lastNameLength = readVarint(firstName + firstNameLength);
+        int otherLastNameLength = readVarint(otherFirstName + otherFirstNameLength);
+        int comparison = compareBytes(firstName + firstNameLength + varintLength(lastNameLength), lastNameLength,
+                otherFirstName + otherFirstNameLength + varintLength(otherLastNameLength), otherLastNameLength);
+        if (comparison != 0) return comparison;
+        comparison = compareBytes(firstName, firstNameLength, otherFirstName, otherFirstNameLength);
+        if (comparison != 0) return comparison;
+        return Integer.compare(id(index), id(other));
+    }
+
+    /**
+     * Compares the sort key of a contact with a key.
+     * @param index The index of the contact.
+     * @param lastName The last name of the key in UTF-8.
+     * @param firstName The first name of the key in UTF-8.
+     * @param id The id of the key.
+     * @return A negative, zero or positive number as the contact sorts before, with or after the key.
+     */
+    private int compareToKey(int index, byte[] lastName, byte[] firstName, int id) {
+        int position = recordStart(index);
+        int firstNameLength = readVarint(position);
+        int firstNameStart = position + varintLength(firstNameLength);
+        int lastNameLength = readVarint(firstNameStart + firstNameLength);
+        int comparison = compareBytes(firstNameStart + firstNameLength + varintLength(lastNameLength), lastNameLength, lastName);
+        if (comparison != 0) return comparison;
+        comparison = compareBytes(firstNameStart, firstNameLength, firstName);
+        if (comparison != 0) return comparison;
+        return Integer.compare(id(index), id);
+    }
+
+    /**
+     * Compares two byte strings of the file as unsigned bytes, a shorter prefix sorting first.
+     * @param position The position of the first string.
+     * @param length The length of the first string.
+     * @param otherPosition The position of the second string.
+     * @param otherLength The length of the second string.
+     * @return A negative, zero or positive number as the first string sorts before, with or after the second.
+     */
+    private int compareBytes(int position, int length, int otherPosition, int otherLength) {
+        int common = Math.min(length, otherLength);
+        for (int i = 0; i < common; i++) {
+            int comparison = Integer.compare(buffer.get(position + i) & 0xFF, buffer.get(otherPosition + i) & 0xFF);
+            if (comparison != 0) return comparison;
+        }
+        return Integer.compare(length, otherLength);
+    }
+
+    /**
+     * Compares a byte string of the file with a byte array as unsigned bytes, a shorter prefix sorting first.
+     * @param position The position of the string.
+     * @param length The length of the string.
+     * @param other The byte array.
+     * @return A negative, zero or positive number as the string sorts before, with or after the array.
+     */
+    private int compareBytes(int position, int length, byte[] other) {
+        int common = Math.min(length, other.length);
+        for (int i = 0; i < common; i++) {
+            int comparison = Integer.compare(buffer.get(position + i) & 0xFF, other[i] & 0xFF);
+            if (comparison != 0) return comparison;
+        }
+        return Integer.compare(length, other.length);
+    }
+
+    /**
+     * Finds the contacts whose search text contains a pattern. The search text section is copied out of
+     * the mapping a chunk at a time, each chunk overlapping the previous one by the length of the pattern
+     * less one, and the rest of the search text of a contact is skipped once it matched.
+     * @param pattern The bytes to look for.
+     * @param inDigits Whether only matches within the phone digits count, rather than only matches within the search key.
+     * @return The indexes of the matching contacts, ascending.
+     */
+    private IntList scan(byte[] pattern, boolean inDigits) {
+        IntList matches = new IntList();
+        int end = searchTextStart(count);
+        byte[] chunk = new byte[SCAN_CHUNK + pattern.length - 1];
+        byte first = pattern[0];
+        int from = searchStart;
+        while (end - from >= pattern.length) {
+            int length = Math.min(chunk.length, end - from);
+            buffer.get(from, chunk, 0, length);
+            int last = length - pattern.length;
+            int next = from + last + 1;
+            for (int i = 0; i <= last; i++) {
+                if (chunk[i] != first) continue;
+                int j = 1;
+                while (j < pattern.length && chunk[i + j] == pattern[j]) j++;
+                if (j < pattern.length) continue;
+                int index = indexAt(from + i);
+                // Text matches must end within the search key, before the zero byte preceding the phone digits
+                boolean outside = inDigits ? from + i < digitsStart(index)
+                        : from + i + pattern.length > digitsStart(index) - 1;
+                if (outside) continue;
+                matches.add(index);
+                int skip = searchTextStart(index + 1);
+                next = Math.max(next, skip);
+                i = skip - from - 1;
+            }
+            from = next;
+        }
+        return matches;
+    }
+
+    /**
+     * Finds the contact whose search text holds a position, by a binary search of the search text offsets.
+     * @param position A position in the search text section.
+     * @return The index of the contact.
+     */
+    private int indexAt(int position) {
+        int low = 0;
+        int high = count - 1;
+        while (low < high) {
+            int middle = (low + high + 1) >>> 1;
+            if (searchTextStart(middle) <= position) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Reads a varint of the file.
+     * @param position The position of the varint.
+     * @return The value of the varint.
+     */
+    int readVarint(int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Computes the number of bytes of a varint.
+     * @param value The value of the varint.
+     * @return Its length in bytes, from 1 to 5.
+     */
+    static int varintLength(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+}
@@ -0,0 +1,332 @@
+package com.example.addressbook.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Writes a {@link ContactSnapshot} file by merging a previous snapshot with the contacts changed since it was taken.
+ * The changes stream from the database in id order while the records of the previous snapshot are walked in the
+ * same order: runs of unchanged contacts are copied over as raw bytes, with their offsets shifted, and only the
+ * changed contacts are encoded and folded. The name order is merged the same way, the previous order with the
+ * changed contacts left out and the changed contacts sorted on their own. Only the offset arrays are held in memory.
+ * Instances write a single snapshot.
+ */
+class ContactSnapshotWriter {
+    private static final int COPY_CHUNK = 1024 * 1024;
+
+    private final ContactSnapshot previous;
+    /**
+     * The next contact of the previous snapshot to merge.
+     */
+    private int previousIndex = 0;
+    /**
+     * The new index of each contact of the previous snapshot, or -1 if it changed or was deleted.
+     */
+    private final int[] newIndexes;
+
+    private DataOutputStream records;
+    private DataOutputStream searchText;
+    private int[] ids = new int[1024];
+    private int[] recordOffsets = new int[1024];
+    private int[] searchOffsets = new int[1024];
+    private int[] digitOffsets = new int[1024];
+    private int count = 0;
+    /**
+     * The new indexes of the contacts encoded from the changes.
+     */
+    private final IntList changedIndexes = new IntList();
+    private final byte[] copyBuffer = new byte[COPY_CHUNK];
+
+    /**
+     * Constructs a writer.
+     * @param previous The snapshot to start from, or null to write every contact.
+     */
+    ContactSnapshotWriter(ContactSnapshot previous) {
+        this.previous = previous;
+        newIndexes = new int[previous == null ? 0 : previous.getContactCount()];
+        Arrays.fill(newIndexes, -1);
+    }
+
+    /**
+     * Writes the snapshot to a temporary file next to the target, then moves it over the target.
+     * @param file The snapshot file to write.
+     * @param contactDAO The DAO of the database to read the changes from.
+     * @throws IOException If the snapshot cannot be written or the changes cannot be read.
+     */
+    void write(Path file, SqliteContactDAO contactDAO) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        Path temporarySearchText = file.resolveSibling(file.getFileName() + ".search.tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             FileChannel searchChannel = FileChannel.open(temporarySearchText, StandardOpenOption.CREATE,
+                     StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(ContactSnapshot.HEADER_SIZE);
+            records = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+            searchText = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(searchChannel), 1 << 16));
+            long sequence;
+            try {
+                long afterSequence = previous == null ? -1 : previous.getChangeSequence();
+                sequence = contactDAO.forEachChange(afterSequence, this::writeChanged, this::skipDeleted);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (sequence < 0) throw new IOException("Could not read the changes of the contacts");
+            copyPrevious(newIndexes.length);
+            records.flush();
+            searchText.flush();
+            if (records.size() < 0 || (long) records.size() + searchText.size() + 20L * count > Integer.MAX_VALUE) {
+                throw new IOException("The contacts do not fit in a snapshot");
+            }
+            int recordsEnd = ContactSnapshot.HEADER_SIZE + records.size();
+            // The search text goes after the records
+            searchChannel.position(0);
+            long transferred = 0;
+            while (transferred < searchText.size()) {
+                transferred += searchChannel.transferTo(transferred, searchText.size() - transferred, channel);
+            }
+            int idsStart = recordsEnd + searchText.size();
+            recordOffsets[count] = records.size();
+            searchOffsets[count] = searchText.size();
+            int recordOffsetsStart = writeInts(channel, idsStart, ids, count);
+            int searchOffsetsStart = writeInts(channel, recordOffsetsStart, recordOffsets, count + 1);
+            int digitOffsetsStart = writeInts(channel, searchOffsetsStart, searchOffsets, count + 1);
+            int nameOrderStart = writeInts(channel, digitOffsetsStart, digitOffsets, count);
+            int length = nameOrderStart + 4 * count;
+
+            ByteBuffer header = ByteBuffer.allocate(ContactSnapshot.HEADER_SIZE);
+            header.putLong(0, ContactSnapshot.MAGIC);
+            header.putInt(8, ContactSnapshot.VERSION);
+            header.putInt(ContactSnapshot.COUNT_FIELD, count);
+            header.putLong(ContactSnapshot.SEQUENCE_FIELD, sequence);
+            int[] sections = {ContactSnapshot.HEADER_SIZE, recordsEnd, idsStart, recordOffsetsStart,
+                    searchOffsetsStart, digitOffsetsStart, nameOrderStart};
+            for (int i = 0; i < sections.length; i++) {
+                header.putInt(ContactSnapshot.SECTIONS_FIELD + 4 * i, sections[i]);
+            }
+            header.putLong(ContactSnapshot.LENGTH_FIELD, length);
+            channel.write(header, 0);
+
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, length);
+            writeNameOrder(new ContactSnapshot(mapped), mapped, nameOrderStart);
+            mapped.force();
+        } finally {
+            Files.deleteIfExists(temporarySearchText);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Merges a changed contact: copies the unchanged contacts of the previous snapshot sorting before it,
+     * drops its previous record if any, and encodes it.
+     * @param contact The current state of the contact.
+     */
+    private void writeChanged(Contact contact) {
+        try {
+            skipPrevious(contact.getId());
+            int index = append(contact.getId());
+            changedIndexes.add(index);
+            for (String field : new String[] {contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhone()}) {
+                byte[] bytes = field == null ? new byte[0] : field.getBytes(StandardCharsets.UTF_8);
+                for (int value = bytes.length; ; value >>>= 7) {
+                    if (value < 0x80) {
+                        records.write(value);
+                        break;
+                    }
+                    records.write(value & 0x7F | 0x80);
+                }
+                records.write(bytes);
+            }
+            searchText.write(contact.getSearchKey().getBytes(StandardCharsets.UTF_8));
+            searchText.write(0);
+            digitOffsets[index] = searchText.size();
+            searchText.write(contact.getPhoneKey().getBytes(StandardCharsets.UTF_8));
+            searchText.write(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Merges a deleted contact: copies the unchanged contacts of the previous snapshot sorting before it
+     * and drops its previous record if any.
+     * @param id The id of the deleted contact.
+     */
+    private void skipDeleted(int id) {
+        try {
+            skipPrevious(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Copies the contacts of the previous snapshot with ids below a changed id, and skips the one with that id.
+     * @param id The changed id.
+     * @throws IOException If the records cannot be written.
+     */
+    private void skipPrevious(int id) throws IOException {
+        if (previous == null) return;
+        int end = previousIndex;
+        while (end < newIndexes.length && previous.id(end) < id) end++;
+        copyPrevious(end);
+        if (previousIndex < newIndexes.length && previous.id(previousIndex) == id) previousIndex++;
+    }
+
+    /**
+     * Copies the next run of unchanged contacts of the previous snapshot, records and search texts
+     * as raw bytes, shifting their offsets to their new positions.
+     * @param end The index after the last contact of the run.
+     * @throws IOException If the records cannot be written.
+     */
+    private void copyPrevious(int end) throws IOException {
+        if (previous == null || end <= previousIndex) return;
+        int recordShift = records.size() - previous.recordStart(previousIndex);
+        int searchShift = searchText.size() - previous.searchTextStart(previousIndex);
+        for (int i = previousIndex; i < end; i++) {
+            int index = append(previous.id(i));
+            newIndexes[i] = index;
+            recordOffsets[index] = previous.recordStart(i) + recordShift;
+            searchOffsets[index] = previous.searchTextStart(i) + searchShift;
+            digitOffsets[index] = previous.digitsStart(i) + searchShift;
+        }
+        copy(previous.recordStart(previousIndex), previous.recordStart(end), records);
+        copy(previous.searchTextStart(previousIndex), previous.searchTextStart(end), searchText);
+        previousIndex = end;
+    }
+
+    /**
+     * Copies bytes of the previous snapshot to an output.
+     * @param from The position of the first byte.
+     * @param to The position after the last byte.
+     * @param output The output.
+     * @throws IOException If the bytes cannot be written.
+     */
+    private void copy(int from, int to, DataOutputStream output) throws IOException {
+        ByteBuffer buffer = previous.buffer();
+        for (int position = from; position < to; position += COPY_CHUNK) {
+            int length = Math.min(COPY_CHUNK, to - position);
+            buffer.get(position, copyBuffer, 0, length);
+            output.write(copyBuffer, 0, length);
+        }
+    }
+
+    /**
+     * Adds a contact to the end of the offset arrays, its record and search text starting at the current
+     * end of their sections.
+     * @param id The id of the contact.
+     * @return The new index of the contact.
+     */
+    private int append(int id) {
+        // One more slot than contacts, for the end offsets of the sections
+        if (count + 1 >= ids.length) {
+            int capacity = ids.length * 2;
+            ids = Arrays.copyOf(ids, capacity);
+            recordOffsets = Arrays.copyOf(recordOffsets, capacity);
+            searchOffsets = Arrays.copyOf(searchOffsets, capacity);
+            digitOffsets = Arrays.copyOf(digitOffsets, capacity);
+        }
+        ids[count] = id;
+        recordOffsets[count] = records.size();
+        searchOffsets[count] = searchText.size();
+        return count++;
+    }
+
+    /**
+     * Writes the name order into the mapped snapshot: the previous order without the changed contacts,
+     * merged with the changed contacts sorted among themselves. Each changed contact is placed by a binary
+     * search of the previous order, so the unchanged contacts are copied over without being compared.
+     * @param snapshot The new snapshot, whose records are complete.
+     * @param mapped The mapping of the new snapshot.
+     * @param nameOrderStart The position of the name order section.
+     */
+    private void writeNameOrder(ContactSnapshot snapshot, MappedByteBuffer mapped, int nameOrderStart) {
+        int[] changed = new int[changedIndexes.size()];
+        for (int i = 0; i < changed.length; i++) {
+            changed[i] = changedIndexes.get(i);
+        }
+        sort(changed, new int[changed.length], 0, changed.length, snapshot);
+        // The position in the previous order each changed contact goes before
+        int[] positions = new int[changed.length];
+        for (int i = 0; i < changed.length && previous != null; i++) {
+            positions[i] = previous.countContactsBefore(ContactKey.of(snapshot.readContact(changed[i])));
+        }
+        int position = nameOrderStart;
+        int next = 0;
+        for (int i = 0; i < newIndexes.length; i++) {
+            while (next < changed.length && positions[next] <= i) {
+                mapped.putInt(position, changed[next++]);
+                position += 4;
+            }
+            int index = newIndexes[previous.nameOrder(i)];
+            if (index < 0) continue;
+            mapped.putInt(position, index);
+            position += 4;
+        }
+        while (next < changed.length) {
+            mapped.putInt(position, changed[next++]);
+            position += 4;
+        }
+    }
+
+    /**
+     * Sorts contacts by name with a merge sort, which needs fewer comparisons than a quicksort.
+     * @param indexes The indexes of the contacts to sort.
+     * @param scratch An array of the same length to merge into.
+     * @param from The first position to sort, inclusive.
+     * @param to The last position to sort, exclusive.
+     * @param snapshot The snapshot holding the records of the contacts.
+     */
+    private static void sort(int[] indexes, int[] scratch, int from, int to, ContactSnapshot snapshot) {
+        if (to - from < 2) return;
+        int middle = (from + to) >>> 1;
+        sort(indexes, scratch, from, middle, snapshot);
+        sort(indexes, scratch, middle, to, snapshot);
+        if (snapshot.compareContacts(indexes[middle - 1], indexes[middle]) <= 0) return;
+        System.arraycopy(indexes, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right == to || (left < middle && snapshot.compareContacts(scratch[left], scratch[right]) <= 0)) {
+                indexes[i] = scratch[left++];
+            } else {
+                indexes[i] = scratch[right++];
+            }
+        }
+    }
+
+    /**
+     * Writes ints to a channel at a position.
+     * @param channel The channel.
+     * @param position The position to write at.
+     * @param values The ints to write.
+     * @param length The number of ints to write.
+     * @return The position after the ints.
+     * @throws IOException If the channel cannot be written.
+     */
+    private static int writeInts(FileChannel channel, int position, int[] values, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(COPY_CHUNK);
+        for (int i = 0; i < length; ) {
+            buffer.clear();
+            while (i < length && buffer.remaining() >= 4) {
+                buffer.putInt(values[i++]);
+            }
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+        }
+        return position;
+    }
+}
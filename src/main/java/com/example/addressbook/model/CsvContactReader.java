@@ -0,0 +1,182 @@
+package com.example.addressbook.model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Streams the records of a comma-separated file, following RFC 4180: fields may be quoted, and quoted fields
+ * may hold commas, line breaks and doubled quotes. If the first row names at least two known columns, such as
+ * "First Name" and "email", it is taken as a header and columns are matched by name; otherwise the columns are
+ * the first name, last name, email and phone, in that order. Blank lines are skipped.
+ * Characters are read through a private buffer rather than one synchronized call per character.
+ */
+class CsvContactReader implements IContactRecordReader {
+    private static final char DELIMITER = ',';
+    private static final char QUOTE = '"';
+    private static final int END = -1;
+
+    private final Reader reader;
+    private final char[] buffer = new char[64 * 1024];
+    private int position = 0;
+    private int limit = 0;
+    /**
+     * The field of a record each column maps to, or -1 for the columns that are ignored.
+     */
+    private int[] columns = null;
+    private final List<String> fields = new ArrayList<>();
+    private final StringBuilder field = new StringBuilder();
+
+    /**
+     * Constructs a reader over comma-separated text.
+     * @param reader The text to parse.
+     */
+    CsvContactReader(Reader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Reads the next record, skipping the header row and blank lines.
+     * @return The first name, last name, email and phone of the record, or null at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    @Override
+    public String[] next() throws IOException {
+        while (readRow()) {
+            if (fields.size() == 1 && fields.get(0).isBlank()) continue;
+            if (columns == null) {
+                columns = headerColumns(fields);
+                if (columns != null) continue;
+                columns = new int[] {FIRST_NAME, LAST_NAME, EMAIL, PHONE};
+            }
+            String[] record = new String[FIELD_COUNT];
+            Arrays.fill(record, "");
+            for (int i = 0; i < fields.size() && i < columns.length; i++) {
+                if (columns[i] >= 0) record[columns[i]] = fields.get(i);
+            }
+            return record;
+        }
+        return null;
+    }
+
+    /**
+     * Reads the fields of the next row.
+     * @return True if a row was read, false at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private boolean readRow() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        int c = read();
+        // A byte order mark can only start the first row
+        if (c == '\uFEFF' && columns == null) c = read();
+        if (c == END) return false;
+        boolean quoted = false;
+        while (true) {
+            if (quoted) {
+                if (c == QUOTE) {
+                    c = read();
+                    if (c == QUOTE) {
+                        field.append(QUOTE);
+                    } else {
+                        quoted = false;
+                        // The character after a closing quote is handled as unquoted text
+                        continue;
+                    }
+                } else if (c == END) {
+                    break;
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == QUOTE && field.length() == 0) {
+                quoted = true;
+            } else if (c == DELIMITER) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n' || c == END) {
+                break;
+            } else if (c == '\r') {
+                if (peek() == '\n') read();
+                break;
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+        fields.add(field.toString());
+        return true;
+    }
+
+    /**
+     * Maps the columns of the first row to fields, if the row is a header.
+     * @param names The cells of the first row.
+     * @return The field of each column, or null if fewer than two cells (or the only cell) name a known column.
+     */
+    private static int[] headerColumns(List<String> names) {
+        int[] columns = new int[names.size()];
+        int known = 0;
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = fieldNamed(names.get(i));
+            if (columns[i] >= 0) known++;
+        }
+        return known >= Math.min(2, columns.length) ? columns : null;
+    }
+
+    /**
+     * Recognizes the usual names of the columns of contact exports, ignoring case, spaces, dashes, dots and underscores.
+     * @param name The name of a column.
+     * @return The field of the column, or -1 if it is not recognized.
+     */
+    private static int fieldNamed(String name) {
+        switch (name.toLowerCase().replaceAll("[\\s_.-]", "")) {
+            case "firstname": case "givenname": case "first": case "forename":
+                return FIRST_NAME;
+            case "lastname": case "familyname": case "surname": case "last":
+                return LAST_NAME;
+            case "email": case "emailaddress": case "mail": case "email1value":
+                return EMAIL;
+            case "phone": case "phonenumber": case "telephone": case "tel": case "mobile": case "mobilephone": case "phone1value":
+                return PHONE;
+            default:
+                return -1;
+        }
+    }
+
+    /**
+     * Reads the next character, refilling the buffer when it runs out.
+     * @return The character, or {@link #END} at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private int read() throws IOException {
+        if (position == limit && !fill()) return END;
+        return buffer[position++];
+    }
+
+    /**
+     * Looks at the next character without consuming it.
+     * @return The character, or {@link #END} at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private int peek() throws IOException {
+        if (position == limit && !fill()) return END;
+        return buffer[position];
+    }
+
+    /**
+     * Refills the buffer from the underlying reader.
+     * @return True if characters were read, false at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = reader.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) return false;
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.addressbook.model;
+
+import java.util.List;
+
+/**
+ * A group of contacts that are likely the same person, as found by a {@link ContactDeduplicator}.
+ */
+public final class DuplicateCluster {
+    private final List<Contact> contacts;
+    private final double score;
+
+    /**
+     * Constructs a cluster.
+     * @param contacts The contacts of the cluster, ordered by id.
+     * @param score The lowest similarity among the pairs that linked the cluster.
+     */
+    DuplicateCluster(List<Contact> contacts, double score) {
+        this.contacts = contacts;
+        this.score = score;
+    }
+
+    /**
+     * Retrieves the contacts of the cluster.
+     * @return The contacts, ordered by id.
+     */
+    public List<Contact> getContacts() {
+        return contacts;
+    }
+
+    /**
+     * Retrieves the contact that is kept when the cluster is merged: the one with the lowest id.
+     * @return The surviving contact.
+     */
+    public Contact getSurvivor() {
+        return contacts.get(0);
+    }
+
+    /**
+     * Retrieves the contacts that are deleted when the cluster is merged.
+     * @return Every contact but the survivor.
+     */
+    public List<Contact> getDuplicates() {
+        return contacts.subList(1, contacts.size());
+    }
+
+    /**
+     * Retrieves how confident the match is.
+     * @return The lowest similarity, between 0 and 1, among the pairs that linked the cluster.
+     */
+    public double getScore() {
+        return score;
+    }
+
+    /**
+     * Fills the blank fields of the survivor with the values of its duplicates, in id order.
+     */
+    void fillSurvivor() {
+        Contact survivor = getSurvivor();
+        for (Contact duplicate : getDuplicates()) {
+            if (isBlank(survivor.getFirstName())) survivor.setFirstName(duplicate.getFirstName());
+            if (isBlank(survivor.getLastName())) survivor.setLastName(duplicate.getLastName());
+            if (isBlank(survivor.getEmail())) survivor.setEmail(duplicate.getEmail());
+            if (isBlank(survivor.getPhone())) survivor.setPhone(duplicate.getPhone());
+        }
+    }
+
+    /**
+     * Checks whether a field has no value.
+     * @param value The value of the field.
+     * @return True if the value is null or only whitespace.
+     */
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    /**
+     * Describes the cluster for a report.
+     * @return The score and the full names and ids of the contacts.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(String.format("%.2f", score));
+        for (Contact contact : contacts) {
+            builder.append(" | ").append(contact.getFullName()).append(" #").append(contact.getId());
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.addressbook.model;
+
+import java.nio.file.Path;
+
+/**
+ * The file formats contacts can be exported to.
+ */
+public enum ExportFormat {
+    /**
+     * Comma-separated values with a header row, readable by {@link ContactImporter}.
+     */
+    CSV,
+    /**
+     * vCard 4.0, one card per contact.
+     */
+    VCARD,
+    /**
+     * JSON Lines: one JSON object per contact and per line.
+     */
+    JSONL;
+
+    /**
+     * Picks the format of a file from its extension, ignoring a trailing ".gz": ".vcf" and ".vcard" are vCard,
+     * ".jsonl", ".ndjson" and ".json" are JSON Lines, anything else is CSV.
+     * @param file The file to export to.
+     * @return The format of the file.
+     */
+    public static ExportFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if (name.endsWith(".gz")) name = name.substring(0, name.length() - 3);
+        if (name.endsWith(".vcf") || name.endsWith(".vcard")) return VCARD;
+        if (name.endsWith(".jsonl") || name.endsWith(".ndjson") || name.endsWith(".json")) return JSONL;
+        return CSV;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.addressbook.model;
+
+/**
+ * A snapshot of the progress of a {@link ContactExporter}.
+ */
+public final class ExportProgress {
+    private final long contactsWritten;
+    private final long bytesWritten;
+    private final long elapsedNanos;
+    private final boolean done;
+
+    /**
+     * Constructs a snapshot.
+     * @param contactsWritten The number of contacts written so far.
+     * @param bytesWritten The number of bytes of text written so far, before compression.
+     * @param elapsedNanos The time since the export started.
+     * @param done Whether the export is over.
+     */
+    ExportProgress(long contactsWritten, long bytesWritten, long elapsedNanos, boolean done) {
+        this.contactsWritten = contactsWritten;
+        this.bytesWritten = bytesWritten;
+        this.elapsedNanos = elapsedNanos;
+        this.done = done;
+    }
+
+    /**
+     * Retrieves the number of contacts written so far.
+     * @return The number of contacts written.
+     */
+    public long getContactsWritten() {
+        return contactsWritten;
+    }
+
+    /**
+     * Retrieves the number of bytes of text written so far, before compression.
+     * @return The number of bytes written.
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Retrieves the time since the export started.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Retrieves the average rate since the export started.
+     * @return The number of contacts written per second.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : contactsWritten * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Retrieves the average throughput since the export started.
+     * @return The number of bytes of text written per second, before compression.
+     */
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesWritten * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Retrieves whether the export is over.
+     * @return True if every contact has been written and the output closed.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Describes the progress for a status line.
+     * @return The counts, the elapsed time and the rates.
+     */
+    @Override
+    public String toString() {
+        return String.format("%d exported (%.1f MB) in %.1f s (%.0f rows/s, %.1f MB/s)",
+                contactsWritten, bytesWritten / 1e6, elapsedNanos / 1e9, getRowsPerSecond(), getBytesPerSecond() / 1e6);
+    }
+}
@@ -0,0 +1,200 @@
+package com.example.addressbook.model;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Notices writes made to an SQLite contacts database by other processes, such as another instance of the application
+ * or a sync script, and hands the contacts they changed to a handler, on a background thread.
+ * <p>
+ * The directory of the database is watched for changes to the database file or its journal; each burst of them,
+ * or every poll interval in case the file system does not report them, leads to a check of the data version of
+ * the database, which only moves when another connection commits. Only then is the change log read, from the last
+ * sequence number seen, skipping the ranges written through the DAO, so a check costs one PRAGMA, only the contacts
+ * changed by other processes are read, and nothing is ever reloaded in full. The changes read back carry the state of
+ * each contact after them only: the database does not keep the previous states.
+ */
+public class ExternalChangeWatcher implements AutoCloseable {
+    /**
+     * The default interval of the checks made even when the file system reports nothing, in milliseconds.
+     */
+    public static final long DEFAULT_POLL_MILLIS = 2_000;
+    /**
+     * How long the file system must be quiet after a change before the database is checked, so a burst
+     * of writes is read as one batch.
+     */
+    private static final long SETTLE_MILLIS = 50;
+
+    private final SqliteContactDAO database;
+    private final Consumer<List<ContactChange>> handler;
+    private final long pollMillis;
+    /**
+     * The names of the database file and of its journals.
+     */
+    private final Set<String> fileNames;
+    /**
+     * The watch service of the directory of the database, or null if it cannot be watched and is only polled.
+     */
+    private final WatchService watchService;
+    private final Thread thread;
+    private long dataVersion;
+    private long sequence;
+    private volatile boolean closed = false;
+
+    /**
+     * Starts watching a database, checking it every {@link #DEFAULT_POLL_MILLIS} milliseconds at the latest.
+     * @param database The DAO of the database.
+     * @param file The database file.
+     * @param handler Receives the changes found by each check, on the thread of this watcher.
+     */
+    public ExternalChangeWatcher(SqliteContactDAO database, Path file, Consumer<List<ContactChange>> handler) {
+        this(database, file, handler, DEFAULT_POLL_MILLIS);
+    }
+
+    /**
+     * Starts watching a database. The changes logged before this call are assumed to be seen already.
+     * @param database The DAO of the database.
+     * @param file The database file.
+     * @param handler Receives the changes found by each check, on the thread of this watcher.
+     * @param pollMillis The interval of the checks made even when the file system reports nothing, in milliseconds.
+     */
+    public ExternalChangeWatcher(SqliteContactDAO database, Path file, Consumer<List<ContactChange>> handler, long pollMillis) {
+        this.database = database;
+        this.handler = handler;
+        this.pollMillis = pollMillis;
+        String name = file.getFileName().toString();
+        fileNames = Set.of(name, name + "-wal", name + "-journal");
+        // The version goes first: a commit landing in between is then seen by the first check
+        dataVersion = database.getDataVersion();
+        sequence = database.getChangeSequence();
+        watchService = watch(file.toAbsolutePath().getParent());
+        thread = new Thread(this::run, "contact-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Registers a directory with a new watch service.
+     * @param directory The directory to watch.
+     * @return The watch service, or null if the directory cannot be watched.
+     */
+    private static WatchService watch(Path directory) {
+        WatchService service = null;
+        try {
+            service = FileSystems.getDefault().newWatchService();
+            directory.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            return service;
+        } catch (IOException | UnsupportedOperationException e) {
+            e.printStackTrace();
+            if (service != null) {
+                try {
+                    service.close();
+                } catch (IOException closeException) {
+                    closeException.printStackTrace();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the sequence number of the last change of the change log that was seen.
+     * @return The sequence number.
+     */
+    public synchronized long getChangeSequence() {
+        return sequence;
+    }
+
+    /**
+     * Checks the database for changes made by other connections right away, handing the ones found to the handler.
+     * Does nothing if the data version did not move since the last check.
+     * @return The number of changed contacts handed to the handler.
+     */
+    public synchronized int check() {
+        long version = database.getDataVersion();
+        if (version < 0 || version == dataVersion) return 0;
+        List<ContactChange> changes = new ArrayList<>();
+        long next = database.forEachExternalChange(sequence,
+                contact -> changes.add(ContactChange.updated(null, contact)),
+                id -> changes.add(ContactChange.deleted(id, null)));
+        // Left for the next check, as the version still differs then
+        if (next < 0) return 0;
+        dataVersion = version;
+        sequence = next;
+        if (!changes.isEmpty()) handler.accept(changes);
+        return changes.size();
+    }
+
+    /**
+     * Stops watching the database. A check in progress is completed.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        thread.interrupt();
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Runs on the thread of this watcher: waits for the file system to report a change to the database,
+     * or for the poll interval to pass, then checks the database.
+     */
+    private void run() {
+        while (!closed) {
+            try {
+                if (watchService == null) {
+                    Thread.sleep(pollMillis);
+                } else {
+                    WatchKey key = watchService.poll(pollMillis, TimeUnit.MILLISECONDS);
+                    if (key != null) {
+                        boolean touched = isDatabaseEvent(key);
+                        while ((key = watchService.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null) {
+                            touched |= isDatabaseEvent(key);
+                        }
+                        // Other files of the directory, such as the snapshot, changed
+                        if (!touched) continue;
+                    }
+                }
+                check();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Consumes the events of a watch key and re-arms it.
+     * @param key The watch key.
+     * @return True if the database file or one of its journals changed, or events were lost.
+     */
+    private boolean isDatabaseEvent(WatchKey key) {
+        boolean touched = false;
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                    || fileNames.contains(((Path) event.context()).getFileName().toString())) {
+                touched = true;
+            }
+        }
+        key.reset();
+        return touched;
+    }
+}
@@ -0,0 +1,288 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Typo-tolerant search over the first names, last names and emails of contacts.
+ * Every distinct folded term is stored once in a BK-tree keyed by Levenshtein distance, together with
+ * the sorted ids of the contacts it belongs to. A lookup only measures the distance to the terms whose
+ * subtree can still hold a match, by the triangle inequality, instead of to every contact.
+ * There is one tree per term length: the distance between two terms is at least the difference of their lengths,
+ * so a lookup skips the trees of terms too short or too long to match, such as most emails for a name.
+ * Terms no longer used by any contact stay in the tree until they outnumber the live ones and the tree is rebuilt.
+ * Instances are not thread-safe.
+ */
+class FuzzySearchIndex implements IContactIndex {
+    private final Map<Integer, Contact> contacts = new HashMap<>();
+    /**
+     * The terms each contact was indexed under, kept because contacts may be mutated before the index is told about it.
+     */
+    private final Map<Integer, String[]> termsById = new HashMap<>();
+    private final Map<String, Node> nodesByTerm = new HashMap<>();
+    private Node[] rootsByLength = new Node[0];
+    private int deadNodeCount = 0;
+
+    // Rows of the distance matrix, reused across distance computations
+    private int[] previousRow = new int[32];
+    private int[] currentRow = new int[32];
+
+    /**
+     * A term of the BK-tree, with the contacts using it and its children by distance.
+     */
+    private static final class Node {
+        private final String term;
+        private final IntList ids = new IntList();
+        private Node[] children = null;
+
+        private Node(String term) {
+            this.term = term;
+        }
+    }
+
+    /**
+     * Picks the largest number of typos tolerated for a word of a query, growing with its length.
+     * @param length The length of the word.
+     * @return 0 for words of up to 2 characters, 1 for up to 5, 2 otherwise.
+     */
+    static int defaultMaxDistance(int length) {
+        return length <= 2 ? 0 : length <= 5 ? 1 : 2;
+    }
+
+    /**
+     * Replaces the content of the index with the given contacts.
+     * @param contacts The contacts to index.
+     */
+    @Override
+    public void build(List<Contact> contacts) {
+        this.contacts.clear();
+        termsById.clear();
+        nodesByTerm.clear();
+        rootsByLength = new Node[0];
+        deadNodeCount = 0;
+        for (Contact contact : contacts) {
+            add(contact);
+        }
+    }
+
+    /**
+     * Adds a contact to the index.
+     * @param contact The contact to add.
+     */
+    @Override
+    public void add(Contact contact) {
+        remove(contact.getId());
+        String[] terms = termsOf(contact);
+        contacts.put(contact.getId(), contact);
+        termsById.put(contact.getId(), terms);
+        for (String term : terms) {
+            Node node = nodesByTerm.get(term);
+            if (node == null) {
+                node = new Node(term);
+                nodesByTerm.put(term, node);
+                insert(node);
+            } else if (node.ids.size() == 0) {
+                deadNodeCount--;
+            }
+            node.ids.add(contact.getId());
+        }
+    }
+
+    /**
+     * Re-indexes a contact whose fields may have changed.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void update(Contact contact) {
+        add(contact);
+    }
+
+    /**
+     * Removes a contact from the index.
+     * @param id The id of the contact to remove.
+     */
+    @Override
+    public void remove(int id) {
+        String[] terms = termsById.remove(id);
+        if (terms == null) return;
+        contacts.remove(id);
+        for (String term : terms) {
+            Node node = nodesByTerm.get(term);
+            if (node.ids.remove(id) && node.ids.size() == 0) deadNodeCount++;
+        }
+        if (deadNodeCount > 64 && deadNodeCount > nodesByTerm.size() / 2) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Finds the contacts with a first name, last name or email within the given number of typos of every word of the query.
+     * @param query The search query, or null / empty to match no contact.
+     * @param maxDistance The largest edit distance tolerated per word, or a negative number to pick it from the length of each word.
+     * @return The matching contacts, closest first, then by id.
+     */
+    List<Contact> search(String query, int maxDistance) {
+        String[] words = SearchKeys.fold(query).trim().split("\\s+");
+        if (words[0].isEmpty()) return new ArrayList<>();
+        // Best total distance per contact over the words matched so far
+        Map<Integer, Integer> distances = null;
+        for (String word : words) {
+            int limit = maxDistance < 0 ? defaultMaxDistance(word.length()) : maxDistance;
+            Map<Integer, Integer> wordDistances = lookup(word, limit);
+            if (distances == null) {
+                distances = wordDistances;
+            } else {
+                Map<Integer, Integer> combined = new HashMap<>();
+                for (Map.Entry<Integer, Integer> entry : distances.entrySet()) {
+                    Integer distance = wordDistances.get(entry.getKey());
+                    if (distance != null) combined.put(entry.getKey(), entry.getValue() + distance);
+                }
+                distances = combined;
+            }
+            if (distances.isEmpty()) break;
+        }
+        long[] ranked = new long[distances.size()];
+        int count = 0;
+        for (Map.Entry<Integer, Integer> entry : distances.entrySet()) {
+            ranked[count++] = ((long) entry.getValue() << 32) | (entry.getKey() & 0xFFFFFFFFL);
+        }
+        Arrays.sort(ranked);
+        List<Contact> results = new ArrayList<>(count);
+        for (long hit : ranked) {
+            results.add(contacts.get((int) hit));
+        }
+        return results;
+    }
+
+    /**
+     * Finds the terms within a distance of a word by walking the BK-trees of the terms of similar length.
+     * @param word The folded word.
+     * @param maxDistance The largest edit distance tolerated.
+     * @return The smallest distance to the word of the terms of each matching contact, by contact id.
+     */
+    private Map<Integer, Integer> lookup(String word, int maxDistance) {
+        Map<Integer, Integer> distances = new HashMap<>();
+        ArrayDeque<Node> pending = new ArrayDeque<>();
+        int shortest = Math.max(0, word.length() - maxDistance);
+        int longest = Math.min(rootsByLength.length - 1, word.length() + maxDistance);
+        for (int length = shortest; length <= longest; length++) {
+            if (rootsByLength[length] != null) pending.push(rootsByLength[length]);
+        }
+        while (!pending.isEmpty()) {
+            Node node = pending.pop();
+            int distance = distance(word, node.term);
+            if (distance <= maxDistance) {
+                for (int i = 0; i < node.ids.size(); i++) {
+                    distances.merge(node.ids.get(i), distance, Math::min);
+                }
+            }
+            if (node.children == null) continue;
+            // Only children at a distance within maxDistance of this one can hold a match
+            int from = Math.max(0, distance - maxDistance);
+            int to = Math.min(node.children.length - 1, distance + maxDistance);
+            for (int i = from; i <= to; i++) {
+                if (node.children[i] != null) pending.push(node.children[i]);
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Inserts a new term into the BK-tree.
+     * @param node The node of the term.
+     */
+    private void insert(Node node) {
+        int length = node.term.length();
+        if (rootsByLength.length <= length) {
+            rootsByLength = Arrays.copyOf(rootsByLength, length + 1);
+        }
+        if (rootsByLength[length] == null) {
+            rootsByLength[length] = node;
+            return;
+        }
+        Node parent = rootsByLength[length];
+        while (true) {
+            int distance = distance(node.term, parent.term);
+            if (parent.children == null || parent.children.length <= distance) {
+                parent.children = parent.children == null
+                        ? new Node[distance + 1]
+                        : Arrays.copyOf(parent.children, distance + 1);
+            }
+            if (parent.children[distance] == null) {
+                parent.children[distance] = node;
+                return;
+            }
+            parent = parent.children[distance];
+        }
+    }
+
+    /**
+     * Rebuilds the BK-tree from the terms still used by some contact.
+     */
+    private void rebuild() {
+        List<Node> live = new ArrayList<>();
+        for (Node node : nodesByTerm.values()) {
+            if (node.ids.size() > 0) live.add(node);
+        }
+        nodesByTerm.clear();
+        rootsByLength = new Node[0];
+        deadNodeCount = 0;
+        for (Node node : live) {
+            node.children = null;
+            nodesByTerm.put(node.term, node);
+            insert(node);
+        }
+    }
+
+    /**
+     * Builds the distinct terms a contact is indexed under: its folded first name, last name, email
+     * and the local part of its email.
+     * @param contact The contact.
+     * @return The terms of the contact.
+     */
+    private static String[] termsOf(Contact contact) {
+        String email = SearchKeys.fold(contact.getEmail());
+        int at = email.indexOf('@');
+        return Arrays.stream(new String[] {
+                        SearchKeys.fold(contact.getFirstName()),
+                        SearchKeys.fold(contact.getLastName()),
+                        email,
+                        at >= 0 ? email.substring(0, at) : email})
+                .filter(term -> !term.isEmpty())
+                .distinct()
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Computes the Levenshtein distance between two strings, reusing the rows of the matrix.
+     * @param first The first string.
+     * @param second The second string.
+     * @return The smallest number of insertions, deletions and substitutions turning one string into the other.
+     */
+    private int distance(String first, String second) {
+        int columns = second.length() + 1;
+        if (previousRow.length < columns) {
+            previousRow = new int[columns * 2];
+            currentRow = new int[columns * 2];
+        }
+        for (int j = 0; j < columns; j++) {
+            previousRow[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            currentRow[0] = i;
+            char c = first.charAt(i - 1);
+            for (int j = 1; j < columns; j++) {
+                int substitution = previousRow[j - 1] + (c == second.charAt(j - 1) ? 0 : 1);
+                currentRow[j] = Math.min(substitution, Math.min(previousRow[j], currentRow[j - 1]) + 1);
+            }
+            int[] row = previousRow;
+            previousRow = currentRow;
+            currentRow = row;
+        }
+        return previousRow[columns - 1];
+    }
+}
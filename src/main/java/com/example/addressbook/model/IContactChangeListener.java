@@ -0,0 +1,21 @@
+package com.example.addressbook.model;
+
+import java.util.List;
+
+/**
+ * Interface for subscribers of a {@link ContactChangeStream}, which are called on the delivery thread of the stream.
+ */
+public interface IContactChangeListener {
+    /**
+     * Handles a batch of changes, in the order they were made.
+     * @param changes The changes.
+     */
+    void onContactsChanged(List<ContactChange> changes);
+
+    /**
+     * Handles the loss of changes that did not fit in the buffer of the stream. Subscribers that mirror
+     * the contacts must reload them from the DAO; the changes made before the loss are not delivered, and the ones
+     * made after it follow in the next batch.
+     */
+    void onChangesLost();
+}
@@ -1,12 +1,52 @@
 package com.example.addressbook.model;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Interface for the Contact Data Access Object that handles
  * the CRUD operations for the Contact class with the database.
  */
 public interface IContactDAO {
+    /**
+     * The id given to contacts before they are written, so that the contacts of a write that failed can be told
+     * apart: DAOs log their errors rather than throwing them, and leave the contacts they could not add as they were.
+     */
+    public static final int UNWRITTEN_ID = -1;
+
+    /**
+     * Adds contacts through the given action and returns the ones it wrote, told apart by {@link #UNWRITTEN_ID}.
+     * The contacts it did not write get their previous id back.
+     * @param contacts The contacts to add.
+     * @param add The action adding the contacts, such as {@link #addContacts(Collection)} of a DAO.
+     * @return The contacts that were given an id, in the order given.
+     */
+    public static List<Contact> addWritten(Collection<Contact> contacts, Consumer<Collection<Contact>> add) {
+        int[] previousIds = new int[contacts.size()];
+        int i = 0;
+        for (Contact contact : contacts) {
+            previousIds[i++] = contact.getId();
+            contact.setId(UNWRITTEN_ID);
+        }
+        add.accept(contacts);
+        List<Contact> written = new ArrayList<>(contacts.size());
+        i = 0;
+        for (Contact contact : contacts) {
+            if (contact.getId() == UNWRITTEN_ID) {
+                contact.setId(previousIds[i]);
+            } else {
+                written.add(contact);
+            }
+            i++;
+        }
+        return written;
+    }
+
     /**
      * Adds a new contact to the database.
      * @param contact The contact to add.
@@ -22,15 +62,156 @@ public interface IContactDAO {
      * @param contact The contact to delete.
      */
     public void deleteContact(Contact contact);
+    /**
+     * Adds several contacts to the database in a single transaction.
+     * The id of each contact is set to its generated id.
+     * @param contacts The contacts to add.
+     */
+    public void addContacts(Collection<Contact> contacts);
+    /**
+     * Updates several existing contacts in the database in a single transaction.
+     * @param contacts The contacts to update.
+     */
+    public void updateContacts(Collection<Contact> contacts);
+    /**
+     * Deletes several contacts from the database in a single transaction.
+     * @param contacts The contacts to delete.
+     */
+    public void deleteContacts(Collection<Contact> contacts);
+    /**
+     * Updates several existing contacts in a single transaction and reports whether it was committed.
+     * DAOs log their errors rather than throwing them, so decorators holding copies of the contacts use this
+     * to keep a failed write out of them. The default implementation calls {@link #updateContacts(Collection)}
+     * and reports the write as committed.
+     * @param contacts The contacts to update.
+     * @return Whether the contacts were written.
+     */
+    public default boolean tryUpdateContacts(Collection<Contact> contacts) {
+        updateContacts(contacts);
+        return true;
+    }
+    /**
+     * Deletes several contacts in a single transaction and reports whether it was committed.
+     * The default implementation calls {@link #deleteContacts(Collection)} and reports the write as committed.
+     * @param contacts The contacts to delete.
+     * @return Whether the contacts were deleted.
+     */
+    public default boolean tryDeleteContacts(Collection<Contact> contacts) {
+        deleteContacts(contacts);
+        return true;
+    }
     /**
      * Retrieves a contact from the database.
      * @param id The id of the contact to retrieve.
      * @return The contact with the given id, or null if not found.
      */
     public Contact getContact(int id);
+    /**
+     * Retrieves several contacts from the database. The default implementation calls
+     * {@link #getContact(int)} for each id; implementations backed by a database should override it
+     * to read them in a few queries.
+     * @param ids The ids of the contacts to retrieve.
+     * @return The contacts found, by id; the ids not found are left out.
+     */
+    public default Map<Integer, Contact> getContactsById(Collection<Integer> ids) {
+        Map<Integer, Contact> contacts = new HashMap<>();
+        for (int id : ids) {
+            Contact contact = getContact(id);
+            if (contact != null) contacts.put(id, contact);
+        }
+        return contacts;
+    }
     /**
      * Retrieves all contacts from the database.
      * @return A list of all contacts in the database.
      */
     public List<Contact> getAllContacts();
-}
\ No newline at end of file
+    /**
+     * Passes every contact in the database to the given action, one at a time,
+     * without holding them all in memory. The default implementation iterates {@link #getAllContacts()}.
+     * @param action The action to run for each contact, in the order of {@link #getAllContacts()}.
+     * @throws IllegalStateException If the contacts cannot be read, possibly after some were passed to the action.
+     */
+    public default void forEachContact(Consumer<? super Contact> action) {
+        getAllContacts().forEach(action);
+    }
+    /**
+     * Searches for contacts whose full name, email or phone contain the query, ignoring case.
+     * The default implementation filters {@link #getAllContacts()} by the cached search keys of the contacts,
+     * so it also ignores accents and matches phone-like queries by their digits; implementations backed by a
+     * database should override it to only read the matching rows.
+     * @param query The search query, or null / empty to match every contact.
+     * @return A list of contacts matching the query, in the order of {@link #getAllContacts()}.
+     */
+    public default List<Contact> searchContacts(String query) {
+        ContactQuery contactQuery = ContactQuery.of(query);
+        List<Contact> contacts = new ArrayList<>();
+        forEachContact(contact -> {
+            if (contactQuery.matches(contact)) contacts.add(contact);
+        });
+        return contacts;
+    }
+    /**
+     * Retrieves one page of contacts sorted by last name, first name and id.
+     * The default implementation sorts {@link #getAllContacts()}; implementations backed by a
+     * database should override it with an index seek.
+     * @param after The key of the last contact of the previous page, or null for the first page.
+     * @param limit The maximum number of contacts to return.
+     * @return The contacts sorting after the key, at most {@code limit} of them.
+     */
+    public default List<Contact> getContacts(ContactKey after, int limit) {
+        return getAllContacts()
+                .stream()
+                .filter(contact -> after == null || ContactKey.of(contact).compareTo(after) > 0)
+                .sorted(Comparator.comparing(ContactKey::of))
+                .limit(limit)
+                .toList();
+    }
+    /**
+     * Retrieves the key of the contact at a position of the list of contacts sorted by last name, first name and id,
+     * so a page far from the ones already read can be reached without reading the pages before it.
+     * The default implementation sorts {@link #getAllContacts()}; implementations backed by a
+     * database should override it with an index lookup.
+     * @param position The position, from 0.
+     * @return The key of the contact at the position, or null if there are not that many contacts.
+     */
+    public default ContactKey getContactKeyAt(int position) {
+        return getAllContacts()
+                .stream()
+                .map(ContactKey::of)
+                .sorted()
+                .skip(position)
+                .findFirst()
+                .orElse(null);
+    }
+    /**
+     * Retrieves the number of contacts in the database.
+     * @return The number of contacts.
+     */
+    public default int getContactCount() {
+        return getAllContacts().size();
+    }
+    /**
+     * Retrieves the number of contacts sorting before the given key, i.e. the position
+     * of the key in the list of contacts sorted by last name, first name and id.
+     * @param key The key to count up to.
+     * @return The number of contacts sorting before the key.
+     */
+    public default int countContactsBefore(ContactKey key) {
+        return (int) getAllContacts()
+                .stream()
+                .filter(contact -> ContactKey.of(contact).compareTo(key) < 0)
+                .count();
+    }
+    /**
+     * Brings what this DAO keeps in memory up to date with changes that were written to the database without going
+     * through it, such as by another process sharing the database file. DAOs holding copies of the contacts patch them
+     * and fill in the previous states they know; decorators then pass the changes on to the DAO they wrap.
+     * The default implementation holds no copies and returns the changes unchanged.
+     * @param changes The changes, in the order they were made, with unknown previous states where the database does not keep them.
+     * @return The changes with the previous states known so far filled in.
+     */
+    public default List<ContactChange> applyExternalChanges(List<ContactChange> changes) {
+        return changes;
+    }
+}
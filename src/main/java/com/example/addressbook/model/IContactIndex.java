@@ -0,0 +1,30 @@
+package com.example.addressbook.model;
+
+import java.util.List;
+
+/**
+ * Interface for in-memory search structures that are built from the contacts
+ * of a DAO and kept up to date as contacts are added, updated and deleted.
+ */
+interface IContactIndex {
+    /**
+     * Replaces the content of the index with the given contacts.
+     * @param contacts The contacts to index.
+     */
+    void build(List<Contact> contacts);
+    /**
+     * Adds a contact to the index.
+     * @param contact The contact to add.
+     */
+    void add(Contact contact);
+    /**
+     * Re-indexes a contact whose fields may have changed.
+     * @param contact The contact to update.
+     */
+    void update(Contact contact);
+    /**
+     * Removes a contact from the index.
+     * @param id The id of the contact to remove.
+     */
+    void remove(int id);
+}
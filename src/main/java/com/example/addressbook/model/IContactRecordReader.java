@@ -0,0 +1,25 @@
+package com.example.addressbook.model;
+
+import java.io.IOException;
+
+/**
+ * Reads the records of an import file one at a time, without holding the file in memory.
+ */
+interface IContactRecordReader {
+    /**
+     * The position of each field in a record.
+     */
+    int FIRST_NAME = 0;
+    int LAST_NAME = 1;
+    int EMAIL = 2;
+    int PHONE = 3;
+    int FIELD_COUNT = 4;
+
+    /**
+     * Reads the next record.
+     * @return The raw first name, last name, email and phone of the record, never null but possibly empty,
+     * or null at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    String[] next() throws IOException;
+}
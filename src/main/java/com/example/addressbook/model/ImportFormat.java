@@ -0,0 +1,27 @@
+package com.example.addressbook.model;
+
+import java.nio.file.Path;
+
+/**
+ * The file formats contacts can be imported from.
+ */
+public enum ImportFormat {
+    /**
+     * Comma-separated values, with an optional header row naming the columns.
+     */
+    CSV,
+    /**
+     * vCard files holding any number of cards.
+     */
+    VCARD;
+
+    /**
+     * Picks the format of a file from its extension: ".vcf" and ".vcard" are vCard, anything else is CSV.
+     * @param file The file to import.
+     * @return The format of the file.
+     */
+    public static ImportFormat of(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        return name.endsWith(".vcf") || name.endsWith(".vcard") ? VCARD : CSV;
+    }
+}
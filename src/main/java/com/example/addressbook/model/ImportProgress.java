@@ -0,0 +1,120 @@
+package com.example.addressbook.model;
+
+/**
+ * A snapshot of the progress of a {@link ContactImporter}.
+ */
+public final class ImportProgress {
+    private final long rowsRead;
+    private final long contactsImported;
+    private final long rowsRejected;
+    private final long bytesRead;
+    private final long totalBytes;
+    private final long elapsedNanos;
+    private final boolean done;
+
+    /**
+     * Constructs a snapshot.
+     * @param rowsRead The number of records parsed so far.
+     * @param contactsImported The number of contacts written so far.
+     * @param rowsRejected The number of records that failed validation so far.
+     * @param bytesRead The number of bytes of the file read so far.
+     * @param totalBytes The size of the file, or -1 if unknown.
+     * @param elapsedNanos The time since the import started.
+     * @param done Whether the import is over.
+     */
+    ImportProgress(long rowsRead, long contactsImported, long rowsRejected, long bytesRead, long totalBytes,
+                   long elapsedNanos, boolean done) {
+        this.rowsRead = rowsRead;
+        this.contactsImported = contactsImported;
+        this.rowsRejected = rowsRejected;
+        this.bytesRead = bytesRead;
+        this.totalBytes = totalBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.done = done;
+    }
+
+    /**
+     * Retrieves the number of records parsed so far.
+     * @return The number of rows read.
+     */
+    public long getRowsRead() {
+        return rowsRead;
+    }
+
+    /**
+     * Retrieves the number of contacts written so far.
+     * @return The number of contacts imported.
+     */
+    public long getContactsImported() {
+        return contactsImported;
+    }
+
+    /**
+     * Retrieves the number of records that failed validation so far.
+     * @return The number of rows rejected.
+     */
+    public long getRowsRejected() {
+        return rowsRejected;
+    }
+
+    /**
+     * Retrieves the number of bytes of the file read so far.
+     * @return The number of bytes read.
+     */
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    /**
+     * Retrieves the size of the file.
+     * @return The number of bytes of the file, or -1 if unknown.
+     */
+    public long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * Retrieves the part of the file read so far.
+     * @return The fraction of the bytes read, between 0 and 1, or -1 if the size of the file is unknown.
+     */
+    public double getFraction() {
+        if (totalBytes < 0) return -1;
+        return totalBytes == 0 ? 1 : Math.min(1, (double) bytesRead / totalBytes);
+    }
+
+    /**
+     * Retrieves the time since the import started.
+     * @return The elapsed time in nanoseconds.
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Retrieves the average write rate since the import started.
+     * @return The number of contacts imported per second.
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : contactsImported * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Retrieves whether the import is over.
+     * @return True if every record has been written or rejected.
+     */
+    public boolean isDone() {
+        return done;
+    }
+
+    /**
+     * Describes the progress for a status line.
+     * @return The counts, the elapsed time and the rate.
+     */
+    @Override
+    public String toString() {
+        return String.format("%d imported, %d rejected, %d read%s in %.1f s (%.0f rows/s)",
+                contactsImported, rowsRejected, rowsRead,
+                totalBytes < 0 ? "" : String.format(" (%.0f%%)", getFraction() * 100),
+                elapsedNanos / 1e9, getRowsPerSecond());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.addressbook.model;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from non-negative int keys to int values, with open addressing and linear probing.
+ * Keys and values are interleaved in a single array, so a lookup usually touches one cache line
+ * and nothing is boxed. Used to find the slot of a contact by its id.
+ */
+class IntIntMap {
+    /**
+     * The value returned for a missing key, and the marker of a free entry.
+     */
+    static final int MISSING = -1;
+
+    /**
+     * The keys at even positions and their values at the following odd positions.
+     */
+    private int[] entries;
+    private int mask;
+    private int shift;
+    private int size;
+
+    /**
+     * Constructs an empty map with a small initial capacity.
+     */
+    IntIntMap() {
+        allocate(16);
+    }
+
+    /**
+     * Retrieves the number of keys in the map.
+     * @return The number of keys.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the value of a key.
+     * @param key The key, which must not be negative.
+     * @return The value of the key, or {@link #MISSING} if it is not in the map.
+     */
+    int get(int key) {
+        for (int entry = indexOf(key); ; entry = (entry + 1) & mask) {
+            int current = entries[entry << 1];
+            if (current == key) return entries[(entry << 1) + 1];
+            if (current == MISSING) return MISSING;
+        }
+    }
+
+    /**
+     * Sets the value of a key, adding the key if it is not in the map.
+     * The map doubles its capacity once it is three quarters full.
+     * @param key The key, which must not be negative.
+     * @param value The value.
+     */
+    void put(int key, int value) {
+        int entry = indexOf(key);
+        while (true) {
+            int current = entries[entry << 1];
+            if (current == key) {
+                entries[(entry << 1) + 1] = value;
+                return;
+            }
+            if (current == MISSING) break;
+            entry = (entry + 1) & mask;
+        }
+        entries[entry << 1] = key;
+        entries[(entry << 1) + 1] = value;
+        if (++size > (mask + 1) / 4 * 3) rehash((mask + 1) * 2);
+    }
+
+    /**
+     * Removes a key from the map. The entries after it in its probe sequence are shifted back,
+     * so no tombstones are left behind.
+     * @param key The key to remove.
+     * @return The value the key had, or {@link #MISSING} if it was not in the map.
+     */
+    int remove(int key) {
+        int entry = indexOf(key);
+        while (entries[entry << 1] != key) {
+            if (entries[entry << 1] == MISSING) return MISSING;
+            entry = (entry + 1) & mask;
+        }
+        int value = entries[(entry << 1) + 1];
+        int free = entry;
+        for (int next = (free + 1) & mask; entries[next << 1] != MISSING; next = (next + 1) & mask) {
+            int home = indexOf(entries[next << 1]);
+            // An entry may only move back if the free entry lies between its home and its current position
+            if (((next - home) & mask) >= ((next - free) & mask)) {
+                entries[free << 1] = entries[next << 1];
+                entries[(free << 1) + 1] = entries[(next << 1) + 1];
+                free = next;
+            }
+        }
+        entries[free << 1] = MISSING;
+        size--;
+        return value;
+    }
+
+    /**
+     * Removes every key, keeping the capacity.
+     */
+    void clear() {
+        Arrays.fill(entries, MISSING);
+        size = 0;
+    }
+
+    /**
+     * Finds the home entry of a key.
+     * @param key The key.
+     * @return The first entry to probe for the key.
+     */
+    private int indexOf(int key) {
+        // Fibonacci hashing spreads the consecutive ids of contacts over the whole table
+        return (key * 0x9E3779B9) >>> shift;
+    }
+
+    /**
+     * Replaces the entries with empty ones.
+     * @param capacity The number of entries, a power of two.
+     */
+    private void allocate(int capacity) {
+        entries = new int[capacity * 2];
+        Arrays.fill(entries, MISSING);
+        mask = capacity - 1;
+        shift = Integer.numberOfLeadingZeros(capacity) + 1;
+    }
+
+    /**
+     * Moves every key to a table of a new capacity.
+     * @param capacity The new number of entries, a power of two.
+     */
+    private void rehash(int capacity) {
+        int[] oldEntries = entries;
+        allocate(capacity);
+        for (int i = 0; i < oldEntries.length; i += 2) {
+            int key = oldEntries[i];
+            if (key == MISSING) continue;
+            int entry = indexOf(key);
+            while (entries[entry << 1] != MISSING) entry = (entry + 1) & mask;
+            entries[entry << 1] = key;
+            entries[(entry << 1) + 1] = oldEntries[i + 1];
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.addressbook.model;
+
+import java.util.Arrays;
+
+/**
+ * A growable list of primitive ints kept in ascending order.
+ * Used for posting lists so that contact ids are not boxed.
+ */
+class IntList {
+    private int[] values;
+    private int size;
+
+    /**
+     * Constructs an empty list with a small initial capacity.
+     */
+    IntList() {
+        values = new int[4];
+    }
+
+    /**
+     * Constructs a list over values that are already sorted and free of duplicates.
+     * @param values The values, used as the backing array.
+     */
+    IntList(int[] values) {
+        this.values = values.length == 0 ? new int[4] : values;
+        size = values.length;
+    }
+
+    /**
+     * Retrieves the number of values in the list.
+     * @return The number of values.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Retrieves the value at the given position.
+     * @param index The position of the value.
+     * @return The value at the given position.
+     */
+    int get(int index) {
+        return values[index];
+    }
+
+    /**
+     * Inserts a value, keeping the list sorted. Duplicates are ignored.
+     * Appending a value larger than the current maximum is O(1).
+     * @param value The value to insert.
+     */
+    void add(int value) {
+        if (size > 0 && values[size - 1] >= value) {
+            int position = Arrays.binarySearch(values, 0, size, value);
+            if (position >= 0) return;
+            insertAt(-position - 1, value);
+            return;
+        }
+        insertAt(size, value);
+    }
+
+    /**
+     * Removes a value from the list if it is present.
+     * @param value The value to remove.
+     * @return True if the value was removed, false otherwise.
+     */
+    boolean remove(int value) {
+        int position = Arrays.binarySearch(values, 0, size, value);
+        if (position < 0) return false;
+        System.arraycopy(values, position + 1, values, position, size - position - 1);
+        size--;
+        return true;
+    }
+
+    /**
+     * Inserts several values in a single merge, keeping the list sorted. Duplicates are ignored.
+     * @param others The values to insert, themselves sorted and free of duplicates.
+     */
+    void addAll(IntList others) {
+        int[] merged = new int[Math.max(4, size + others.size)];
+        int i = 0;
+        int j = 0;
+        int count = 0;
+        while (i < size || j < others.size) {
+            if (j == others.size || (i < size && values[i] < others.values[j])) {
+                merged[count++] = values[i++];
+            } else {
+                if (i < size && values[i] == others.values[j]) i++;
+                merged[count++] = others.values[j++];
+            }
+        }
+        values = merged;
+        size = count;
+    }
+
+    /**
+     * Removes several values in a single pass.
+     * @param others The values to remove, themselves sorted.
+     */
+    void removeAll(IntList others) {
+        int j = 0;
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            while (j < others.size && others.values[j] < values[i]) j++;
+            if (j < others.size && others.values[j] == values[i]) continue;
+            values[count++] = values[i];
+        }
+        size = count;
+    }
+
+    /**
+     * Checks whether the list contains a value.
+     * @param value The value to look for.
+     * @return True if the value is present, false otherwise.
+     */
+    boolean contains(int value) {
+        return Arrays.binarySearch(values, 0, size, value) >= 0;
+    }
+
+    /**
+     * Inserts a value at the given position, growing the backing array when full.
+     * @param position The position to insert at.
+     * @param value The value to insert.
+     */
+    private void insertAt(int position, int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        System.arraycopy(values, position, values, position + 1, size - position);
+        values[position] = value;
+        size++;
+    }
+}
@@ -1,10 +1,14 @@
 package com.example.addressbook.model;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A mock implementation of the contact data access object (DAO) for testing purposes.
+ * Its methods are synchronized, as a {@link ContactManager} may use it from several threads at once.
  */
 public class MockContactDAO implements IContactDAO {
     /**
@@ -18,7 +22,7 @@ public class MockContactDAO implements IContactDAO {
      * @param contact The contact to add.
      */
     @Override
-    public void addContact(Contact contact) {
+    public synchronized void addContact(Contact contact) {
         contact.setId(autoIncrementedId);
         autoIncrementedId++;
         contacts.add(contact);
@@ -29,7 +33,7 @@ public class MockContactDAO implements IContactDAO {
      * @param contact The contact to update.
      */
     @Override
-    public void updateContact(Contact contact) {
+    public synchronized void updateContact(Contact contact) {
         for (int i = 0; i < contacts.size(); i++) {
             if (contacts.get(i).getId() == contact.getId()) {
                 contacts.set(i, contact);
@@ -43,17 +47,48 @@ public class MockContactDAO implements IContactDAO {
      * @param contact The contact to delete.
      */
     @Override
-    public void deleteContact(Contact contact) {
+    public synchronized void deleteContact(Contact contact) {
         contacts.remove(contact);
     }
 
+    /**
+     * Adds several contacts to the mock database.
+     * @param contacts The contacts to add.
+     */
+    @Override
+    public synchronized void addContacts(Collection<Contact> contacts) {
+        for (Contact contact : contacts) {
+            addContact(contact);
+        }
+    }
+
+    /**
+     * Updates several contacts in the mock database.
+     * @param contacts The contacts to update.
+     */
+    @Override
+    public synchronized void updateContacts(Collection<Contact> contacts) {
+        for (Contact contact : contacts) {
+            updateContact(contact);
+        }
+    }
+
+    /**
+     * Deletes several contacts from the mock database.
+     * @param contacts The contacts to delete.
+     */
+    @Override
+    public synchronized void deleteContacts(Collection<Contact> contacts) {
+        this.contacts.removeAll(new HashSet<>(contacts));
+    }
+
     /**
      * Retrieves a contact from the mock database by ID.
      * @param id The ID of the contact to retrieve.
      * @return The contact with the specified ID, or null if not found.
      */
     @Override
-    public Contact getContact(int id) {
+    public synchronized Contact getContact(int id) {
         for (Contact contact : contacts) {
             if (contact.getId() == id) {
                 return contact;
@@ -67,7 +102,16 @@ public class MockContactDAO implements IContactDAO {
      * @return A list containing all contacts in the mock database.
      */
     @Override
-    public List<Contact> getAllContacts() {
+    public synchronized List<Contact> getAllContacts() {
         return new ArrayList<>(contacts);
     }
-}
\ No newline at end of file
+
+    /**
+     * Passes every contact in the mock database to the given action without copying the list.
+     * @param action The action to run for each contact.
+     */
+    @Override
+    public synchronized void forEachContact(Consumer<? super Contact> action) {
+        contacts.forEach(action);
+    }
+}
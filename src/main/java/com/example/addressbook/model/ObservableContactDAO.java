@@ -0,0 +1,265 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * A contact data access object (DAO) that publishes every write made through it to a {@link ContactChangeStream},
+ * one batch per call, so a bulk write reaches the subscribers as a single batch. The state of a contact before an
+ * update or a delete is read from the wrapped DAO first, so it should wrap the DAO that stores the contacts rather
+ * than a cache holding the objects the caller edits. Reads go straight to the wrapped DAO.
+ */
+public class ObservableContactDAO implements IContactDAO {
+    private final IContactDAO contactDAO;
+    private final ContactChangeStream changes;
+
+    /**
+     * Constructs a DAO publishing the writes made to another.
+     * @param contactDAO The DAO to write to and read from.
+     * @param changes The stream to publish the changes to.
+     */
+    public ObservableContactDAO(IContactDAO contactDAO, ContactChangeStream changes) {
+        this.contactDAO = contactDAO;
+        this.changes = changes;
+    }
+
+    /**
+     * Retrieves the stream the changes are published to.
+     * @return The stream.
+     */
+    public ContactChangeStream getChanges() {
+        return changes;
+    }
+
+    /**
+     * Adds a contact and publishes it.
+     * @param contact The contact to add.
+     */
+    @Override
+    public void addContact(Contact contact) {
+        addContacts(List.of(contact));
+    }
+
+    /**
+     * Updates a contact and publishes its states before and after.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void updateContact(Contact contact) {
+        tryUpdateContacts(List.of(contact));
+    }
+
+    /**
+     * Deletes a contact and publishes its state before.
+     * @param contact The contact to delete.
+     */
+    @Override
+    public void deleteContact(Contact contact) {
+        tryDeleteContacts(List.of(contact));
+    }
+
+    /**
+     * Adds several contacts and publishes the ones written as one batch.
+     * @param contacts The contacts to add.
+     */
+    @Override
+    public void addContacts(Collection<Contact> contacts) {
+        List<Contact> written = IContactDAO.addWritten(contacts, added -> {
+            if (added.size() == 1) {
+                contactDAO.addContact(added.iterator().next());
+            } else {
+                contactDAO.addContacts(added);
+            }
+        });
+        List<ContactChange> batch = new ArrayList<>(written.size());
+        for (Contact contact : written) {
+            batch.add(ContactChange.added(contact));
+        }
+        changes.publish(batch);
+    }
+
+    /**
+     * Updates several contacts and publishes their states before and after as one batch.
+     * @param contacts The contacts to update.
+     */
+    @Override
+    public void updateContacts(Collection<Contact> contacts) {
+        tryUpdateContacts(contacts);
+    }
+
+    /**
+     * Updates several contacts and, if the write was committed, publishes their states before and after as one batch.
+     * Contacts the wrapped DAO does not hold are left out.
+     * @param contacts The contacts to update.
+     * @return Whether the contacts were written.
+     */
+    @Override
+    public boolean tryUpdateContacts(Collection<Contact> contacts) {
+        List<Contact> before = readBefore(contacts);
+        if (!contactDAO.tryUpdateContacts(contacts)) return false;
+        List<ContactChange> batch = new ArrayList<>(contacts.size());
+        int i = 0;
+        for (Contact contact : contacts) {
+            Contact stored = before.get(i++);
+            if (stored != null) batch.add(ContactChange.updated(stored, contact));
+        }
+        changes.publish(batch);
+        return true;
+    }
+
+    /**
+     * Deletes several contacts and publishes their states before as one batch.
+     * @param contacts The contacts to delete.
+     */
+    @Override
+    public void deleteContacts(Collection<Contact> contacts) {
+        tryDeleteContacts(contacts);
+    }
+
+    /**
+     * Deletes several contacts and, if the write was committed, publishes their states before as one batch.
+     * Contacts the wrapped DAO does not hold are left out.
+     * @param contacts The contacts to delete.
+     * @return Whether the contacts were deleted.
+     */
+    @Override
+    public boolean tryDeleteContacts(Collection<Contact> contacts) {
+        List<Contact> before = readBefore(contacts);
+        if (!contactDAO.tryDeleteContacts(contacts)) return false;
+        List<ContactChange> batch = new ArrayList<>(contacts.size());
+        int i = 0;
+        for (Contact contact : contacts) {
+            Contact stored = before.get(i++);
+            if (stored != null) batch.add(ContactChange.deleted(contact.getId(), stored));
+        }
+        changes.publish(batch);
+        return true;
+    }
+
+    /**
+     * Reads the stored state of contacts about to be written, copying it in case the wrapped DAO hands out
+     * the objects it stores. Several contacts are read together, so a bulk write costs a few reads rather than one per contact.
+     * @param contacts The contacts.
+     * @return The stored state of each contact, null for the ones the wrapped DAO does not hold.
+     */
+    private List<Contact> readBefore(Collection<Contact> contacts) {
+        List<Contact> before = new ArrayList<>(contacts.size());
+        if (contacts.size() == 1) {
+            before.add(ContactChange.copy(contactDAO.getContact(contacts.iterator().next().getId())));
+            return before;
+        }
+        List<Integer> ids = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        Map<Integer, Contact> stored = contactDAO.getContactsById(ids);
+        for (Contact contact : contacts) {
+            before.add(ContactChange.copy(stored.get(contact.getId())));
+        }
+        return before;
+    }
+
+    /**
+     * Passes changes written to the database without going through this DAO on to the wrapped DAO,
+     * then publishes them as one batch, so subscribers see them like the writes made through it.
+     * @param changes The changes, in the order they were made.
+     * @return The changes with the previous states known so far filled in.
+     */
+    @Override
+    public List<ContactChange> applyExternalChanges(List<ContactChange> changes) {
+        List<ContactChange> resolved = contactDAO.applyExternalChanges(changes);
+        this.changes.publish(resolved);
+        return resolved;
+    }
+
+    /**
+     * Retrieves a contact from the wrapped DAO.
+     * @param id The id of the contact to retrieve.
+     * @return The contact with the given id, or null if not found.
+     */
+    @Override
+    public Contact getContact(int id) {
+        return contactDAO.getContact(id);
+    }
+
+    /**
+     * Retrieves several contacts from the wrapped DAO.
+     * @param ids The ids of the contacts to retrieve.
+     * @return The contacts found, by id.
+     */
+    @Override
+    public Map<Integer, Contact> getContactsById(Collection<Integer> ids) {
+        return contactDAO.getContactsById(ids);
+    }
+
+    /**
+     * Retrieves all contacts from the wrapped DAO.
+     * @return A list of all contacts.
+     */
+    @Override
+    public List<Contact> getAllContacts() {
+        return contactDAO.getAllContacts();
+    }
+
+    /**
+     * Passes every contact of the wrapped DAO to the given action.
+     * @param action The action to run for each contact.
+     */
+    @Override
+    public void forEachContact(Consumer<? super Contact> action) {
+        contactDAO.forEachContact(action);
+    }
+
+    /**
+     * Searches the wrapped DAO.
+     * @param query The search query, or null / empty to match every contact.
+     * @return A list of contacts matching the query.
+     */
+    @Override
+    public List<Contact> searchContacts(String query) {
+        return contactDAO.searchContacts(query);
+    }
+
+    /**
+     * Retrieves one page of contacts from the wrapped DAO.
+     * @param after The key of the last contact of the previous page, or null for the first page.
+     * @param limit The maximum number of contacts to return.
+     * @return The contacts sorting after the key, at most {@code limit} of them.
+     */
+    @Override
+    public List<Contact> getContacts(ContactKey after, int limit) {
+        return contactDAO.getContacts(after, limit);
+    }
+
+    /**
+     * Retrieves the key of the contact at a position of the sorted list from the wrapped DAO.
+     * @param position The position, from 0.
+     * @return The key of the contact at the position, or null if there are not that many contacts.
+     */
+    @Override
+    public ContactKey getContactKeyAt(int position) {
+        return contactDAO.getContactKeyAt(position);
+    }
+
+    /**
+     * Retrieves the number of contacts from the wrapped DAO.
+     * @return The number of contacts.
+     */
+    @Override
+    public int getContactCount() {
+        return contactDAO.getContactCount();
+    }
+
+    /**
+     * Counts the contacts sorting before a key in the wrapped DAO.
+     * @param key The key to count up to.
+     * @return The number of contacts sorting before the key.
+     */
+    @Override
+    public int countContactsBefore(ContactKey key) {
+        return contactDAO.countContactsBefore(key);
+    }
+}
@@ -0,0 +1,684 @@
+package com.example.addressbook.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * An in-memory contact data access object that stores contacts as packed records instead of as objects.
+ * Each contact takes a slot: its id sits in an int array, and its four fields are one record in a single byte
+ * arena, found through one offset per slot. The slot of an id is found through an open-addressing int map, and
+ * {@link Contact} objects are only built when they are read, so every read returns a fresh copy, as with the
+ * SQLite DAO.
+ * <p>
+ * The store started out columnar, with an arena and offsets per field, and was changed to one record per contact.
+ * The layout is what makes text search fast: the search key of a contact is one run of bytes, matched eight bytes
+ * at a time without joining or folding fields, which is what the {@link VarHandle} word reads below are for.
+ * It costs where a single field is wanted. Against {@link MockContactDAO}, a phone search of 100,000 contacts
+ * is about 15% slower, since a phone that is not plain digits is reduced to its digits again for every query,
+ * and {@link #forEachContact} is slower, since every record is decoded back into strings.
+ * <p>
+ * A record starts with a varint holding the number of chars of its text, shifted left by three and or'ed
+ * with its flags. The text is the four fields joined by spaces, as in the search key of a contact, in Latin-1 when
+ * it fits or in UTF-16 otherwise. The lengths of the phone, first name and last name follow it as varints, the email
+ * taking the rest of the text, and then, only for records holding a null field, a mask of the null fields.
+ * A search reads the first varint of a record and matches its text in one pass, eight bytes at a time for ASCII
+ * text; the phone length is only read for phone-like queries, whose digits are matched in the same pass
+ * when the phone is already reduced to its digits.
+ * <p>
+ * A million contacts take a few dozen bytes each on top of their text, instead of five objects per contact.
+ * An updated contact keeps its slot while its record moves to the end of the arena; deleted slots and dead
+ * records are compacted away once they make up half of the store. Methods are synchronized, so the store can be
+ * exported from a background thread while it is edited.
+ */
+public class PackedContactDAO implements IContactDAO {
+    private static final int FIELD_COUNT = 4;
+    private static final int EMAIL = 2;
+    private static final int PHONE = 3;
+    /**
+     * The fields whose lengths are stored after the text of a record, in order; the phone goes first,
+     * so phone searches find it with a single read.
+     */
+    private static final int[] STORED_LENGTHS = {PHONE, 0, 1};
+    /**
+     * The flag of a record whose text is in UTF-16 rather than Latin-1.
+     */
+    private static final int UTF16 = 1;
+    /**
+     * The flag of a record followed by a mask of its null fields.
+     */
+    private static final int HAS_NULLS = 2;
+    /**
+     * The flag of a record whose phone is already reduced to its digits, so phone searches match it as it is.
+     */
+    private static final int PLAIN_PHONE = 4;
+    private static final int FLAG_BITS = 3;
+    /**
+     * The offset of a slot whose contact was deleted.
+     */
+    private static final int DELETED = -1;
+    /**
+     * The fewest dead slots or dead bytes worth a compaction.
+     */
+    private static final int MIN_COMPACTION = 4096;
+    /**
+     * The most bytes a record takes after its text: the field lengths and the null mask.
+     */
+    private static final int RECORD_SLACK = 5 * (FIELD_COUNT - 1) + 1;
+    // The international prefixes of the default country, after a "+" and without one
+    private static final String PLUS_PREFIX = SearchKeys.DEFAULT_COUNTRY_CODE;
+    private static final String ZERO_PREFIX = "00" + SearchKeys.DEFAULT_COUNTRY_CODE;
+    /**
+     * The folded form of each Latin-1 char, so Latin-1 text is folded one byte at a time.
+     */
+    private static final char[] LATIN1_FOLDS = new char[256];
+    /**
+     * Reads eight bytes of the arena at once.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGHS = 0x8080808080808080L;
+
+    static {
+        for (int c = 0; c < LATIN1_FOLDS.length; c++) {
+            // Every Latin-1 char folds to a single char: accented letters lose their one combining mark
+            LATIN1_FOLDS[c] = SearchKeys.fold(String.valueOf((char) c)).charAt(0);
+        }
+    }
+
+    private int[] ids = new int[16];
+    private int[] offsets = new int[16];
+    private byte[] arena = new byte[1024];
+    private int arenaSize = 0;
+    private int deadBytes = 0;
+    private int slotCount = 0;
+    private final IntIntMap slotsById = new IntIntMap();
+    private int autoIncrementedId = 0;
+
+    // Reused by searches for the phone digits of the scanned contact
+    private char[] digits = new char[64];
+
+    /**
+     * Adds a contact to the end of the store.
+     * @param contact The contact to add, whose id is set to its generated id.
+     */
+    @Override
+    public synchronized void addContact(Contact contact) {
+        contact.setId(autoIncrementedId);
+        autoIncrementedId++;
+        if (slotCount == ids.length) growSlots(slotCount * 2);
+        int slot = slotCount++;
+        ids[slot] = contact.getId();
+        offsets[slot] = append(contact);
+        slotsById.put(contact.getId(), slot);
+    }
+
+    /**
+     * Updates a contact in place, keeping its position in the store. Unknown contacts are ignored.
+     * @param contact The contact to update.
+     */
+    @Override
+    public synchronized void updateContact(Contact contact) {
+        int slot = slotsById.get(contact.getId());
+        if (slot == IntIntMap.MISSING) return;
+        deadBytes += recordLength(offsets[slot]);
+        offsets[slot] = append(contact);
+        compactIfNeeded();
+    }
+
+    /**
+     * Deletes a contact from the store.
+     * @param contact The contact to delete.
+     */
+    @Override
+    public synchronized void deleteContact(Contact contact) {
+        int slot = slotsById.remove(contact.getId());
+        if (slot == IntIntMap.MISSING) return;
+        deadBytes += recordLength(offsets[slot]);
+        offsets[slot] = DELETED;
+        compactIfNeeded();
+    }
+
+    /**
+     * Adds several contacts to the end of the store. Room for all of them is made at once,
+     * so a bulk load leaves little unused capacity behind.
+     * @param contacts The contacts to add.
+     */
+    @Override
+    public synchronized void addContacts(Collection<Contact> contacts) {
+        if (slotCount + contacts.size() > ids.length) growSlots(slotCount + contacts.size());
+        // The room a Latin-1 record of the usual size needs, and the slack append asks for after the last one
+        long needed = arenaSize + RECORD_SLACK;
+        for (Contact contact : contacts) {
+            needed += textLength(contact) + 2L * FIELD_COUNT;
+        }
+        if (needed > arena.length && needed <= Integer.MAX_VALUE) arena = Arrays.copyOf(arena, (int) needed);
+        for (Contact contact : contacts) {
+            addContact(contact);
+        }
+    }
+
+    /**
+     * Updates several contacts in place.
+     * @param contacts The contacts to update.
+     */
+    @Override
+    public synchronized void updateContacts(Collection<Contact> contacts) {
+        for (Contact contact : contacts) {
+            updateContact(contact);
+        }
+    }
+
+    /**
+     * Deletes several contacts from the store.
+     * @param contacts The contacts to delete.
+     */
+    @Override
+    public synchronized void deleteContacts(Collection<Contact> contacts) {
+        for (Contact contact : contacts) {
+            deleteContact(contact);
+        }
+    }
+
+    /**
+     * Retrieves a contact by id.
+     * @param id The id of the contact to retrieve.
+     * @return A new contact holding the stored fields, or null if not found.
+     */
+    @Override
+    public synchronized Contact getContact(int id) {
+        int slot = slotsById.get(id);
+        return slot == IntIntMap.MISSING ? null : materialize(slot);
+    }
+
+    /**
+     * Retrieves all contacts in the order they were added.
+     * @return A list of new contacts holding the stored fields.
+     */
+    @Override
+    public synchronized List<Contact> getAllContacts() {
+        List<Contact> contacts = new ArrayList<>(slotsById.size());
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (offsets[slot] != DELETED) contacts.add(materialize(slot));
+        }
+        return contacts;
+    }
+
+    /**
+     * Passes every contact to the given action, building each one only when it is passed on.
+     * @param action The action to run for each contact, in the order they were added.
+     */
+    @Override
+    public synchronized void forEachContact(Consumer<? super Contact> action) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (offsets[slot] != DELETED) action.accept(materialize(slot));
+        }
+    }
+
+    /**
+     * Searches for contacts whose full name, email or phone contain the query, ignoring case and accents.
+     * Phone-like queries also match the phone digits of contacts. The Latin-1 records are matched in place
+     * in slot order without allocating, and only the matching contacts are built; the rare records in UTF-16
+     * or holding a null field are built and matched as contacts.
+     * @param query The search query, or null / empty to match every contact.
+     * @return A list of new contacts matching the query, in the order they were added.
+     */
+    @Override
+    public synchronized List<Contact> searchContacts(String query) {
+        ContactQuery contactQuery = ContactQuery.of(query);
+        if (contactQuery.isEmpty()) return getAllContacts();
+        char[] pattern = contactQuery.getText().toCharArray();
+        String queryDigits = contactQuery.getDigits();
+        char[] digitPattern = queryDigits == null || queryDigits.isEmpty() ? null : queryDigits.toCharArray();
+        byte[] arena = this.arena;
+        List<Contact> contacts = new ArrayList<>();
+        for (int slot = 0; slot < slotCount; slot++) {
+            int offset = offsets[slot];
+            if (offset == DELETED) continue;
+            // Most headers take one or two bytes
+            int header = arena[offset++];
+            if (header < 0) {
+                header = header & 0x7F | arena[offset++] << 7;
+                if (header < 0) {
+                    header = readVarint(offsets[slot]);
+                    offset = offsets[slot] + varintLength(header);
+                }
+            }
+            if ((header & (UTF16 | HAS_NULLS)) != 0) {
+                Contact contact = materialize(slot);
+                if (contactQuery.matches(contact)) contacts.add(contact);
+                continue;
+            }
+            int end = offset + (header >>> FLAG_BITS);
+            if (digitPattern == null
+                    ? containsFolded(arena, offset, end, pattern, null, end)
+                    : matchesPhoneQuery(arena, header, offset, end, pattern, digitPattern)) {
+                contacts.add(materialize(slot));
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Retrieves the number of contacts without building them.
+     * @return The number of contacts.
+     */
+    @Override
+    public synchronized int getContactCount() {
+        return slotsById.size();
+    }
+
+    /**
+     * Grows the id and offset arrays.
+     * @param capacity The number of slots they must hold.
+     */
+    private void growSlots(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        offsets = Arrays.copyOf(offsets, capacity);
+    }
+
+    /**
+     * Retrieves a field of a contact.
+     * @param contact The contact.
+     * @param field The field: first name, last name, email or phone.
+     * @return The value of the field.
+     */
+    private static String valueOf(Contact contact, int field) {
+        return switch (field) {
+            case 0 -> contact.getFirstName();
+            case 1 -> contact.getLastName();
+            case 2 -> contact.getEmail();
+            default -> contact.getPhone();
+        };
+    }
+
+    /**
+     * Computes the number of chars of the text of a record: the fields joined by spaces, null fields being empty.
+     * @param contact The contact.
+     * @return The number of chars.
+     */
+    private static int textLength(Contact contact) {
+        int length = FIELD_COUNT - 1;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            String value = valueOf(contact, field);
+            if (value != null) length += value.length();
+        }
+        return length;
+    }
+
+    /**
+     * Appends the record of a contact to the end of the arena, growing the arena when full.
+     * @param contact The contact.
+     * @return The offset of the record.
+     */
+    private int append(Contact contact) {
+        int flags = 0;
+        int nullMask = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            String value = valueOf(contact, field);
+            if (value == null) {
+                flags |= HAS_NULLS;
+                nullMask |= 1 << field;
+                continue;
+            }
+            for (int i = 0; (flags & UTF16) == 0 && i < value.length(); i++) {
+                if (value.charAt(i) > 0xFF) flags |= UTF16;
+            }
+        }
+        String phone = contact.getPhone();
+        if (phone != null && phone.equals(SearchKeys.phoneDigits(phone))) flags |= PLAIN_PHONE;
+        int textLength = textLength(contact);
+        int header = textLength << FLAG_BITS | flags;
+        int offset = arenaSize;
+        long end = (long) offset + varintLength(header) + (long) textLength * ((flags & UTF16) != 0 ? 2 : 1) + RECORD_SLACK;
+        if (end > arena.length) {
+            // Growing by half keeps the unused tail of a large arena small
+            arena = Arrays.copyOf(arena, (int) Math.min(Integer.MAX_VALUE - 8, Math.max(arena.length + arena.length / 2L, end)));
+        }
+        int position = writeVarint(offset, header);
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            if (field > 0) position = writeChar(position, ' ', flags);
+            String value = valueOf(contact, field);
+            if (value == null) continue;
+            for (int i = 0; i < value.length(); i++) {
+                position = writeChar(position, value.charAt(i), flags);
+            }
+        }
+        for (int field : STORED_LENGTHS) {
+            String value = valueOf(contact, field);
+            position = writeVarint(position, value == null ? 0 : value.length());
+        }
+        if ((flags & HAS_NULLS) != 0) arena[position++] = (byte) nullMask;
+        arenaSize = position;
+        return offset;
+    }
+
+    /**
+     * Writes a char of the text of a record.
+     * @param position The position to write to.
+     * @param c The char.
+     * @param flags The flags of the record, telling its encoding.
+     * @return The position after the char.
+     */
+    private int writeChar(int position, char c, int flags) {
+        if ((flags & UTF16) == 0) {
+            arena[position] = (byte) c;
+            return position + 1;
+        }
+        arena[position] = (byte) (c >>> 8);
+        arena[position + 1] = (byte) c;
+        return position + 2;
+    }
+
+    /**
+     * Writes a varint.
+     * @param position The position to write to.
+     * @param value The value, which must not be negative.
+     * @return The position after the varint.
+     */
+    private int writeVarint(int position, int value) {
+        while (value >= 0x80) {
+            arena[position++] = (byte) (value | 0x80);
+            value >>>= 7;
+        }
+        arena[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Reads a varint.
+     * @param position The position of the varint.
+     * @return Its value.
+     */
+    private int readVarint(int position) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = arena[position++];
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) return value;
+        }
+    }
+
+    /**
+     * Computes the number of bytes of a varint.
+     * @param value The value.
+     * @return Its length in bytes, from 1 to 5.
+     */
+    private static int varintLength(int value) {
+        return (38 - Integer.numberOfLeadingZeros(value | 1)) / 7;
+    }
+
+    /**
+     * Finds the end of the text of a record, where the field lengths start.
+     * @param offset The offset of the record.
+     * @return The position after its text.
+     */
+    private int textEnd(int offset) {
+        int header = readVarint(offset);
+        return offset + varintLength(header) + (header >>> FLAG_BITS) * ((header & UTF16) != 0 ? 2 : 1);
+    }
+
+    /**
+     * Computes the number of bytes of a record.
+     * @param offset The offset of the record.
+     * @return The length of the record in bytes.
+     */
+    private int recordLength(int offset) {
+        int position = textEnd(offset);
+        for (int field = 0; field < FIELD_COUNT - 1; field++) {
+            position += varintLength(readVarint(position));
+        }
+        if ((readVarint(offset) & HAS_NULLS) != 0) position++;
+        return position - offset;
+    }
+
+    /**
+     * Builds the contact stored in a slot.
+     * @param slot The slot of a live contact.
+     * @return A new contact holding the stored fields.
+     */
+    private Contact materialize(int slot) {
+        int offset = offsets[slot];
+        int header = readVarint(offset);
+        boolean utf16 = (header & UTF16) != 0;
+        int start = offset + varintLength(header);
+        int textLength = header >>> FLAG_BITS;
+        int position = textEnd(offset);
+        int[] lengths = new int[FIELD_COUNT];
+        // The spaces between the fields
+        lengths[EMAIL] = textLength - (FIELD_COUNT - 1);
+        for (int field : STORED_LENGTHS) {
+            lengths[field] = readVarint(position);
+            position += varintLength(lengths[field]);
+            lengths[EMAIL] -= lengths[field];
+        }
+        String[] values = new String[FIELD_COUNT];
+        int used = 0;
+        for (int field = 0; field < FIELD_COUNT; field++) {
+            values[field] = utf16
+                    ? new String(arena, start + 2 * used, 2 * lengths[field], StandardCharsets.UTF_16BE)
+                    : new String(arena, start + used, lengths[field], StandardCharsets.ISO_8859_1);
+            used += lengths[field] + 1;
+        }
+        if ((header & HAS_NULLS) != 0) {
+            int nullMask = arena[position];
+            for (int field = 0; field < FIELD_COUNT; field++) {
+                if ((nullMask & 1 << field) != 0) values[field] = null;
+            }
+        }
+        Contact contact = new Contact(values[0], values[1], values[2], values[3]);
+        contact.setId(ids[slot]);
+        return contact;
+    }
+
+    /**
+     * Checks whether Latin-1 text contains the folded pattern, or its phone the digits of a phone-like query.
+     * ASCII text is read eight bytes at a time: ASCII only folds to lowercase, so or'ing each byte with 0x20
+     * finds at once every byte that may start the patterns and is followed by bytes that may go on with them,
+     * up to three chars, and only those are folded and compared further. Text past a non-ASCII byte is scanned
+     * byte by byte.
+     * @param arena The arena holding the text.
+     * @param start The start of the text.
+     * @param end The end of the text.
+     * @param pattern The folded query.
+     * @param phonePattern The digits of the query, starting with the same char as the query, or null.
+     * @param phoneStart The start of the phone, already reduced to its digits, at the end of the text.
+     * @return True if the folded text contains the pattern, or the phone the digits.
+     */
+    private static boolean containsFolded(byte[] arena, int start, int end, char[] pattern, char[] phonePattern, int phoneStart) {
+        char first = pattern[0];
+        int last = end - pattern.length;
+        int phoneLast = phonePattern == null ? -1 : end - phonePattern.length;
+        int i = start;
+        if (first < 0x80) {
+            long firstMask = caseMask(first);
+            long firsts = first * ONES;
+            // Candidates are also checked against the next chars that both patterns share
+            int filtered = 1;
+            while (filtered < 3 && filtered < pattern.length && pattern[filtered] < 0x80
+                    && (phonePattern == null || (filtered < phonePattern.length && phonePattern[filtered] == pattern[filtered]))) {
+                filtered++;
+            }
+            long secondMask = filtered > 1 ? caseMask(pattern[1]) : 0;
+            long seconds = filtered > 1 ? pattern[1] * ONES : 0;
+            long thirdMask = filtered > 2 ? caseMask(pattern[2]) : 0;
+            long thirds = filtered > 2 ? pattern[2] * ONES : 0;
+            for (; i < end; i += Long.BYTES) {
+                long word;
+                if (i + Long.BYTES <= end) {
+                    word = (long) LONGS.get(arena, i);
+                } else if (i + Long.BYTES <= arena.length) {
+                    // The bytes past the end of the text are cleared
+                    word = (long) LONGS.get(arena, i) & (-1L >>> ((i + Long.BYTES - end) << 3));
+                } else {
+                    break;
+                }
+                if ((word & HIGHS) != 0) break;
+                long found = zeroBytes((word | firstMask) ^ firsts);
+                // The bytes after the last ones are in the next word, so the last ones stay candidates
+                if (filtered > 1) found &= zeroBytes((word | secondMask) ^ seconds) >>> 8 | 0x80L << 56;
+                if (filtered > 2) found &= zeroBytes((word | thirdMask) ^ thirds) >>> 16 | 0x8080L << 48;
+                while (found != 0) {
+                    int candidate = i + (Long.numberOfTrailingZeros(found) >>> 3);
+                    if ((candidate <= last && matchesAt(arena, candidate, pattern))
+                            || (candidate <= phoneLast && candidate >= phoneStart && matchesAt(arena, candidate, phonePattern))) {
+                        return true;
+                    }
+                    found &= found - 1;
+                }
+            }
+        }
+        for (int stop = Math.max(last, phoneLast); i <= stop; i++) {
+            if (LATIN1_FOLDS[arena[i] & 0xFF] != first) continue;
+            if ((i <= last && matchesAt(arena, i, pattern))
+                    || (i <= phoneLast && i >= phoneStart && matchesAt(arena, i, phonePattern))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Computes the bits to or an ASCII word with so that its bytes folding to a char become that char.
+     * @param c The folded char.
+     * @return 0x20 in each byte for the chars that uppercase letters fold to, or 0.
+     */
+    private static long caseMask(char c) {
+        return (c & 0x20) != 0 ? 0x20 * ONES : 0;
+    }
+
+    /**
+     * Flags the zero bytes of a word.
+     * @param x The word.
+     * @return The high bit of each byte of x that is zero, and maybe of some above them, which are checked anyway.
+     */
+    private static long zeroBytes(long x) {
+        return (x - ONES) & ~x & HIGHS;
+    }
+
+    /**
+     * Checks whether folded Latin-1 text matches a pattern at a position.
+     * @param arena The arena holding the text.
+     * @param position The position, with room for the pattern before the end of the text.
+     * @param pattern The folded query.
+     * @return True if the folded text at the position starts with the pattern.
+     */
+    private static boolean matchesAt(byte[] arena, int position, char[] pattern) {
+        for (int j = 0; j < pattern.length; j++) {
+            if (LATIN1_FOLDS[arena[position + j] & 0xFF] != pattern[j]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a Latin-1 record matches a phone-like query: its text contains the folded query, or its phone
+     * the digits of the query, the same way as matching {@link SearchKeys#phoneDigits(String)}. A phone already
+     * reduced to its digits is matched in place, in the same pass as the text when both patterns start alike.
+     * @param arena The arena holding the record.
+     * @param header The first varint of the record.
+     * @param start The start of the text of the record.
+     * @param end The end of the text of the record, where the field lengths start.
+     * @param pattern The folded query.
+     * @param digitPattern The digits of the query.
+     * @return True if the record matches.
+     */
+    private boolean matchesPhoneQuery(byte[] arena, int header, int start, int end, char[] pattern, char[] digitPattern) {
+        int phoneLength = arena[end];
+        if (phoneLength < 0) phoneLength = readVarint(end);
+        int phoneStart = end - phoneLength;
+        if ((header & PLAIN_PHONE) == 0) {
+            return containsFolded(arena, start, end, pattern, null, end)
+                    || contains(digits, phoneDigits(phoneStart, end), digitPattern);
+        }
+        if (digitPattern[0] == pattern[0]) return containsFolded(arena, start, end, pattern, digitPattern, phoneStart);
+        return containsFolded(arena, start, end, pattern, null, end)
+                || containsFolded(arena, phoneStart, end, digitPattern, null, end);
+    }
+
+    /**
+     * Reduces a Latin-1 phone to its digits in the digit buffer, the same way as {@link SearchKeys#phoneDigits(String)}.
+     * @param start The start of the phone.
+     * @param end The end of the phone.
+     * @return The number of digits.
+     */
+    private int phoneDigits(int start, int end) {
+        int length = end - start;
+        if (length > digits.length) digits = new char[length];
+        int count = 0;
+        boolean international = false;
+        boolean leading = true;
+        for (int i = start; i < end; i++) {
+            char c = (char) (arena[i] & 0xFF);
+            if (leading && c > ' ') {
+                international = c == '+';
+                leading = false;
+            }
+            if (c >= '0' && c <= '9') digits[count++] = c;
+        }
+        String prefix = international ? PLUS_PREFIX : ZERO_PREFIX;
+        if (count <= prefix.length()) return count;
+        for (int i = 0; i < prefix.length(); i++) {
+            if (digits[i] != prefix.charAt(i)) return count;
+        }
+        // The international prefix is replaced by the national trunk prefix
+        System.arraycopy(digits, prefix.length(), digits, 1, count - prefix.length());
+        digits[0] = '0';
+        return count - prefix.length() + 1;
+    }
+
+    /**
+     * Checks whether the start of a buffer contains the pattern.
+     * @param text The buffer.
+     * @param length The number of chars of the buffer to look at.
+     * @param pattern The chars to look for.
+     * @return True if the pattern occurs in the first {@code length} chars.
+     */
+    private static boolean contains(char[] text, int length, char[] pattern) {
+        char first = pattern[0];
+        int last = length - pattern.length;
+        for (int i = 0; i <= last; i++) {
+            if (text[i] != first) continue;
+            int j = 1;
+            while (j < pattern.length && text[i + j] == pattern[j]) j++;
+            if (j == pattern.length) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Drops the slots of deleted contacts and the dead records once the deleted slots
+     * or the dead bytes make up half of the store. The live contacts keep their order.
+     */
+    private void compactIfNeeded() {
+        int deadSlots = slotCount - slotsById.size();
+        if ((deadSlots < MIN_COMPACTION || deadSlots < slotCount / 2)
+                && (deadBytes < MIN_COMPACTION || deadBytes < arenaSize / 2)) {
+            return;
+        }
+        int liveBytes = arenaSize - deadBytes;
+        byte[] compacted = new byte[Math.max(1024, liveBytes + liveBytes / 2)];
+        int size = 0;
+        int live = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int offset = offsets[slot];
+            if (offset == DELETED) continue;
+            int length = recordLength(offset);
+            System.arraycopy(arena, offset, compacted, size, length);
+            ids[live] = ids[slot];
+            offsets[live] = size;
+            slotsById.put(ids[live], live);
+            size += length;
+            live++;
+        }
+        arena = compacted;
+        arenaSize = size;
+        deadBytes = 0;
+        slotCount = live;
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hash index from the Soundex codes of first and last names to the sorted ids of the contacts bearing them.
+ * Codes are computed once when a contact is indexed, so a query only encodes its own words and looks each code up.
+ * Instances are not thread-safe.
+ */
+class PhoneticIndex implements IContactIndex {
+    private final Map<Integer, Entry> entries = new HashMap<>();
+    private final Map<String, IntList> postings = new HashMap<>();
+
+    /**
+     * A contact together with the codes it was indexed under.
+     * The codes are kept because contacts may be mutated before the index is told about it.
+     */
+    private static final class Entry {
+        private final Contact contact;
+        private final String[] codes;
+
+        private Entry(Contact contact, String[] codes) {
+            this.contact = contact;
+            this.codes = codes;
+        }
+    }
+
+    /**
+     * Replaces the content of the index with the given contacts.
+     * @param contacts The contacts to index.
+     */
+    @Override
+    public void build(List<Contact> contacts) {
+        entries.clear();
+        postings.clear();
+        for (Contact contact : contacts) {
+            add(contact);
+        }
+    }
+
+    /**
+     * Adds a contact to the index.
+     * @param contact The contact to add.
+     */
+    @Override
+    public void add(Contact contact) {
+        remove(contact.getId());
+        String firstCode = Soundex.encode(contact.getFirstName());
+        String lastCode = Soundex.encode(contact.getLastName());
+        String[] codes = firstCode == null ? new String[] {lastCode}
+                : lastCode == null || lastCode.equals(firstCode) ? new String[] {firstCode}
+                : new String[] {firstCode, lastCode};
+        entries.put(contact.getId(), new Entry(contact, codes));
+        for (String code : codes) {
+            if (code != null) postings.computeIfAbsent(code, key -> new IntList()).add(contact.getId());
+        }
+    }
+
+    /**
+     * Re-indexes a contact whose fields may have changed.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void update(Contact contact) {
+        add(contact);
+    }
+
+    /**
+     * Removes a contact from the index.
+     * @param id The id of the contact to remove.
+     */
+    @Override
+    public void remove(int id) {
+        Entry entry = entries.remove(id);
+        if (entry == null) return;
+        for (String code : entry.codes) {
+            if (code == null) continue;
+            IntList ids = postings.get(code);
+            if (ids.remove(id) && ids.size() == 0) postings.remove(code);
+        }
+    }
+
+    /**
+     * Finds the contacts whose first or last name sounds like each word of the query.
+     * @param query The search query, or null / empty to match no contact.
+     * @return The matching contacts ordered by id.
+     */
+    List<Contact> search(String query) {
+        List<Contact> results = new ArrayList<>();
+        if (query == null) return results;
+        List<IntList> lists = new ArrayList<>();
+        for (String word : query.trim().split("\\s+")) {
+            String code = Soundex.encode(word);
+            if (code == null) continue;
+            IntList ids = postings.get(code);
+            if (ids == null) return results;
+            lists.add(ids);
+        }
+        if (lists.isEmpty()) return results;
+        // Walk the shortest list and check its ids against the others
+        lists.sort((first, second) -> Integer.compare(first.size(), second.size()));
+        IntList shortest = lists.get(0);
+        for (int i = 0; i < shortest.size(); i++) {
+            int id = shortest.get(i);
+            boolean inAll = true;
+            for (int j = 1; j < lists.size() && inAll; j++) {
+                inAll = lists.get(j).contains(id);
+            }
+            if (inAll) results.add(entries.get(id).contact);
+        }
+        return results;
+    }
+}
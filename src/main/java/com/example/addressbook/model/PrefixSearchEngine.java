@@ -0,0 +1,359 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autocomplete engine that matches a query against the start of a contact's first name,
+ * last name, full name, email local-part and phone digits.
+ * <p>
+ * All terms live in a single char arena addressed by primitive offset arrays. Most terms are kept
+ * sorted so a prefix resolves to a contiguous run found by binary search; terms written since the
+ * last rebuild are kept in a small unsorted tail that is scanned linearly until the next rebuild.
+ * Terms are folded like the other search keys, so matching ignores case and accents.
+ * Queries reuse scratch buffers, so apart from normalizing the query and the result list they do not allocate.
+ * Instances are not thread-safe.
+ */
+class PrefixSearchEngine implements IContactIndex {
+    // Field codes double as the ranking tier of a match, lower is better
+    private static final byte FIRST_NAME = 0;
+    private static final byte FULL_NAME = 1;
+    private static final byte LAST_NAME = 2;
+    private static final byte EMAIL = 3;
+    private static final byte PHONE = 4;
+    private static final int MIN_PENDING_BEFORE_REBUILD = 256;
+
+    /**
+     * The indexed contacts by slot. Slots of deleted or updated contacts are set to null.
+     */
+    private Contact[] contacts = new Contact[16];
+    private int[] slotTermCounts = new int[16];
+    private int slotCount = 0;
+    private final Map<Integer, Integer> slotsById = new HashMap<>();
+
+    private char[] arena = new char[256];
+    private int arenaSize = 0;
+    private int[] termOffsets = new int[64];
+    private int[] termLengths = new int[64];
+    private int[] termSlots = new int[64];
+    private byte[] termFields = new byte[64];
+    private int termCount = 0;
+    /**
+     * Terms in [0, sortedCount) are sorted, terms in [sortedCount, termCount) are pending.
+     */
+    private int sortedCount = 0;
+    private int deadTermCount = 0;
+
+    // Scratch buffers reused across queries
+    private char[] queryBuffer = new char[32];
+    private long[] hits = new long[64];
+    private int[] hitPositions = new int[16];
+    private int[] hitStamps = new int[16];
+    private int stamp = 0;
+
+    /**
+     * Replaces the content of the engine with the given contacts.
+     * @param contacts The contacts to index.
+     */
+    @Override
+    public void build(List<Contact> contacts) {
+        this.contacts = new Contact[Math.max(16, contacts.size())];
+        slotTermCounts = new int[this.contacts.length];
+        slotCount = 0;
+        slotsById.clear();
+        arenaSize = 0;
+        termCount = 0;
+        sortedCount = 0;
+        deadTermCount = 0;
+        for (Contact contact : contacts) {
+            add(contact);
+        }
+        rebuild();
+    }
+
+    /**
+     * Adds a contact to the engine. Its terms stay in the unsorted tail until the next rebuild.
+     * @param contact The contact to add.
+     */
+    @Override
+    public void add(Contact contact) {
+        remove(contact.getId());
+        if (slotCount == contacts.length) {
+            contacts = Arrays.copyOf(contacts, slotCount * 2);
+            slotTermCounts = Arrays.copyOf(slotTermCounts, slotCount * 2);
+        }
+        int slot = slotCount++;
+        contacts[slot] = contact;
+        slotsById.put(contact.getId(), slot);
+        int firstTerm = termCount;
+        String firstName = contact.getFirstName();
+        String lastName = contact.getLastName();
+        addTerm(SearchKeys.fold(firstName), slot, FIRST_NAME);
+        addTerm(SearchKeys.fold(lastName), slot, LAST_NAME);
+        if (firstName != null && lastName != null) {
+            addTerm(SearchKeys.fold(contact.getFullName()), slot, FULL_NAME);
+        }
+        String email = contact.getEmail();
+        if (email != null) {
+            int at = email.indexOf('@');
+            addTerm(SearchKeys.fold(at >= 0 ? email.substring(0, at) : email), slot, EMAIL);
+        }
+        addTerm(contact.getPhoneKey(), slot, PHONE);
+        slotTermCounts[slot] = termCount - firstTerm;
+    }
+
+    /**
+     * Re-indexes a contact whose fields may have changed.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void update(Contact contact) {
+        add(contact);
+    }
+
+    /**
+     * Removes a contact from the engine. Its terms are skipped until the next rebuild drops them.
+     * @param id The id of the contact to remove.
+     */
+    @Override
+    public void remove(int id) {
+        Integer slot = slotsById.remove(id);
+        if (slot == null) return;
+        contacts[slot] = null;
+        deadTermCount += slotTermCounts[slot];
+    }
+
+    /**
+     * Finds the contacts with a name, email local-part or phone number starting with the query.
+     * Queries made only of digits and phone punctuation are matched by their digits, so
+     * "0423 423" and "+61 423 423" find "0423423423". Results are ranked by the field that matched
+     * (first name, full name, last name, email, phone), exact matches before longer terms,
+     * then shorter terms first.
+     * @param query The prefix to search for, or null / empty to list every contact.
+     * @param limit The maximum number of results to return.
+     * @return The matching contacts in ranked order.
+     */
+    List<Contact> search(String query, int limit) {
+        if (sortedCount < termCount - Math.max(MIN_PENDING_BEFORE_REBUILD, sortedCount / 8)
+                || deadTermCount > termCount / 2) {
+            rebuild();
+        }
+        int queryLength = normalizeQuery(query);
+        if (queryLength == 0) {
+            List<Contact> results = new ArrayList<>(Math.min(limit, slotsById.size()));
+            for (int slot = 0; slot < slotCount && results.size() < limit; slot++) {
+                if (contacts[slot] != null) results.add(contacts[slot]);
+            }
+            return results;
+        }
+        if (++stamp == 0) {
+            Arrays.fill(hitStamps, 0);
+            stamp = 1;
+        }
+        if (hitStamps.length < slotCount) {
+            hitStamps = Arrays.copyOf(hitStamps, contacts.length);
+            hitPositions = Arrays.copyOf(hitPositions, contacts.length);
+        }
+        int hitCount = 0;
+        for (int term = lowerBound(queryLength); term < sortedCount && startsWith(term, queryLength); term++) {
+            hitCount = collect(term, queryLength, hitCount);
+        }
+        for (int term = sortedCount; term < termCount; term++) {
+            if (startsWith(term, queryLength)) hitCount = collect(term, queryLength, hitCount);
+        }
+        Arrays.sort(hits, 0, hitCount);
+        int resultCount = Math.min(limit, hitCount);
+        List<Contact> results = new ArrayList<>(resultCount);
+        for (int i = 0; i < resultCount; i++) {
+            results.add(contacts[(int) (hits[i] & 0xFFFFFFFFL)]);
+        }
+        return results;
+    }
+
+    /**
+     * Records a matching term, keeping only the best ranked hit per contact.
+     * @param term The matching term.
+     * @param queryLength The length of the normalized query.
+     * @param hitCount The number of hits recorded so far.
+     * @return The new number of hits.
+     */
+    private int collect(int term, int queryLength, int hitCount) {
+        int slot = termSlots[term];
+        if (contacts[slot] == null) return hitCount;
+        int tier = termFields[term] * 2 + (termLengths[term] == queryLength ? 0 : 1);
+        long hit = ((long) tier << 56) | ((long) Math.min(termLengths[term], 0xFFFFFF) << 32) | slot;
+        if (hitStamps[slot] == stamp) {
+            int position = hitPositions[slot];
+            if (hit < hits[position]) hits[position] = hit;
+            return hitCount;
+        }
+        if (hitCount == hits.length) {
+            hits = Arrays.copyOf(hits, hitCount * 2);
+        }
+        hitStamps[slot] = stamp;
+        hitPositions[slot] = hitCount;
+        hits[hitCount] = hit;
+        return hitCount + 1;
+    }
+
+    /**
+     * Copies the normalized query into the query buffer: phone digits for phone-like queries,
+     * folded otherwise.
+     * @param query The raw query.
+     * @return The length of the normalized query.
+     */
+    private int normalizeQuery(String query) {
+        if (query == null) return 0;
+        String normalized = SearchKeys.isPhoneLike(query) ? SearchKeys.phoneDigits(query) : SearchKeys.fold(query);
+        if (queryBuffer.length < normalized.length()) {
+            queryBuffer = new char[normalized.length()];
+        }
+        normalized.getChars(0, normalized.length(), queryBuffer, 0);
+        return normalized.length();
+    }
+
+    /**
+     * Finds the first sorted term that is not smaller than the query.
+     * @param queryLength The length of the normalized query.
+     * @return The index of the first candidate term.
+     */
+    private int lowerBound(int queryLength) {
+        int low = 0;
+        int high = sortedCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (compareToQuery(middle, queryLength) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Compares a term with the normalized query.
+     * @param term The term to compare.
+     * @param queryLength The length of the normalized query.
+     * @return A negative, zero or positive number as the term is smaller than, equal to or greater than the query.
+     */
+    private int compareToQuery(int term, int queryLength) {
+        int offset = termOffsets[term];
+        int length = Math.min(termLengths[term], queryLength);
+        for (int i = 0; i < length; i++) {
+            int difference = arena[offset + i] - queryBuffer[i];
+            if (difference != 0) return difference;
+        }
+        return termLengths[term] - queryLength;
+    }
+
+    /**
+     * Checks whether a term starts with the normalized query.
+     * @param term The term to check.
+     * @param queryLength The length of the normalized query.
+     * @return True if the term starts with the query.
+     */
+    private boolean startsWith(int term, int queryLength) {
+        if (termLengths[term] < queryLength) return false;
+        int offset = termOffsets[term];
+        for (int i = 0; i < queryLength; i++) {
+            if (arena[offset + i] != queryBuffer[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Appends a normalized term to the arena.
+     * @param term The normalized term, skipped if empty.
+     * @param slot The slot of the contact the term belongs to.
+     * @param field The field the term comes from.
+     */
+    private void addTerm(String term, int slot, byte field) {
+        if (term.isEmpty()) return;
+        if (arenaSize + term.length() > arena.length) {
+            arena = Arrays.copyOf(arena, Math.max(arena.length * 2, arenaSize + term.length()));
+        }
+        int start = arenaSize;
+        term.getChars(0, term.length(), arena, arenaSize);
+        arenaSize += term.length();
+        if (termCount == termOffsets.length) {
+            int capacity = termCount * 2;
+            termOffsets = Arrays.copyOf(termOffsets, capacity);
+            termLengths = Arrays.copyOf(termLengths, capacity);
+            termSlots = Arrays.copyOf(termSlots, capacity);
+            termFields = Arrays.copyOf(termFields, capacity);
+        }
+        termOffsets[termCount] = start;
+        termLengths[termCount] = arenaSize - start;
+        termSlots[termCount] = slot;
+        termFields[termCount] = field;
+        termCount++;
+    }
+
+    /**
+     * Drops the terms of removed contacts, compacts the slots and sorts all terms.
+     */
+    private void rebuild() {
+        Contact[] liveContacts = new Contact[Math.max(16, slotsById.size())];
+        int[] liveTermCounts = new int[liveContacts.length];
+        int[] newSlots = new int[slotCount];
+        int liveCount = 0;
+        slotsById.clear();
+        for (int slot = 0; slot < slotCount; slot++) {
+            if (contacts[slot] == null) continue;
+            newSlots[slot] = liveCount;
+            slotsById.put(contacts[slot].getId(), liveCount);
+            liveTermCounts[liveCount] = slotTermCounts[slot];
+            liveContacts[liveCount++] = contacts[slot];
+        }
+        Integer[] order = new Integer[termCount - deadTermCount];
+        int liveTerms = 0;
+        for (int term = 0; term < termCount; term++) {
+            if (contacts[termSlots[term]] != null) order[liveTerms++] = term;
+        }
+        order = Arrays.copyOf(order, liveTerms);
+        Arrays.sort(order, this::compareTerms);
+
+        char[] newArena = new char[Math.max(256, arenaSize)];
+        int[] newOffsets = new int[Math.max(64, liveTerms)];
+        int[] newLengths = new int[newOffsets.length];
+        int[] newTermSlots = new int[newOffsets.length];
+        byte[] newFields = new byte[newOffsets.length];
+        int newArenaSize = 0;
+        for (int i = 0; i < liveTerms; i++) {
+            int term = order[i];
+            System.arraycopy(arena, termOffsets[term], newArena, newArenaSize, termLengths[term]);
+            newOffsets[i] = newArenaSize;
+            newLengths[i] = termLengths[term];
+            newTermSlots[i] = newSlots[termSlots[term]];
+            newFields[i] = termFields[term];
+            newArenaSize += termLengths[term];
+        }
+        contacts = liveContacts;
+        slotTermCounts = liveTermCounts;
+        slotCount = liveCount;
+        arena = newArena;
+        arenaSize = newArenaSize;
+        termOffsets = newOffsets;
+        termLengths = newLengths;
+        termSlots = newTermSlots;
+        termFields = newFields;
+        termCount = liveTerms;
+        sortedCount = liveTerms;
+        deadTermCount = 0;
+    }
+
+    /**
+     * Compares two terms lexicographically.
+     * @param first The first term.
+     * @param second The second term.
+     * @return A negative, zero or positive number as the first term is smaller than, equal to or greater than the second.
+     */
+    private int compareTerms(int first, int second) {
+        return Arrays.compare(arena, termOffsets[first], termOffsets[first] + termLengths[first],
+                arena, termOffsets[second], termOffsets[second] + termLengths[second]);
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.addressbook.model;
+
+import java.text.Normalizer;
+
+/**
+ * Normalizes text the same way for contacts and for queries, so they can be compared char by char.
+ * Text is lowercased and stripped of accents; phone numbers are reduced to their digits,
+ * with the international prefix of the default country replaced by the national trunk prefix.
+ */
+final class SearchKeys {
+    /**
+     * The country whose international numbers, such as "+61 423 423 423", are also matched by
+     * their national form "0423 423 423".
+     */
+    static final String DEFAULT_COUNTRY_CODE = "61";
+    private static final String TRUNK_PREFIX = "0";
+
+    private SearchKeys() {
+    }
+
+    /**
+     * Lowercases text and removes its accents, so "José" becomes "jose".
+     * @param text The text to normalize, may be null.
+     * @return The normalized text, or an empty string for null.
+     */
+    static String fold(String text) {
+        if (text == null) return "";
+        boolean ascii = true;
+        for (int i = 0; i < text.length() && ascii; i++) {
+            ascii = text.charAt(i) < 0x80;
+        }
+        if (ascii) return text.toLowerCase();
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) != Character.NON_SPACING_MARK) {
+                folded.append(Character.toLowerCase(c));
+            }
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Reduces a phone number to its digits. A number written in the international format of the
+     * default country ("+61 ..." or "0061 ...") gets the national trunk prefix instead, so it
+     * compares equal to the same number written the national way.
+     * @param phone The phone number, may be null.
+     * @return The digits of the phone number, or an empty string for null.
+     */
+    static String phoneDigits(String phone) {
+        if (phone == null) return "";
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') digits.append(c);
+        }
+        String international = phone.trim().startsWith("+") ? DEFAULT_COUNTRY_CODE : "00" + DEFAULT_COUNTRY_CODE;
+        if (digits.length() > international.length() && digits.indexOf(international) == 0) {
+            digits.replace(0, international.length(), TRUNK_PREFIX);
+        }
+        return digits.toString();
+    }
+
+    /**
+     * Checks whether a string only contains digits and common phone punctuation, with at least one digit.
+     * @param text The string to check.
+     * @return True if the string looks like a phone number.
+     */
+    static boolean isPhoneLike(String text) {
+        boolean hasDigit = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            } else if (c != ' ' && c != '+' && c != '-' && c != '(' && c != ')' && c != '.') {
+                return false;
+            }
+        }
+        return hasDigit;
+    }
+}
@@ -0,0 +1,304 @@
+package com.example.addressbook.model;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * A contact data access object (DAO) that answers reads from a memory-mapped {@link ContactSnapshot} of an SQLite
+ * database while the snapshot is current, so the address book can be listed and searched right after launch
+ * without loading it. Writes go to the wrapped DAO; the first one makes the snapshot stale, and reads then go to
+ * the wrapped DAO until {@link #refreshSnapshot()} brings the snapshot up to date again from the change log.
+ * As with {@link CachingContactDAO}, every write must go through this DAO for the snapshot to be trusted.
+ */
+public class SnapshotContactDAO implements IContactDAO {
+    private final IContactDAO contactDAO;
+    private final SqliteContactDAO database;
+    private final Path file;
+    /**
+     * The snapshot, or null while it is stale.
+     */
+    private volatile ContactSnapshot snapshot;
+    private int writeCount = 0;
+
+    /**
+     * Constructs a DAO over a database, using its snapshot file if it is current. A stale, missing or
+     * unreadable snapshot is not rebuilt here, so construction never waits for it: reads go to the wrapped DAO
+     * until {@link #refreshSnapshot()} is called.
+     * @param contactDAO The DAO writes and the reads of a stale snapshot go to, which may be a cache in front of the database.
+     * @param database The DAO of the database the snapshot is taken from.
+     * @param file The snapshot file.
+     */
+    public SnapshotContactDAO(IContactDAO contactDAO, SqliteContactDAO database, Path file) {
+        this.contactDAO = contactDAO;
+        this.database = database;
+        this.file = file;
+        if (Files.exists(file)) {
+            try {
+                ContactSnapshot current = ContactSnapshot.open(file);
+                if (current.getChangeSequence() == database.getChangeSequence()) snapshot = current;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Checks whether reads are answered by the snapshot.
+     * @return True if the snapshot is current.
+     */
+    public boolean isSnapshotCurrent() {
+        return snapshot != null;
+    }
+
+    /**
+     * Brings the snapshot file up to date from the change log of the database and answers reads from it again,
+     * unless a write went through this DAO meanwhile. Reads and writes are not blocked while the file is written,
+     * so this can run on a background thread.
+     * @throws IOException If the snapshot cannot be written.
+     */
+    public void refreshSnapshot() throws IOException {
+        int startWriteCount;
+        synchronized (this) {
+            startWriteCount = writeCount;
+        }
+        ContactSnapshot refreshed = ContactSnapshot.refresh(file, database);
+        synchronized (this) {
+            if (writeCount == startWriteCount) snapshot = refreshed;
+        }
+    }
+
+    /**
+     * Runs a write through the wrapped DAO, marking the snapshot as stale before and after it,
+     * so a refresh that overlaps the write in any way does not bring the snapshot back.
+     * @param write The write to run.
+     */
+    private void write(Runnable write) {
+        write(() -> {
+            write.run();
+            return true;
+        });
+    }
+
+    /**
+     * Runs a write reporting whether it was committed through the wrapped DAO, marking the snapshot as stale
+     * before and after it.
+     * @param write The write to run.
+     * @return Whether the write was committed.
+     */
+    private boolean write(BooleanSupplier write) {
+        invalidate();
+        try {
+            return write.getAsBoolean();
+        } finally {
+            invalidate();
+        }
+    }
+
+    /**
+     * Marks the snapshot as stale.
+     */
+    private synchronized void invalidate() {
+        writeCount++;
+        snapshot = null;
+    }
+
+    /**
+     * Adds a contact through the wrapped DAO.
+     * @param contact The contact to add.
+     */
+    @Override
+    public void addContact(Contact contact) {
+        write(() -> contactDAO.addContact(contact));
+    }
+
+    /**
+     * Updates a contact through the wrapped DAO.
+     * @param contact The contact to update.
+     */
+    @Override
+    public void updateContact(Contact contact) {
+        write(() -> contactDAO.updateContact(contact));
+    }
+
+    /**
+     * Deletes a contact through the wrapped DAO.
+     * @param contact The contact to delete.
+     */
+    @Override
+    public void deleteContact(Contact contact) {
+        write(() -> contactDAO.deleteContact(contact));
+    }
+
+    /**
+     * Adds several contacts through the wrapped DAO.
+     * @param contacts The contacts to add.
+     */
+    @Override
+    public void addContacts(Collection<Contact> contacts) {
+        write(() -> contactDAO.addContacts(contacts));
+    }
+
+    /**
+     * Updates several contacts through the wrapped DAO.
+     * @param contacts The contacts to update.
+     */
+    @Override
+    public void updateContacts(Collection<Contact> contacts) {
+        write(() -> contactDAO.updateContacts(contacts));
+    }
+
+    /**
+     * Deletes several contacts through the wrapped DAO.
+     * @param contacts The contacts to delete.
+     */
+    @Override
+    public void deleteContacts(Collection<Contact> contacts) {
+        write(() -> contactDAO.deleteContacts(contacts));
+    }
+
+    /**
+     * Updates several contacts through the wrapped DAO, reporting whether the write was committed.
+     * @param contacts The contacts to update.
+     * @return Whether the contacts were written.
+     */
+    @Override
+    public boolean tryUpdateContacts(Collection<Contact> contacts) {
+        return write(() -> contactDAO.tryUpdateContacts(contacts));
+    }
+
+    /**
+     * Deletes several contacts through the wrapped DAO, reporting whether the write was committed.
+     * @param contacts The contacts to delete.
+     * @return Whether the contacts were deleted.
+     */
+    @Override
+    public boolean tryDeleteContacts(Collection<Contact> contacts) {
+        return write(() -> contactDAO.tryDeleteContacts(contacts));
+    }
+
+    /**
+     * Marks the snapshot as stale after changes written to the database without going through this DAO, filling in
+     * the previous state of the changed contacts from the snapshot if it was current, then passes the changes on to
+     * the wrapped DAO.
+     * @param changes The changes, in the order they were made.
+     * @return The changes with the previous states known so far filled in.
+     */
+    @Override
+    public List<ContactChange> applyExternalChanges(List<ContactChange> changes) {
+        ContactSnapshot current = snapshot;
+        invalidate();
+        if (current == null) return contactDAO.applyExternalChanges(changes);
+        List<ContactChange> resolved = new ArrayList<>(changes.size());
+        for (ContactChange change : changes) {
+            if (change.isBeforeUnknown()) change = change.withBefore(current.getContact(change.getId()));
+            if (change != null) resolved.add(change);
+        }
+        return contactDAO.applyExternalChanges(resolved);
+    }
+
+    /**
+     * Retrieves a contact from the snapshot, or from the wrapped DAO while the snapshot is stale.
+     * @param id The id of the contact to retrieve.
+     * @return The contact with the given id, or null if not found.
+     */
+    @Override
+    public Contact getContact(int id) {
+        ContactSnapshot current = snapshot;
+        return current != null ? current.getContact(id) : contactDAO.getContact(id);
+    }
+
+    /**
+     * Retrieves all contacts from the snapshot, or from the wrapped DAO while the snapshot is stale.
+     * @return A list of all contacts.
+     */
+    @Override
+    public List<Contact> getAllContacts() {
+        ContactSnapshot current = snapshot;
+        return current != null ? current.getAllContacts() : contactDAO.getAllContacts();
+    }
+
+    /**
+     * Passes every contact of the snapshot, or of the wrapped DAO while the snapshot is stale, to the given action.
+     * @param action The action to run for each contact.
+     */
+    @Override
+    public void forEachContact(Consumer<? super Contact> action) {
+        ContactSnapshot current = snapshot;
+        if (current != null) {
+            current.forEachContact(action);
+        } else {
+            contactDAO.forEachContact(action);
+        }
+    }
+
+    /**
+     * Searches the snapshot, or scans the contacts of the wrapped DAO while the snapshot is stale. The scan matches
+     * with the same {@link ContactQuery} as the snapshot, folding accents and phone numbers, rather than letting the
+     * wrapped DAO search, so results do not change when the snapshot goes stale after a write.
+     * @param query The search query, or null / empty to match every contact.
+     * @return A list of contacts matching the query.
+     */
+    @Override
+    public List<Contact> searchContacts(String query) {
+        ContactSnapshot current = snapshot;
+        if (current != null) return current.searchContacts(query);
+        ContactQuery contactQuery = ContactQuery.of(query);
+        if (contactQuery.isEmpty()) return contactDAO.getAllContacts();
+        List<Contact> contacts = new ArrayList<>();
+        contactDAO.forEachContact(contact -> {
+            if (contactQuery.matches(contact)) contacts.add(contact);
+        });
+        return contacts;
+    }
+
+    /**
+     * Retrieves one page of contacts from the snapshot, or from the wrapped DAO while the snapshot is stale.
+     * @param after The key of the last contact of the previous page, or null for the first page.
+     * @param limit The maximum number of contacts to return.
+     * @return The contacts sorting after the key, at most {@code limit} of them.
+     */
+    @Override
+    public List<Contact> getContacts(ContactKey after, int limit) {
+        ContactSnapshot current = snapshot;
+        return current != null ? current.getContacts(after, limit) : contactDAO.getContacts(after, limit);
+    }
+
+    /**
+     * Retrieves the key of the contact at a position of the sorted list from the snapshot,
+     * or from the wrapped DAO while the snapshot is stale.
+     * @param position The position, from 0.
+     * @return The key of the contact at the position, or null if there are not that many contacts.
+     */
+    @Override
+    public ContactKey getContactKeyAt(int position) {
+        ContactSnapshot current = snapshot;
+        return current != null ? current.getContactKeyAt(position) : contactDAO.getContactKeyAt(position);
+    }
+
+    /**
+     * Retrieves the number of contacts from the snapshot, or from the wrapped DAO while the snapshot is stale.
+     * @return The number of contacts.
+     */
+    @Override
+    public int getContactCount() {
+        ContactSnapshot current = snapshot;
+        return current != null ? current.getContactCount() : contactDAO.getContactCount();
+    }
+
+    /**
+     * Counts the contacts sorting before a key in the snapshot, or in the wrapped DAO while the snapshot is stale.
+     * @param key The key to count up to.
+     * @return The number of contacts sorting before the key.
+     */
+    @Override
+    public int countContactsBefore(ContactKey key) {
+        ContactSnapshot current = snapshot;
+        return current != null ? current.countContactsBefore(key) : contactDAO.countContactsBefore(key);
+    }
+}
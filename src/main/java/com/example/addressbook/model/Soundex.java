@@ -0,0 +1,44 @@
+package com.example.addressbook.model;
+
+/**
+ * Encodes names with American Soundex, so names that sound alike get the same code:
+ * "Smith" and "Smyth" both become "S530", "John" and "Jon" both become "J500".
+ */
+final class Soundex {
+    /**
+     * The digit of each letter from A to Z. Vowels and Y separate runs of equal digits, H and W do not.
+     */
+    private static final String DIGITS = "01230120022455012623010202";
+    private static final int CODE_LENGTH = 4;
+
+    private Soundex() {
+    }
+
+    /**
+     * Encodes a name. Accents are folded and characters other than letters are ignored.
+     * @param name The name to encode, may be null.
+     * @return The four character code, or null if the name has no letters.
+     */
+    static String encode(String name) {
+        String folded = SearchKeys.fold(name);
+        char[] code = new char[CODE_LENGTH];
+        int length = 0;
+        char lastDigit = 0;
+        for (int i = 0; i < folded.length() && length < CODE_LENGTH; i++) {
+            char c = folded.charAt(i);
+            if (c < 'a' || c > 'z') continue;
+            char digit = DIGITS.charAt(c - 'a');
+            if (length == 0) {
+                code[length++] = Character.toUpperCase(c);
+            } else if (digit != '0' && digit != lastDigit) {
+                code[length++] = digit;
+            }
+            if (c != 'h' && c != 'w') lastDigit = digit;
+        }
+        if (length == 0) return null;
+        while (length < CODE_LENGTH) {
+            code[length++] = '0';
+        }
+        return new String(code);
+    }
+}
@@ -3,20 +3,32 @@ package com.example.addressbook.model;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Properties;
 
 /**
  * Singleton class for managing SQLite database connections.
  */
 public class SqliteConnection {
+    /**
+     * The file of the default contacts database, in the working directory.
+     */
+    public static final String DEFAULT_FILE = "contacts.db";
+    /**
+     * The JDBC URL of the default contacts database.
+     */
+    public static final String DEFAULT_URL = "jdbc:sqlite:" + DEFAULT_FILE;
     private static Connection instance = null;
 
     /**
      * Private constructor to prevent instantiation from outside the class.
      */
     private SqliteConnection() {
-        String url = "jdbc:sqlite:contacts.db";
+        // A single connection gains nothing from WAL, and the journal mode would be persisted in the file
+        SqliteSettings settings = new SqliteSettings();
+        settings.setJournalMode(null);
         try {
-            instance = DriverManager.getConnection(url);
+            instance = open(DEFAULT_URL, settings);
         } catch (SQLException sqlEx) {
             System.err.println(sqlEx);
         }
@@ -24,7 +36,7 @@ public class SqliteConnection {
 
     /**
      * Retrieves the singleton instance of the SQLite connection.
-     * If the instance does not exist, it is created.
+     * If the instance does not exist, it is created, leaving the journal mode of the database as it is.
      * @return The singleton instance of the SQLite connection.
      */
     public static Connection getInstance() {
@@ -33,4 +45,43 @@ public class SqliteConnection {
         }
         return instance;
     }
-}
\ No newline at end of file
+
+    /**
+     * Opens a new connection to an SQLite database and applies the given settings to it.
+     * The caller owns the returned connection and must close it.
+     * @param url The JDBC URL of the database, e.g. {@code jdbc:sqlite:contacts.db}.
+     * @param settings The PRAGMA settings to apply.
+     * @return The new connection.
+     * @throws SQLException If the connection cannot be opened or configured.
+     */
+    public static Connection open(String url, SqliteSettings settings) throws SQLException {
+        return open(url, settings, false);
+    }
+
+    /**
+     * Opens a new connection to an SQLite database and applies the given settings to it.
+     * The caller owns the returned connection and must close it.
+     * @param url The JDBC URL of the database, e.g. {@code jdbc:sqlite:contacts.db}.
+     * @param settings The PRAGMA settings to apply.
+     * @param readOnly Whether the database should be opened read-only.
+     * @return The new connection.
+     * @throws SQLException If the connection cannot be opened or configured.
+     */
+    public static Connection open(String url, SqliteSettings settings, boolean readOnly) throws SQLException {
+        Properties properties = new Properties();
+        if (readOnly) {
+            // SQLITE_OPEN_READONLY
+            properties.setProperty("open_mode", "1");
+        }
+        Connection connection = DriverManager.getConnection(url, properties);
+        try (Statement statement = connection.createStatement()) {
+            for (String pragma : settings.toPragmas(readOnly)) {
+                statement.execute(pragma);
+            }
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+}
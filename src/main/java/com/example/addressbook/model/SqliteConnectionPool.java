@@ -0,0 +1,256 @@
+package com.example.addressbook.model;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hands out SQLite connections per operation: one writer connection used by a single thread at a time,
+ * plus a fixed number of read-only connections that can be used concurrently.
+ * In WAL mode readers see the last committed state and never block the writer or each other,
+ * so searches can run while an import or edit is in progress.
+ * The journal mode is persisted in the database file, so the pool puts back the mode it found when it is closed,
+ * unless another connection still has the database open.
+ */
+public class SqliteConnectionPool implements AutoCloseable {
+    private static SqliteConnectionPool instance = null;
+    /**
+     * The primary result code SQLite fails with when another connection holds a lock.
+     */
+    private static final int SQLITE_BUSY = 5;
+
+    private final Connection writer;
+    private final ReentrantLock writerLock = new ReentrantLock();
+    private final List<Connection> readers = new ArrayList<>();
+    private final BlockingQueue<Connection> idleReaders;
+    /**
+     * The reader each thread is running work on, so that reads nested inside a read reuse it instead of waiting
+     * for another reader that may never become free.
+     */
+    private final ThreadLocal<Connection> heldReader = new ThreadLocal<>();
+    private final boolean ownsConnections;
+    /**
+     * The journal mode of the database before the pool opened it, or null if the pool does not own its connections.
+     */
+    private final String initialJournalMode;
+
+    /**
+     * A unit of database work run on a connection handed out by the pool.
+     * @param <T> The type of the result of the work.
+     */
+    public interface SqlFunction<T> {
+        /**
+         * Runs the work.
+         * @param connection The connection to run the work on. It must not be used after returning.
+         * @return The result of the work.
+         * @throws SQLException If the work fails.
+         */
+        T apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * Opens a pool with one writer and the given number of read-only connections to a database.
+     * @param url The JDBC URL of the database, e.g. {@code jdbc:sqlite:contacts.db}.
+     * @param settings The PRAGMA settings to apply to every connection.
+     * @param readerCount The number of read-only connections to open.
+     * @throws SQLException If a connection cannot be opened.
+     */
+    public SqliteConnectionPool(String url, SqliteSettings settings, int readerCount) throws SQLException {
+        initialJournalMode = readJournalMode(url);
+        // The writer goes first so the journal mode is set before any reader attaches
+        writer = SqliteConnection.open(url, settings);
+        ownsConnections = true;
+        idleReaders = new ArrayBlockingQueue<>(Math.max(1, readerCount));
+        try {
+            for (int i = 0; i < readerCount; i++) {
+                Connection reader = SqliteConnection.open(url, settings, true);
+                readers.add(reader);
+                idleReaders.add(reader);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Constructs a pool around a single connection that is used for both reads and writes.
+     * The caller keeps ownership of the connection.
+     * @param connection The connection to use.
+     */
+    private SqliteConnectionPool(Connection connection) {
+        writer = connection;
+        ownsConnections = false;
+        initialJournalMode = null;
+        idleReaders = new ArrayBlockingQueue<>(1);
+    }
+
+    /**
+     * Wraps a single connection in a pool that serializes all reads and writes through it.
+     * @param connection The connection to use. It is not closed by the pool.
+     * @return A pool using only the given connection.
+     */
+    public static SqliteConnectionPool of(Connection connection) {
+        return new SqliteConnectionPool(connection);
+    }
+
+    /**
+     * Retrieves the shared pool for the default contacts database.
+     * If the pool does not exist, it is created with one reader per processor, up to four.
+     * @return The shared pool, or null if the database cannot be opened.
+     */
+    public static synchronized SqliteConnectionPool getInstance() {
+        if (instance == null) {
+            int readerCount = Math.min(4, Runtime.getRuntime().availableProcessors());
+            try {
+                instance = new SqliteConnectionPool(SqliteConnection.DEFAULT_URL, new SqliteSettings(), readerCount);
+            } catch (SQLException sqlEx) {
+                System.err.println(sqlEx);
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Closes the shared pool if it was opened, putting back the journal mode the default database had.
+     * The next call to {@link #getInstance()} opens a new pool.
+     */
+    public static synchronized void closeInstance() {
+        if (instance != null) {
+            instance.close();
+            instance = null;
+        }
+    }
+
+    /**
+     * Reads the journal mode of a database with a short-lived connection that changes nothing.
+     * @param url The JDBC URL of the database.
+     * @return The journal mode, e.g. "delete" or "wal".
+     * @throws SQLException If the database cannot be opened.
+     */
+    private static String readJournalMode(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url);
+             Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode")) {
+            return resultSet.getString(1);
+        }
+    }
+
+    /**
+     * Runs work on a read-only connection, waiting for one to become free.
+     * A read nested inside another read on the same thread runs on the reader the thread already holds.
+     * Pools without readers run the work on the writer instead.
+     * @param <T> The type of the result of the work.
+     * @param work The work to run.
+     * @return The result of the work.
+     * @throws SQLException If the work fails or the wait is interrupted.
+     */
+    public <T> T read(SqlFunction<T> work) throws SQLException {
+        if (readers.isEmpty()) {
+            return write(work);
+        }
+        Connection held = heldReader.get();
+        if (held != null) {
+            return work.apply(held);
+        }
+        Connection reader;
+        try {
+            reader = idleReaders.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a reader connection", e);
+        }
+        heldReader.set(reader);
+        try {
+            return work.apply(reader);
+        } finally {
+            heldReader.remove();
+            idleReaders.add(reader);
+        }
+    }
+
+    /**
+     * Runs work on the writer connection, waiting for other writes to finish.
+     * @param <T> The type of the result of the work.
+     * @param work The work to run.
+     * @return The result of the work.
+     * @throws SQLException If the work fails.
+     */
+    public <T> T write(SqlFunction<T> work) throws SQLException {
+        writerLock.lock();
+        try {
+            return work.apply(writer);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Runs work on the writer connection in a single transaction, rolling it back if the work fails.
+     * @param <T> The type of the result of the work.
+     * @param work The work to run.
+     * @return The result of the work.
+     * @throws SQLException If the work fails.
+     */
+    public <T> T transaction(SqlFunction<T> work) throws SQLException {
+        return write(connection -> {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try {
+                T result = work.apply(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        });
+    }
+
+    /**
+     * Retrieves the number of read-only connections in the pool.
+     * @return The number of readers.
+     */
+    public int getReaderCount() {
+        return readers.size();
+    }
+
+    /**
+     * Closes every connection opened by the pool. Once the readers are closed, the writer puts back the journal mode
+     * the database had before the pool opened it if it holds the last connection to the database. While another
+     * connection, of this process or another one, still has the database open, the database stays in WAL mode.
+     */
+    @Override
+    public void close() {
+        if (!ownsConnections) return;
+        for (Connection reader : readers) {
+            try {
+                reader.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+        try (Statement statement = writer.createStatement()) {
+            // Leaving WAL needs the database to itself, so fail at once rather than wait for the other connections
+            statement.execute("PRAGMA busy_timeout = 0");
+            statement.execute("PRAGMA journal_mode = " + initialJournalMode);
+        } catch (SQLException e) {
+            // Another connection still has the database open and will keep using it in WAL mode
+            if ((e.getErrorCode() & 0xff) != SQLITE_BUSY) e.printStackTrace();
+        }
+        try {
+            writer.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
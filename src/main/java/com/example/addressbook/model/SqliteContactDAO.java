@@ -2,21 +2,131 @@ package com.example.addressbook.model;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
 
 /**
  * Implementation of the contact data access object (DAO) for SQLite databases.
+ * Reads and writes borrow a connection from a {@link SqliteConnectionPool} per operation.
+ * Statements are prepared once per connection and reused; {@link #close()} releases them.
  */
-public class SqliteContactDAO implements IContactDAO {
-    private Connection connection;
+public class SqliteContactDAO implements IContactDAO, AutoCloseable {
+    private static final String INSERT_SQL = "INSERT INTO contacts (firstName, lastName, phone, email, searchKey, phoneKey) "
+            + "VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String UPDATE_SQL = "UPDATE contacts SET firstName = ?, lastName = ?, phone = ?, email = ?, "
+            + "searchKey = ?, phoneKey = ? WHERE id = ?";
+    private static final String DELETE_SQL = "DELETE FROM contacts WHERE id = ?";
+    private static final String SELECT_SQL = "SELECT * FROM contacts WHERE id = ?";
+    private static final String SELECT_ALL_SQL = "SELECT * FROM contacts";
+    private static final String LAST_ID_SQL = "SELECT last_insert_rowid()";
+    private static final String FIRST_PAGE_SQL = "SELECT * FROM contacts ORDER BY lastName, firstName, id LIMIT ?";
+    private static final String NEXT_PAGE_SQL = "SELECT * FROM contacts WHERE (lastName, firstName, id) > (?, ?, ?) "
+            + "ORDER BY lastName, firstName, id LIMIT ?";
+    private static final String KEY_AT_SQL = "SELECT lastName, firstName, id FROM contacts "
+            + "ORDER BY lastName, firstName, id LIMIT 1 OFFSET ?";
+    private static final String COUNT_SQL = "SELECT COUNT(*) FROM contacts";
+    private static final String COUNT_BEFORE_SQL = "SELECT COUNT(*) FROM contacts WHERE (lastName, firstName, id) < (?, ?, ?)";
+    /**
+     * The contacts are searched by the folded search key and phone digits of {@link Contact}, stored with each row.
+     * Rows written without them, by another process or before they were stored, are always read and checked in Java
+     * until {@link #storeMissingKeys()} fills them in; the partial index {@code contacts_unkeyed} keeps them cheap to find.
+     */
+    private static final String FTS_SEARCH_SQL = "SELECT * FROM contacts WHERE id IN "
+            + "(SELECT rowid FROM contacts_fts WHERE contacts_fts MATCH ? "
+            + "UNION SELECT id FROM contacts WHERE searchKey IS NULL) ORDER BY id";
+    private static final String SCAN_SEARCH_SQL = "SELECT * FROM contacts WHERE instr(searchKey, ?) > 0 "
+            + "OR instr(phoneKey, ?) > 0 OR searchKey IS NULL ORDER BY id";
+    private static final String UNKEYED_SQL = "SELECT * FROM contacts WHERE searchKey IS NULL LIMIT ?";
+    private static final String STORE_KEYS_SQL = "UPDATE contacts SET searchKey = ?, phoneKey = ? WHERE id = ?";
+    /**
+     * The number of rows given their missing search keys in one transaction.
+     */
+    private static final int STORE_KEYS_BATCH_SIZE = 10_000;
+    /**
+     * Queries shorter than a trigram cannot use the full-text index.
+     */
+    private static final int MIN_FTS_QUERY_LENGTH = 3;
+    /**
+     * Batches of at least this many contacts are added to the full-text index with one statement after the rows
+     * are inserted, rather than row by row by the insert trigger, which is several times slower.
+     */
+    private static final int BULK_INDEX_THRESHOLD = 10_000;
+    private static final String BULK_INDEX_SQL = "INSERT INTO contacts_fts (rowid, searchKey, phoneKey) "
+            + "SELECT id, searchKey, phoneKey FROM contacts WHERE id >= ?";
+    private static final String BULK_CHANGES_SQL = "INSERT INTO contact_changes (contactId) SELECT id FROM contacts WHERE id >= ?";
+    private static final String CHANGE_SEQUENCE_SQL = "SELECT COALESCE(MAX(seq), 0) FROM contact_changes";
+    private static final String COMPACT_CHANGES_SQL = "DELETE FROM contact_changes WHERE seq NOT IN "
+            + "(SELECT MAX(seq) FROM contact_changes GROUP BY contactId)";
+    private static final String SELECT_ALL_BY_ID_SQL = "SELECT * FROM contacts ORDER BY id";
+    private static final String DATA_VERSION_SQL = "PRAGMA data_version";
+    private static final String CHANGED_IDS_SQL = "SELECT DISTINCT contactId FROM contact_changes WHERE seq > ? AND seq <= ?";
+    /**
+     * The number of ids bound to one query reading contacts by id. Every query binds that many,
+     * repeating the last id if needed, so a single statement is prepared.
+     */
+    private static final int ID_BATCH_SIZE = 500;
+    private static final String SELECT_BY_IDS_SQL = "SELECT * FROM contacts WHERE id IN ("
+            + "?, ".repeat(ID_BATCH_SIZE - 1) + "?) ORDER BY id";
+    /**
+     * The contacts changed within a range of the change log, once each, with null columns for deleted contacts.
+     */
+    private static final String CHANGES_SQL = "SELECT changed.contactId AS changedId, contacts.* FROM "
+            + "(SELECT DISTINCT contactId FROM contact_changes WHERE seq > ? AND seq <= ?) AS changed "
+            + "LEFT JOIN contacts ON contacts.id = changed.contactId ORDER BY changed.contactId";
+
+    /**
+     * The default number of rows fetched at a time when streaming contacts.
+     */
+    public static final int DEFAULT_FETCH_SIZE = 1_000;
+
+    private final SqliteConnectionPool pool;
+    private volatile int fetchSize = DEFAULT_FETCH_SIZE;
+    /**
+     * The prepared statements of each connection, by SQL. A connection is only used by
+     * one thread at a time, so the inner maps need no synchronization of their own.
+     */
+    private final Map<Connection, Map<String, PreparedStatement>> statements = new ConcurrentHashMap<>();
+    /**
+     * The ranges of the change log written through this DAO and not yet skipped by {@link #forEachExternalChange},
+     * as the sequence number before each range mapped to the last sequence number of the range.
+     * Consecutive local writes are merged into one range, so there is one range per external write in between.
+     */
+    private final TreeMap<Long, Long> localChanges = new TreeMap<>();
 
     /**
      * Constructor for the SQLite contact DAO.
-     * Initializes the database connection and creates the contacts table if it does not exist.
+     * Uses the shared connection pool and creates the contacts table if it does not exist.
      */
     public SqliteContactDAO() {
-        connection = SqliteConnection.getInstance();
+        this(SqliteConnectionPool.getInstance());
+    }
+
+    /**
+     * Constructor for an SQLite contact DAO using the given connection for reads and writes.
+     * Creates the contacts table if it does not exist. The caller keeps ownership of the connection.
+     * @param connection The connection to the database.
+     */
+    public SqliteContactDAO(Connection connection) {
+        this(SqliteConnectionPool.of(connection));
+    }
+
+    /**
+     * Constructor for an SQLite contact DAO using the given connection pool.
+     * Creates the contacts table if it does not exist. The caller keeps ownership of the pool.
+     * @param pool The pool to borrow connections from.
+     */
+    public SqliteContactDAO(SqliteConnectionPool pool) {
+        this.pool = pool;
         createTable();
+        createSearchTable();
+        createChangeTable();
+        storeMissingKeys();
     }
 
     /**
@@ -25,41 +135,209 @@ public class SqliteContactDAO implements IContactDAO {
     private void createTable() {
         // Create table if not exists
         try {
-            Statement statement = connection.createStatement();
-            String query = "CREATE TABLE IF NOT EXISTS contacts ("
-                    + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
-                    + "firstName VARCHAR NOT NULL,"
-                    + "lastName VARCHAR NOT NULL,"
-                    + "phone VARCHAR NOT NULL,"
-                    + "email VARCHAR NOT NULL"
-                    + ")";
-            statement.execute(query);
+            pool.write(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    String query = "CREATE TABLE IF NOT EXISTS contacts ("
+                            + "id INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + "firstName VARCHAR NOT NULL,"
+                            + "lastName VARCHAR NOT NULL,"
+                            + "phone VARCHAR NOT NULL,"
+                            + "email VARCHAR NOT NULL,"
+                            + "searchKey VARCHAR,"
+                            + "phoneKey VARCHAR"
+                            + ")";
+                    statement.execute(query);
+                    // Covers the sort order of keyset pagination
+                    return statement.execute("CREATE INDEX IF NOT EXISTS contacts_by_name ON contacts (lastName, firstName, id)");
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates the full-text search table over the search keys of the contacts if it does not exist,
+     * together with the triggers that keep it in sync with the contacts table.
+     * The table uses the trigram tokenizer, so a MATCH on a quoted phrase is a substring match,
+     * and it is contentless because the keys can always be read from the contacts table.
+     * Databases created before the keys were stored get the key columns, and their older full-text table,
+     * which indexed the unfolded text, is replaced.
+     */
+    private void createSearchTable() {
+        try {
+            pool.transaction(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    boolean keyed = false;
+                    try (ResultSet resultSet = statement.executeQuery("PRAGMA table_info(contacts)")) {
+                        while (resultSet.next()) {
+                            keyed |= resultSet.getString("name").equals("searchKey");
+                        }
+                    }
+                    if (!keyed) {
+                        statement.execute("ALTER TABLE contacts ADD COLUMN searchKey VARCHAR");
+                        statement.execute("ALTER TABLE contacts ADD COLUMN phoneKey VARCHAR");
+                        statement.execute("DROP TRIGGER IF EXISTS contacts_fts_insert");
+                        statement.execute("DROP TRIGGER IF EXISTS contacts_fts_delete");
+                        statement.execute("DROP TRIGGER IF EXISTS contacts_fts_update");
+                        statement.execute("DROP TRIGGER IF EXISTS contact_changes_update");
+                        statement.execute("DROP INDEX IF EXISTS contacts_non_ascii");
+                        statement.execute("DROP TABLE IF EXISTS contacts_fts");
+                    }
+                    statement.execute("CREATE INDEX IF NOT EXISTS contacts_unkeyed ON contacts (id) WHERE searchKey IS NULL");
+                    // A write by another process that changes a contact but not its keys leaves them out of date
+                    statement.execute("CREATE TRIGGER IF NOT EXISTS contacts_keys_stale "
+                            + "AFTER UPDATE OF firstName, lastName, phone, email ON contacts "
+                            + "WHEN new.searchKey IS old.searchKey AND new.phoneKey IS old.phoneKey "
+                            + "AND (new.firstName IS NOT old.firstName OR new.lastName IS NOT old.lastName "
+                            + "OR new.phone IS NOT old.phone OR new.email IS NOT old.email) BEGIN "
+                            + "UPDATE contacts SET searchKey = NULL, phoneKey = NULL WHERE id = new.id; END");
+                    boolean exists;
+                    try (ResultSet resultSet = statement.executeQuery(
+                            "SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = 'contacts_fts'")) {
+                        exists = resultSet.next();
+                    }
+                    if (exists) return null;
+                    statement.execute("CREATE VIRTUAL TABLE contacts_fts USING fts5("
+                            + "searchKey, phoneKey, content='', tokenize='trigram')");
+                    statement.execute(insertTriggerSql());
+                    statement.execute("CREATE TRIGGER contacts_fts_delete AFTER DELETE ON contacts BEGIN "
+                            + "INSERT INTO contacts_fts (contacts_fts, rowid, searchKey, phoneKey) "
+                            + "VALUES ('delete', old.id, old.searchKey, old.phoneKey); END");
+                    // Only a change of the indexed values is indexed again, once, whichever triggers changed them
+                    statement.execute("CREATE TRIGGER contacts_fts_update AFTER UPDATE OF id, searchKey, phoneKey ON contacts "
+                            + "WHEN new.id <> old.id OR new.searchKey IS NOT old.searchKey OR new.phoneKey IS NOT old.phoneKey BEGIN "
+                            + "INSERT INTO contacts_fts (contacts_fts, rowid, searchKey, phoneKey) "
+                            + "VALUES ('delete', old.id, old.searchKey, old.phoneKey); "
+                            + "INSERT INTO contacts_fts (rowid, searchKey, phoneKey) "
+                            + "VALUES (new.id, new.searchKey, new.phoneKey); END");
+                    statement.execute("INSERT INTO contacts_fts (rowid, searchKey, phoneKey) "
+                            + "SELECT id, searchKey, phoneKey FROM contacts");
+                }
+                return null;
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Stores the search keys of the contacts that have none, a batch per transaction, so they can be found
+     * through the full-text index again. Only the key columns change, which the change log does not record.
+     */
+    private void storeMissingKeys() {
+        try {
+            boolean more = true;
+            while (more) {
+                more = pool.transaction(connection -> {
+                    PreparedStatement select = prepare(connection, UNKEYED_SQL);
+                    select.setInt(1, STORE_KEYS_BATCH_SIZE);
+                    List<Contact> contacts = new ArrayList<>();
+                    try (ResultSet resultSet = select.executeQuery()) {
+                        while (resultSet.next()) {
+                            contacts.add(readContact(resultSet));
+                        }
+                    }
+                    if (contacts.isEmpty()) return false;
+                    PreparedStatement statement = prepare(connection, STORE_KEYS_SQL);
+                    for (Contact contact : contacts) {
+                        statement.setString(1, contact.getSearchKey());
+                        statement.setString(2, contact.getPhoneKey());
+                        statement.setInt(3, contact.getId());
+                        statement.addBatch();
+                    }
+                    executeBatch(statement);
+                    return contacts.size() == STORE_KEYS_BATCH_SIZE;
+                });
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Creates the change log if it does not exist: every insert, update and delete of a contact appends
+     * the id of the contact with the next sequence number, through triggers, so readers can catch up
+     * on the contacts changed since the last sequence number they saw, whoever made the change.
+     * {@link #compactChangeLog()} keeps it from growing without bound.
+     */
+    private void createChangeTable() {
+        try {
+            pool.transaction(connection -> {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("CREATE TABLE IF NOT EXISTS contact_changes ("
+                            + "seq INTEGER PRIMARY KEY AUTOINCREMENT,"
+                            + "contactId INTEGER NOT NULL"
+                            + ")");
+                    statement.execute(changeTriggerSql());
+                    // Changes of the search keys alone are not changes of the contact
+                    statement.execute("CREATE TRIGGER IF NOT EXISTS contact_changes_update "
+                            + "AFTER UPDATE OF id, firstName, lastName, phone, email ON contacts BEGIN "
+                            + "INSERT INTO contact_changes (contactId) VALUES (new.id); "
+                            + "INSERT INTO contact_changes (contactId) SELECT old.id WHERE old.id <> new.id; END");
+                    statement.execute("CREATE TRIGGER IF NOT EXISTS contact_changes_delete AFTER DELETE ON contacts BEGIN "
+                            + "INSERT INTO contact_changes (contactId) VALUES (old.id); END");
+                }
+                return null;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Builds the statement creating the trigger that logs inserted contacts.
+     * @return The SQL of the statement.
+     */
+    private static String changeTriggerSql() {
+        return "CREATE TRIGGER IF NOT EXISTS contact_changes_insert AFTER INSERT ON contacts BEGIN "
+                + "INSERT INTO contact_changes (contactId) VALUES (new.id); END";
+    }
+
+    /**
+     * Builds the statement creating the trigger that indexes inserted contacts.
+     * @return The SQL of the statement.
+     */
+    private static String insertTriggerSql() {
+        return "CREATE TRIGGER contacts_fts_insert AFTER INSERT ON contacts BEGIN "
+                + "INSERT INTO contacts_fts (rowid, searchKey, phoneKey) VALUES (new.id, new.searchKey, new.phoneKey); END";
+    }
+
+    /**
+     * Retrieves the prepared statement for the given SQL on a connection, preparing it on first use.
+     * @param connection The connection borrowed from the pool.
+     * @param sql The SQL of the statement.
+     * @return The prepared statement.
+     * @throws SQLException If the statement cannot be prepared.
+     */
+    private PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+        Map<String, PreparedStatement> connectionStatements = statements.computeIfAbsent(connection, key -> new HashMap<>());
+        PreparedStatement statement = connectionStatements.get(sql);
+        if (statement == null) {
+            statement = connection.prepareStatement(sql);
+            connectionStatements.put(sql, statement);
+        }
+        return statement;
+    }
+
     /**
      * Adds a contact to the database.
      * @param contact The contact to add.
      */
     @Override
     public void addContact(Contact contact) {
-        try {
-            PreparedStatement statement = connection.prepareStatement("INSERT INTO contacts (firstName, lastName, phone, email) VALUES (?, ?, ?, ?)");
-            statement.setString(1, contact.getFirstName());
-            statement.setString(2, contact.getLastName());
-            statement.setString(3, contact.getPhone());
-            statement.setString(4, contact.getEmail());
-            statement.executeUpdate();
+        runInTransaction(connection -> {
+            PreparedStatement statement = prepare(connection, INSERT_SQL);
+            bindContact(statement, contact);
+            recordLocalChanges(connection, statement.executeUpdate());
             // Set the id of the new contact
-            ResultSet generatedKeys = statement.getGeneratedKeys();
-            if (generatedKeys.next()) {
-                contact.setId(generatedKeys.getInt(1));
+            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+                if (generatedKeys.next()) {
+                    contact.setId(generatedKeys.getInt(1));
+                }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+            return null;
+        });
     }
 
     /**
@@ -68,17 +346,13 @@ public class SqliteContactDAO implements IContactDAO {
      */
     @Override
     public void updateContact(Contact contact) {
-        try {
-            PreparedStatement statement = connection.prepareStatement("UPDATE contacts SET firstName = ?, lastName = ?, phone = ?, email = ? WHERE id = ?");
-            statement.setString(1, contact.getFirstName());
-            statement.setString(2, contact.getLastName());
-            statement.setString(3, contact.getPhone());
-            statement.setString(4, contact.getEmail());
-            statement.setInt(5, contact.getId());
-            statement.executeUpdate();
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
+        runInTransaction(connection -> {
+            PreparedStatement statement = prepare(connection, UPDATE_SQL);
+            bindContact(statement, contact);
+            statement.setInt(7, contact.getId());
+            recordLocalChanges(connection, statement.executeUpdate());
+            return null;
+        });
     }
 
     /**
@@ -87,15 +361,225 @@ public class SqliteContactDAO implements IContactDAO {
      */
     @Override
     public void deleteContact(Contact contact) {
-        try {
-            PreparedStatement statement = connection.prepareStatement("DELETE FROM contacts WHERE id = ?");
+        runInTransaction(connection -> {
+            PreparedStatement statement = prepare(connection, DELETE_SQL);
             statement.setInt(1, contact.getId());
-            statement.executeUpdate();
+            recordLocalChanges(connection, statement.executeUpdate());
+            return null;
+        });
+    }
+
+    /**
+     * Adds several contacts to the database as one batch in a single transaction.
+     * Large batches are inserted with the insert triggers dropped, then indexed and logged in bulk at the end;
+     * the triggers are created again in the same transaction, so other connections never see them missing.
+     * If the batch is rolled back, the contacts keep the ids they had before.
+     * @param contacts The contacts to add.
+     */
+    @Override
+    public void addContacts(Collection<Contact> contacts) {
+        if (contacts.isEmpty()) return;
+        boolean bulk = contacts.size() >= BULK_INDEX_THRESHOLD;
+        int[] previousIds = contacts.stream().mapToInt(Contact::getId).toArray();
+        boolean committed = runInTransaction(connection -> {
+            if (bulk) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("DROP TRIGGER IF EXISTS contacts_fts_insert");
+                    statement.execute("DROP TRIGGER IF EXISTS contact_changes_insert");
+                }
+            }
+            PreparedStatement statement = prepare(connection, INSERT_SQL);
+            for (Contact contact : contacts) {
+                bindContact(statement, contact);
+                statement.addBatch();
+            }
+            executeBatch(statement);
+            // The transaction holds the write lock and no ids are given explicitly,
+            // so the rows of the batch received consecutive ids ending at the last inserted one
+            try (ResultSet resultSet = prepare(connection, LAST_ID_SQL).executeQuery()) {
+                int id = resultSet.getInt(1) - contacts.size() + 1;
+                for (Contact contact : contacts) {
+                    contact.setId(id++);
+                }
+            }
+            if (bulk) {
+                int firstId = contacts.iterator().next().getId();
+                PreparedStatement index = prepare(connection, BULK_INDEX_SQL);
+                index.setInt(1, firstId);
+                index.executeUpdate();
+                PreparedStatement log = prepare(connection, BULK_CHANGES_SQL);
+                log.setInt(1, firstId);
+                log.executeUpdate();
+                try (Statement trigger = connection.createStatement()) {
+                    trigger.execute(insertTriggerSql());
+                    trigger.execute(changeTriggerSql());
+                }
+            }
+            // Every inserted row is logged once, by the trigger or in bulk
+            recordLocalChanges(connection, contacts.size());
+            return null;
+        });
+        if (!committed) {
+            int i = 0;
+            for (Contact contact : contacts) {
+                contact.setId(previousIds[i++]);
+            }
+        }
+    }
+
+    /**
+     * Updates several contacts in the database as one batch in a single transaction.
+     * @param contacts The contacts to update.
+     */
+    @Override
+    public void updateContacts(Collection<Contact> contacts) {
+        tryUpdateContacts(contacts);
+    }
+
+    /**
+     * Updates several contacts in the database as one batch in a single transaction, rolled back if it fails.
+     * @param contacts The contacts to update.
+     * @return Whether the transaction was committed.
+     */
+    @Override
+    public boolean tryUpdateContacts(Collection<Contact> contacts) {
+        if (contacts.isEmpty()) return true;
+        return runInTransaction(connection -> {
+            PreparedStatement statement = prepare(connection, UPDATE_SQL);
+            for (Contact contact : contacts) {
+                bindContact(statement, contact);
+                statement.setInt(7, contact.getId());
+                statement.addBatch();
+            }
+            recordLocalChanges(connection, executeBatch(statement));
+            return null;
+        });
+    }
+
+    /**
+     * Deletes several contacts from the database as one batch in a single transaction.
+     * @param contacts The contacts to delete.
+     */
+    @Override
+    public void deleteContacts(Collection<Contact> contacts) {
+        tryDeleteContacts(contacts);
+    }
+
+    /**
+     * Deletes several contacts from the database as one batch in a single transaction, rolled back if it fails.
+     * @param contacts The contacts to delete.
+     * @return Whether the transaction was committed.
+     */
+    @Override
+    public boolean tryDeleteContacts(Collection<Contact> contacts) {
+        if (contacts.isEmpty()) return true;
+        return runInTransaction(connection -> {
+            PreparedStatement statement = prepare(connection, DELETE_SQL);
+            for (Contact contact : contacts) {
+                statement.setInt(1, contact.getId());
+                statement.addBatch();
+            }
+            recordLocalChanges(connection, executeBatch(statement));
+            return null;
+        });
+    }
+
+    /**
+     * Runs the given work in a single transaction on the writer, rolling it back if it fails.
+     * @param work The work to run.
+     * @return Whether the work was committed.
+     */
+    private boolean runInTransaction(SqliteConnectionPool.SqlFunction<Void> work) {
+        List<Map.Entry<Long, Long>> lastLocalChanges = new ArrayList<>(1);
+        try {
+            pool.transaction(connection -> {
+                synchronized (localChanges) {
+                    lastLocalChanges.add(localChanges.lastEntry());
+                }
+                return work.apply(connection);
+            });
+            return true;
         } catch (Exception e) {
+            if (!lastLocalChanges.isEmpty()) forgetLocalChanges(lastLocalChanges.get(0));
             e.printStackTrace();
+            return false;
+        }
+    }
+
+    /**
+     * Forgets the range of the change log recorded by a write that was rolled back, whose sequence numbers
+     * the next write will reuse.
+     * @param last The last range recorded before the write, or null if there was none.
+     */
+    private void forgetLocalChanges(Map.Entry<Long, Long> last) {
+        synchronized (localChanges) {
+            if (last == null) {
+                localChanges.clear();
+            } else {
+                localChanges.tailMap(last.getKey(), true).clear();
+                localChanges.put(last.getKey(), last.getValue());
+            }
+        }
+    }
+
+    /**
+     * Executes the batch of a reused statement, clearing it even if the execution fails.
+     * @param statement The statement to execute.
+     * @return The number of rows changed by the whole batch.
+     * @throws SQLException If the batch fails.
+     */
+    private static int executeBatch(PreparedStatement statement) throws SQLException {
+        try {
+            int changed = 0;
+            for (int count : statement.executeBatch()) {
+                changed += Math.max(0, count);
+            }
+            return changed;
+        } finally {
+            statement.clearBatch();
         }
     }
 
+    /**
+     * Records the entries a write is about to commit to the change log as written through this DAO.
+     * Called inside the transaction of the write, which holds the write lock of the database, so the entries
+     * are the last ones of the log, and are recorded before any other connection can see them.
+     * @param connection The writer connection, in the transaction of the write.
+     * @param count The number of contacts the write changed, each logged once by the triggers.
+     * @throws SQLException If the change log cannot be read.
+     */
+    private void recordLocalChanges(Connection connection, int count) throws SQLException {
+        if (count <= 0) return;
+        long last;
+        try (ResultSet resultSet = prepare(connection, CHANGE_SEQUENCE_SQL).executeQuery()) {
+            last = resultSet.getLong(1);
+        }
+        long start = last - count;
+        synchronized (localChanges) {
+            Map.Entry<Long, Long> previous = localChanges.lastEntry();
+            if (previous != null && previous.getValue() == start) {
+                localChanges.put(previous.getKey(), last);
+            } else {
+                localChanges.put(start, last);
+            }
+        }
+    }
+
+    /**
+     * Binds the fields of a contact and its search keys to the first six parameters of an insert or update statement.
+     * @param statement The statement to bind to.
+     * @param contact The contact to bind.
+     * @throws SQLException If a parameter cannot be set.
+     */
+    private static void bindContact(PreparedStatement statement, Contact contact) throws SQLException {
+        statement.setString(1, contact.getFirstName());
+        statement.setString(2, contact.getLastName());
+        statement.setString(3, contact.getPhone());
+        statement.setString(4, contact.getEmail());
+        statement.setString(5, contact.getSearchKey());
+        statement.setString(6, contact.getPhoneKey());
+    }
+
     /**
      * Retrieves a contact from the database by ID.
      * @param id The ID of the contact to retrieve.
@@ -104,48 +588,511 @@ public class SqliteContactDAO implements IContactDAO {
     @Override
     public Contact getContact(int id) {
         try {
-            PreparedStatement statement = connection.prepareStatement("SELECT * FROM contacts WHERE id = ?");
-            statement.setInt(1, id);
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                String firstName = resultSet.getString("firstName");
-                String lastName = resultSet.getString("lastName");
-                String phone = resultSet.getString("phone");
-                String email = resultSet.getString("email");
-                Contact contact = new Contact(firstName, lastName, phone, email);
-                contact.setId(id);
-                return contact;
-            }
+            return pool.read(connection -> {
+                PreparedStatement statement = prepare(connection, SELECT_SQL);
+                statement.setInt(1, id);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? readContact(resultSet) : null;
+                }
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
         return null;
     }
 
+    /**
+     * Retrieves several contacts from the database, a batch of ids per query.
+     * @param ids The ids of the contacts to retrieve.
+     * @return The contacts found, by id; the ids not found are left out, as are all of them on a read error.
+     */
+    @Override
+    public Map<Integer, Contact> getContactsById(Collection<Integer> ids) {
+        IntList sorted = new IntList();
+        for (int id : ids) {
+            sorted.add(id);
+        }
+        try {
+            return pool.read(connection -> {
+                Map<Integer, Contact> contacts = new HashMap<>(sorted.size() * 2);
+                readContacts(connection, sorted, contact -> contacts.put(contact.getId(), contact), id -> {});
+                return contacts;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return new HashMap<>();
+    }
+
     /**
      * Retrieves all contacts from the database.
      * @return A list containing all contacts in the database.
      */
     @Override
     public List<Contact> getAllContacts() {
-        List<Contact> contacts = new ArrayList<>();
         try {
-            Statement statement = connection.createStatement();
-            String query = "SELECT * FROM contacts";
-            ResultSet resultSet = statement.executeQuery(query);
+            return pool.read(connection -> {
+                List<Contact> contacts = new ArrayList<>();
+                try (ResultSet resultSet = prepare(connection, SELECT_ALL_SQL).executeQuery()) {
+                    while (resultSet.next()) {
+                        contacts.add(readContact(resultSet));
+                    }
+                }
+                return contacts;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Streams every contact to the given action through a forward-only result set,
+     * so only one fetch of rows is in memory at a time. A reader connection is held until the action
+     * has seen the last contact, so the action should not write to the database itself. Reads made by the action on the same thread
+     * run on the connection already held, through their own statements, so they do not disturb the stream.
+     * Unlike the other reads, a failure is not swallowed, as the action may already have seen part of the contacts.
+     * @param action The action to run for each contact, in the order of {@link #getAllContacts()}.
+     * @throws IllegalStateException If the contacts cannot be read.
+     */
+    @Override
+    public void forEachContact(Consumer<? super Contact> action) {
+        try {
+            pool.read(connection -> {
+                // A cached statement would be reset by a nested read running it again
+                try (PreparedStatement statement = connection.prepareStatement(SELECT_ALL_SQL)) {
+                    statement.setFetchSize(fetchSize);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            action.accept(readContact(resultSet));
+                        }
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not read the contacts", e);
+        }
+    }
+
+    /**
+     * Retrieves the sequence number of the last change made to the contacts.
+     * @return The sequence number of the last entry of the change log, or 0 if nothing changed yet.
+     */
+    public long getChangeSequence() {
+        try {
+            return pool.read(connection -> {
+                try (ResultSet resultSet = prepare(connection, CHANGE_SEQUENCE_SQL).executeQuery()) {
+                    return resultSet.getLong(1);
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Removes the entries of the change log superseded by a later entry for the same contact, so the log holds at most
+     * one entry per contact. Any reader, including other processes, finds the same contacts changed after its last
+     * sequence number as before, since the last change of a contact is always kept, and the sequence of the last
+     * change does not move.
+     * @return The number of entries removed, or -1 if the log could not be compacted.
+     */
+    public int compactChangeLog() {
+        try {
+            return pool.write(connection -> prepare(connection, COMPACT_CHANGES_SQL).executeUpdate());
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Retrieves the data version of the database as seen by the writer connection. SQLite only changes it when another
+     * connection commits, so it tells cheaply whether another process, or another pool, wrote to the database since
+     * the last call, while the writes made through this DAO leave it as it is.
+     * @return The data version, or -1 if it could not be read.
+     */
+    public long getDataVersion() {
+        try {
+            return pool.write(connection -> {
+                try (ResultSet resultSet = prepare(connection, DATA_VERSION_SQL).executeQuery()) {
+                    return resultSet.getLong(1);
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Streams the contacts changed since a sequence number of the change log, each once, in id order.
+     * The changes and the sequence number they lead up to are read in one transaction, so a change
+     * committed meanwhile is left for the next call rather than half seen.
+     * @param afterSequence The sequence number of the last change already seen, or -1 to stream every contact.
+     * @param changed Receives the current state of each contact added or updated since the sequence number.
+     * @param deleted Receives the id of each contact deleted since the sequence number.
+     * @return The sequence number of the last change streamed, to pass to the next call, or -1 if the changes could not be read.
+     */
+    public long forEachChange(long afterSequence, Consumer<? super Contact> changed, IntConsumer deleted) {
+        try {
+            return pool.read(connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    long sequence;
+                    try (ResultSet resultSet = prepare(connection, CHANGE_SEQUENCE_SQL).executeQuery()) {
+                        sequence = resultSet.getLong(1);
+                    }
+                    PreparedStatement statement;
+                    if (afterSequence < 0) {
+                        statement = prepare(connection, SELECT_ALL_BY_ID_SQL);
+                    } else {
+                        statement = prepare(connection, CHANGES_SQL);
+                        statement.setLong(1, afterSequence);
+                        statement.setLong(2, sequence);
+                    }
+                    statement.setFetchSize(fetchSize);
+                    try (ResultSet resultSet = statement.executeQuery()) {
+                        while (resultSet.next()) {
+                            if (afterSequence >= 0 && resultSet.getString("firstName") == null) {
+                                deleted.accept(resultSet.getInt("changedId"));
+                            } else {
+                                changed.accept(readContact(resultSet));
+                            }
+                        }
+                    }
+                    return sequence;
+                } finally {
+                    connection.commit();
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Streams the contacts changed since a sequence number of the change log by other connections than the one this DAO
+     * writes through, such as other processes sharing the database, each once, in id order. The ranges of the log
+     * written through this DAO are skipped without being read, so local writes of any size cost nothing here.
+     * Meant for a single caller that passes back the sequence number it was given, as the ranges it has gone past
+     * are forgotten.
+     * @param afterSequence The sequence number of the last change already seen.
+     * @param changed Receives the current state of each contact added or updated by another connection since the sequence number.
+     * @param deleted Receives the id of each contact deleted by another connection since the sequence number.
+     * @return The sequence number of the last change of the log, to pass to the next call, or -1 if the changes could not be read.
+     */
+    public long forEachExternalChange(long afterSequence, Consumer<? super Contact> changed, IntConsumer deleted) {
+        List<long[]> skipped = new ArrayList<>();
+        synchronized (localChanges) {
+            while (!localChanges.isEmpty() && localChanges.firstEntry().getValue() <= afterSequence) {
+                localChanges.pollFirstEntry();
+            }
+            for (Map.Entry<Long, Long> range : localChanges.entrySet()) {
+                skipped.add(new long[] {range.getKey(), range.getValue()});
+            }
+        }
+        try {
+            return pool.read(connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    long sequence;
+                    try (ResultSet resultSet = prepare(connection, CHANGE_SEQUENCE_SQL).executeQuery()) {
+                        sequence = resultSet.getLong(1);
+                    }
+                    // The local ranges are recorded before they are committed, so the ones this read can see are all known
+                    IntList ids = new IntList();
+                    long from = afterSequence;
+                    for (long[] range : skipped) {
+                        if (range[0] >= sequence) break;
+                        collectChangedIds(connection, from, range[0], ids);
+                        from = Math.max(from, range[1]);
+                    }
+                    collectChangedIds(connection, from, sequence, ids);
+                    readContacts(connection, ids, changed, deleted);
+                    return sequence;
+                } finally {
+                    connection.commit();
+                    connection.setAutoCommit(autoCommit);
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return -1;
+    }
+
+    /**
+     * Collects the ids of the contacts changed within a range of the change log.
+     * @param connection The connection to read with.
+     * @param afterSequence The sequence number before the range.
+     * @param lastSequence The last sequence number of the range.
+     * @param ids Receives the ids.
+     * @throws SQLException If the change log cannot be read.
+     */
+    private void collectChangedIds(Connection connection, long afterSequence, long lastSequence, IntList ids) throws SQLException {
+        if (lastSequence <= afterSequence) return;
+        PreparedStatement statement = prepare(connection, CHANGED_IDS_SQL);
+        statement.setLong(1, afterSequence);
+        statement.setLong(2, lastSequence);
+        try (ResultSet resultSet = statement.executeQuery()) {
             while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String firstName = resultSet.getString("firstName");
-                String lastName = resultSet.getString("lastName");
-                String phone = resultSet.getString("phone");
-                String email = resultSet.getString("email");
-                Contact contact = new Contact(firstName, lastName, phone, email);
-                contact.setId(id);
-                contacts.add(contact);
+                ids.add(resultSet.getInt(1));
+            }
+        }
+    }
+
+    /**
+     * Reads contacts by id, a batch of ids per query.
+     * @param connection The connection to read with.
+     * @param ids The ids of the contacts, in increasing order.
+     * @param found Receives each contact that exists, in id order.
+     * @param missing Receives the id of each contact that does not exist.
+     * @throws SQLException If the contacts cannot be read.
+     */
+    private void readContacts(Connection connection, IntList ids, Consumer<? super Contact> found, IntConsumer missing) throws SQLException {
+        for (int start = 0; start < ids.size(); start += ID_BATCH_SIZE) {
+            int end = Math.min(ids.size(), start + ID_BATCH_SIZE);
+            PreparedStatement statement = prepare(connection, SELECT_BY_IDS_SQL);
+            for (int i = 0; i < ID_BATCH_SIZE; i++) {
+                statement.setInt(i + 1, ids.get(Math.min(start + i, end - 1)));
+            }
+            int next = start;
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    Contact contact = readContact(resultSet);
+                    while (ids.get(next) < contact.getId()) missing.accept(ids.get(next++));
+                    next++;
+                    found.accept(contact);
+                }
             }
+            while (next < end) missing.accept(ids.get(next++));
+        }
+    }
+
+    /**
+     * Retrieves the number of rows fetched at a time when streaming contacts.
+     * @return The fetch size.
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Sets the number of rows fetched at a time when streaming contacts.
+     * @param fetchSize The fetch size to set.
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Retrieves one page of contacts sorted by last name, first name and id,
+     * seeking straight to the key through the name index.
+     * Names are compared by SQLite's binary collation.
+     * @param after The key of the last contact of the previous page, or null for the first page.
+     * @param limit The maximum number of contacts to return.
+     * @return The contacts sorting after the key, at most {@code limit} of them.
+     */
+    @Override
+    public List<Contact> getContacts(ContactKey after, int limit) {
+        try {
+            return pool.read(connection -> {
+                PreparedStatement statement;
+                if (after == null) {
+                    statement = prepare(connection, FIRST_PAGE_SQL);
+                    statement.setInt(1, limit);
+                } else {
+                    statement = prepare(connection, NEXT_PAGE_SQL);
+                    bindKey(statement, after);
+                    statement.setInt(4, limit);
+                }
+                List<Contact> contacts = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        contacts.add(readContact(resultSet));
+                    }
+                }
+                return contacts;
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return new ArrayList<>();
+    }
+
+    /**
+     * Retrieves the key of the contact at a position of the sorted list, skipping the entries before it
+     * in the name index, which holds the whole key, so no row is read.
+     * @param position The position, from 0.
+     * @return The key of the contact at the position, or null if there are not that many contacts.
+     */
+    @Override
+    public ContactKey getContactKeyAt(int position) {
+        try {
+            return pool.read(connection -> {
+                PreparedStatement statement = prepare(connection, KEY_AT_SQL);
+                statement.setInt(1, position);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) return null;
+                    return new ContactKey(resultSet.getString("lastName"), resultSet.getString("firstName"), resultSet.getInt("id"));
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return null;
+    }
+
+    /**
+     * Retrieves the number of contacts in the database.
+     * @return The number of contacts.
+     */
+    @Override
+    public int getContactCount() {
+        try {
+            return pool.read(connection -> {
+                try (ResultSet resultSet = prepare(connection, COUNT_SQL).executeQuery()) {
+                    return resultSet.getInt(1);
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Retrieves the number of contacts sorting before the given key, counted on the name index.
+     * @param key The key to count up to.
+     * @return The number of contacts sorting before the key.
+     */
+    @Override
+    public int countContactsBefore(ContactKey key) {
+        try {
+            return pool.read(connection -> {
+                PreparedStatement statement = prepare(connection, COUNT_BEFORE_SQL);
+                bindKey(statement, key);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.getInt(1);
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return 0;
+    }
+
+    /**
+     * Binds a key to the first three parameters of a keyset statement.
+     * @param statement The statement to bind to.
+     * @param key The key to bind.
+     * @throws SQLException If a parameter cannot be set.
+     */
+    private static void bindKey(PreparedStatement statement, ContactKey key) throws SQLException {
+        statement.setString(1, key.getLastName());
+        statement.setString(2, key.getFirstName());
+        statement.setInt(3, key.getId());
+    }
+
+    /**
+     * Searches for contacts in the database by their stored search keys, so only matching rows are read.
+     * Queries whose text and phone digits are at least three characters long use the full-text index, shorter
+     * ones scan the key columns. The rows read are checked against the query in Java as well, which also covers
+     * the rows without keys, so the results are the same as those of {@link IContactDAO#searchContacts(String)}.
+     * @param query The search query string.
+     * @return A list of contacts matching the search query, ordered by id.
+     */
+    @Override
+    public List<Contact> searchContacts(String query) {
+        ContactQuery contactQuery = ContactQuery.of(query);
+        if (contactQuery.isEmpty()) return getAllContacts();
+        String text = contactQuery.getText();
+        String digits = contactQuery.getDigits() == null || contactQuery.getDigits().isEmpty() ? null : contactQuery.getDigits();
+        try {
+            return pool.read(connection -> {
+                PreparedStatement statement;
+                if (text.length() >= MIN_FTS_QUERY_LENGTH && (digits == null || digits.length() >= MIN_FTS_QUERY_LENGTH)) {
+                    statement = prepare(connection, FTS_SEARCH_SQL);
+                    // A quoted phrase of trigrams matches the query as a substring of the column
+                    statement.setString(1, "searchKey : " + phrase(text) + (digits == null ? "" : " OR phoneKey : " + phrase(digits)));
+                } else {
+                    statement = prepare(connection, SCAN_SEARCH_SQL);
+                    statement.setString(1, text);
+                    statement.setString(2, digits);
+                }
+                List<Contact> contacts = new ArrayList<>();
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        Contact contact = readContact(resultSet);
+                        if (contactQuery.matches(contact)) contacts.add(contact);
+                    }
+                }
+                return contacts;
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
-        return contacts;
+        return new ArrayList<>();
+    }
+
+    /**
+     * Quotes text as a full-text query phrase.
+     * @param text The text.
+     * @return The phrase.
+     */
+    private static String phrase(String text) {
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Stores the search keys of the contacts another process wrote without them, then returns the changes unchanged.
+     * @param changes The changes, in the order they were made.
+     * @return The changes.
+     */
+    @Override
+    public List<ContactChange> applyExternalChanges(List<ContactChange> changes) {
+        if (!changes.isEmpty()) storeMissingKeys();
+        return changes;
+    }
+
+    /**
+     * Reads the contact at the current row of a result set.
+     * @param resultSet The result set to read from.
+     * @return The contact at the current row.
+     * @throws SQLException If a column cannot be read.
+     */
+    private static Contact readContact(ResultSet resultSet) throws SQLException {
+        int id = resultSet.getInt("id");
+        String firstName = resultSet.getString("firstName");
+        String lastName = resultSet.getString("lastName");
+        String phone = resultSet.getString("phone");
+        String email = resultSet.getString("email");
+        Contact contact = new Contact(firstName, lastName, email, phone);
+        contact.setId(id);
+        return contact;
+    }
+
+    /**
+     * Closes the prepared statements of this DAO. The connections themselves are left open.
+     */
+    @Override
+    public void close() {
+        for (Map<String, PreparedStatement> connectionStatements : statements.values()) {
+            for (PreparedStatement statement : connectionStatements.values()) {
+                try {
+                    statement.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+        statements.clear();
     }
-}
\ No newline at end of file
+}
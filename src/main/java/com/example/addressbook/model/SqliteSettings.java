@@ -0,0 +1,146 @@
+package com.example.addressbook.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tuning options applied as PRAGMAs to every SQLite connection that is opened.
+ * The defaults favour throughput for a single-user address book: write-ahead logging,
+ * NORMAL synchronous mode, a 64 MiB page cache, a 256 MiB memory map, in-memory temp storage
+ * and a five second wait when another connection holds the database lock.
+ */
+public class SqliteSettings {
+    private String journalMode = "WAL";
+    private String synchronous = "NORMAL";
+    private int cacheSize = -64_000;
+    private long mmapSize = 256L * 1024 * 1024;
+    private String tempStore = "MEMORY";
+    private int busyTimeout = 5_000;
+
+    /**
+     * Retrieves the journal mode, e.g. WAL, DELETE or TRUNCATE.
+     * @return The journal mode, or null if the journal mode of the database is left as it is.
+     */
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    /**
+     * Sets the journal mode, e.g. WAL, DELETE or TRUNCATE.
+     * @param journalMode The journal mode to set, or null to leave the journal mode of the database as it is.
+     */
+    public void setJournalMode(String journalMode) {
+        this.journalMode = journalMode == null ? null : requireKeyword(journalMode);
+    }
+
+    /**
+     * Retrieves the synchronous level, e.g. OFF, NORMAL or FULL.
+     * @return The synchronous level.
+     */
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    /**
+     * Sets the synchronous level, e.g. OFF, NORMAL or FULL.
+     * @param synchronous The synchronous level to set.
+     */
+    public void setSynchronous(String synchronous) {
+        this.synchronous = requireKeyword(synchronous);
+    }
+
+    /**
+     * Retrieves the page cache size. Positive values are pages, negative values are KiB.
+     * @return The cache size.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Sets the page cache size. Positive values are pages, negative values are KiB.
+     * @param cacheSize The cache size to set.
+     */
+    public void setCacheSize(int cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    /**
+     * Retrieves the maximum number of bytes of the database file that are memory mapped.
+     * @return The memory map size in bytes.
+     */
+    public long getMmapSize() {
+        return mmapSize;
+    }
+
+    /**
+     * Sets the maximum number of bytes of the database file that are memory mapped, 0 to disable.
+     * @param mmapSize The memory map size in bytes.
+     */
+    public void setMmapSize(long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    /**
+     * Retrieves where temporary tables and indices are stored, e.g. DEFAULT, FILE or MEMORY.
+     * @return The temp store.
+     */
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    /**
+     * Sets where temporary tables and indices are stored, e.g. DEFAULT, FILE or MEMORY.
+     * @param tempStore The temp store to set.
+     */
+    public void setTempStore(String tempStore) {
+        this.tempStore = requireKeyword(tempStore);
+    }
+
+    /**
+     * Retrieves how long a connection waits for a lock held by another connection.
+     * @return The busy timeout in milliseconds.
+     */
+    public int getBusyTimeout() {
+        return busyTimeout;
+    }
+
+    /**
+     * Sets how long a connection waits for a lock held by another connection before failing with SQLITE_BUSY.
+     * @param busyTimeout The busy timeout in milliseconds.
+     */
+    public void setBusyTimeout(int busyTimeout) {
+        this.busyTimeout = busyTimeout;
+    }
+
+    /**
+     * Builds the PRAGMA statements for these settings.
+     * The journal mode is persisted in the database file, so read-only connections leave it alone.
+     * @param readOnly Whether the statements are for a read-only connection.
+     * @return The PRAGMA statements to run on a new connection.
+     */
+    List<String> toPragmas(boolean readOnly) {
+        List<String> pragmas = new ArrayList<>();
+        pragmas.add("PRAGMA busy_timeout = " + busyTimeout);
+        if (!readOnly && journalMode != null) {
+            pragmas.add("PRAGMA journal_mode = " + journalMode);
+        }
+        pragmas.add("PRAGMA synchronous = " + synchronous);
+        pragmas.add("PRAGMA cache_size = " + cacheSize);
+        pragmas.add("PRAGMA mmap_size = " + mmapSize);
+        pragmas.add("PRAGMA temp_store = " + tempStore);
+        return pragmas;
+    }
+
+    /**
+     * Checks that a PRAGMA value is a plain keyword, since it is inlined into the statement.
+     * @param value The value to check.
+     * @return The value.
+     */
+    private static String requireKeyword(String value) {
+        if (value == null || !value.matches("[A-Za-z]+")) {
+            throw new IllegalArgumentException("Invalid PRAGMA value: " + value);
+        }
+        return value;
+    }
+}
@@ -0,0 +1,132 @@
+package com.example.addressbook.model;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streams the cards of a vCard file (versions 2.1, 3.0 and 4.0), one record per card.
+ * The name comes from the N property, or from FN split at its last space when N is missing;
+ * the email and phone are the first EMAIL and TEL of the card. Folded lines are unfolded and
+ * escaped commas, semicolons, backslashes and line breaks are decoded. Other properties are ignored.
+ */
+class VCardContactReader implements IContactRecordReader {
+    private final BufferedReader reader;
+    /**
+     * The line read ahead to find out whether the current line continues on it.
+     */
+    private String nextLine;
+
+    /**
+     * Constructs a reader over vCard text.
+     * @param reader The text to parse.
+     * @throws IOException If the text cannot be read.
+     */
+    VCardContactReader(Reader reader) throws IOException {
+        this.reader = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader, 64 * 1024);
+        nextLine = this.reader.readLine();
+        // A byte order mark can only start the file
+        if (nextLine != null && nextLine.startsWith("\uFEFF")) nextLine = nextLine.substring(1);
+    }
+
+    /**
+     * Reads the next card.
+     * @return The first name, last name, email and phone of the card, or null at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    @Override
+    public String[] next() throws IOException {
+        String[] record = null;
+        String formattedName = null;
+        boolean named = false;
+        String line;
+        while ((line = readUnfolded()) != null) {
+            int colon = line.indexOf(':');
+            if (colon < 0) continue;
+            String property = propertyName(line.substring(0, colon));
+            String value = line.substring(colon + 1);
+            if (property.equals("BEGIN") && value.trim().equalsIgnoreCase("VCARD")) {
+                record = new String[FIELD_COUNT];
+                Arrays.fill(record, "");
+                formattedName = null;
+                named = false;
+            } else if (record == null) {
+                continue;
+            } else if (property.equals("N")) {
+                String[] parts = value.split("(?<!\\\\);", -1);
+                record[LAST_NAME] = unescape(parts[0]);
+                record[FIRST_NAME] = parts.length > 1 ? unescape(parts[1]) : "";
+                named = !record[FIRST_NAME].isBlank() || !record[LAST_NAME].isBlank();
+            } else if (property.equals("FN")) {
+                formattedName = unescape(value).trim();
+            } else if (property.equals("EMAIL") && record[EMAIL].isEmpty()) {
+                record[EMAIL] = unescape(value);
+            } else if (property.equals("TEL") && record[PHONE].isEmpty()) {
+                // vCard 4.0 may give the number as a URI
+                record[PHONE] = unescape(value.regionMatches(true, 0, "tel:", 0, 4) ? value.substring(4) : value);
+            } else if (property.equals("END") && value.trim().equalsIgnoreCase("VCARD")) {
+                if (!named && formattedName != null) {
+                    int space = formattedName.lastIndexOf(' ');
+                    record[FIRST_NAME] = space < 0 ? formattedName : formattedName.substring(0, space);
+                    record[LAST_NAME] = space < 0 ? "" : formattedName.substring(space + 1);
+                }
+                return record;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reads a logical line, joining the physical lines that continue it: those starting with a space or a tab.
+     * @return The unfolded line, or null at the end of the file.
+     * @throws IOException If the file cannot be read.
+     */
+    private String readUnfolded() throws IOException {
+        String line = nextLine;
+        if (line == null) return null;
+        nextLine = reader.readLine();
+        if (nextLine == null || nextLine.isEmpty() || (nextLine.charAt(0) != ' ' && nextLine.charAt(0) != '\t')) {
+            return line;
+        }
+        StringBuilder unfolded = new StringBuilder(line);
+        while (nextLine != null && !nextLine.isEmpty() && (nextLine.charAt(0) == ' ' || nextLine.charAt(0) == '\t')) {
+            unfolded.append(nextLine, 1, nextLine.length());
+            nextLine = reader.readLine();
+        }
+        return unfolded.toString();
+    }
+
+    /**
+     * Extracts the name of a property, without its group prefix and parameters: "item1.EMAIL;TYPE=work" becomes "EMAIL".
+     * @param name The part of a line before its first colon.
+     * @return The upper case name of the property.
+     */
+    private static String propertyName(String name) {
+        int semicolon = name.indexOf(';');
+        if (semicolon >= 0) name = name.substring(0, semicolon);
+        int dot = name.lastIndexOf('.');
+        if (dot >= 0) name = name.substring(dot + 1);
+        return name.trim().toUpperCase();
+    }
+
+    /**
+     * Decodes the escaped characters of a value.
+     * @param value The raw value.
+     * @return The value with "\n", "\,", "\;" and "\\" decoded.
+     */
+    private static String unescape(String value) {
+        if (value.indexOf('\\') < 0) return value;
+        StringBuilder unescaped = new StringBuilder(value.length());
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\' && i + 1 < value.length()) {
+                char escaped = value.charAt(++i);
+                unescaped.append(escaped == 'n' || escaped == 'N' ? '\n' : escaped);
+            } else {
+                unescaped.append(c);
+            }
+        }
+        return unescaped.toString();
+    }
+}
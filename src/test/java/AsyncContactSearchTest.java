@@ -0,0 +1,72 @@
+import com.example.addressbook.controller.AsyncContactSearch;
+import com.example.addressbook.controller.SearchLatencyStats;
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class AsyncContactSearchTest {
+    private ContactManager contactManager;
+
+    @BeforeEach
+    public void setUp() {
+        contactManager = new ContactManager(new MockContactDAO(), true);
+        contactManager.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+        contactManager.addContact(new Contact("Jane", "Doe", "janedoe@example.com", "0423423424"));
+        contactManager.addContact(new Contact("Jay", "Doe", "jaydoe@example.com", "0423423425"));
+    }
+
+    @Test
+    public void testOnlyLatestQueryIsPublished() throws InterruptedException {
+        List<List<Contact>> published = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(1);
+        try (AsyncContactSearch search = new AsyncContactSearch(contactManager, results -> {
+            published.add(results);
+            latch.countDown();
+        }, Runnable::run, 60_000)) {
+            // The debounce is far longer than the test, so only the search requested right away can ever run
+            search.search("j");
+            search.search("ja");
+            search.searchNow("jan");
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+            // Give any superseded search the chance to publish by mistake
+            Thread.sleep(200);
+            assertEquals(1, published.size());
+            assertEquals("Jane", published.get(0).get(0).getFirstName());
+            assertEquals(1, search.getLatencyStats().getCount());
+        }
+    }
+
+    @Test
+    public void testCancelStopsPendingSearch() throws InterruptedException {
+        List<List<Contact>> published = Collections.synchronizedList(new ArrayList<>());
+        try (AsyncContactSearch search = new AsyncContactSearch(contactManager, published::add, Runnable::run, 50)) {
+            search.search("john");
+            search.cancel();
+            Thread.sleep(200);
+            assertTrue(published.isEmpty());
+        }
+    }
+
+    @Test
+    public void testLatencyPercentiles() {
+        SearchLatencyStats stats = new SearchLatencyStats(4);
+        assertEquals(0, stats.getTotalPercentile(50));
+        for (int i = 1; i <= 6; i++) {
+            stats.record(i * 1_000_000L, i * 2_000_000L);
+        }
+        // Only the last four samples are kept
+        assertEquals(6, stats.getCount());
+        assertEquals(6.0, stats.getTotalPercentile(0));
+        assertEquals(8.0, stats.getTotalPercentile(50));
+        assertEquals(12.0, stats.getTotalPercentile(100));
+        assertEquals(6.0, stats.getSearchPercentile(95));
+        assertEquals(12.0, stats.getMaxTotal());
+    }
+}
@@ -0,0 +1,111 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+public class CachingContactDAOTest {
+    private MockContactDAO mockDAO;
+    private CachingContactDAO cachingDAO;
+
+    @BeforeEach
+    public void setUp() {
+        mockDAO = new MockContactDAO();
+        cachingDAO = new CachingContactDAO(mockDAO, 3);
+        cachingDAO.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+        cachingDAO.addContact(new Contact("Jane", "Doe", "janedoe@example.com", "0423423424"));
+    }
+
+    @Test
+    public void testGetAllContactsIsCached() {
+        assertEquals(2, cachingDAO.getAllContacts().size());
+        assertEquals(1, cachingDAO.getMissCount());
+        assertEquals(2, cachingDAO.getAllContacts().size());
+        assertEquals(1, cachingDAO.getHitCount());
+    }
+
+    @Test
+    public void testSnapshotIsPatchedOnWrites() {
+        cachingDAO.getAllContacts();
+        Contact contact = new Contact("Jay", "Doe", "jaydoe@example.com", "0423423425");
+        cachingDAO.addContact(contact);
+        contact.setFirstName("Jay-Jay");
+        cachingDAO.updateContact(contact);
+        cachingDAO.deleteContact(mockDAO.getContact(0));
+        List<Contact> contacts = cachingDAO.getAllContacts();
+        assertEquals(mockDAO.getAllContacts(), contacts);
+        assertEquals("Jay-Jay", contacts.get(1).getFirstName());
+        assertEquals(1, cachingDAO.getMissCount());
+    }
+
+    @Test
+    public void testGetContactHitsAndMisses() {
+        assertNotNull(cachingDAO.getContact(0));
+        assertEquals(1, cachingDAO.getHitCount());
+        cachingDAO.invalidate();
+        assertNotNull(cachingDAO.getContact(0));
+        assertEquals(1, cachingDAO.getMissCount());
+        assertNull(cachingDAO.getContact(42));
+        assertEquals(2, cachingDAO.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        cachingDAO.getContact(0);
+        cachingDAO.addContact(new Contact("Jay", "Doe", "jaydoe@example.com", "0423423425"));
+        cachingDAO.addContact(new Contact("John", "Smith", "johnsmith@example.com", "0423423426"));
+        assertEquals(3, cachingDAO.size());
+        // Contact 1 was the least recently used, so it was evicted
+        cachingDAO.getContact(0);
+        assertEquals(2, cachingDAO.getHitCount());
+        cachingDAO.getContact(1);
+        assertEquals(1, cachingDAO.getMissCount());
+    }
+
+    @Test
+    public void testLargeBooksAreNotSnapshotted() {
+        cachingDAO.addContact(new Contact("Jay", "Doe", "jaydoe@example.com", "0423423425"));
+        cachingDAO.addContact(new Contact("John", "Smith", "johnsmith@example.com", "0423423426"));
+        assertEquals(4, cachingDAO.getAllContacts().size());
+        assertEquals(4, cachingDAO.getAllContacts().size());
+        assertEquals(2, cachingDAO.getMissCount());
+    }
+
+    @Test
+    public void testPagingDoesNotWaitForCacheMisses() throws InterruptedException {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MockContactDAO slowDAO = new MockContactDAO() {
+            @Override
+            public List<Contact> getAllContacts() {
+                // Only the first call, which loads the snapshot, is held back
+                if (loading.getCount() > 0) {
+                    loading.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getAllContacts();
+            }
+        };
+        slowDAO.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+        slowDAO.addContact(new Contact("Jane", "Doe", "janedoe@example.com", "0423423424"));
+        CachingContactDAO cache = new CachingContactDAO(slowDAO);
+        Thread load = new Thread(cache::getAllContacts);
+        load.start();
+        try {
+            assertTrue(loading.await(5, TimeUnit.SECONDS));
+            // The snapshot load holds the lock of the cache until released
+            assertEquals(2, cache.getContactCount());
+            assertEquals(2, cache.getContacts(null, 10).size());
+            assertEquals(1, cache.countContactsBefore(ContactKey.of(slowDAO.contacts.get(0))));
+        } finally {
+            release.countDown();
+            load.join(5_000);
+        }
+    }
+}
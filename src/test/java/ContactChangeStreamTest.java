@@ -0,0 +1,157 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ContactChangeStreamTest {
+    private ContactChangeStream stream;
+    private final List<List<ContactChange>> batches = new ArrayList<>();
+    private final AtomicInteger losses = new AtomicInteger();
+
+    /**
+     * A listener recording what it is handed, blocking on a latch if one is given.
+     */
+    private IContactChangeListener recorder(CountDownLatch release) {
+        return new IContactChangeListener() {
+            @Override
+            public void onContactsChanged(List<ContactChange> changes) {
+                synchronized (batches) {
+                    batches.add(changes);
+                }
+                try {
+                    if (release != null) release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            @Override
+            public void onChangesLost() {
+                losses.incrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * Waits until the delivery thread has handed over the first batch.
+     */
+    private void awaitFirstBatch() throws InterruptedException {
+        while (true) {
+            synchronized (batches) {
+                if (!batches.isEmpty()) return;
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        stream = new ContactChangeStream(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        stream.close();
+    }
+
+    @Test
+    public void testPublishesWritesWithStatesBeforeAndAfter(@TempDir Path tempDir) throws SQLException, InterruptedException {
+        stream.subscribe(recorder(null));
+        try (Connection connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings())) {
+            SqliteContactDAO database = new SqliteContactDAO(connection);
+            ObservableContactDAO contactDAO = new ObservableContactDAO(database, stream);
+            Contact john = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+            Contact jane = new Contact("Jane", "Doe", "janedoe@example.com", "0423423424");
+            contactDAO.addContacts(List.of(john, jane));
+            john.setLastName("Smith");
+            contactDAO.updateContact(john);
+            contactDAO.deleteContact(jane);
+            // A contact that was never stored is not reported
+            contactDAO.deleteContact(new Contact("Nobody", "", "", ""));
+            assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+            database.close();
+        }
+        List<ContactChange> changes = new ArrayList<>();
+        batches.forEach(changes::addAll);
+        assertEquals(4, changes.size());
+        assertEquals(ContactChange.Type.ADDED, changes.get(0).getType());
+        assertNull(changes.get(0).getBefore());
+        assertEquals("Doe", changes.get(0).getAfter().getLastName());
+        assertEquals(ContactChange.Type.UPDATED, changes.get(2).getType());
+        assertEquals("Doe", changes.get(2).getBefore().getLastName());
+        assertEquals("Smith", changes.get(2).getAfter().getLastName());
+        assertEquals(ContactChange.Type.DELETED, changes.get(3).getType());
+        assertEquals("Jane", changes.get(3).getBefore().getFirstName());
+        assertNull(changes.get(3).getAfter());
+        assertEquals(0, losses.get());
+    }
+
+    @Test
+    public void testQueuedBatchesAreDeliveredTogether() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        stream.subscribe(recorder(release));
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        stream.publish(List.of(ContactChange.added(contact)));
+        // The first batch blocks the delivery thread while the next ones queue up
+        awaitFirstBatch();
+        for (int i = 0; i < 3; i++) {
+            assertTrue(stream.publish(List.of(ContactChange.updated(contact, contact))));
+        }
+        release.countDown();
+        assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+        assertEquals(3, batches.get(1).size());
+    }
+
+    @Test
+    public void testOverflowAsksForReload() throws InterruptedException {
+        CountDownLatch release = new CountDownLatch(1);
+        stream.subscribe(recorder(release));
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        stream.publish(List.of(ContactChange.added(contact)));
+        awaitFirstBatch();
+        for (int i = 0; i < 4; i++) {
+            assertTrue(stream.publish(List.of(ContactChange.updated(contact, contact))));
+        }
+        // The buffer holds 4 batches: the fifth one never waits, it discards them all instead
+        assertFalse(stream.publish(List.of(ContactChange.deleted(contact.getId(), contact))));
+        assertTrue(stream.publish(List.of(ContactChange.added(contact))));
+        release.countDown();
+        assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(5, stream.getLostBatchCount());
+        assertEquals(1, losses.get());
+        assertEquals(2, batches.size());
+        assertEquals(ContactChange.Type.ADDED, batches.get(1).get(0).getType());
+    }
+
+    @Test
+    public void testFailingListenerDoesNotStopDelivery() throws InterruptedException {
+        stream.subscribe(new IContactChangeListener() {
+            @Override
+            public void onContactsChanged(List<ContactChange> changes) {
+                throw new IllegalStateException("Listener failure expected by the test");
+            }
+
+            @Override
+            public void onChangesLost() {
+            }
+        });
+        stream.subscribe(recorder(null));
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        stream.publish(List.of(ContactChange.added(contact)));
+        assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+        stream.publish(List.of(ContactChange.deleted(contact.getId(), contact)));
+        assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+        assertEquals(2, batches.size());
+    }
+}
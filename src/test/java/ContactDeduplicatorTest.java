@@ -0,0 +1,95 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class ContactDeduplicatorTest {
+    private MockContactDAO contactDAO;
+    private ContactDeduplicator deduplicator;
+
+    @BeforeEach
+    public void setUp() {
+        contactDAO = new MockContactDAO();
+        deduplicator = new ContactDeduplicator(contactDAO);
+    }
+
+    @Test
+    public void testFindsSameEmailWithMisspelledName() {
+        Contact john = new Contact("John", "Smith", "johnsmith@example.com", "0423423426");
+        Contact jon = new Contact("Jon", "Smith", "JohnSmith@example.com", "");
+        contactDAO.addContact(john);
+        contactDAO.addContact(new Contact("Jane", "Smith", "janesmith@example.com", "0423423427"));
+        contactDAO.addContact(jon);
+        List<DuplicateCluster> clusters = deduplicator.findDuplicates();
+        assertEquals(1, clusters.size());
+        assertEquals(List.of(john, jon), clusters.get(0).getContacts());
+        assertEquals(john, clusters.get(0).getSurvivor());
+        assertTrue(clusters.get(0).getScore() >= ContactDeduplicator.DEFAULT_THRESHOLD);
+    }
+
+    @Test
+    public void testFindsSamePhoneInInternationalFormat() {
+        contactDAO.addContact(new Contact("Alice", "Graystone", "aliceg@gmail.com", "0423 423 428"));
+        contactDAO.addContact(new Contact("Alice", "Graystone", "", "+61 423 423 428"));
+        List<DuplicateCluster> clusters = deduplicator.findDuplicates();
+        assertEquals(1, clusters.size());
+        assertEquals(2, clusters.get(0).getContacts().size());
+    }
+
+    @Test
+    public void testKeepsNamesakesWithDifferentDetailsApart() {
+        contactDAO.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+        contactDAO.addContact(new Contact("John", "Doe", "jdoe@uni.edu.au", "0499999999"));
+        contactDAO.addContact(new Contact("Jane", "Doe", "johndoe@example.com", "0423423424"));
+        assertTrue(deduplicator.findDuplicates().isEmpty());
+    }
+
+    @Test
+    public void testJoinsChainedPairsIntoOneCluster() {
+        contactDAO.addContact(new Contact("Shane", "Graystone", "shaneg@gmail.com", ""));
+        contactDAO.addContact(new Contact("Shane", "Graystone", "shaneg@gmail.com", "0423423429"));
+        contactDAO.addContact(new Contact("Shane", "Greystone", "", "0423423429"));
+        List<DuplicateCluster> clusters = deduplicator.findDuplicates();
+        assertEquals(1, clusters.size());
+        assertEquals(3, clusters.get(0).getContacts().size());
+    }
+
+    @Test
+    public void testMergeFillsSurvivorAndDeletesDuplicates() {
+        Contact survivor = new Contact("Shane", "Graystone", "shaneg@gmail.com", "");
+        Contact duplicate = new Contact("Shane", "Graystone", "shaneg@gmail.com", "0423423429");
+        contactDAO.addContact(survivor);
+        contactDAO.addContact(duplicate);
+        contactDAO.addContact(new Contact("Alice", "Graystone", "aliceg@gmail.com", "0423423428"));
+        deduplicator.merge(deduplicator.findDuplicates());
+        assertEquals(2, contactDAO.getAllContacts().size());
+        assertNull(contactDAO.getContact(duplicate.getId()));
+        assertEquals("0423423429", contactDAO.getContact(survivor.getId()).getPhone());
+        assertTrue(deduplicator.findDuplicates().isEmpty());
+    }
+
+    @Test
+    public void testMergeThroughManagerUpdatesIndexes() {
+        ContactManager contactManager = new ContactManager(contactDAO, true);
+        contactManager.addContact(new Contact("Shane", "Graystone", "shaneg@gmail.com", ""));
+        contactManager.addContact(new Contact("Shayne", "Graystone", "shaneg@gmail.com", "0423423429"));
+        assertEquals(2, contactManager.searchContacts("Graystone").size());
+        contactManager.mergeDuplicates(deduplicator.findDuplicates());
+        assertEquals(1, contactManager.searchContacts("Graystone").size());
+        assertEquals(1, contactManager.searchContacts("0423423429").size());
+    }
+
+    @Test
+    public void testSkipsBlocksLargerThanTheLimit() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            contacts.add(new Contact("John", "Doe", "shared@example.com", ""));
+        }
+        contactDAO.addContacts(contacts);
+        assertEquals(5, deduplicator.findDuplicates().get(0).getContacts().size());
+        deduplicator.setMaxBlockSize(4);
+        assertTrue(deduplicator.findDuplicates().isEmpty());
+    }
+}
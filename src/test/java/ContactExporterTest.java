@@ -0,0 +1,187 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+public class ContactExporterTest {
+    @TempDir
+    Path tempDir;
+    private MockContactDAO contactDAO;
+    private ContactExporter exporter;
+    private Contact[] contacts = {
+            new Contact("John", "Doe", "johndoe@example.com", "0423423423"),
+            new Contact("Jane", "Doe, Jr", "janedoe@example.com", ""),
+            new Contact("José \"Pepe\"", "Núñez; Díaz", "jose@example.com", "+61 423 423 425")
+    };
+
+    @BeforeEach
+    public void setUp() {
+        contactDAO = new MockContactDAO();
+        for (Contact contact : contacts) {
+            contactDAO.addContact(contact);
+        }
+        exporter = new ContactExporter(contactDAO);
+    }
+
+    private List<Contact> reimport(Path file) throws IOException {
+        MockContactDAO imported = new MockContactDAO();
+        new ContactImporter(imported).importFile(file, null);
+        List<Contact> result = new ArrayList<>(imported.getAllContacts());
+        result.sort(Comparator.comparing(Contact::getEmail));
+        return result;
+    }
+
+    private void assertSameContacts(List<Contact> actual) {
+        List<Contact> expected = new ArrayList<>(List.of(contacts));
+        expected.sort(Comparator.comparing(Contact::getEmail));
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getFirstName(), actual.get(i).getFirstName());
+            assertEquals(expected.get(i).getLastName(), actual.get(i).getLastName());
+            assertEquals(expected.get(i).getEmail(), actual.get(i).getEmail());
+            assertEquals(expected.get(i).getPhone(), actual.get(i).getPhone());
+        }
+    }
+
+    @Test
+    public void testCsvRoundTrip() throws IOException {
+        Path file = tempDir.resolve("contacts.csv");
+        ExportProgress progress = exporter.exportAll(file, null);
+        assertTrue(progress.isDone());
+        assertEquals(3, progress.getContactsWritten());
+        assertEquals(Files.size(file), progress.getBytesWritten());
+        assertTrue(Files.readString(file).startsWith("First Name,Last Name,Email,Phone\r\nJohn,Doe,"));
+        assertSameContacts(reimport(file));
+    }
+
+    @Test
+    public void testVCardRoundTrip() throws IOException {
+        Path file = tempDir.resolve("contacts.vcf");
+        exporter.exportAll(file, null);
+        String text = Files.readString(file);
+        assertTrue(text.startsWith("BEGIN:VCARD\r\nVERSION:4.0\r\nFN:John Doe\r\nN:Doe;John;;;\r\n"));
+        assertTrue(text.contains("N:Núñez\\; Díaz;José \"Pepe\";;;\r\n"));
+        assertSameContacts(reimport(file));
+    }
+
+    @Test
+    public void testVCardFoldsLongLines() throws IOException {
+        Contact contact = new Contact("A".repeat(100), "B", "", "");
+        contactDAO.addContact(contact);
+        Path file = tempDir.resolve("contacts.vcf");
+        exporter.exportAll(file, null);
+        for (String line : Files.readString(file).split("\r\n")) {
+            assertTrue(line.length() <= 75);
+        }
+        assertTrue(reimport(file).stream().anyMatch(imported -> imported.getFirstName().equals("A".repeat(100))));
+    }
+
+    @Test
+    public void testJsonLines() throws IOException {
+        Path file = tempDir.resolve("contacts.jsonl");
+        exporter.exportAll(file, null);
+        List<String> lines = Files.readAllLines(file);
+        assertEquals(3, lines.size());
+        assertEquals("{\"id\":" + contacts[2].getId() + ",\"firstName\":\"José \\\"Pepe\\\"\",\"lastName\":\"Núñez; Díaz\","
+                + "\"email\":\"jose@example.com\",\"phone\":\"+61 423 423 425\"}", lines.get(2));
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        Path file = tempDir.resolve("contacts.csv.gz");
+        exporter.exportAll(file, null);
+        try (InputStream input = new GZIPInputStream(Files.newInputStream(file))) {
+            String text = new String(input.readAllBytes(), StandardCharsets.UTF_8);
+            assertTrue(text.startsWith("First Name,Last Name,Email,Phone\r\n"));
+            assertEquals(4, text.split("\r\n").length);
+        }
+    }
+
+    @Test
+    public void testExportSearch() throws IOException {
+        Path file = tempDir.resolve("doe.csv");
+        ExportProgress progress = exporter.exportSearch("doe", file, null);
+        assertEquals(2, progress.getContactsWritten());
+        assertEquals(3, Files.readAllLines(file).size());
+    }
+
+    @Test
+    public void testReportsProgressWithSmallBuffer() throws IOException {
+        List<Contact> many = new ArrayList<>();
+        for (int i = 0; i < 25_000; i++) {
+            many.add(new Contact("First" + i, "Last", "user" + i + "@example.com", "0400000000"));
+        }
+        contactDAO.addContacts(many);
+        exporter.setBufferSize(1024);
+        List<ExportProgress> updates = new ArrayList<>();
+        Path file = tempDir.resolve("many.jsonl");
+        ExportProgress progress = exporter.exportAll(file, updates::add);
+        assertEquals(25_003, progress.getContactsWritten());
+        assertEquals(Files.size(file), progress.getBytesWritten());
+        assertEquals(3, updates.size());
+        assertTrue(updates.get(2).isDone());
+        assertEquals(25_003, Files.readAllLines(file).size());
+    }
+
+    @Test
+    public void testFailedExportLeavesNoFile() {
+        List<Contact> many = new ArrayList<>();
+        for (int i = 0; i < 25_000; i++) {
+            many.add(new Contact("First" + i, "Last", "user" + i + "@example.com", "0400000000"));
+        }
+        contactDAO.addContacts(many);
+        // The database goes away halfway through the export
+        ContactExporter failing = new ContactExporter(new MockContactDAO() {
+            @Override
+            public void forEachContact(Consumer<? super Contact> action) {
+                List<Contact> all = contactDAO.getAllContacts();
+                all.subList(0, all.size() / 2).forEach(action);
+                throw new IllegalStateException("Could not read the contacts");
+            }
+        });
+        failing.setBufferSize(1024);
+        List<ExportProgress> updates = new ArrayList<>();
+        Path file = tempDir.resolve("many.csv");
+        assertThrows(IOException.class, () -> failing.exportAll(file, updates::add));
+        assertFalse(Files.exists(file));
+        assertFalse(updates.isEmpty());
+        assertTrue(updates.stream().noneMatch(ExportProgress::isDone));
+    }
+
+    @Test
+    public void testClosesChannelWhenGzipHeaderFails() {
+        boolean[] open = {true};
+        WritableByteChannel broken = new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer source) throws IOException {
+                throw new IOException("Disk full");
+            }
+
+            @Override
+            public boolean isOpen() {
+                return open[0];
+            }
+
+            @Override
+            public void close() {
+                open[0] = false;
+            }
+        };
+        // The gzip header is written as soon as the channel is wrapped, before any writer owns the channel
+        assertThrows(IOException.class, () -> exporter.exportAll(broken, ExportFormat.CSV, true, null));
+        assertFalse(open[0]);
+    }
+}
@@ -0,0 +1,234 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+public class ContactImporterTest {
+    private MockContactDAO contactDAO;
+    private ContactImporter importer;
+
+    @BeforeEach
+    public void setUp() {
+        contactDAO = new MockContactDAO();
+        importer = new ContactImporter(contactDAO);
+    }
+
+    private ImportProgress importText(String text, ImportFormat format) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return importer.importStream(new ByteArrayInputStream(bytes), bytes.length, format, null);
+    }
+
+    private List<Contact> importedContacts() {
+        List<Contact> contacts = new ArrayList<>(contactDAO.getAllContacts());
+        contacts.sort(Comparator.comparing(Contact::getLastName).thenComparing(Contact::getFirstName));
+        return contacts;
+    }
+
+    @Test
+    public void testImportCsvWithHeader() throws IOException {
+        ImportProgress progress = importText(
+                "\uFEFFPhone,Email,Last Name,First Name,Notes\r\n"
+                        + "0423423423,johndoe@Example.COM,Doe,John,friend\r\n"
+                        + "\r\n"
+                        + "\"0423 423 424\",janedoe@example.com,\"Doe, Jr\",\"Jane \"\"JJ\"\"\nSmith\",\r\n",
+                ImportFormat.CSV);
+        assertTrue(progress.isDone());
+        assertEquals(2, progress.getRowsRead());
+        assertEquals(2, progress.getContactsImported());
+        List<Contact> contacts = importedContacts();
+        assertEquals("John", contacts.get(0).getFirstName());
+        assertEquals("johndoe@example.com", contacts.get(0).getEmail());
+        assertEquals("0423423423", contacts.get(0).getPhone());
+        assertEquals("Doe, Jr", contacts.get(1).getLastName());
+        assertEquals("Jane \"JJ\" Smith", contacts.get(1).getFirstName());
+        assertEquals("0423 423 424", contacts.get(1).getPhone());
+    }
+
+    @Test
+    public void testImportCsvWithoutHeader() throws IOException {
+        importText("Alice,Graystone,aliceg@gmail.com,0423423428\nShane,Graystone\n", ImportFormat.CSV);
+        List<Contact> contacts = importedContacts();
+        assertEquals(2, contacts.size());
+        assertEquals("aliceg@gmail.com", contacts.get(0).getEmail());
+        assertEquals("", contacts.get(1).getPhone());
+    }
+
+    @Test
+    public void testRejectsInvalidRows() throws IOException {
+        ImportProgress progress = importText(
+                "first name,last name,email,phone\n"
+                        + "John,Doe,not-an-email,\n"
+                        + "Jane,Doe,,call me\n"
+                        + ",,,0423423423\n"
+                        + "Jay,Doe,jaydoe@example.com,+61 (423) 423-425\n",
+                ImportFormat.CSV);
+        assertEquals(4, progress.getRowsRead());
+        assertEquals(3, progress.getRowsRejected());
+        assertEquals(1, progress.getContactsImported());
+        assertEquals("Jay", importedContacts().get(0).getFirstName());
+    }
+
+    @Test
+    public void testImportVCard() throws IOException {
+        importText("BEGIN:VCARD\r\n"
+                        + "VERSION:3.0\r\n"
+                        + "N:Doe;John;;;\r\n"
+                        + "FN:John Doe\r\n"
+                        + "item1.EMAIL;TYPE=INTERNET,WORK:john\r\n"
+                        + " doe@example.com\r\n"
+                        + "EMAIL;TYPE=HOME:jd@example.com\r\n"
+                        + "TEL;TYPE=CELL:0423423423\r\n"
+                        + "END:VCARD\r\n"
+                        + "BEGIN:VCARD\r\n"
+                        + "VERSION:4.0\r\n"
+                        + "FN:Mary Anne Smith\\, PhD\r\n"
+                        + "TEL;VALUE=uri:tel:+61-423-423-427\r\n"
+                        + "END:VCARD\r\n",
+                ImportFormat.VCARD);
+        List<Contact> contacts = importedContacts();
+        assertEquals(2, contacts.size());
+        assertEquals("John", contacts.get(0).getFirstName());
+        assertEquals("johndoe@example.com", contacts.get(0).getEmail());
+        assertEquals("0423423423", contacts.get(0).getPhone());
+        assertEquals("Mary Anne Smith,", contacts.get(1).getFirstName());
+        assertEquals("PhD", contacts.get(1).getLastName());
+        assertEquals("+61-423-423-427", contacts.get(1).getPhone());
+    }
+
+    @Test
+    public void testBatchesWritesAndReportsProgress() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("First").append(i).append(",Last,user").append(i).append("@example.com,04").append(i).append('\n');
+        }
+        importer.setBatchSize(100);
+        importer.setWriteBatchSize(1_000);
+        importer.setQueueCapacity(1);
+        importer.setWorkerCount(3);
+        List<ImportProgress> updates = new ArrayList<>();
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        ImportProgress progress = importer.importStream(new ByteArrayInputStream(bytes), bytes.length,
+                ImportFormat.CSV, updates::add);
+        assertEquals(10_000, progress.getContactsImported());
+        assertEquals(10_000, contactDAO.getContactCount());
+        assertEquals(bytes.length, progress.getBytesRead());
+        assertEquals(1.0, progress.getFraction());
+        assertTrue(updates.size() >= 10);
+        assertTrue(updates.get(updates.size() - 1).isDone());
+        for (int i = 1; i < updates.size(); i++) {
+            assertTrue(updates.get(i).getContactsImported() >= updates.get(i - 1).getContactsImported());
+        }
+    }
+
+    @Test
+    public void testImportThroughManagerUpdatesIndexes() throws IOException {
+        ContactManager contactManager = new ContactManager(contactDAO, true);
+        assertEquals(0, contactManager.searchContacts("Graystone").size());
+        importer = new ContactImporter(contactManager);
+        importText("Alice,Graystone,aliceg@gmail.com,0423423428\n", ImportFormat.CSV);
+        assertEquals(1, contactManager.searchContacts("Graystone").size());
+    }
+
+    @Test
+    public void testImportThroughManagerWritesShortBatches() throws IOException {
+        List<Integer> batchSizes = new ArrayList<>();
+        ContactManager contactManager = new ContactManager(new MockContactDAO() {
+            @Override
+            public synchronized void addContacts(Collection<Contact> contacts) {
+                batchSizes.add(contacts.size());
+                super.addContacts(contacts);
+            }
+        });
+        importer = new ContactImporter(contactManager);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 12_000; i++) {
+            text.append("First").append(i).append(",Last,user").append(i).append("@example.com,04").append(i).append('\n');
+        }
+        assertEquals(12_000, importText(text.toString(), ImportFormat.CSV).getContactsImported());
+        assertEquals(12_000, contactManager.getContactCount());
+        assertEquals(3, batchSizes.size());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= ContactImporter.DEFAULT_MANAGER_WRITE_BATCH_SIZE));
+    }
+
+    @Test
+    public void testStopsWhenWriterFails() {
+        ContactImporter failing = new ContactImporter(new MockContactDAO() {
+            @Override
+            public void addContacts(java.util.Collection<Contact> contacts) {
+                throw new IllegalStateException("disk full");
+            }
+        });
+        failing.setBatchSize(10);
+        failing.setWriteBatchSize(10);
+        failing.setQueueCapacity(1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("First,Last,,0423423423\n");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        assertThrows(IllegalStateException.class, () ->
+                failing.importStream(new ByteArrayInputStream(bytes), bytes.length, ImportFormat.CSV, null));
+    }
+
+    @Test
+    public void testStopsWhenWriterThrowsAnErrorPartway() {
+        List<Integer> batchSizes = new ArrayList<>();
+        ContactImporter failing = new ContactImporter(new MockContactDAO() {
+            @Override
+            public void addContacts(Collection<Contact> contacts) {
+                if (!batchSizes.isEmpty()) throw new AssertionError("write failed");
+                batchSizes.add(contacts.size());
+                super.addContacts(contacts);
+            }
+        });
+        failing.setBatchSize(10);
+        failing.setWriteBatchSize(10);
+        failing.setQueueCapacity(1);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10_000; i++) {
+            text.append("First,Last,,0423423423\n");
+        }
+        byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+        // An error that is not a runtime exception must stop the other stages too, rather than leave them waiting
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> assertThrows(AssertionError.class, () ->
+                failing.importStream(new ByteArrayInputStream(bytes), bytes.length, ImportFormat.CSV, null)));
+        assertEquals(List.of(10), batchSizes);
+    }
+
+    @Test
+    public void testCountsOnlyWrittenContacts(@TempDir Path tempDir) throws Exception {
+        try (Connection connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings());
+             SqliteContactDAO sqliteDAO = new SqliteContactDAO(connection)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TRIGGER reject_bad BEFORE INSERT ON contacts WHEN NEW.firstName = 'Bad' "
+                        + "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+            }
+            ContactImporter sqliteImporter = new ContactImporter(sqliteDAO);
+            sqliteImporter.setBatchSize(10);
+            sqliteImporter.setWriteBatchSize(10);
+            sqliteImporter.setWorkerCount(1);
+            StringBuilder text = new StringBuilder();
+            for (int i = 0; i < 30; i++) {
+                text.append(i == 15 ? "Bad" : "Good").append(",Doe,,0423423423\n");
+            }
+            byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+            // The DAO logs the failed batch and rolls it back, so its ten contacts are not counted
+            ImportProgress progress = sqliteImporter.importStream(new ByteArrayInputStream(bytes), bytes.length, ImportFormat.CSV, null);
+            assertEquals(30, progress.getRowsRead());
+            assertEquals(20, progress.getContactsImported());
+            assertEquals(20, sqliteDAO.getAllContacts().size());
+        }
+    }
+}
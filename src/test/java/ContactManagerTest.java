@@ -1,8 +1,19 @@
 import com.example.addressbook.model.*;
 
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 import static org.junit.jupiter.api.Assertions.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 public class ContactManagerTest {
     private ContactManager contactManager;
@@ -138,4 +149,463 @@ public class ContactManagerTest {
         assertEquals("Jane", contacts.get(0).getFirstName());
         assertEquals("Doe", contacts.get(0).getLastName());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testIndexedSearchMatchesScan() {
+        MockContactDAO dao = new MockContactDAO();
+        ContactManager indexedManager = new ContactManager(dao, true);
+        for (Contact contact : contacts) {
+            indexedManager.addContact(contact);
+        }
+        ContactManager scanManager = new ContactManager(dao);
+        String[] queries = {"John", "Doe", "ane", "jane doe", "example.com", "0423423423", "Dan", "a", "", null};
+        for (String query : queries) {
+            assertEquals(scanManager.searchContacts(query), indexedManager.searchContacts(query));
+        }
+    }
+
+    @Test
+    public void testIndexedSearchAfterUpdate() {
+        contactManager = new ContactManager(new MockContactDAO(), true);
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        assertEquals(2, contactManager.searchContacts("Graystone").size());
+        contacts[5].setLastName("Stone");
+        contactManager.updateContact(contacts[5]);
+        assertEquals(1, contactManager.searchContacts("Graystone").size());
+        assertEquals(2, contactManager.searchContacts("Stone").size());
+    }
+
+    @Test
+    public void testIndexedSearchAfterDelete() {
+        contactManager = new ContactManager(new MockContactDAO(), true);
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        assertEquals(3, contactManager.searchContacts("Doe").size());
+        contactManager.deleteContact(contacts[0]);
+        List<Contact> contacts = contactManager.searchContacts("Doe");
+        assertEquals(2, contacts.size());
+        assertFalse(contacts.contains(this.contacts[0]));
+    }
+
+    @Test
+    public void testPrefixSearchRanksFirstNameFirst() {
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        contactManager.addContact(new Contact("Bob", "Janeway", "bob@example.com", "0411111111"));
+        List<Contact> contacts = contactManager.searchContactsByPrefix("Jane");
+        assertEquals(3, contacts.size());
+        assertEquals("Jane", contacts.get(0).getFirstName());
+        assertEquals("Jane", contacts.get(1).getFirstName());
+        assertEquals("Janeway", contacts.get(2).getLastName());
+    }
+
+    @Test
+    public void testPrefixSearchDoesNotMatchInfix() {
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        List<Contact> contacts = contactManager.searchContactsByPrefix("ane");
+        assertEquals(0, contacts.size());
+    }
+
+    @Test
+    public void testPrefixSearchByFullNameAndEmail() {
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        List<Contact> contacts = contactManager.searchContactsByPrefix("john s");
+        assertEquals(1, contacts.size());
+        assertEquals(this.contacts[3], contacts.get(0));
+        contacts = contactManager.searchContactsByPrefix("aliceg");
+        assertEquals(1, contacts.size());
+        assertEquals(this.contacts[5], contacts.get(0));
+    }
+
+    @Test
+    public void testPrefixSearchByPhoneDigits() {
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        assertEquals(7, contactManager.searchContactsByPrefix("0423 423").size());
+        List<Contact> contacts = contactManager.searchContactsByPrefix("(0423) 423-429");
+        assertEquals(1, contacts.size());
+        assertEquals("Shane", contacts.get(0).getFirstName());
+    }
+
+    @Test
+    public void testPrefixSearchLimitAndUpdates() {
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        assertEquals(2, contactManager.searchContactsByPrefix("J", 2).size());
+        contacts[0].setFirstName("Jonathan");
+        contactManager.updateContact(contacts[0]);
+        contactManager.deleteContact(contacts[1]);
+        assertEquals(1, contactManager.searchContactsByPrefix("Jonathan").size());
+        // Jonathan still matches "john" through the email local-part, but ranks below John Smith
+        List<Contact> contacts = contactManager.searchContactsByPrefix("John");
+        assertEquals(2, contacts.size());
+        assertEquals(this.contacts[3], contacts.get(0));
+        assertEquals(this.contacts[0], contacts.get(1));
+        assertEquals(1, contactManager.searchContactsByPrefix("Jane").size());
+    }
+
+    @Test
+    public void testSearchSessionRefinesQuery() {
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        ContactSearchSession session = contactManager.newSearchSession();
+        assertEquals(5, session.search("j").size());
+        assertEquals(2, session.search("jo").size());
+        assertEquals(2, session.search("joh").size());
+        assertEquals(1, session.search("john d").size());
+        assertEquals(2, session.search("joh").size());
+        assertEquals(7, session.search("").size());
+    }
+
+    @Test
+    public void testSearchSessionSeesChanges() {
+        for (Contact contact : contacts) {
+            contactManager.addContact(contact);
+        }
+        ContactSearchSession session = contactManager.newSearchSession();
+        assertEquals(2, session.search("jo").size());
+        contactManager.addContact(new Contact("Joe", "Bloggs", "joe@example.com", "0400000000"));
+        assertEquals(3, session.search("jo").size());
+        assertEquals(1, session.search("joe").size());
+    }
+
+    @Test
+    public void testBatchWrites() {
+        contactManager = new ContactManager(new MockContactDAO(), true);
+        contactManager.addContacts(List.of(contacts));
+        assertEquals(7, contactManager.getAllContacts().size());
+        assertEquals(3, contactManager.searchContacts("Doe").size());
+        contacts[0].setLastName("Dough");
+        contacts[1].setLastName("Dough");
+        contactManager.updateContacts(List.of(contacts[0], contacts[1]));
+        assertEquals(2, contactManager.searchContacts("Dough").size());
+        contactManager.deleteContacts(List.of(contacts[0], contacts[1]));
+        assertEquals(5, contactManager.getAllContacts().size());
+        assertEquals(0, contactManager.searchContacts("Dough").size());
+    }
+
+    @Test
+    public void testParallelScanMatchesScan() {
+        MockContactDAO dao = new MockContactDAO();
+        ContactManager parallelManager = new ContactManager(dao);
+        parallelManager.setParallelSearchThreshold(1);
+        String[] lastNames = {"Doe", "Smith", "Graystone"};
+        List<Contact> many = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            many.add(new Contact("Name" + i, lastNames[i % 3], "name" + i + "@example.com", "04" + i));
+        }
+        parallelManager.addContacts(many);
+        ContactManager scanManager = new ContactManager(dao);
+        String[] queries = {"name1", "Doe", "stone", "12345", "n", "", null, "zzz"};
+        for (String query : queries) {
+            assertEquals(scanManager.searchContacts(query), parallelManager.searchContacts(query));
+        }
+        many.get(3).setLastName("Unique");
+        parallelManager.updateContact(many.get(3));
+        parallelManager.deleteContacts(many.subList(100, 10_000));
+        for (String query : new String[] {"unique", "Doe", "name5"}) {
+            assertEquals(scanManager.searchContacts(query), parallelManager.searchContacts(query));
+        }
+        assertEquals(1, parallelManager.searchContacts("unique").size());
+    }
+
+    @Test
+    public void testSearchFoldsAccentsAndPhoneFormats() {
+        MockContactDAO dao = new MockContactDAO();
+        ContactManager indexedManager = new ContactManager(dao, true);
+        indexedManager.addContacts(List.of(contacts));
+        Contact jose = new Contact("José", "Álvarez", "jose@example.com", "+61 499 111 222");
+        indexedManager.addContact(jose);
+        ContactManager parallelManager = new ContactManager(dao);
+        parallelManager.setParallelSearchThreshold(1);
+        ContactManager scanManager = new ContactManager(dao);
+        for (ContactManager manager : List.of(scanManager, indexedManager, parallelManager)) {
+            assertEquals(List.of(jose), manager.searchContacts("jose alvarez"));
+            assertEquals(List.of(jose), manager.searchContacts("ÁLV"));
+            assertEquals(List.of(jose), manager.searchContacts("0499 111"));
+            assertEquals(List.of(contacts[0]), manager.searchContacts("+61 423 423 423"));
+            assertEquals(7, manager.searchContacts("+61 (4) 2342").size());
+        }
+        assertEquals(jose, indexedManager.searchContactsByPrefix("alva").get(0));
+        assertEquals(jose, indexedManager.searchContactsByPrefix("+61499").get(0));
+        jose.setPhone("0411 000 000");
+        indexedManager.updateContact(jose);
+        parallelManager.updateContact(jose);
+        for (ContactManager manager : List.of(scanManager, indexedManager, parallelManager)) {
+            assertTrue(manager.searchContacts("0499").isEmpty());
+            assertEquals(List.of(jose), manager.searchContacts("+61411"));
+        }
+    }
+
+    @Test
+    public void testPhoneQueriesOnlyMatchPhoneDigits() {
+        MockContactDAO dao = new MockContactDAO();
+        Contact bob = new Contact("Bob", "Brown", "bob0423423@example.com", "0400 000 000");
+        dao.addContact(bob);
+        dao.addContacts(List.of(contacts));
+        ContactManager parallelManager = new ContactManager(dao);
+        parallelManager.setParallelSearchThreshold(1);
+        ContactManager scanManager = new ContactManager(dao, false);
+        for (ContactManager manager : List.of(scanManager, parallelManager)) {
+            // The digits of the email are not a phone number
+            assertFalse(manager.searchContacts("0423 423").contains(bob));
+            assertEquals(7, manager.searchContacts("0423 423").size());
+            assertEquals(List.of(bob), manager.searchContacts("bob0423"));
+        }
+    }
+
+    @Test
+    public void testSearchSessionRefinesPhoneQueries() {
+        contactManager.addContacts(List.of(contacts));
+        ContactSearchSession session = contactManager.newSearchSession();
+        assertEquals(0, session.search("61").size());
+        // "+614" is not a refinement of "61" once normalized to "04"
+        assertEquals(7, session.search("+614").size());
+        assertEquals(1, session.search("+61 423 423 429").size());
+    }
+
+    @Test
+    public void testFuzzySearch() {
+        contactManager.addContacts(List.of(contacts));
+        List<Contact> results = contactManager.searchContactsFuzzy("Jon Smyth");
+        assertEquals(List.of(contacts[3]), results);
+        // "jay" and "shane" are two typos away from "jane"
+        results = contactManager.searchContactsFuzzy("jane", 1);
+        assertEquals(List.of(contacts[1], contacts[4]), results);
+        assertEquals(List.of(contacts[5]), contactManager.searchContactsFuzzy("alise greystone"));
+        assertEquals(2, contactManager.searchContactsFuzzy("graystonne").size());
+        assertEquals(List.of(contacts[6]), contactManager.searchContactsFuzzy("shaneg@gmial.com"));
+        assertTrue(contactManager.searchContactsFuzzy("xyz").isEmpty());
+        assertTrue(contactManager.searchContactsFuzzy("").isEmpty());
+    }
+
+    @Test
+    public void testFuzzySearchAfterChanges() {
+        contactManager.addContacts(List.of(contacts));
+        assertEquals(2, contactManager.searchContactsFuzzy("smiht", 2).size());
+        contacts[3].setLastName("Smythe");
+        contactManager.updateContact(contacts[3]);
+        contactManager.deleteContact(contacts[4]);
+        assertTrue(contactManager.searchContactsFuzzy("smiht", 2).isEmpty());
+        assertEquals(List.of(contacts[3]), contactManager.searchContactsFuzzy("smithe", 1));
+    }
+
+    @Test
+    public void testPhoneticSearch() {
+        contactManager.addContacts(List.of(contacts));
+        // Soundex is coarse: "Jane" and "John" share the code J500
+        assertEquals(List.of(contacts[3], contacts[4]), contactManager.searchContactsPhonetic("Jon Smyth"));
+        assertEquals(List.of(contacts[5], contacts[6]), contactManager.searchContactsPhonetic("Greistone"));
+        assertEquals(List.of(contacts[2]), contactManager.searchContactsPhonetic("Jai"));
+        assertTrue(contactManager.searchContactsPhonetic("Smyth Graystone").isEmpty());
+        assertTrue(contactManager.searchContactsPhonetic("").isEmpty());
+        contacts[6].setLastName("Greystone-Smith");
+        contactManager.updateContact(contacts[6]);
+        contactManager.deleteContact(contacts[5]);
+        assertEquals(List.of(contacts[6]), contactManager.searchContactsPhonetic("graystone"));
+    }
+
+    /**
+     * Collects the ids of contacts, to compare contacts read back from different places.
+     */
+    private static List<Integer> ids(List<Contact> contacts) {
+        List<Integer> ids = new ArrayList<>();
+        for (Contact contact : contacts) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    @Test
+    public void testSavedSearchIndexReplaysChanges(@TempDir Path tempDir) throws IOException, SQLException {
+        Path file = tempDir.resolve("contacts.index");
+        try (Connection connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings())) {
+            SqliteContactDAO database = new SqliteContactDAO(connection);
+            database.addContacts(List.of(contacts));
+            ContactManager first = new ContactManager(database, true);
+            first.loadSearchIndex(file, database);
+            first.saveSearchIndex(file, database);
+            // Changes made while the index is not loaded are replayed from the change log
+            contacts[0].setLastName("Graystone");
+            database.updateContact(contacts[0]);
+            database.deleteContact(contacts[1]);
+            Contact added = new Contact("Doris", "Doe", "doris@example.com", "+61 423 423 430");
+            database.addContact(added);
+
+            ContactManager second = new ContactManager(database, true);
+            second.loadSearchIndex(file, database);
+            ContactManager rebuilt = new ContactManager(database, true);
+            for (String query : new String[] {"", "doe", "graystone", "john", "0423 423 43", "gmail", "missing"}) {
+                assertEquals(ids(rebuilt.searchContacts(query)), ids(second.searchContacts(query)));
+            }
+            // John keeps matching through his email
+            assertEquals(List.of(contacts[0].getId(), contacts[2].getId(), added.getId()), ids(second.searchContacts("doe")));
+            assertEquals(List.of(contacts[0].getId()), ids(second.searchContacts("john graystone")));
+            database.close();
+        }
+    }
+
+    @Test
+    public void testCorruptSearchIndexIsRebuilt(@TempDir Path tempDir) throws IOException, SQLException {
+        Path file = tempDir.resolve("contacts.index");
+        try (Connection connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings())) {
+            SqliteContactDAO database = new SqliteContactDAO(connection);
+            database.addContacts(List.of(contacts));
+            ContactManager first = new ContactManager(database, true);
+            first.loadSearchIndex(file, database);
+            first.saveSearchIndex(file, database);
+            byte[] bytes = Files.readAllBytes(file);
+            Files.write(file, Arrays.copyOf(bytes, bytes.length - 3));
+
+            ContactManager second = new ContactManager(database, true);
+            second.loadSearchIndex(file, database);
+            assertEquals(List.of(contacts[5].getId(), contacts[6].getId()), ids(second.searchContacts("graystone")));
+            database.close();
+        }
+    }
+
+    @Test
+    public void testPagingAndWritesDoNotWaitForSearches() throws InterruptedException {
+        CountDownLatch building = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        MockContactDAO dao = new MockContactDAO() {
+            @Override
+            public List<Contact> getAllContacts() {
+                // Only the first call, which builds the index, is held back
+                if (building.getCount() > 0) {
+                    building.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return super.getAllContacts();
+            }
+        };
+        ContactManager manager = new ContactManager(dao, true);
+        manager.addContacts(List.of(contacts));
+        Thread search = new Thread(() -> manager.searchContacts("doe"));
+        search.start();
+        try {
+            assertTrue(building.await(5, TimeUnit.SECONDS));
+            // The index build holds the search lock until released
+            assertEquals(7, manager.getContactCount());
+            assertEquals(3, manager.getContactsPage(null, 3).size());
+            Contact added = new Contact("Bob", "Doe", "bob@example.com", "0412345678");
+            manager.addContact(added);
+            assertEquals(8, manager.getContactCount());
+        } finally {
+            release.countDown();
+            search.join(5_000);
+        }
+        assertEquals(4, manager.searchContacts("doe").size());
+    }
+
+    @Test
+    public void testFailedWritesAreNotCachedIndexedOrPublished(@TempDir Path tempDir) throws SQLException, InterruptedException {
+        try (Connection connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings());
+             SqliteContactDAO database = new SqliteContactDAO(connection)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TRIGGER reject_bad BEFORE INSERT ON contacts WHEN NEW.firstName = 'Bad' "
+                        + "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+            }
+            ContactChangeStream stream = new ContactChangeStream();
+            List<ContactChange> published = new ArrayList<>();
+            stream.subscribe(new IContactChangeListener() {
+                @Override
+                public void onContactsChanged(List<ContactChange> changes) {
+                    published.addAll(changes);
+                }
+
+                @Override
+                public void onChangesLost() {
+                }
+            });
+            CachingContactDAO cache = new CachingContactDAO(new ObservableContactDAO(database, stream));
+            ContactManager manager = new ContactManager(cache, true);
+            assertEquals(0, cache.getAllContacts().size());
+            assertEquals(0, manager.searchContacts("Good").size());
+
+            Contact goodOne = new Contact("Good", "One", "one@example.com", "0423423423");
+            manager.addContact(goodOne);
+            // The DAO logs the rejected writes and rolls them back
+            Contact goodTwo = new Contact("Good", "Two", "two@example.com", "0423423424");
+            manager.addContacts(List.of(new Contact("Bad", "Doe", "bad@example.com", "0423423425"), goodTwo));
+            manager.addContact(new Contact("Bad", "Smith", "bads@example.com", "0423423426"));
+            assertEquals(0, goodTwo.getId());
+
+            assertEquals(1, database.getContactCount());
+            assertEquals(1, cache.getContactCount());
+            assertEquals(List.of(goodOne.getId()), ids(cache.getAllContacts()));
+            assertEquals(List.of(goodOne.getId()), ids(manager.searchContacts("Good")));
+            assertEquals(0, manager.searchContacts("Bad").size());
+            assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+            assertEquals(1, published.size());
+            assertEquals(ContactChange.Type.ADDED, published.get(0).getType());
+            assertEquals(goodOne.getId(), published.get(0).getId());
+            stream.close();
+        }
+    }
+
+    @Test
+    public void testFailedUpdatesAndDeletesAreRolledBackEverywhere(@TempDir Path tempDir) throws SQLException, InterruptedException {
+        try (Connection connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings());
+             SqliteContactDAO database = new SqliteContactDAO(connection)) {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("CREATE TRIGGER reject_bad_update BEFORE UPDATE ON contacts WHEN NEW.firstName = 'Bad' "
+                        + "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+                statement.execute("CREATE TRIGGER reject_kept_delete BEFORE DELETE ON contacts WHEN OLD.lastName = 'Kept' "
+                        + "BEGIN SELECT RAISE(ABORT, 'rejected'); END");
+            }
+            ContactChangeStream stream = new ContactChangeStream();
+            List<ContactChange> published = new ArrayList<>();
+            stream.subscribe(new IContactChangeListener() {
+                @Override
+                public void onContactsChanged(List<ContactChange> changes) {
+                    published.addAll(changes);
+                }
+
+                @Override
+                public void onChangesLost() {
+                }
+            });
+            CachingContactDAO cache = new CachingContactDAO(new ObservableContactDAO(database, stream));
+            ContactManager manager = new ContactManager(cache, true);
+            manager.addContacts(List.of(new Contact("Good", "One", "one@example.com", "0423423423"),
+                    new Contact("Good", "Kept", "kept@example.com", "0423423424")));
+            List<Contact> all = cache.getAllContacts();
+            assertEquals(2, manager.searchContacts("Good").size());
+            assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+            published.clear();
+
+            // The DAO logs the rejected writes and rolls them back
+            Contact edited = all.get(0);
+            edited.setFirstName("Bad");
+            manager.updateContact(edited);
+            manager.deleteContacts(all);
+            manager.deleteContact(all.get(1));
+
+            assertEquals("Good", database.getContact(edited.getId()).getFirstName());
+            assertEquals("Good", cache.getContact(edited.getId()).getFirstName());
+            assertEquals(List.of("Good", "Good"), cache.getAllContacts().stream().map(Contact::getFirstName).toList());
+            assertEquals(2, cache.getContactCount());
+            assertEquals(2, manager.searchContacts("Good").size());
+            assertEquals(0, manager.searchContacts("Bad").size());
+            assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+            assertEquals(List.of(), published);
+            stream.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+import com.example.addressbook.controller.ContactResultList;
+import com.example.addressbook.model.*;
+
+import javafx.collections.ListChangeListener;
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public class ContactResultListTest {
+    private ContactResultList resultList;
+    private List<Contact> contacts;
+    private final List<ListChangeListener.Change<? extends Contact>> changes = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        resultList = new ContactResultList();
+        contacts = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            Contact contact = new Contact("Name" + i, "Doe", i + "@example.com", "04" + i);
+            contact.setId(i);
+            contacts.add(contact);
+        }
+        resultList.addListener((ListChangeListener<Contact>) changes::add);
+    }
+
+    /**
+     * Replays the recorded changes on a copy of the previous contents.
+     */
+    private List<Integer> replay(List<Integer> before) {
+        List<Integer> ids = new ArrayList<>(before);
+        for (ListChangeListener.Change<? extends Contact> change : changes) {
+            while (change.next()) {
+                if (change.wasRemoved()) {
+                    ids.subList(change.getFrom(), change.getFrom() + change.getRemovedSize()).clear();
+                }
+                if (change.wasAdded()) {
+                    ids.addAll(change.getFrom(), change.getAddedSubList().stream().map(Contact::getId).toList());
+                }
+            }
+        }
+        return ids;
+    }
+
+    @Test
+    public void testUpdateFiresOneMinimalChange() {
+        resultList.update(contacts.subList(0, 5));
+        changes.clear();
+        resultList.update(List.of(contacts.get(0), contacts.get(2), contacts.get(3), contacts.get(4), contacts.get(9)));
+        assertEquals(1, changes.size());
+        ListChangeListener.Change<? extends Contact> change = changes.get(0);
+        int removed = 0;
+        int added = 0;
+        while (change.next()) {
+            removed += change.getRemovedSize();
+            added += change.getAddedSize();
+        }
+        assertEquals(1, removed);
+        assertEquals(1, added);
+    }
+
+    @Test
+    public void testUnchangedUpdateFiresNothing() {
+        resultList.update(contacts);
+        changes.clear();
+        resultList.update(new ArrayList<>(contacts));
+        assertTrue(changes.isEmpty());
+    }
+
+    @Test
+    public void testRenamedContactIsReplaced() {
+        resultList.update(contacts.subList(0, 3));
+        changes.clear();
+        contacts.get(1).setFirstName("Renamed");
+        resultList.update(contacts.subList(0, 3));
+        assertEquals(1, changes.size());
+        ListChangeListener.Change<? extends Contact> change = changes.get(0);
+        assertTrue(change.next());
+        assertTrue(change.wasReplaced());
+        assertEquals(1, change.getFrom());
+        assertFalse(change.next());
+    }
+
+    @Test
+    public void testRandomUpdatesReplayToNewContents() {
+        Random random = new Random(7);
+        List<Integer> shown = new ArrayList<>();
+        for (int round = 0; round < 200; round++) {
+            List<Contact> next = new ArrayList<>();
+            for (Contact contact : contacts) {
+                if (random.nextInt(3) > 0) next.add(contact);
+            }
+            if (random.nextBoolean()) {
+                // Results are not always in id order
+                next.add(0, next.remove(next.size() - 1));
+            }
+            changes.clear();
+            resultList.update(next);
+            List<Integer> expected = next.stream().map(Contact::getId).toList();
+            assertEquals(expected, replay(shown));
+            assertEquals(expected, resultList.stream().map(Contact::getId).toList());
+            shown = expected;
+        }
+    }
+
+    @Test
+    public void testLargeDifferenceIsReplacedAsOneChange() {
+        List<Contact> first = new ArrayList<>();
+        List<Contact> second = new ArrayList<>();
+        for (int i = 0; i < 2 * ContactResultList.MAX_DIFF_EDITS; i++) {
+            Contact contact = new Contact("Name" + i, "Doe", i + "@example.com", "04" + i);
+            contact.setId(100 + i);
+            (i % 2 == 0 ? first : second).add(contact);
+        }
+        first.add(0, contacts.get(0));
+        second.add(0, contacts.get(0));
+        resultList.update(first);
+        List<Integer> shown = first.stream().map(Contact::getId).toList();
+        changes.clear();
+        resultList.update(second);
+        assertEquals(1, changes.size());
+        assertEquals(second.stream().map(Contact::getId).toList(), replay(shown));
+    }
+}
@@ -0,0 +1,164 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class ContactSnapshotTest {
+    @TempDir
+    Path tempDir;
+    private Path file;
+    private Connection connection;
+    private SqliteContactDAO contactDAO;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        file = tempDir.resolve(ContactSnapshot.DEFAULT_FILE);
+        connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings());
+        contactDAO = new SqliteContactDAO(connection);
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            contacts.add(new Contact("Name" + i, i % 2 == 0 ? "Doe" : "Núñez", "name" + i + "@example.com", "+61 423 423 " + (100 + i)));
+        }
+        contacts.add(new Contact("李", "小龍", "", ""));
+        contactDAO.addContacts(contacts);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        contactDAO.close();
+        connection.close();
+    }
+
+    private static void assertSameContacts(List<Contact> expected, List<Contact> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getId(), actual.get(i).getId());
+            assertEquals(expected.get(i).getFirstName(), actual.get(i).getFirstName());
+            assertEquals(expected.get(i).getLastName(), actual.get(i).getLastName());
+            assertEquals(expected.get(i).getEmail(), actual.get(i).getEmail());
+            assertEquals(expected.get(i).getPhone(), actual.get(i).getPhone());
+        }
+    }
+
+    /**
+     * Checks a snapshot against a mock DAO holding the same contacts, and against the database for paging.
+     */
+    private void assertMatchesDatabase(ContactSnapshot snapshot) {
+        MockContactDAO expected = new MockContactDAO();
+        List<Contact> all = contactDAO.getAllContacts();
+        assertSameContacts(all, snapshot.getAllContacts());
+        for (Contact contact : all) {
+            expected.addContact(new Contact(contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhone()));
+        }
+        assertEquals(all.size(), snapshot.getContactCount());
+        for (String query : new String[] {"", "doe", "NUNEZ", "name1", "0423 423 1", "+61423423", "李", "missing"}) {
+            // The mock numbers its contacts from 0 in the order they were added
+            List<Contact> matches = new ArrayList<>();
+            for (Contact match : expected.searchContacts(query)) {
+                matches.add(all.get(match.getId()));
+            }
+            assertSameContacts(matches, snapshot.searchContacts(query));
+        }
+        assertSameContacts(contactDAO.getContacts(null, 50), snapshot.getContacts(null, 50));
+        ContactKey key = ContactKey.of(contactDAO.getContacts(null, 120).get(119));
+        assertSameContacts(contactDAO.getContacts(key, 50), snapshot.getContacts(key, 50));
+        assertEquals(contactDAO.countContactsBefore(key), snapshot.countContactsBefore(key));
+        for (int position : new int[] {0, 119, all.size() - 1, all.size()}) {
+            assertEquals(contactDAO.getContactKeyAt(position), snapshot.getContactKeyAt(position));
+        }
+    }
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        ContactSnapshot snapshot = ContactSnapshot.refresh(file, contactDAO);
+        assertEquals(contactDAO.getChangeSequence(), snapshot.getChangeSequence());
+        assertMatchesDatabase(snapshot);
+        assertMatchesDatabase(ContactSnapshot.open(file));
+        assertNull(snapshot.getContact(-1));
+    }
+
+    @Test
+    public void testIncrementalRefresh() throws IOException {
+        ContactSnapshot first = ContactSnapshot.refresh(file, contactDAO);
+        List<Contact> contacts = contactDAO.getAllContacts();
+        contacts.get(3).setLastName("Aaronson");
+        contactDAO.updateContact(contacts.get(3));
+        contactDAO.deleteContacts(List.of(contacts.get(0), contacts.get(150)));
+        contactDAO.addContact(new Contact("Zoë", "Doe", "zoe@example.com", "0423 423 999"));
+        ContactSnapshot second = ContactSnapshot.refresh(file, contactDAO);
+        assertTrue(second.getChangeSequence() > first.getChangeSequence());
+        assertMatchesDatabase(second);
+        assertNull(second.getContact(contacts.get(0).getId()));
+        assertEquals("Aaronson", second.getContact(contacts.get(3).getId()).getLastName());
+        // Nothing changed, so the snapshot is reused as is
+        assertEquals(second.getChangeSequence(), ContactSnapshot.refresh(file, contactDAO).getChangeSequence());
+    }
+
+    @Test
+    public void testCorruptSnapshotIsRebuilt() throws IOException {
+        ContactSnapshot.refresh(file, contactDAO);
+        byte[] bytes = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(bytes, bytes.length / 2));
+        assertThrows(IOException.class, () -> ContactSnapshot.open(file));
+        assertMatchesDatabase(ContactSnapshot.refresh(file, contactDAO));
+    }
+
+    @Test
+    public void testSnapshotDAOFallsBackWhileStale() throws IOException {
+        ContactSnapshot.refresh(file, contactDAO);
+        SnapshotContactDAO snapshotDAO = new SnapshotContactDAO(contactDAO, contactDAO, file);
+        assertTrue(snapshotDAO.isSnapshotCurrent());
+        Contact contact = new Contact("Zoë", "Doe", "zoe@example.com", "0423 423 999");
+        snapshotDAO.addContact(contact);
+        assertFalse(snapshotDAO.isSnapshotCurrent());
+        assertEquals("Zoë", snapshotDAO.getContact(contact.getId()).getFirstName());
+        snapshotDAO.refreshSnapshot();
+        assertTrue(snapshotDAO.isSnapshotCurrent());
+        assertEquals("Zoë", snapshotDAO.getContact(contact.getId()).getFirstName());
+        assertEquals(202, snapshotDAO.getContactCount());
+        // A snapshot the database moved past is not used
+        contactDAO.deleteContact(contact);
+        assertFalse(new SnapshotContactDAO(contactDAO, contactDAO, file).isSnapshotCurrent());
+    }
+
+    @Test
+    public void testTextMatchesStayOutOfThePhoneDigits() throws IOException {
+        Contact contact = new Contact("Ann", "Lee", "ann@example.com", "9 0-06149");
+        contactDAO.addContact(contact);
+        ContactSnapshot snapshot = ContactSnapshot.refresh(file, contactDAO);
+        // "006149" is only in the phone digits "9006149", while its own digits normalize to "049"
+        assertTrue(contactDAO.searchContacts("006149").isEmpty());
+        assertTrue(snapshot.searchContacts("006149").isEmpty());
+        assertEquals(List.of(contact.getId()), snapshot.searchContacts("9006149").stream().map(Contact::getId).toList());
+        assertEquals(List.of(contact.getId()), snapshot.searchContacts("0-06").stream().map(Contact::getId).toList());
+    }
+
+    @Test
+    public void testSearchesMatchTheSameWayWhileStale() throws IOException {
+        ContactSnapshot.refresh(file, contactDAO);
+        SnapshotContactDAO snapshotDAO = new SnapshotContactDAO(contactDAO, contactDAO, file);
+        String[] queries = {"nunez", "NÚÑEZ", "0423 423 150", "+61423423150", "小龍", "name1", ""};
+        List<List<Contact>> current = new ArrayList<>();
+        for (String query : queries) {
+            current.add(snapshotDAO.searchContacts(query));
+        }
+        // A write that changes nothing still makes the snapshot stale
+        snapshotDAO.updateContact(snapshotDAO.getContact(contactDAO.getAllContacts().get(0).getId()));
+        assertFalse(snapshotDAO.isSnapshotCurrent());
+        for (int i = 0; i < queries.length; i++) {
+            assertSameContacts(current.get(i), snapshotDAO.searchContacts(queries[i]));
+        }
+        assertEquals(100, current.get(0).size());
+        assertEquals(1, current.get(3).size());
+    }
+}
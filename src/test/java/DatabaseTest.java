@@ -1,13 +1,73 @@
 import com.example.addressbook.model.*;
 import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 public class DatabaseTest {
+    @TempDir
+    Path tempDir;
+
+    private static String journalMode(String url) throws SQLException {
+        try (Connection connection = DriverManager.getConnection(url)) {
+            return journalMode(connection);
+        }
+    }
+
+    private static String journalMode(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode")) {
+            return resultSet.getString(1);
+        }
+    }
+
     @Test
     public void testConnection() {
         Connection conn = SqliteConnection.getInstance();
         assertEquals(true, conn != null);
     }
+
+    @Test
+    public void testOpenConnection() throws SQLException {
+        try (Connection conn = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings())) {
+            assertEquals(true, conn != null);
+        }
+    }
+
+    @Test
+    public void testPoolPutsBackJournalMode() throws SQLException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("contacts.db");
+        assertEquals("delete", journalMode(url));
+        try (SqliteConnectionPool pool = new SqliteConnectionPool(url, new SqliteSettings(), 2)) {
+            assertEquals("wal", pool.read(connection -> {
+                try (Statement statement = connection.createStatement();
+                     ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode")) {
+                    return resultSet.getString(1);
+                }
+            }));
+        }
+        assertEquals("delete", journalMode(url));
+    }
+
+    @Test
+    public void testPoolLeavesWalWhileDatabaseIsOpen() throws SQLException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("contacts.db");
+        try (Connection other = DriverManager.getConnection(url)) {
+            SqliteConnectionPool pool = new SqliteConnectionPool(url, new SqliteSettings(), 1);
+            journalMode(other);
+            long start = System.nanoTime();
+            pool.close();
+            // The pool gives up at once instead of waiting out the busy timeout
+            assertTrue(System.nanoTime() - start < 2_000_000_000L);
+            assertEquals("wal", journalMode(other));
+        }
+        assertEquals("wal", journalMode(url));
+    }
 }
@@ -0,0 +1,122 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class ExternalChangeWatcherTest {
+    private Path file;
+    private Connection connection;
+    private Connection otherConnection;
+    private SqliteContactDAO database;
+    private SqliteContactDAO otherDatabase;
+    private ContactChangeStream stream;
+    private ContactManager contactManager;
+    private final List<ContactChange> published = new ArrayList<>();
+    private Contact john;
+    private Contact jane;
+
+    @BeforeEach
+    public void setUp(@TempDir Path tempDir) throws SQLException, InterruptedException {
+        file = tempDir.resolve("contacts.db");
+        connection = SqliteConnection.open("jdbc:sqlite:" + file, new SqliteSettings());
+        // The other process sharing the database
+        otherConnection = SqliteConnection.open("jdbc:sqlite:" + file, new SqliteSettings());
+        database = new SqliteContactDAO(connection);
+        otherDatabase = new SqliteContactDAO(otherConnection);
+        stream = new ContactChangeStream();
+        stream.subscribe(new IContactChangeListener() {
+            @Override
+            public void onContactsChanged(List<ContactChange> changes) {
+                synchronized (published) {
+                    published.addAll(changes);
+                }
+            }
+
+            @Override
+            public void onChangesLost() {
+            }
+        });
+        contactManager = new ContactManager(new CachingContactDAO(new ObservableContactDAO(database, stream)), true);
+        john = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        jane = new Contact("Jane", "Doe", "janedoe@example.com", "0423423424");
+        contactManager.addContacts(List.of(john, jane));
+        // Loads the cache and the trigram index
+        contactManager.getAllContacts();
+        assertEquals(2, contactManager.searchContacts("doe").size());
+        assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+        published.clear();
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        stream.close();
+        database.close();
+        otherDatabase.close();
+        connection.close();
+        otherConnection.close();
+    }
+
+    @Test
+    public void testExternalWritesArePatchedIn() throws InterruptedException {
+        try (ExternalChangeWatcher watcher = new ExternalChangeWatcher(database, file, contactManager::applyExternalChanges, 100)) {
+            Contact otherJane = otherDatabase.getContact(jane.getId());
+            otherJane.setLastName("Smith");
+            otherDatabase.updateContact(otherJane);
+            otherDatabase.deleteContact(otherDatabase.getContact(john.getId()));
+            Contact bob = new Contact("Bob", "Brown", "bob@example.com", "0412345678");
+            otherDatabase.addContact(bob);
+            // The writes are separate commits, so they may be found by more than one check
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+            while (watcher.getChangeSequence() < otherDatabase.getChangeSequence()) {
+                assertTrue(System.nanoTime() < deadline);
+                Thread.sleep(10);
+            }
+            assertTrue(stream.awaitDelivery(5, TimeUnit.SECONDS));
+        }
+        List<ContactChange> changes = new ArrayList<>(published);
+        changes.sort(Comparator.comparingInt(ContactChange::getId));
+        assertEquals(3, changes.size());
+        assertEquals(ContactChange.Type.DELETED, changes.get(0).getType());
+        assertEquals("John", changes.get(0).getBefore().getFirstName());
+        assertEquals(ContactChange.Type.UPDATED, changes.get(1).getType());
+        assertEquals("Doe", changes.get(1).getBefore().getLastName());
+        assertEquals("Smith", changes.get(1).getAfter().getLastName());
+        assertEquals(ContactChange.Type.ADDED, changes.get(2).getType());
+        // The cache and the index answer with the external changes
+        assertEquals(2, contactManager.getContactCount());
+        assertEquals("Smith", contactManager.getAllContacts().get(0).getLastName());
+        assertTrue(contactManager.searchContacts("john").isEmpty());
+        assertEquals(1, contactManager.searchContacts("brown").size());
+    }
+
+    @Test
+    public void testOwnWritesAreNotReportedAlone() {
+        try (ExternalChangeWatcher watcher = new ExternalChangeWatcher(database, file, contactManager::applyExternalChanges, 60_000)) {
+            jane.setPhone("0499999999");
+            contactManager.updateContact(jane);
+            assertEquals(0, watcher.check());
+            List<Contact> imported = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                imported.add(new Contact("Imported" + i, "Contact", "", ""));
+            }
+            contactManager.addContacts(imported);
+            // The next external write does not bring the own ones back
+            Contact otherJohn = otherDatabase.getContact(john.getId());
+            otherJohn.setEmail("john@example.com");
+            otherDatabase.updateContact(otherJohn);
+            assertEquals(1, watcher.check());
+            assertEquals(0, watcher.check());
+        }
+        assertEquals(1, contactManager.searchContacts("john@example").size());
+        assertEquals(1, contactManager.searchContacts("0499999999").size());
+    }
+}
@@ -0,0 +1,143 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PackedContactDAOTest {
+    private PackedContactDAO contactDAO;
+
+    @BeforeEach
+    public void setUp() {
+        contactDAO = new PackedContactDAO();
+    }
+
+    private static void assertSameFields(Contact expected, Contact actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getFirstName(), actual.getFirstName());
+        assertEquals(expected.getLastName(), actual.getLastName());
+        assertEquals(expected.getEmail(), actual.getEmail());
+        assertEquals(expected.getPhone(), actual.getPhone());
+    }
+
+    @Test
+    public void testAddAndGetContact() {
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        contactDAO.addContact(contact);
+        Contact stored = contactDAO.getContact(contact.getId());
+        assertSameFields(contact, stored);
+        // Contacts are built on every read
+        assertNotSame(stored, contactDAO.getContact(contact.getId()));
+        assertNull(contactDAO.getContact(42));
+    }
+
+    @Test
+    public void testStoresAnyText() {
+        Contact[] contacts = {
+                new Contact("José", "Núñez", "jose@example.com", "+61 423 423 425"),
+                new Contact("李", "小龍", "bruce@example.com", "0423423426"),
+                new Contact("Zoë 🙂", "", null, null),
+                new Contact("A".repeat(300), "B".repeat(20_000), "", "")
+        };
+        for (Contact contact : contacts) {
+            contactDAO.addContact(contact);
+        }
+        for (Contact contact : contacts) {
+            assertSameFields(contact, contactDAO.getContact(contact.getId()));
+        }
+    }
+
+    @Test
+    public void testUpdateAndDeleteKeepOrder() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            contacts.add(new Contact("Name" + i, "Doe", i + "@example.com", "04" + i));
+        }
+        contactDAO.addContacts(contacts);
+        contacts.get(1).setFirstName("Renamed");
+        contactDAO.updateContact(contacts.get(1));
+        contactDAO.deleteContacts(List.of(contacts.get(0), contacts.get(3)));
+        List<Contact> stored = contactDAO.getAllContacts();
+        assertEquals(List.of(1, 2, 4), stored.stream().map(Contact::getId).toList());
+        assertEquals("Renamed", stored.get(0).getFirstName());
+        assertEquals(3, contactDAO.getContactCount());
+        List<Integer> streamed = new ArrayList<>();
+        contactDAO.forEachContact(contact -> streamed.add(contact.getId()));
+        assertEquals(List.of(1, 2, 4), streamed);
+    }
+
+    @Test
+    public void testSearchMatchesDefaultSearch() {
+        MockContactDAO mockDAO = new MockContactDAO();
+        List<Contact> contacts = List.of(
+                new Contact("John", "Doe", "johndoe@example.com", "0423423423"),
+                new Contact("Jane", "Doe", "janedoe@example.com", "0423 423 424"),
+                new Contact("José", "Núñez", "jose@example.com", "+61 423 423 425"),
+                new Contact("Ærin", "ØSTBY", "aerin@example.no", "0061423423427"),
+                new Contact("李", "小龍", "bruce@example.com", null),
+                new Contact("Alice", "Graystone", "aliceg@gmail.com", "  +61 (0)423"),
+                new Contact("Bob", "B".repeat(3_000) + "rown", "bob@example.com", "0412 345 678"));
+        for (Contact contact : contacts) {
+            contactDAO.addContact(new Contact(contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhone()));
+            mockDAO.addContact(contact);
+        }
+        String[] queries = {"jane doe", "GRAY", "jose nunez", "NÚÑEZ", "ærin øst", "0423 423 425", "0423423427",
+                "423", "+61 423", "小", "null", "e ", "@", "xyz", "bbrown", "0412345", ""};
+        for (String query : queries) {
+            List<Integer> expected = mockDAO.searchContacts(query).stream().map(Contact::getId).toList();
+            List<Integer> actual = contactDAO.searchContacts(query).stream().map(Contact::getId).toList();
+            assertEquals(expected, actual, query);
+        }
+    }
+
+    @Test
+    public void testCompaction() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            contacts.add(new Contact("First" + i, "Last", "user" + i + "@example.com", "04" + i));
+        }
+        contactDAO.addContacts(contacts);
+        // Every contact is rewritten twice and three quarters of them are deleted, so the store compacts
+        for (int round = 0; round < 2; round++) {
+            for (Contact contact : contacts) {
+                contact.setLastName("Last" + round);
+            }
+            contactDAO.updateContacts(contacts);
+        }
+        List<Contact> deleted = new ArrayList<>();
+        List<Contact> kept = new ArrayList<>();
+        for (int i = 0; i < contacts.size(); i++) {
+            (i % 4 == 0 ? kept : deleted).add(contacts.get(i));
+        }
+        contactDAO.deleteContacts(deleted);
+        assertEquals(kept.size(), contactDAO.getContactCount());
+        List<Contact> stored = contactDAO.getAllContacts();
+        assertEquals(kept.size(), stored.size());
+        for (int i = 0; i < kept.size(); i++) {
+            assertSameFields(kept.get(i), stored.get(i));
+            assertSameFields(kept.get(i), contactDAO.getContact(kept.get(i).getId()));
+        }
+        for (Contact contact : deleted) {
+            assertNull(contactDAO.getContact(contact.getId()));
+        }
+        assertEquals(1, contactDAO.searchContacts("first19996").size());
+        Contact added = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        contactDAO.addContact(added);
+        assertEquals(20_000, added.getId());
+        assertSameFields(added, contactDAO.getContact(added.getId()));
+    }
+
+    @Test
+    public void testWorksWithContactManager() {
+        ContactManager contactManager = new ContactManager(contactDAO, true);
+        contactManager.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+        contactManager.addContact(new Contact("Jane", "Doe", "janedoe@example.com", "0423423424"));
+        assertEquals(2, contactManager.searchContacts("doe").size());
+        Contact jane = contactManager.searchContacts("jane").get(0);
+        jane.setFirstName("Janet");
+        contactManager.updateContact(jane);
+        assertEquals("Janet", contactDAO.getContact(jane.getId()).getFirstName());
+        assertEquals(1, contactManager.searchContacts("janet").size());
+    }
+}
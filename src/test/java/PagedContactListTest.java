@@ -0,0 +1,60 @@
+import com.example.addressbook.controller.PagedContactList;
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+public class PagedContactListTest {
+    private final List<ContactKey> pageStarts = new ArrayList<>();
+    private int keyLookups;
+    private List<Contact> sorted;
+    private PagedContactList pagedList;
+
+    @BeforeEach
+    public void setUp() {
+        MockContactDAO dao = new MockContactDAO() {
+            @Override
+            public List<Contact> getContacts(ContactKey after, int limit) {
+                pageStarts.add(after);
+                return super.getContacts(after, limit);
+            }
+
+            @Override
+            public ContactKey getContactKeyAt(int position) {
+                keyLookups++;
+                return super.getContactKeyAt(position);
+            }
+        };
+        String[] lastNames = {"Doe", "Smith", "Graystone", "Adams"};
+        for (int i = 0; i < 1_000; i++) {
+            dao.addContact(new Contact("Name" + i, lastNames[i % lastNames.length], i + "@example.com", "04" + i));
+        }
+        sorted = dao.getAllContacts().stream().sorted(Comparator.comparing(ContactKey::of)).toList();
+        pagedList = new PagedContactList(new ContactManager(dao), 10);
+    }
+
+    @Test
+    public void testFarPageIsLoadedWithoutThePagesBeforeIt() {
+        assertEquals(1_000, pagedList.size());
+        assertEquals(sorted.get(999).getId(), pagedList.get(999).getId());
+        assertEquals(1, pageStarts.size());
+        assertEquals(1, keyLookups);
+        // The next page starts after the one just loaded, so no lookup is needed
+        assertEquals(sorted.get(505).getId(), pagedList.get(505).getId());
+        assertEquals(sorted.get(515).getId(), pagedList.get(515).getId());
+        assertEquals(3, pageStarts.size());
+        assertEquals(2, keyLookups);
+    }
+
+    @Test
+    public void testRandomAccessMatchesTheSortedContacts() {
+        for (int index : new int[] {0, 999, 10, 9, 500, 499, 501, 250, 0}) {
+            assertEquals(sorted.get(index).getId(), pagedList.get(index).getId());
+        }
+        assertEquals(500, pagedList.indexOf(sorted.get(500)));
+    }
+}
@@ -0,0 +1,396 @@
+import com.example.addressbook.model.*;
+
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SqliteContactDAOTest {
+    @TempDir
+    Path tempDir;
+    private Connection connection;
+    private SqliteContactDAO contactDAO;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        connection = SqliteConnection.open("jdbc:sqlite:" + tempDir.resolve("contacts.db"), new SqliteSettings());
+        contactDAO = new SqliteContactDAO(connection);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        contactDAO.close();
+        connection.close();
+    }
+
+    @Test
+    public void testAddAndGetContact() {
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        contactDAO.addContact(contact);
+        Contact stored = contactDAO.getContact(contact.getId());
+        assertEquals("John", stored.getFirstName());
+        assertEquals("Doe", stored.getLastName());
+        assertEquals("johndoe@example.com", stored.getEmail());
+        assertEquals("0423423423", stored.getPhone());
+    }
+
+    @Test
+    public void testUpdateAndDeleteContact() {
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        contactDAO.addContact(contact);
+        contact.setLastName("Smith");
+        contactDAO.updateContact(contact);
+        assertEquals("Smith", contactDAO.getContact(contact.getId()).getLastName());
+        contactDAO.deleteContact(contact);
+        assertNull(contactDAO.getContact(contact.getId()));
+    }
+
+    @Test
+    public void testBatchWrites() {
+        contactDAO.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+        List<Contact> contacts = List.of(
+                new Contact("Jane", "Doe", "janedoe@example.com", "0423423424"),
+                new Contact("Jay", "Doe", "jaydoe@example.com", "0423423425"),
+                new Contact("John", "Smith", "johnsmith@example.com", "0423423426"));
+        contactDAO.addContacts(contacts);
+        for (Contact contact : contacts) {
+            assertEquals(contact.getFirstName(), contactDAO.getContact(contact.getId()).getFirstName());
+        }
+        contacts.get(0).setFirstName("Janet");
+        contacts.get(1).setFirstName("Jason");
+        contactDAO.updateContacts(contacts.subList(0, 2));
+        assertEquals("Janet", contactDAO.getContact(contacts.get(0).getId()).getFirstName());
+        assertEquals("Jason", contactDAO.getContact(contacts.get(1).getId()).getFirstName());
+        contactDAO.deleteContacts(contacts.subList(1, 3));
+        assertEquals(2, contactDAO.getAllContacts().size());
+    }
+
+    @Test
+    public void testGetContactsById() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 1_200; i++) {
+            contacts.add(new Contact("Name" + i, "Doe", i + "@example.com", "04" + i));
+        }
+        contactDAO.addContacts(contacts);
+        contactDAO.deleteContact(contacts.get(700));
+        // More ids than one query takes, out of order, with a deleted and an unknown one
+        List<Integer> ids = new ArrayList<>();
+        for (int i = contacts.size() - 1; i >= 0; i -= 2) {
+            ids.add(contacts.get(i).getId());
+        }
+        ids.add(contacts.get(700).getId());
+        ids.add(-1);
+        Map<Integer, Contact> found = contactDAO.getContactsById(ids);
+        assertEquals(600, found.size());
+        assertEquals("Name1199", found.get(contacts.get(1199).getId()).getFirstName());
+        assertEquals("Name1", found.get(contacts.get(1).getId()).getFirstName());
+        assertFalse(found.containsKey(contacts.get(700).getId()));
+        assertTrue(contactDAO.getContactsById(List.of()).isEmpty());
+    }
+
+    @Test
+    public void testSettingsAreApplied() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA journal_mode")) {
+            assertEquals("wal", resultSet.getString(1));
+        }
+    }
+
+    @Test
+    public void testConnectionPool() throws Exception {
+        String url = "jdbc:sqlite:" + tempDir.resolve("pooled.db");
+        try (SqliteConnectionPool pool = new SqliteConnectionPool(url, new SqliteSettings(), 2);
+             SqliteContactDAO pooledDAO = new SqliteContactDAO(pool)) {
+            assertEquals(2, pool.getReaderCount());
+            pooledDAO.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+            // A reader sees the committed rows while the writer is held by an open transaction
+            AtomicInteger readerCount = new AtomicInteger(-1);
+            assertThrows(SQLException.class, () -> pool.transaction(writer -> {
+                try (Statement statement = writer.createStatement()) {
+                    statement.executeUpdate("DELETE FROM contacts");
+                }
+                Thread reader = new Thread(() -> readerCount.set(pooledDAO.getAllContacts().size()));
+                reader.start();
+                try {
+                    reader.join();
+                } catch (InterruptedException e) {
+                    throw new SQLException(e);
+                }
+                throw new SQLException("Roll back");
+            }));
+            assertEquals(1, readerCount.get());
+            assertEquals(1, pooledDAO.getAllContacts().size());
+        }
+    }
+
+    @Test
+    public void testReadersCannotWrite() throws SQLException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("pooled.db");
+        try (SqliteConnectionPool pool = new SqliteConnectionPool(url, new SqliteSettings(), 1)) {
+            new SqliteContactDAO(pool).close();
+            assertThrows(SQLException.class, () -> pool.read(reader -> {
+                try (Statement statement = reader.createStatement()) {
+                    return statement.executeUpdate("DELETE FROM contacts");
+                }
+            }));
+        }
+    }
+
+    @Test
+    public void testSearchContacts() {
+        contactDAO.addContacts(List.of(
+                new Contact("John", "Doe", "johndoe@example.com", "0423423423"),
+                new Contact("Jane", "Doe", "janedoe@example.com", "0423423424"),
+                new Contact("Alice", "Graystone", "aliceg@gmail.com", "0423423428"),
+                new Contact("Shane", "Graystone", "shaneg@gmail.com", "0423423429")));
+        String[] queries = {"jane doe", "GRAY", "ane", "@gmail", "423429", "e", "a\"b", "xyz", ""};
+        for (String query : queries) {
+            List<Integer> expected = contactDAO.getAllContacts().stream()
+                    .filter(contact -> (contact.getFullName() + " " + contact.getEmail() + " " + contact.getPhone())
+                            .toLowerCase().contains(query.toLowerCase()))
+                    .map(Contact::getId)
+                    .toList();
+            List<Integer> actual = contactDAO.searchContacts(query).stream().map(Contact::getId).toList();
+            assertEquals(expected, actual, query);
+        }
+    }
+
+    @Test
+    public void testSearchFoldsAccentsAndPhoneFormats() {
+        List<Contact> contacts = List.of(
+                new Contact("Zoë", "Müller", "zoe@example.com", "0423 423 424"),
+                new Contact("José", "Doe", "JOSE@example.com", "+61 423 111 222"),
+                new Contact("John", "Doe", "johndoe@example.com", "9 0-0614"),
+                new Contact("Alice", "Graystone", "aliceg@gmail.com", "(04) 2342 3428"));
+        MockContactDAO mockDAO = new MockContactDAO();
+        for (Contact contact : contacts) {
+            mockDAO.addContact(new Contact(contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhone()));
+        }
+        contactDAO.addContacts(contacts);
+        String[] queries = {"zoe", "muller", "MÜL", "zoë müller", "jose", "JOSÉ", "oe", "ü", "+61 423", "423423",
+                "0423423423", "04", "00614", "(04) 2342", "doe", "gmail", "xyz"};
+        for (String query : queries) {
+            // The mock DAO searches with the default filter of IContactDAO
+            List<String> expected = mockDAO.searchContacts(query).stream().map(Contact::getFullName).toList();
+            List<String> actual = contactDAO.searchContacts(query).stream().map(Contact::getFullName).toList();
+            assertEquals(expected, actual, query);
+        }
+        assertEquals(1, contactDAO.searchContacts("zoe").size());
+        assertEquals(3, contactDAO.searchContacts("04").size());
+    }
+
+    @Test
+    public void testSearchIndexFollowsWrites() {
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        contactDAO.addContact(contact);
+        assertEquals(1, contactDAO.searchContacts("john").size());
+        contact.setFirstName("Jonathan");
+        contactDAO.updateContact(contact);
+        assertEquals(0, contactDAO.searchContacts("john ").size());
+        assertEquals(1, contactDAO.searchContacts("jonathan").size());
+        contactDAO.deleteContact(contact);
+        assertEquals(0, contactDAO.searchContacts("jonathan").size());
+    }
+
+    @Test
+    public void testSearchFindsRowsWrittenWithoutKeys() throws SQLException {
+        Contact contact = new Contact("John", "Doe", "johndoe@example.com", "0423423423");
+        contactDAO.addContact(contact);
+        // Another process writes the raw columns only
+        try (Statement statement = connection.createStatement()) {
+            statement.executeUpdate("INSERT INTO contacts (firstName, lastName, phone, email) "
+                    + "VALUES ('Zoë', 'Müller', '+61 400 111 222', 'zoe@example.com')");
+            statement.executeUpdate("UPDATE contacts SET firstName = 'Jonathan' WHERE id = " + contact.getId());
+        }
+        assertEquals(List.of("Zoë Müller"), contactDAO.searchContacts("muller").stream().map(Contact::getFullName).toList());
+        assertEquals(1, contactDAO.searchContacts("0400111").size());
+        assertEquals(1, contactDAO.searchContacts("jonathan").size());
+        assertEquals(0, contactDAO.searchContacts("john ").size());
+        contactDAO.applyExternalChanges(List.of(ContactChange.added(contact)));
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM contacts WHERE searchKey IS NULL")) {
+            assertEquals(0, resultSet.getInt(1));
+        }
+        assertEquals(1, contactDAO.searchContacts("muller").size());
+        assertEquals(1, contactDAO.searchContacts("0400111").size());
+        assertEquals(1, contactDAO.searchContacts("jonathan").size());
+    }
+
+    @Test
+    public void testSearchKeysAreAddedToOldDatabases() throws SQLException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("old.db");
+        try (Connection oldConnection = SqliteConnection.open(url, new SqliteSettings());
+             Statement statement = oldConnection.createStatement()) {
+            statement.execute("CREATE TABLE contacts (id INTEGER PRIMARY KEY AUTOINCREMENT, firstName VARCHAR NOT NULL, "
+                    + "lastName VARCHAR NOT NULL, phone VARCHAR NOT NULL, email VARCHAR NOT NULL)");
+            statement.executeUpdate("INSERT INTO contacts (firstName, lastName, phone, email) "
+                    + "VALUES ('José', 'Doe', '(04) 2342 3428', 'jose@example.com')");
+        }
+        try (Connection oldConnection = SqliteConnection.open(url, new SqliteSettings());
+             SqliteContactDAO oldDAO = new SqliteContactDAO(oldConnection)) {
+            assertEquals(1, oldDAO.searchContacts("jose").size());
+            assertEquals(1, oldDAO.searchContacts("0423423428").size());
+            try (Statement statement = oldConnection.createStatement();
+                 ResultSet resultSet = statement.executeQuery("SELECT searchKey, phoneKey FROM contacts")) {
+                assertNotNull(resultSet.getString(1));
+                assertEquals("0423423428", resultSet.getString(2));
+            }
+        }
+    }
+
+    @Test
+    public void testLargeBatchIsIndexed() {
+        contactDAO.addContact(new Contact("John", "Doe", "johndoe@example.com", "0423423423"));
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) {
+            contacts.add(new Contact("First" + i, "Last", "user" + i + "@example.com", "0400000000"));
+        }
+        contactDAO.addContacts(contacts);
+        assertEquals(1, contactDAO.searchContacts("first9999").size());
+        assertEquals(1, contactDAO.searchContacts("johndoe").size());
+        // The insert trigger is back for the next writes
+        contactDAO.addContact(new Contact("Jane", "Doe", "janedoe@example.com", "0423423424"));
+        assertEquals(1, contactDAO.searchContacts("janedoe").size());
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        MockContactDAO mockDAO = new MockContactDAO();
+        String[] lastNames = {"Doe", "Smith", "Graystone", "Doe", "Adams"};
+        for (int i = 0; i < 23; i++) {
+            Contact contact = new Contact("Name" + (i % 7), lastNames[i % lastNames.length], i + "@example.com", "04" + i);
+            contactDAO.addContact(contact);
+            Contact copy = new Contact(contact.getFirstName(), contact.getLastName(), contact.getEmail(), contact.getPhone());
+            mockDAO.addContact(copy);
+            copy.setId(contact.getId());
+        }
+        assertEquals(23, contactDAO.getContactCount());
+        ContactKey after = null;
+        int pages = 0;
+        while (true) {
+            List<Contact> page = contactDAO.getContacts(after, 10);
+            List<Contact> expected = mockDAO.getContacts(after, 10);
+            assertEquals(expected.stream().map(Contact::getId).toList(), page.stream().map(Contact::getId).toList());
+            if (page.isEmpty()) break;
+            for (Contact contact : page) {
+                assertEquals(mockDAO.countContactsBefore(ContactKey.of(contact)), contactDAO.countContactsBefore(ContactKey.of(contact)));
+            }
+            after = ContactKey.of(page.get(page.size() - 1));
+            pages++;
+        }
+        assertEquals(3, pages);
+        for (int position = 0; position <= 23; position++) {
+            assertEquals(mockDAO.getContactKeyAt(position), contactDAO.getContactKeyAt(position));
+        }
+        assertNull(contactDAO.getContactKeyAt(23));
+    }
+
+    @Test
+    public void testKeysetPaginationOutsideTheBmp() {
+        // U+1F600 sorts after U+FF21 by code point and in UTF-8, but its high surrogate sorts before it in UTF-16
+        String[] lastNames = {"\uD83D\uDE00", "\uFF21", "Zed", "\uD83D\uDE00\uFF21", "\uFF21\uD83D\uDE00"};
+        MockContactDAO mockDAO = new MockContactDAO();
+        for (String lastName : lastNames) {
+            Contact contact = new Contact("Name", lastName, "", "");
+            contactDAO.addContact(contact);
+            Contact copy = new Contact("Name", lastName, "", "");
+            mockDAO.addContact(copy);
+            copy.setId(contact.getId());
+        }
+        List<String> expected = List.of("Zed", "\uFF21", "\uFF21\uD83D\uDE00", "\uD83D\uDE00", "\uD83D\uDE00\uFF21");
+        for (IContactDAO dao : new IContactDAO[] {contactDAO, mockDAO}) {
+            List<String> paged = new ArrayList<>();
+            ContactKey after = null;
+            List<Contact> page;
+            while (!(page = dao.getContacts(after, 1)).isEmpty()) {
+                paged.add(page.get(0).getLastName());
+                after = ContactKey.of(page.get(0));
+            }
+            assertEquals(expected, paged);
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(i, dao.countContactsBefore(new ContactKey(expected.get(i), "Name", 0)));
+            }
+        }
+    }
+
+    @Test
+    public void testForEachContact() {
+        for (int i = 0; i < 25; i++) {
+            contactDAO.addContact(new Contact("Name" + i, "Doe", i + "@example.com", "04" + i));
+        }
+        contactDAO.setFetchSize(7);
+        List<Integer> streamed = new ArrayList<>();
+        contactDAO.forEachContact(contact -> streamed.add(contact.getId()));
+        assertEquals(contactDAO.getAllContacts().stream().map(Contact::getId).toList(), streamed);
+    }
+
+    @Test
+    public void testNestedReadsKeepTheStream() {
+        for (int i = 0; i < 25; i++) {
+            contactDAO.addContact(new Contact("Name" + i, "Doe", i + "@example.com", "04" + i));
+        }
+        contactDAO.setFetchSize(7);
+        List<Integer> streamed = new ArrayList<>();
+        AtomicInteger nested = new AtomicInteger();
+        // The DAO has a single connection, so the nested reads run on the one streaming the contacts
+        contactDAO.forEachContact(contact -> {
+            streamed.add(contact.getId());
+            nested.addAndGet(contactDAO.getAllContacts().size());
+            contactDAO.forEachContact(other -> nested.incrementAndGet());
+        });
+        assertEquals(contactDAO.getAllContacts().stream().map(Contact::getId).toList(), streamed);
+        assertEquals(25 * 50, nested.get());
+    }
+
+    @Test
+    public void testNestedReadsReuseTheReader() throws SQLException {
+        String url = "jdbc:sqlite:" + tempDir.resolve("pooled.db");
+        try (SqliteConnectionPool pool = new SqliteConnectionPool(url, new SqliteSettings(), 1);
+             SqliteContactDAO pooledDAO = new SqliteContactDAO(pool)) {
+            for (int i = 0; i < 5; i++) {
+                pooledDAO.addContact(new Contact("Name" + i, "Doe", i + "@example.com", "04" + i));
+            }
+            AtomicInteger nested = new AtomicInteger();
+            // The only reader is held by the stream, so a nested read waiting for a free one would never return
+            assertTimeoutPreemptively(Duration.ofSeconds(10), () -> pooledDAO.forEachContact(
+                    contact -> nested.addAndGet(pooledDAO.getAllContacts().size())));
+            assertEquals(5 * 5, nested.get());
+        }
+    }
+
+    @Test
+    public void testCompactChangeLog() {
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            contacts.add(new Contact("Name" + i, "Doe", i + "@example.com", "04" + i));
+        }
+        contactDAO.addContacts(contacts);
+        long checkpoint = contactDAO.getChangeSequence();
+        contacts.get(3).setLastName("Smith");
+        contactDAO.updateContact(contacts.get(3));
+        contacts.get(3).setLastName("Brown");
+        contactDAO.updateContact(contacts.get(3));
+        contactDAO.deleteContact(contacts.get(5));
+        long sequence = contactDAO.getChangeSequence();
+
+        // The insert and the first update of the updated contact, and the insert of the deleted one
+        assertEquals(3, contactDAO.compactChangeLog());
+        assertEquals(sequence, contactDAO.getChangeSequence());
+        assertEquals(0, contactDAO.compactChangeLog());
+        List<String> changed = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        assertEquals(sequence, contactDAO.forEachChange(checkpoint, contact -> changed.add(contact.getLastName()), deleted::add));
+        assertEquals(List.of("Brown"), changed);
+        assertEquals(List.of(contacts.get(5).getId()), deleted);
+    }
+}